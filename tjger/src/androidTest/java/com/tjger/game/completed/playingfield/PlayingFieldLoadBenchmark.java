@@ -0,0 +1,236 @@
+package com.tjger.game.completed.playingfield;
+
+import android.graphics.Point;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import at.hagru.hgbase.android.awt.Dimension;
+import at.hagru.hgbase.lib.xml.HGBaseXMLTools;
+
+/**
+ * Compares the times to load playing fields from XML with a document tree ({@link PlayingFieldFileOperator#fromXml(org.w3c.dom.Node)}),
+ * with the streaming parser ({@link PlayingFieldFileOperator#fromStream(java.io.InputStream)}) and from the binary format
+ * ({@link PlayingFieldBinaryOperator#fromBuffer(ByteBuffer)}).<p>
+ * The benchmark generates boards with an increasing number of fields, half of them on a grid and half of them with pixel
+ * positions, with properties at some fields and connections. Every board is written with {@link PlayingFieldFileOperator#toFile(File, PlayingField)}
+ * and converted to the binary format once, then it is loaded from memory by all three ways, first to warm up and then
+ * measured. The loaded playing fields are compared in their binary format, so all ways must create the same fields.<p>
+ * The benchmark belongs to the instrumented test sources, so it runs on a device with the Android classes the playing
+ * fields use and is not part of the library.
+ *
+ * <pre>
+ * PlayingFieldLoadBenchmark benchmark = new PlayingFieldLoadBenchmark();
+ * benchmark.setNumBoards(40);
+ * Log.i("benchmark", benchmark.run().toString());
+ * </pre>
+ *
+ * @see PlayingFieldLoadBenchmarkResult
+ * @author Joe
+ */
+public class PlayingFieldLoadBenchmark {
+
+    /**
+     * The default number of generated boards.
+     */
+    public static final int DEFAULT_NUM_BOARDS = 40;
+    /**
+     * The default number of fields of the largest board, the smallest board has 5 fields.
+     */
+    public static final int DEFAULT_MAX_FIELDS = 3000;
+    /**
+     * The default number of times every board is loaded by every way.
+     */
+    public static final int DEFAULT_REPETITIONS = 10;
+
+    private static final int MIN_FIELDS = 5;
+    private static final int FIELD_SIZE = 20;
+
+    private int numBoards = DEFAULT_NUM_BOARDS;
+    private int maxFields = DEFAULT_MAX_FIELDS;
+    private int repetitions = DEFAULT_REPETITIONS;
+    private long seed = 1;
+
+    /**
+     * Constructs a new benchmark with the default values.
+     */
+    public PlayingFieldLoadBenchmark() {
+        super();
+    }
+
+    /**
+     * @param numBoards the number of generated boards
+     */
+    public void setNumBoards(int numBoards) {
+        this.numBoards = Math.max(numBoards, 1);
+    }
+
+    /**
+     * @param maxFields the number of fields of the largest board
+     */
+    public void setMaxFields(int maxFields) {
+        this.maxFields = Math.max(maxFields, MIN_FIELDS);
+    }
+
+    /**
+     * @param repetitions the number of times every board is loaded by every way
+     */
+    public void setRepetitions(int repetitions) {
+        this.repetitions = Math.max(repetitions, 1);
+    }
+
+    /**
+     * @param seed the seed of the random generator for the boards, the same seed generates the same boards
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generates the boards and loads them.
+     *
+     * @return the result of the benchmark
+     * @throws IOException if a board could not be written to a temporary file
+     */
+    public PlayingFieldLoadBenchmarkResult run() throws IOException {
+        PlayingFieldLoadBenchmarkResult result = new PlayingFieldLoadBenchmarkResult();
+        Random random = new Random(seed);
+        for (int board = 0; board < numBoards; board++) {
+            int numFields = (numBoards == 1) ? maxFields : MIN_FIELDS + (maxFields - MIN_FIELDS) * board / (numBoards - 1);
+            PlayingField field = createBoard(numFields, board % 2 == 0, random);
+            byte[] xml = toXmlBytes(field);
+            byte[] binary = toBinaryBytes(field);
+            result.addBoard(numFields, xml.length);
+            for (int measure = 0; measure < 2; measure++) {
+                long[] nanos = new long[PlayingFieldLoadBenchmarkResult.NUM_WAYS];
+                byte[][] loaded = new byte[PlayingFieldLoadBenchmarkResult.NUM_WAYS][];
+                for (int i = 0; i < repetitions; i++) {
+                    for (int way = 0; way < nanos.length; way++) {
+                        long startTime = System.nanoTime();
+                        PlayingField loadedField = load(way, xml, binary);
+                        nanos[way] += System.nanoTime() - startTime;
+                        loaded[way] = (loadedField == null) ? null : toBinaryBytes(loadedField);
+                    }
+                }
+                if (measure > 0) {
+                    for (int way = 0; way < nanos.length; way++) {
+                        result.addDuration(way, nanos[way]);
+                    }
+                    result.addComparison(loaded[PlayingFieldLoadBenchmarkResult.DOM] != null
+                                         && Arrays.equals(loaded[PlayingFieldLoadBenchmarkResult.DOM], loaded[PlayingFieldLoadBenchmarkResult.SAX])
+                                         && Arrays.equals(loaded[PlayingFieldLoadBenchmarkResult.DOM], loaded[PlayingFieldLoadBenchmarkResult.BINARY]));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param way    the way to load the field, e.g. {@link PlayingFieldLoadBenchmarkResult#SAX}
+     * @param xml    the XML file of the field
+     * @param binary the binary file of the field
+     * @return the loaded playing field or null if an error occurred
+     */
+    private static PlayingField load(int way, byte[] xml, byte[] binary) {
+        switch (way) {
+            case PlayingFieldLoadBenchmarkResult.DOM:
+                return PlayingFieldFileOperator.fromXml(HGBaseXMLTools.readXML(new ByteArrayInputStream(xml)));
+            case PlayingFieldLoadBenchmarkResult.SAX:
+                return PlayingFieldFileOperator.fromStream(new ByteArrayInputStream(xml));
+            default:
+                return PlayingFieldBinaryOperator.fromBuffer(ByteBuffer.wrap(binary));
+        }
+    }
+
+    /**
+     * Creates a board whose fields are connected with their neighbours in both directions.
+     *
+     * @param numFields the number of fields
+     * @param onGrid    true to place the fields on a grid, false to give them pixel positions
+     * @param random    the random generator for the weights and properties
+     * @return the new board
+     */
+    private static PlayingField createBoard(int numFields, boolean onGrid, Random random) {
+        int columns = (int) Math.ceil(Math.sqrt(numFields));
+        int rows = (numFields + columns - 1) / columns;
+        PlayingField field = (onGrid) ? new PlayingField(new Dimension(columns, rows), new Dimension(FIELD_SIZE, FIELD_SIZE), new Dimension(0, 0))
+                                      : new PlayingField(columns * FIELD_SIZE, rows * FIELD_SIZE);
+        SingleField[] fields = new SingleField[numFields];
+        for (int i = 0; i < numFields; i++) {
+            int column = i % columns;
+            int row = i / columns;
+            if (onGrid) {
+                fields[i] = new SingleField("f" + i, ShapeType.SQUARE, new Point(column, row));
+            } else {
+                int x = column * FIELD_SIZE;
+                int y = row * FIELD_SIZE;
+                fields[i] = new SingleField("f" + i, ShapeType.POLYGON, new Point[] { new Point(x, y), new Point(x + FIELD_SIZE - 1, y),
+                        new Point(x + FIELD_SIZE - 1, y + FIELD_SIZE - 1), new Point(x, y + FIELD_SIZE - 1) });
+            }
+            if (random.nextInt(4) == 0) {
+                fields[i].setProperty("type", "special" + random.nextInt(5));
+                fields[i].setProperty("value", Integer.toString(random.nextInt(100)));
+            }
+            field.addField(fields[i]);
+        }
+        for (int i = 0; i < numFields; i++) {
+            if ((i + 1) % columns != 0 && i + 1 < numFields) {
+                connect(field, fields[i], fields[i + 1], random);
+            }
+            if (i + columns < numFields) {
+                connect(field, fields[i], fields[i + columns], random);
+            }
+        }
+        return field;
+    }
+
+    /**
+     * @param field  the playing field
+     * @param from   one field
+     * @param to     the other field
+     * @param random the random generator for the weight and the properties
+     */
+    private static void connect(PlayingField field, SingleField from, SingleField to, Random random) {
+        int weight = 1 + random.nextInt(9);
+        field.addConnection(from, to, weight);
+        field.addConnection(to, from, weight);
+        if (random.nextInt(10) == 0) {
+            field.setConnectionProperties(from, to, Collections.singletonMap("door", "closed"));
+        }
+    }
+
+    /**
+     * @param field the playing field
+     * @return the XML file of the field as written by {@link PlayingFieldFileOperator#toFile(File, PlayingField)}
+     * @throws IOException if the temporary file could not be written or read
+     */
+    private static byte[] toXmlBytes(PlayingField field) throws IOException {
+        File file = File.createTempFile("playingfield", ".xml");
+        try {
+            if (!PlayingFieldFileOperator.toFile(file, field)) {
+                throw new IOException("The playing field could not be written to '" + file + "'!");
+            }
+            return Files.readAllBytes(file.toPath());
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * @param field the playing field
+     * @return the field in the binary format
+     * @throws IOException never, the field is written into memory
+     */
+    private static byte[] toBinaryBytes(PlayingField field) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PlayingFieldBinaryOperator.toStream(out, field);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package com.tjger.game.completed.playingfield;
+
+import java.util.Locale;
+
+/**
+ * The result of a {@link PlayingFieldLoadBenchmark}: the times to load the boards from XML with a document tree,
+ * with the streaming parser and from the binary format, and whether all ways created the same playing fields.
+ *
+ * @see PlayingFieldLoadBenchmark
+ * @author Joe
+ */
+public class PlayingFieldLoadBenchmarkResult {
+
+    /**
+     * Loading the XML file with a document tree.
+     */
+    public static final int DOM = 0;
+    /**
+     * Loading the XML file with the streaming parser.
+     */
+    public static final int SAX = 1;
+    /**
+     * Loading the binary file.
+     */
+    public static final int BINARY = 2;
+    /**
+     * The number of ways to load a playing field.
+     */
+    static final int NUM_WAYS = 3;
+
+    private static final String[] WAY_NAMES = {"dom", "sax", "binary"};
+
+    final private long[] durations = new long[NUM_WAYS];
+    private int countBoards;
+    private long countFields;
+    private long countXmlBytes;
+    private int countDifferent;
+
+    /**
+     * Constructs a new result.
+     */
+    PlayingFieldLoadBenchmarkResult() {
+        super();
+    }
+
+    /**
+     * @param numFields the number of fields of the board
+     * @param xmlBytes  the length of the XML file of the board
+     */
+    void addBoard(int numFields, int xmlBytes) {
+        countBoards++;
+        countFields += numFields;
+        countXmlBytes += xmlBytes;
+    }
+
+    /**
+     * @param way   the way the board was loaded, e.g. {@link #SAX}
+     * @param nanos the time to load the board in nanoseconds
+     */
+    void addDuration(int way, long nanos) {
+        durations[way] += nanos;
+    }
+
+    /**
+     * @param same true if all ways created the same playing field
+     */
+    void addComparison(boolean same) {
+        if (!same) {
+            countDifferent++;
+        }
+    }
+
+    /**
+     * @return the number of generated boards
+     */
+    public int getCountBoards() {
+        return countBoards;
+    }
+
+    /**
+     * @return the number of boards where the ways created different playing fields
+     */
+    public int getCountDifferent() {
+        return countDifferent;
+    }
+
+    /**
+     * @param way the way the boards were loaded, e.g. {@link #SAX}
+     * @return the time to load all boards in milliseconds
+     */
+    public double getDuration(int way) {
+        return durations[way] / 1e6;
+    }
+
+    /**
+     * @return a table with the times of all ways compared to the document tree
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH, "boards: %d, fields: %d, xml bytes: %d%n", countBoards, countFields, countXmlBytes));
+        sb.append(String.format(Locale.ENGLISH, "%-8s %12s %10s%n", "way", "duration ms", "vs dom"));
+        for (int way = 0; way < NUM_WAYS; way++) {
+            double ratio = (durations[DOM] == 0) ? 0 : (double) durations[way] / durations[DOM];
+            sb.append(String.format(Locale.ENGLISH, "%-8s %12.1f %9.2fx%n", WAY_NAMES[way], getDuration(way), ratio));
+        }
+        sb.append(String.format(Locale.ENGLISH, "boards with different playing fields: %d%n", countDifferent));
+        return sb.toString();
+    }
+}
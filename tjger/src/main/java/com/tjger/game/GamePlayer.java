@@ -5,6 +5,8 @@ import com.tjger.game.completed.GameManager;
 import com.tjger.game.completed.PlayerType;
 import com.tjger.game.internal.PlayerFactory;
 import com.tjger.game.internal.PlayerKey;
+import com.tjger.lib.AiSimulation;
+import com.tjger.lib.ConstantValue;
 
 import at.hagru.hgbase.gui.ProgressState;
 import at.hagru.hgbase.lib.HGBaseTools;
@@ -46,14 +48,16 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @return The game's rules.
      */
     protected GameRules getGameRules() {
-        return getGameManager().getGameRules();
+        AiSimulation simulation = AiSimulation.current();
+        return (simulation == null) ? getGameManager().getGameRules() : simulation.getGameRules();
     }
 
     /**
-     * @return The game's state.
+     * @return The game's state, the state of the simulation if the calling thread plays an {@link AiSimulation}.
      */
     protected GameState getGameState() {
-        return getGameEngine().getGameState();
+        AiSimulation simulation = AiSimulation.current();
+        return (simulation == null) ? getGameEngine().getGameState() : simulation.getGameState();
     }
 
     /**
@@ -182,6 +186,9 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @return True if player is playing.
      */
     public boolean isPlaying() {
+        if (AiSimulation.current() != null) {
+            return this.playing;
+        }
         return (this.playing && getGameEngine().isActiveRound());
     }
 
@@ -189,6 +196,10 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @return The previous player at this game, can be null if player is not active.
      */
     public GamePlayer getPrevPlayer(boolean withoutDropOut) {
+        AiSimulation simulation = AiSimulation.current();
+        if (simulation != null) {
+            return simulation.getPrevPlayer(this, withoutDropOut);
+        }
         return getGameEngine().getPrevPlayer(this, withoutDropOut);
     }
 
@@ -196,13 +207,17 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @see #getPrevPlayer(boolean)
      */
     public GamePlayer getPrevPlayer() {
-        return getGameEngine().getPrevPlayer(this);
+        return getPrevPlayer(ConstantValue.INCLUDE_DROPOUT);
     }
 
     /**
      * @return The next player at this game, can be null if player is not active.
      */
     public GamePlayer getNextPlayer(boolean withoutDropOut) {
+        AiSimulation simulation = AiSimulation.current();
+        if (simulation != null) {
+            return simulation.getNextPlayer(this, withoutDropOut);
+        }
         return getGameEngine().getNextPlayer(this, withoutDropOut);
     }
 
@@ -210,7 +225,7 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @see #getNextPlayer(boolean)
      */
     public GamePlayer getNextPlayer() {
-        return getGameEngine().getNextPlayer(this);
+        return getNextPlayer(ConstantValue.INCLUDE_DROPOUT);
     }
 
     /**
@@ -218,6 +233,10 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @return The score of this player.
      */
     public int getScore(int scoreType) {
+        AiSimulation simulation = AiSimulation.current();
+        if (simulation != null) {
+            return simulation.getScore(this, scoreType);
+        }
         return getGameManager().getGameStatistics().getScore(this, scoreType);
     }
 
@@ -226,6 +245,11 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @param scoreTypes The score types can be joined with the | operator (SCORE_TURN, SCORE_ROUND, SCORE_GAME).
      */
     public void addScore(int score, int scoreTypes) {
+        AiSimulation simulation = AiSimulation.current();
+        if (simulation != null) {
+            simulation.addScore(this, score, scoreTypes);
+            return;
+        }
         getGameManager().getGameStatistics().addScore(this, score, scoreTypes);
     }
 
@@ -235,6 +259,11 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
      * @param scoreTypes The score types can be joined with the | operator (SCORE_TURN, SCORE_ROUND, SCORE_GAME).
      */
     public void setScore(int score, int scoreTypes) {
+        AiSimulation simulation = AiSimulation.current();
+        if (simulation != null) {
+            simulation.setScore(this, score, scoreTypes);
+            return;
+        }
         getGameManager().getGameStatistics().setScore(this, score, scoreTypes);
     }
 
@@ -266,7 +295,10 @@ abstract public class GamePlayer implements Comparable<GamePlayer>, Cloneable {
     @Override
     public boolean equals(Object o2) {
         // A player is equal if the player keys are equal
-        if (o2 instanceof GamePlayer) {
+        if (o2 == this) {
+            // avoid creating the player keys, e.g. for the comparisons during an AI search
+            return true;
+        } else if (o2 instanceof GamePlayer) {
             return new PlayerKey(this).equals(new PlayerKey((GamePlayer)o2));
         } else {
             return false;
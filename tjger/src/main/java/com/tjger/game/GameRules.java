@@ -3,6 +3,8 @@ package com.tjger.game;
 import com.tjger.game.completed.GameConfig;
 import com.tjger.game.completed.GameEngine;
 import com.tjger.game.completed.GameManager;
+import com.tjger.lib.AiSimulation;
+import com.tjger.lib.ConstantValue;
 import com.tjger.lib.ScoreUtil;
 
 /**
@@ -33,6 +35,55 @@ abstract public class GameRules {
     protected GameEngine getGameEngine() {
         return GameManager.getInstance().getGameEngine();
     }
+
+    /**
+     * @return The player who started the current round or null for the first round, taken from the
+     *         {@link AiSimulation} if the calling thread plays one.
+     */
+    protected GamePlayer getFirstPlayer() {
+        AiSimulation simulation = AiSimulation.current();
+        return (simulation == null) ? getGameEngine().getFirstPlayer() : simulation.getFirstPlayer();
+    }
+
+    /**
+     * @return The first player of the game assuming that the start player cycles through all players, taken from
+     *         the {@link AiSimulation} if the calling thread plays one.
+     */
+    protected GamePlayer getCyclingFirstGamePlayer() {
+        AiSimulation simulation = AiSimulation.current();
+        return (simulation == null) ? getGameEngine().getCyclingFirstGamePlayer() : simulation.getCyclingFirstGamePlayer();
+    }
+
+    /**
+     * @param player An active player.
+     * @param withoutDropOut True if players that are drop out shall be skipped.
+     * @return The next active player, taken from the {@link AiSimulation} if the calling thread plays one.
+     * @see ConstantValue#INCLUDE_DROPOUT
+     * @see ConstantValue#EXCLUDE_DROPOUT
+     */
+    protected GamePlayer getNextActivePlayer(GamePlayer player, boolean withoutDropOut) {
+        AiSimulation simulation = AiSimulation.current();
+        return (simulation == null) ? getGameEngine().getNextPlayer(player, withoutDropOut) : simulation.getNextPlayer(player, withoutDropOut);
+    }
+
+    /**
+     * @param withoutDropOut True if players that are drop out shall not be counted.
+     * @return The number of active players, taken from the {@link AiSimulation} if the calling thread plays one.
+     * @see ConstantValue#INCLUDE_DROPOUT
+     * @see ConstantValue#EXCLUDE_DROPOUT
+     */
+    protected int getNumberActivePlayers(boolean withoutDropOut) {
+        AiSimulation simulation = AiSimulation.current();
+        return (simulation == null) ? getGameEngine().getNumberPlayers(withoutDropOut) : simulation.getNumberPlayers(withoutDropOut);
+    }
+
+    /**
+     * @return The current move within a turn, taken from the {@link AiSimulation} if the calling thread plays one.
+     */
+    protected int getCurrentMove() {
+        AiSimulation simulation = AiSimulation.current();
+        return (simulation == null) ? getGameEngine().getCurrentMove() : simulation.getCurrentMove();
+    }
     
     /**
      * Returns the start player of the game and is not called by default.<p> 
@@ -44,7 +95,7 @@ abstract public class GameRules {
      * @return the first player of the game, must not be null.
      */
     public GamePlayer getGameStartPlayer(GameState gameState) {
-        return getGameEngine().getCyclingFirstGamePlayer();
+        return getCyclingFirstGamePlayer();
     }
     
     /**
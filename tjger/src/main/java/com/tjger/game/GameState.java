@@ -1,6 +1,7 @@
 package com.tjger.game;
 
 import com.tjger.game.completed.GameEngine;
+import com.tjger.lib.NetworkUtil;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -107,6 +108,29 @@ public interface GameState extends Cloneable {
      */
     boolean fromNetworkString(String data);
 
+    /**
+     * Creates the changes between two message parts of the game state, so only the changes are sent to network clients
+     * that already have the older game state. Games can override this method to create a shorter delta from their own data.
+     *
+     * @param oldData The message part of an older game state, that was created by {@link #toNetworkString()}.
+     * @param newData The message part of the current game state.
+     * @return The message part representing the changes or null to send the whole game state.
+     */
+    default String toNetworkStringDelta(String oldData, String newData) {
+        return NetworkUtil.createDelta(oldData, newData);
+    }
+
+    /**
+     * Applies the changes created by {@link #toNetworkStringDelta(String, String)} to the message part of the older game state.
+     *
+     * @param oldData The message part of the older game state.
+     * @param delta The message part representing the changes.
+     * @return The message part of the new game state, which is passed to {@link #fromNetworkString(String)},
+     *         or null if the changes do not fit to the older game state.
+     */
+    default String fromNetworkStringDelta(String oldData, String delta) {
+        return NetworkUtil.applyDelta(oldData, delta);
+    }
 
     /**
      * Converts the given move information into a message part for the network transformation.
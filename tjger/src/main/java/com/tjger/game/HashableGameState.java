@@ -0,0 +1,27 @@
+package com.tjger.game;
+
+/**
+ * A game state that is able to return a hash value of its current position.<p>
+ * If the game state implements this interface, the artificial intelligence methods can recognize
+ * positions that were already searched (e.g. reached by a different order of moves) and reuse
+ * the stored results of a transposition table.<p>
+ * The hash value should be updated incrementally in {@link #changeState(GamePlayer, MoveInformation, com.tjger.game.completed.GameEngine)}
+ * and {@link #undoMove(GamePlayer, MoveInformation)}, e.g. with the help of {@link com.tjger.lib.ZobristHash}.
+ * Two states with the same hash value are treated as equal, so the evaluation of a state should
+ * only depend on the information that is covered by the hash value.
+ *
+ * @see com.tjger.lib.AiTranspositionTable
+ * @see com.tjger.lib.ZobristHash
+ * @author Joe
+ */
+public interface HashableGameState extends GameState {
+
+    /**
+     * Returns the hash value of the current position.
+     * Equal positions must return the same value, different positions should return different values.
+     *
+     * @return The hash value of the current position.
+     */
+    long getStateHash();
+
+}
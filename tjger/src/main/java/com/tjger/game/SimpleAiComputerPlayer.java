@@ -1,27 +1,256 @@
 package com.tjger.game;
 
+import com.tjger.game.completed.GameEngine;
 import com.tjger.lib.AiAlgorithms;
+import com.tjger.lib.AiChanceEvaluator;
+import com.tjger.lib.AiMonteCarloTreeSearch;
 import com.tjger.lib.AiMoveEvaluator;
+import com.tjger.lib.AiMoveOrdering;
+import com.tjger.lib.AiPlayoutPolicy;
+import com.tjger.lib.AiPonderSearch;
+import com.tjger.lib.AiTranspositionTable;
 
 /**
  * An computer player that uses the alpha-beta algorithm with a minimum thinking time.
+ * If the player implements {@link AiChanceEvaluator}, the expectiminimax algorithm is used instead.
+ * If pondering is activated, the player searches the answer to the predicted move of a human opponent
+ * while the human is thinking, it is started when the human starts the move.
  * 
  * @author hagru
  */
 public abstract class SimpleAiComputerPlayer extends SimpleComputerPlayer implements AiMoveEvaluator {
 
+    private AiTranspositionTable transpositionTable;
+    private AiMonteCarloTreeSearch monteCarloTreeSearch;
+    private AiMoveOrdering moveOrdering;
+    private AiPonderSearch ponderSearch;
+    private GameStateListener ponderListener;
+
     public SimpleAiComputerPlayer(String playerType, String playerName, String pieceColor) {
         super(playerType, playerName, pieceColor);
     }
 
     @Override
     protected MoveInformation getNextMove() {
-        return AiAlgorithms.getMiniMaxMove(getSearchDepth(), this);
+        if (ponderSearch != null) {
+            MoveInformation ponderMove = ponderSearch.finish(getSearchTimeBudget());
+            if (ponderMove != null) {
+                return ponderMove;
+            }
+        }
+        if (isMonteCarloTreeSearch()) {
+            return getMonteCarloTreeSearch().search(getMonteCarloIterations(), getSearchTimeBudget());
+        }
+        if (this instanceof AiChanceEvaluator) {
+            return AiAlgorithms.getExpectiMiniMaxMove(getSearchDepth(), (AiChanceEvaluator) this);
+        }
+        if (isIterativeDeepening()) {
+            return AiAlgorithms.getIterativeDeepeningMove(getSearchDepth(), getSearchTimeBudget(), this, getTranspositionTable(),
+                                                          getMoveOrdering());
+        }
+        int parallelism = getSearchParallelism();
+        if (parallelism > 1) {
+            return AiAlgorithms.getParallelMiniMaxMove(getSearchDepth(), this, parallelism, getTranspositionTable());
+        }
+        return AiAlgorithms.getMiniMaxMove(getSearchDepth(), this, getTranspositionTable(), getMoveOrdering());
     }
     
+    /* (non-Javadoc)
+     * @see com.tjger.game.GamePlayer#performMove(com.tjger.game.MoveInformation)
+     */
+    @Override
+    public void performMove(MoveInformation move) {
+        if (isPondering() && !isMonteCarloTreeSearch() && !(this instanceof AiChanceEvaluator)) {
+            getGameEngine().addGameStateListener(getPonderListener());
+        }
+        super.performMove(move);
+    }
+
     /**
-     * @return the current search depth
+     * Returns the listener that starts the pondering when a human opponent starts the move and stops it when
+     * the game is finished. The engine may show dialogs after the move before the next player is in turn,
+     * so the pondering is not started directly after the own move.
+     *
+     * @return the listener for the pondering
+     */
+    private GameStateListener getPonderListener() {
+        if (ponderListener == null) {
+            ponderListener = new GameStateAdapter() {
+
+                @Override
+                public void gameStateBeforeMove(GameState state, GameEngine engine) {
+                    GamePlayer nextPlayer = engine.getCurrentPlayer();
+                    if (nextPlayer != null && nextPlayer.isHuman() && !nextPlayer.equals(SimpleAiComputerPlayer.this)) {
+                        getPonderSearch().start(SimpleAiComputerPlayer.this, getSearchDepth(), getTranspositionTable(),
+                                                getMoveOrdering());
+                    }
+                }
+
+                @Override
+                public void gameFinished(boolean normal) {
+                    getPonderSearch().stop();
+                }
+            };
+        }
+        return ponderListener;
+    }
+
+    /**
+     * @return the current search depth, the maximum search depth if iterative deepening is used
      */
     protected abstract int getSearchDepth();
 
+    /**
+     * Returns if the iterative deepening search shall be used. Then the search depth is increased step by step
+     * until the maximum search depth is reached or the time budget is over.
+     *
+     * @return {@code true} to use the iterative deepening search, the default is {@code false}
+     * @see #getSearchTimeBudget()
+     */
+    protected boolean isIterativeDeepening() {
+        return false;
+    }
+
+    /**
+     * Returns if the Monte Carlo tree search shall be used instead of the Minimax algorithm. Then the search
+     * depth is not used, the search is limited by the number of iterations and the time budget.
+     *
+     * @return {@code true} to use the Monte Carlo tree search, the default is {@code false}
+     * @see #getMonteCarloIterations()
+     * @see #getSearchTimeBudget()
+     */
+    protected boolean isMonteCarloTreeSearch() {
+        return false;
+    }
+
+    /**
+     * @return the maximum number of iterations of the Monte Carlo tree search, 0 to be limited only by the time budget
+     */
+    protected int getMonteCarloIterations() {
+        return AiMonteCarloTreeSearch.DEFAULT_ITERATIONS;
+    }
+
+    /**
+     * Returns the policy for the playouts of the Monte Carlo tree search.
+     *
+     * @return the playout policy, the default is {@code null} for random playouts
+     */
+    protected AiPlayoutPolicy getPlayoutPolicy() {
+        return null;
+    }
+
+    /**
+     * Returns the Monte Carlo tree search of this player. The search is created with the first call and kept
+     * for the following moves, so the search tree can be reused.
+     *
+     * @return the Monte Carlo tree search
+     */
+    protected AiMonteCarloTreeSearch getMonteCarloTreeSearch() {
+        if (monteCarloTreeSearch == null) {
+            monteCarloTreeSearch = new AiMonteCarloTreeSearch(this, getPlayoutPolicy());
+        }
+        return monteCarloTreeSearch;
+    }
+
+    /**
+     * Returns the time in milliseconds the iterative deepening search or the Monte Carlo tree search may last.
+     * The default is the thinking time, so the search does not delay the move more than the thinking time does.
+     *
+     * @return the time budget for the search in milliseconds
+     */
+    protected long getSearchTimeBudget() {
+        return getThinkingTime();
+    }
+
+    /**
+     * Returns if the player shall search while a human opponent is thinking. The answer to the predicted
+     * move of the opponent is searched in the background, if the opponent does this move the result is
+     * taken, otherwise the search is discarded. Needs a game state that implements {@link HashableGameState}
+     * and is not used by the Monte Carlo tree search and the expectiminimax algorithm.
+     *
+     * @return {@code true} to search while the opponent is thinking, the default is {@code false}
+     * @see AiPonderSearch
+     */
+    protected boolean isPondering() {
+        return false;
+    }
+
+    /**
+     * Returns the pondering of this player. The pondering is created with the first call and kept
+     * for the following moves.
+     *
+     * @return the pondering
+     */
+    protected AiPonderSearch getPonderSearch() {
+        if (ponderSearch == null) {
+            ponderSearch = new AiPonderSearch(this);
+        }
+        return ponderSearch;
+    }
+
+    /**
+     * Returns the number of threads for the search. If more than one thread is used, the implementation
+     * of {@link AiMoveEvaluator} and the game rules must be thread safe.
+     *
+     * @return the number of threads for the search, the default is 1
+     * @see AiAlgorithms#getParallelMiniMaxMove(int, AiMoveEvaluator, int, AiTranspositionTable)
+     */
+    protected int getSearchParallelism() {
+        return 1;
+    }
+
+    /**
+     * Returns the transposition table of this player. The table is created with the first call
+     * and kept for the following moves, so the results of former searches can be reused.
+     *
+     * @return the transposition table or {@code null} if the game state does not implement {@link HashableGameState}
+     */
+    protected AiTranspositionTable getTranspositionTable() {
+        if (transpositionTable == null && getGameState() instanceof HashableGameState) {
+            transpositionTable = new AiTranspositionTable(getTranspositionTableSizeBits());
+        }
+        return transpositionTable;
+    }
+
+    /**
+     * @return the size of the transposition table as power of two
+     */
+    protected int getTranspositionTableSizeBits() {
+        return AiTranspositionTable.DEFAULT_SIZE_BITS;
+    }
+
+    /**
+     * Returns if the moves shall be ordered by killer moves, the history heuristic and
+     * {@link #scoreMoveForOrdering}, so the alpha-beta algorithm prunes more moves.
+     * Is not used by the parallel search.
+     *
+     * @return {@code true} to use the move ordering, the default is {@code false}
+     * @see #getNumMoveKeys()
+     */
+    protected boolean isMoveOrdering() {
+        return false;
+    }
+
+    /**
+     * Returns the number of move keys for the history heuristic, see {@link #getMoveKey}.
+     *
+     * @return the number of move keys, the default is 0 for no history heuristic
+     */
+    protected int getNumMoveKeys() {
+        return 0;
+    }
+
+    /**
+     * Returns the move ordering of this player. The ordering is created with the first call and kept
+     * for the following moves.
+     *
+     * @return the move ordering or {@code null} if the move ordering is not used
+     */
+    protected AiMoveOrdering getMoveOrdering() {
+        if (moveOrdering == null && isMoveOrdering()) {
+            moveOrdering = new AiMoveOrdering(getNumMoveKeys());
+        }
+        return moveOrdering;
+    }
+
 }
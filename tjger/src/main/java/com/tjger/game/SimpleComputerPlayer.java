@@ -1,14 +1,17 @@
 package com.tjger.game;
 
 import com.tjger.game.completed.GameManager;
+import com.tjger.lib.AiSimulation;
+import com.tjger.lib.AiSimulationPlayer;
 import com.tjger.lib.TimeAction;
 
 /**
  * A typical computer player with a minimum thinking time for a move.
+ * The player can also play an {@link AiSimulation}, then the move is returned without thinking time.
  * 
  * @author hagru
  */
-public abstract class SimpleComputerPlayer extends GamePlayer {
+public abstract class SimpleComputerPlayer extends GamePlayer implements AiSimulationPlayer {
     
     private MoveInformation nextMove;
 
@@ -24,12 +27,25 @@ public abstract class SimpleComputerPlayer extends GamePlayer {
     protected abstract MoveInformation getNextMove();
 
     /**
-     * @return the currently set minimum thinking time for the computer
+     * @return the currently set minimum thinking time for the computer, the thinking time of the simulation
+     *         if the calling thread plays an {@link AiSimulation}
      */
     public int getThinkingTime() {
+        AiSimulation simulation = AiSimulation.current();
+        if (simulation != null) {
+            return (int) Math.min(simulation.getThinkingTime(), Integer.MAX_VALUE);
+        }
         return GameManager.getInstance().getGameConfig().getDelayPlayerWithSpeedFactor();
     }
 
+    /* (non-Javadoc)
+     * @see com.tjger.lib.AiSimulationPlayer#getSimulationMove()
+     */
+    @Override
+    public MoveInformation getSimulationMove() {
+        return getNextMove();
+    }
+
     /* (non-Javadoc)
      * @see tjger.game.GamePlayer#considerMove()
      */
@@ -4,6 +4,8 @@ import com.tjger.lib.ConstantValue;
 
 /**
  * A subclass of {@link GameRules} that includes some basic functionality for the start and the next player.
+ * It also works for an {@link com.tjger.lib.AiSimulation}, because the players are looked up with the methods of
+ * {@link GameRules} instead of the game engine.
  * 
  * @author hagru
  */
@@ -11,20 +13,20 @@ public abstract class SimpleGameRules extends GameRules {
 
     @Override
     public GamePlayer getStartPlayer(GameState gameState) {
-        GamePlayer player = getGameEngine().getFirstPlayer();
-        return (player == null)? getGameEngine().getCyclingFirstGamePlayer()
-                               : getGameEngine().getNextPlayer(player, ConstantValue.EXCLUDE_DROPOUT);
+        GamePlayer player = getFirstPlayer();
+        return (player == null)? getCyclingFirstGamePlayer()
+                               : getNextActivePlayer(player, ConstantValue.EXCLUDE_DROPOUT);
     }
 
     @Override
     public GamePlayer getNextPlayer(GamePlayer currentPlayer, GameState gameState) {
-        return getGameEngine().getNextPlayer(currentPlayer, ConstantValue.EXCLUDE_DROPOUT);
+        return getNextActivePlayer(currentPlayer, ConstantValue.EXCLUDE_DROPOUT);
     }
     
     @Override
     public boolean isTurnFinished(GameState gameState) {
-        int numberPlayers = getGameEngine().getNumberPlayers(ConstantValue.EXCLUDE_DROPOUT);
-        return getGameEngine().getCurrentMove() >= numberPlayers;
+        int numberPlayers = getNumberActivePlayers(ConstantValue.EXCLUDE_DROPOUT);
+        return getCurrentMove() >= numberPlayers;
     }
 
 }
@@ -6,6 +6,7 @@ import com.tjger.game.completed.imagereader.AbstractImageEffectReader;
 import com.tjger.game.completed.imagereader.ImageReflectionReader;
 import com.tjger.game.completed.imagereader.ImageShodawReader;
 import com.tjger.game.completed.playingfield.PlayingField;
+import com.tjger.game.completed.playingfield.PlayingFieldBinaryOperator;
 import com.tjger.game.completed.playingfield.PlayingFieldFileOperator;
 import com.tjger.game.completed.playingfield.PlayingFieldManager;
 import com.tjger.game.internal.PlayerFactory;
@@ -39,6 +40,7 @@ import com.tjger.lib.ConstantValue;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -47,6 +49,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 import at.hagru.hgbase.android.HGBaseResources;
 import at.hagru.hgbase.android.awt.Color;
@@ -412,7 +415,7 @@ class GameConfigFileReader {
      * @param config the game configuration
      */
     protected static void readPlayingFields(Node node, final GameConfig config) {
-        final PlayingFieldManager manager = PlayingFieldManager.getInstance();
+        final List<String> fileNames = new ArrayList<>();
         ChildNodeIterator.run(new ChildNodeIterator(node, CONFIG_PLAYING_FIELDS, null) {
 
             @Override
@@ -420,17 +423,52 @@ class GameConfigFileReader {
                 if (CONFIG_PLAYING_FIELD.equals(node.getNodeName()) && isAvailable(node, config)) {
                     String fileName = HGBaseXMLTools.getAttributeValue(node, CONFIG_FILE);
                     if (HGBaseTools.hasContent(fileName)) {
-                        InputStream in = HGBaseFileTools.openAssetsFileStream(fileName);
-                        PlayingField field = PlayingFieldFileOperator.fromStream(in);
-                        if (field != null) {
-                            String name = HGBaseFileTools.getFileName(fileName, false);
-                            manager.addField(name, field);
-                        }
-                        HGBaseFileTools.closeStream(in);
+                        fileNames.add(fileName);
                     }
                 }
             }
         });
+        // the files are read in parallel, but added in the order of the configuration
+        List<Supplier<InputStream>> streams = new ArrayList<>();
+        for (String fileName : fileNames) {
+            streams.add(() -> openPlayingFieldStream(fileName));
+        }
+        List<PlayingField> fields = PlayingFieldFileOperator.fromStreams(streams);
+        PlayingFieldManager manager = PlayingFieldManager.getInstance();
+        for (int i = 0; i < fileNames.size(); i++) {
+            if (fields.get(i) != null) {
+                manager.addField(HGBaseFileTools.getFileName(fileNames.get(i), false), fields.get(i));
+            }
+        }
+    }
+
+    /**
+     * Opens the binary playing field file if it exists and was generated from the file itself, otherwise the file.
+     * The assets have no modification time, so the binary file is compared with the checksum of the file.
+     *
+     * @param fileName the name of the playing field file in the assets
+     * @return the stream of the binary playing field file if it is up to date, otherwise of the file itself
+     */
+    private static InputStream openPlayingFieldStream(String fileName) {
+        String binaryFileName = fileName + PlayingFieldBinaryOperator.BINARY_EXTENSION;
+        InputStream binary = HGBaseFileTools.openAssetsFileStream(binaryFileName);
+        if (binary != null) {
+            InputStream xml = HGBaseFileTools.openAssetsFileStream(fileName);
+            try {
+                if (xml == null || PlayingFieldBinaryOperator.isGeneratedFrom(binary, xml)) {
+                    return HGBaseFileTools.openAssetsFileStream(binaryFileName);
+                }
+                HGBaseLog.logWarn("The binary playing field '" + binaryFileName + "' is outdated, the file itself is read!");
+            } catch (IOException e) {
+                HGBaseLog.logWarn("Could not check the binary playing field '" + binaryFileName + "': " + e.getMessage());
+            } finally {
+                HGBaseFileTools.closeStream(binary);
+                if (xml != null) {
+                    HGBaseFileTools.closeStream(xml);
+                }
+            }
+        }
+        return HGBaseFileTools.openAssetsFileStream(fileName);
     }
 
     /**
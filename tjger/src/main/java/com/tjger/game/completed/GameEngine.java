@@ -616,9 +616,7 @@ public final class GameEngine {
         });
         t.start();
         try {
-            while (t.isAlive()) {
-                Thread.sleep(100);
-            }
+            t.join();
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
@@ -966,20 +964,19 @@ public final class GameEngine {
     private void resetDelayActions() {
         getMainFrame().setCursorWait();
         synchronized (timeActionList) {
-            boolean notCancel;
-            do {
-                notCancel = false;
+            // cancel all actions first, so running searches stop at once
+            for (TimeAction t : timeActionList) {
+                t.cancel();
+            }
+            try {
                 for (TimeAction t : timeActionList) {
-                    if (t.isAlive() && !t.isCancelAble()) {
-                        notCancel = true;
-                    } else {
-                        t.interrupt();
+                    while (t.isAlive() && !t.isCancelAble()) {
+                        t.waitUntilCancelAble(50);
                     }
                 }
-                if (notCancel) {
-                    HGBaseTools.sleep(50);
-                }
-            } while (notCancel);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
             timeActionList.clear();
         }
         getMainFrame().setCursorDefault();
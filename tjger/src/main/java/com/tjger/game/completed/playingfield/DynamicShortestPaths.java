@@ -0,0 +1,538 @@
+package com.tjger.game.completed.playingfield;
+
+import com.tjger.lib.ShortestPath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Shortest paths on a {@link PlayingField} with blocked fields that change during the game, e.g. the fields that are occupied by pieces.<p>
+ * Every pair of start and target field that was asked for keeps its search (Lifelong Planning A* algorithm). If fields become
+ * blocked or free, only the searches that have already reached the field are updated and only the fields whose shortest path is
+ * affected are visited again by the next query, so moving one piece does not recalculate the paths of all other pieces.
+ * Blocked fields cannot be entered, but a path may start at a blocked field.<p>
+ * At most {@link #setMaxSearches(int) a maximum number} of searches is kept, the searches that were not asked for the longest
+ * time are removed first. The search of a pair that is no longer needed can be removed with {@link #release(SingleField, SingleField)}.<p>
+ * The object must not be used by several threads at the same time. If fields or connections of the playing field are changed,
+ * all searches are started again.
+ *
+ * <pre>
+ * DynamicShortestPaths paths = new DynamicShortestPaths(playingField);
+ * paths.updateBlockedFields(field -&gt; field.getData() != null);
+ * ShortestPath&lt;SingleField&gt; path = paths.getShortestPath(pieceField, goalField);
+ * ...
+ * paths.moveBlocked(pieceField, path.getPath().get(1));
+ * </pre>
+ *
+ * @author Joe
+ */
+public final class DynamicShortestPaths {
+
+    /**
+     * The default maximum number of searches that are kept.
+     */
+    public static final int DEFAULT_MAX_SEARCHES = 64;
+
+    private static final int INFINITE = Integer.MAX_VALUE / 2;
+
+    final private PlayingField playingField;
+    final private ToIntBiFunction<SingleField, SingleField> heuristic;
+    final private Map<Long, Search> searches = new LinkedHashMap<Long, Search>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Search> eldest) {
+            return size() > maxSearches;
+        }
+    };
+    private int maxSearches = DEFAULT_MAX_SEARCHES;
+    private PlayingFieldGraph graph;
+    private boolean[] blocked;
+
+    /**
+     * Creates the shortest paths without an estimation of the remaining weight.
+     *
+     * @param playingField the playing field
+     */
+    public DynamicShortestPaths(PlayingField playingField) {
+        this(playingField, null);
+    }
+
+    /**
+     * Creates the shortest paths with an estimation of the remaining weight to the target.
+     *
+     * @param playingField the playing field
+     * @param heuristic    The estimation of the weight between a field and the target field, must never be higher than the real weight
+     *                     and must not decrease by more than the weight of a connection, null to search without estimation.
+     *                     See {@link PlayingFieldShortestPathMethods#createGridHeuristic(int)}.
+     */
+    public DynamicShortestPaths(PlayingField playingField, ToIntBiFunction<SingleField, SingleField> heuristic) {
+        this.playingField = playingField;
+        this.heuristic = heuristic;
+        this.graph = playingField.getGraph();
+        this.blocked = new boolean[graph.getFieldCount()];
+    }
+
+    /**
+     * Sets the maximum number of searches that are kept. If there are more, the searches that were not asked for
+     * the longest time are removed.
+     *
+     * @param maxSearches the maximum number of searches, at least 1
+     */
+    public void setMaxSearches(int maxSearches) {
+        this.maxSearches = Math.max(maxSearches, 1);
+        Iterator<Search> it = searches.values().iterator();
+        while (searches.size() > this.maxSearches) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * @return the maximum number of searches that are kept
+     */
+    public int getMaxSearches() {
+        return maxSearches;
+    }
+
+    /**
+     * Starts all searches again if the fields or connections of the playing field have been changed.
+     * The blocked fields are kept.
+     */
+    private void checkGraph() {
+        PlayingFieldGraph current = playingField.getGraph();
+        if (current != graph) {
+            boolean[] currentBlocked = new boolean[current.getFieldCount()];
+            for (int i = 0; i < blocked.length; i++) {
+                int index = current.getIndex(graph.getField(i));
+                if (blocked[i] && index >= 0) {
+                    currentBlocked[index] = true;
+                }
+            }
+            this.graph = current;
+            this.blocked = currentBlocked;
+            searches.clear();
+        }
+    }
+
+    /**
+     * @param field a single field
+     * @return true if the field is blocked
+     */
+    public boolean isBlocked(SingleField field) {
+        checkGraph();
+        int index = graph.getIndex(field);
+        return index >= 0 && blocked[index];
+    }
+
+    /**
+     * Blocks or frees a field. The searches that have reached the field are only updated at the field, the paths are
+     * recalculated with the next query.
+     *
+     * @param field   the single field
+     * @param blocked true to block the field, false to free it
+     */
+    public void setBlocked(SingleField field, boolean blocked) {
+        checkGraph();
+        int index = graph.getIndex(field);
+        if (index >= 0 && this.blocked[index] != blocked) {
+            this.blocked[index] = blocked;
+            for (Search search : searches.values()) {
+                if (search.isReached(index)) {
+                    search.updateNode(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Frees a field and blocks another one, e.g. if a piece was moved.
+     *
+     * @param from the field to free
+     * @param to   the field to block
+     */
+    public void moveBlocked(SingleField from, SingleField to) {
+        setBlocked(from, false);
+        setBlocked(to, true);
+    }
+
+    /**
+     * Blocks all fields that fulfill the given condition and frees all other fields. Only the fields whose state changes
+     * are updated, so this method can be called after every move.
+     *
+     * @param isBlocked the condition for blocked fields, e.g. {@code field -> field.getData() != null}
+     */
+    public void updateBlockedFields(Predicate<SingleField> isBlocked) {
+        checkGraph();
+        for (int i = 0; i < blocked.length; i++) {
+            setBlocked(graph.getField(i), isBlocked.test(graph.getField(i)));
+        }
+    }
+
+    /**
+     * Returns the shortest path between two fields that does not enter a blocked field.
+     *
+     * @param start  the start field
+     * @param target the target field
+     * @return the shortest path or null if there is no such path
+     */
+    public ShortestPath<SingleField> getShortestPath(SingleField start, SingleField target) {
+        Search search = getSearch(start, target);
+        return (search == null) ? null : search.getPath();
+    }
+
+    /**
+     * Returns the weight of the shortest path between two fields that does not enter a blocked field.
+     *
+     * @param start  the start field
+     * @param target the target field
+     * @return the weight of the shortest path or -1 if there is no such path
+     */
+    public int getDistance(SingleField start, SingleField target) {
+        Search search = getSearch(start, target);
+        if (search == null) {
+            return -1;
+        }
+        search.computeShortestPath();
+        return search.getWeight();
+    }
+
+    /**
+     * Removes the search of the path between two fields, e.g. if the piece whose path was asked for is no longer used.
+     *
+     * @param start  the start field
+     * @param target the target field
+     */
+    public void release(SingleField start, SingleField target) {
+        checkGraph();
+        int from = graph.getIndex(start);
+        int to = graph.getIndex(target);
+        if (from >= 0 && to >= 0) {
+            searches.remove(getSearchKey(from, to));
+        }
+    }
+
+    /**
+     * Removes the searches of all paths, e.g. if the pieces whose paths were asked for are no longer used.
+     */
+    public void clear() {
+        searches.clear();
+    }
+
+    /**
+     * @param from the index of the start field
+     * @param to   the index of the target field
+     * @return the key of the search between the fields
+     */
+    private static Long getSearchKey(int from, int to) {
+        return ((long) from << 32) | to;
+    }
+
+    /**
+     * @param start  the start field
+     * @param target the target field
+     * @return the search for the start and target field, it is created if it is new; null if a field is not part of the playing field
+     */
+    private Search getSearch(SingleField start, SingleField target) {
+        checkGraph();
+        int from = graph.getIndex(start);
+        int to = graph.getIndex(target);
+        if (from < 0 || to < 0) {
+            return null;
+        }
+        Long key = getSearchKey(from, to);
+        Search search = searches.get(key);
+        if (search == null) {
+            search = new Search(from, to);
+            searches.put(key, search);
+        }
+        return search;
+    }
+
+    /**
+     * The search from one start to one target field, the weights of the visited fields are kept for the next query.
+     * For every field the weight of its shortest path is stored ({@code g}) and the weight it would have by the known
+     * weights of its neighbours ({@code rhs}). Fields where both differ are waiting in the queue.
+     */
+    private final class Search {
+
+        final private int start;
+        final private int target;
+        final private int[] g;
+        final private int[] rhs;
+        final private int[] estimation;
+        final private boolean[] reached;
+        final private KeyQueue queue;
+
+        /**
+         * @param start  the index of the start field
+         * @param target the index of the target field
+         */
+        Search(int start, int target) {
+            int count = graph.getFieldCount();
+            this.start = start;
+            this.target = target;
+            this.g = new int[count];
+            this.rhs = new int[count];
+            this.estimation = new int[count];
+            this.reached = new boolean[count];
+            Arrays.fill(g, INFINITE);
+            Arrays.fill(rhs, INFINITE);
+            Arrays.fill(estimation, -1);
+            this.queue = new KeyQueue(count);
+            rhs[start] = 0;
+            reached[start] = true;
+            queue.set(start, getKey(start));
+        }
+
+        /**
+         * A field that was not reached has no visited incoming neighbour, so blocking or freeing it does not change
+         * the search.
+         *
+         * @param node the index of a field
+         * @return true if the weight of the field was calculated by the search
+         */
+        boolean isReached(int node) {
+            return reached[node];
+        }
+
+        /**
+         * @param node the index of a field
+         * @return the estimated weight from the field to the target, calculated once
+         */
+        private int getEstimation(int node) {
+            if (estimation[node] < 0) {
+                estimation[node] = (heuristic == null) ? 0
+                        : Math.max(0, heuristic.applyAsInt(graph.getField(node), graph.getField(target)));
+            }
+            return estimation[node];
+        }
+
+        /**
+         * @param node the index of a field
+         * @return the key of the field in the queue, the estimated total weight first and the weight from the start second
+         */
+        private long getKey(int node) {
+            int weight = Math.min(g[node], rhs[node]);
+            int total = Math.min(weight + getEstimation(node), INFINITE);
+            return ((long) total << 32) | weight;
+        }
+
+        /**
+         * Calculates the weight of a field by its incoming connections and puts it into the queue if it differs from its weight.
+         *
+         * @param node the index of a field
+         */
+        void updateNode(int node) {
+            reached[node] = true;
+            if (node != start) {
+                int best = INFINITE;
+                if (!blocked[node]) {
+                    int[] incomingOffsets = graph.getIncomingOffsets();
+                    int[] sources = graph.getIncomingSources();
+                    int[] weights = graph.getIncomingWeights();
+                    for (int c = incomingOffsets[node]; c < incomingOffsets[node + 1]; c++) {
+                        if (g[sources[c]] < INFINITE) {
+                            best = Math.min(best, g[sources[c]] + weights[c]);
+                        }
+                    }
+                }
+                rhs[node] = best;
+            }
+            if (g[node] != rhs[node]) {
+                queue.set(node, getKey(node));
+            } else {
+                queue.remove(node);
+            }
+        }
+
+        /**
+         * Visits the fields of the queue till the weight of the target is known.
+         */
+        void computeShortestPath() {
+            int[] offsets = graph.getOffsets();
+            int[] targets = graph.getTargets();
+            while (!queue.isEmpty() && (queue.peekKey() < getKey(target) || rhs[target] != g[target])) {
+                int node = queue.poll();
+                if (g[node] > rhs[node]) {
+                    g[node] = rhs[node];
+                } else {
+                    g[node] = INFINITE;
+                    updateNode(node);
+                }
+                for (int c = offsets[node]; c < offsets[node + 1]; c++) {
+                    updateNode(targets[c]);
+                }
+            }
+        }
+
+        /**
+         * @return the weight of the shortest path after {@link #computeShortestPath()}, -1 if there is no path
+         */
+        int getWeight() {
+            return (g[target] >= INFINITE) ? -1 : g[target];
+        }
+
+        /**
+         * Calculates the shortest path and follows the incoming connections from the target back to the start.
+         *
+         * @return the shortest path or null if there is no path
+         */
+        ShortestPath<SingleField> getPath() {
+            computeShortestPath();
+            if (g[target] >= INFINITE) {
+                return null;
+            }
+            int[] incomingOffsets = graph.getIncomingOffsets();
+            int[] sources = graph.getIncomingSources();
+            int[] weights = graph.getIncomingWeights();
+            List<SingleField> path = new ArrayList<>();
+            path.add(graph.getField(target));
+            for (int node = target; node != start; ) {
+                int next = -1;
+                for (int c = incomingOffsets[node]; c < incomingOffsets[node + 1] && next < 0; c++) {
+                    if (g[sources[c]] < INFINITE && g[sources[c]] + weights[c] == g[node]) {
+                        next = sources[c];
+                    }
+                }
+                node = next;
+                path.add(graph.getField(node));
+            }
+            Collections.reverse(path);
+            return new ShortestPath<>(path, g[target]);
+        }
+    }
+
+    /**
+     * A binary heap of fields ordered by their keys, a field is contained at most once and its key can be changed.
+     */
+    private static final class KeyQueue {
+
+        final private int[] heap;
+        final private int[] positions;
+        final private long[] keys;
+        private int size;
+
+        /**
+         * @param capacity the number of fields
+         */
+        KeyQueue(int capacity) {
+            this.heap = new int[capacity];
+            this.positions = new int[capacity];
+            this.keys = new long[capacity];
+            Arrays.fill(positions, -1);
+        }
+
+        /**
+         * @return true if the queue has no entries
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return the lowest key, the queue must not be empty
+         */
+        long peekKey() {
+            return keys[heap[0]];
+        }
+
+        /**
+         * @return the field with the lowest key, which is removed; the queue must not be empty
+         */
+        int poll() {
+            int node = heap[0];
+            remove(node);
+            return node;
+        }
+
+        /**
+         * Adds a field or changes its key.
+         *
+         * @param node the index of the field
+         * @param key  the key
+         */
+        void set(int node, long key) {
+            if (positions[node] < 0) {
+                positions[node] = size;
+                heap[size++] = node;
+                keys[node] = key;
+                moveUp(positions[node]);
+            } else {
+                long oldKey = keys[node];
+                keys[node] = key;
+                if (key < oldKey) {
+                    moveUp(positions[node]);
+                } else {
+                    moveDown(positions[node]);
+                }
+            }
+        }
+
+        /**
+         * Removes a field, nothing is done if it is not in the queue.
+         *
+         * @param node the index of the field
+         */
+        void remove(int node) {
+            int pos = positions[node];
+            if (pos < 0) {
+                return;
+            }
+            positions[node] = -1;
+            int last = heap[--size];
+            if (pos < size) {
+                heap[pos] = last;
+                positions[last] = pos;
+                moveUp(pos);
+                moveDown(positions[last]);
+            }
+        }
+
+        /**
+         * @param pos the position of an entry whose key might be lower than the key of its parent
+         */
+        private void moveUp(int pos) {
+            int node = heap[pos];
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (keys[heap[parent]] <= keys[node]) {
+                    break;
+                }
+                heap[pos] = heap[parent];
+                positions[heap[pos]] = pos;
+                pos = parent;
+            }
+            heap[pos] = node;
+            positions[node] = pos;
+        }
+
+        /**
+         * @param pos the position of an entry whose key might be higher than the keys of its children
+         */
+        private void moveDown(int pos) {
+            int node = heap[pos];
+            int half = size >>> 1;
+            while (pos < half) {
+                int child = 2 * pos + 1;
+                if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                    child++;
+                }
+                if (keys[node] <= keys[heap[child]]) {
+                    break;
+                }
+                heap[pos] = heap[child];
+                positions[heap[pos]] = pos;
+                pos = child;
+            }
+            heap[pos] = node;
+            positions[node] = pos;
+        }
+    }
+}
@@ -1,18 +1,19 @@
 package com.tjger.game.completed.playingfield;
 
 import android.graphics.Point;
-import android.util.Pair;
 
 import androidx.annotation.NonNull;
 
 import com.tjger.lib.ShortestPath;
 import com.tjger.lib.ShortestPathFinder;
+import com.tjger.lib.ShortestPathSearch;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -20,7 +21,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.BiPredicate;
-import java.util.stream.Collectors;
+import java.util.function.ToIntBiFunction;
 
 import at.hagru.hgbase.android.awt.Dimension;
 import at.hagru.hgbase.android.awt.Rectangle;
@@ -34,18 +35,43 @@ import at.hagru.hgbase.lib.HGBaseTools;
  */
 public class PlayingField {
 
+    /**
+     * The condition that allows all connections.
+     */
+    private static final BiPredicate<SingleField, SingleField> ALL_CONNECTIONS = (origin, target) -> true;
+
     private final Map<String, SingleField> fields = new HashMap<>();
     private final Map<SingleField, Map<SingleField, Integer>> connections = new HashMap<>();
     /**
      * Map for the properties of a connection. The key of the first map is the from field. The key of the second map is the to field. The key of the third map is the property key. The property value is the value of the third map.
      */
     private final Map<SingleField, Map<SingleField, Map<String, String>>> connectionProperties = new HashMap<>();
+    /**
+     * Index for the properties of the single fields. The key of the first map is the property key, the key of the second map is the property value.
+     */
+    private final Map<String, Map<String, Set<SingleField>>> propertyIndex = new HashMap<>();
     private Dimension size;
     private GridType gridType;
     private Dimension grid;
     private Dimension gridSize;
     private Dimension gridSpan;
     private int idCounter = 0;
+    /**
+     * The compiled view of the fields and connections, null if it has to be created again.
+     */
+    private volatile PlayingFieldGraph graph;
+    /**
+     * The maximum number of fields to calculate the distances between all fields, 0 if the distances are not calculated.
+     */
+    private int distanceCacheLimit;
+    /**
+     * The distances between all fields, null if they have not been calculated yet.
+     */
+    private volatile PlayingFieldDistances distances;
+    /**
+     * The index to find the fields at a position, null if it has to be created again.
+     */
+    private volatile PlayingFieldSpatialIndex spatialIndex;
 
     /**
      * Create a new playing field without grid.
@@ -113,6 +139,7 @@ public class PlayingField {
         if (grid == null) {
             if (gridType == GridType.YES) {
                 // there was a grid before, so remove all grid information from single fields
+                resetGraph();
                 for (SingleField field : this.fields.values()) {
                     Point gridPosition = field.getGridPosition();
                     Point point1 = getPositionOnGrid(gridPosition.x, gridPosition.y);
@@ -129,6 +156,7 @@ public class PlayingField {
             calculateSizeByGrid();
         }
         this.grid = grid;
+        resetSpatialIndex();
     }
 
     /**
@@ -159,6 +187,7 @@ public class PlayingField {
     public void setGridSpan(Dimension gridSpan) {
         this.gridSpan = (grid == null) ? gridSpan : HGBaseTools.requireNonNull(gridSpan, "The grid span must not be null!");
         calculateSizeByGrid();
+        resetSpatialIndex();
     }
 
     /**
@@ -179,6 +208,7 @@ public class PlayingField {
     public void setGridSize(Dimension gridSize) {
         this.gridSize = (grid == null) ? gridSize : HGBaseTools.requireNonNull(gridSize, "The grid size must not be null!");
         calculateSizeByGrid();
+        resetSpatialIndex();
     }
 
     /**
@@ -250,24 +280,48 @@ public class PlayingField {
      * @return the field at this position or null if there is no such field
      */
     public SingleField getFieldAtPosition(int x, int y) {
-        // search all fields in inverse order, to report an overlapping field before the field below
-        List<SingleField> sortedFields = new ArrayList<>(getFields());
-        for (int i = sortedFields.size() - 1; i >= 0; i--) {
-            SingleField field = sortedFields.get(i);
-            if (ShapeType.POLYGON.equals(field.getShape())) {
-                // calculate whether the point is within the polygon
-                if (HGBaseGuiTools.isPointInPolygon(new Point(x, y), getPixelPositions(field))) {
-                    return field;
-                }
-            } else {
-                // just use the rectangle area for the check, only problematic with overlapping ellipses/circles
-                Point[] positions = getPixelPositions(field);
-                if (positions != null && positions.length == 2 && x >= positions[0].x && x <= positions[1].x && y >= positions[0].y && y <= positions[1].y) {
-                    return field;
-                }
-            }
+        // the index reports an overlapping field before the field below
+        return getSpatialIndex().getFieldAtPosition(x, y);
+    }
+
+    /**
+     * Checks whether the given pixel position is within the single field.
+     *
+     * @param field the single field
+     * @param x     the x coordinate in pixels
+     * @param y     the y coordinate in pixels
+     * @return true if the position is within the field
+     */
+    boolean isPositionInField(SingleField field, int x, int y) {
+        if (ShapeType.POLYGON.equals(field.getShape())) {
+            // calculate whether the point is within the polygon
+            return HGBaseGuiTools.isPointInPolygon(new Point(x, y), getPixelPositions(field));
+        } else {
+            // just use the rectangle area for the check, only problematic with overlapping ellipses/circles
+            Point[] positions = getPixelPositions(field);
+            return positions != null && positions.length == 2 && x >= positions[0].x && x <= positions[1].x && y >= positions[0].y && y <= positions[1].y;
         }
-        return null;
+    }
+
+    /**
+     * Returns the index to find the fields at a position, it is created if a field or the grid has been changed.
+     *
+     * @return the index to find the fields at a position
+     */
+    private PlayingFieldSpatialIndex getSpatialIndex() {
+        PlayingFieldSpatialIndex currentIndex = spatialIndex;
+        if (currentIndex == null) {
+            currentIndex = new PlayingFieldSpatialIndex(this, getGraph().getFieldList());
+            spatialIndex = currentIndex;
+        }
+        return currentIndex;
+    }
+
+    /**
+     * Removes the index to find the fields at a position after a field or the grid has been changed.
+     */
+    private void resetSpatialIndex() {
+        spatialIndex = null;
     }
 
     /**
@@ -291,11 +345,7 @@ public class PlayingField {
      */
     public SingleField getFieldAtGridPosition(Point gridPos) {
         if (gridPos != null && getGrid() != null) {
-            for (SingleField field : getFields()) {
-                if (gridPos.equals(field.getGridPosition())) {
-                    return field;
-                }
-            }
+            return getSpatialIndex().getFieldAtGridPosition(gridPos);
         }
         return null;
     }
@@ -306,8 +356,69 @@ public class PlayingField {
      * @return an unmodifiable collection of single fields, may be empty
      */
     public Collection<SingleField> getFields() {
-        Collection<SingleField> sortedFields = new TreeSet<>(fields.values());
-        return Collections.unmodifiableCollection(sortedFields);
+        return getGraph().getFieldList();
+    }
+
+    /**
+     * Returns the compiled view of the fields and connections, it is created if a field or connection has been changed.
+     *
+     * @return the compiled view of the fields and connections
+     */
+    PlayingFieldGraph getGraph() {
+        PlayingFieldGraph currentGraph = graph;
+        if (currentGraph == null) {
+            currentGraph = new PlayingFieldGraph(fields.values(), connections);
+            graph = currentGraph;
+        }
+        return currentGraph;
+    }
+
+    /**
+     * Compiles the fields and connections for the queries of the playing field, e.g. {@link #getFields()}, {@link #getNeighbours(SingleField)},
+     * {@link #getShortestPath(SingleField, SingleField)}, {@link #getReachableFields(SingleField, int, boolean)} or {@link #getFieldAtPosition(int, int)}.<p>
+     * This is done automatically by the first query after a field, a connection or the position of a field has been changed.
+     */
+    public void compile() {
+        graph = new PlayingFieldGraph(fields.values(), connections);
+        spatialIndex = new PlayingFieldSpatialIndex(this, graph.getFieldList());
+    }
+
+    /**
+     * Removes the compiled view of the fields and connections after they have been changed.
+     */
+    private void resetGraph() {
+        graph = null;
+        distances = null;
+    }
+
+    /**
+     * Sets the maximum number of fields to calculate and keep the distances between all fields, see {@link PlayingFieldManager#setDistanceCacheEnabled(boolean)}.
+     *
+     * @param maxFields the maximum number of fields, 0 to not calculate the distances
+     */
+    void setDistanceCacheLimit(int maxFields) {
+        this.distanceCacheLimit = maxFields;
+        if (maxFields <= 0) {
+            distances = null;
+        }
+    }
+
+    /**
+     * Returns the distances between all fields, they are calculated by the first call after a field or connection has been changed.
+     *
+     * @return the distances or null if the distance cache is not enabled or the playing field has too many fields
+     */
+    PlayingFieldDistances getDistances() {
+        PlayingFieldGraph currentGraph = getGraph();
+        if (distanceCacheLimit <= 0 || currentGraph.getFieldCount() > distanceCacheLimit) {
+            return null;
+        }
+        PlayingFieldDistances currentDistances = distances;
+        if (currentDistances == null || currentDistances.getGraph() != currentGraph) {
+            currentDistances = new PlayingFieldDistances(this, currentGraph);
+            distances = currentDistances;
+        }
+        return currentDistances;
     }
 
     /**
@@ -340,7 +451,7 @@ public class PlayingField {
      * @return the first field or null
      */
     public SingleField getFirstFieldWithProperties(Map<String, String> properties) {
-        for (SingleField sf : getFields()) {
+        for (SingleField sf : getCandidatesForProperties(properties)) {
             if (checkPropertiesForField(sf, properties)) {
                 return sf;
             }
@@ -369,7 +480,7 @@ public class PlayingField {
      */
     public Collection<SingleField> getFieldsWithProperties(Map<String, String> properties) {
         Collection<SingleField> localFields = new ArrayList<>();
-        for (SingleField sf : getFields()) {
+        for (SingleField sf : getCandidatesForProperties(properties)) {
             if (checkPropertiesForField(sf, properties)) {
                 localFields.add(sf);
             }
@@ -377,6 +488,115 @@ public class PlayingField {
         return Collections.unmodifiableCollection(localFields);
     }
 
+    /**
+     * Returns the fields that may have the given property values set in the default order of the fields.<p>
+     * The fields are taken from the property index for the property with the fewest fields. If no property value
+     * has content, i.e. the fields without a property are searched, all fields are returned.
+     *
+     * @param properties a map with property keys and according values to test
+     * @return the fields to check for the properties
+     */
+    private List<SingleField> getCandidatesForProperties(Map<String, String> properties) {
+        Set<SingleField> candidates = null;
+        for (Entry<String, String> property : properties.entrySet()) {
+            if (HGBaseTools.hasContent(property.getValue())) {
+                Set<SingleField> fieldsWithValue = getIndexedFields(property.getKey(), property.getValue());
+                if (candidates == null || fieldsWithValue.size() < candidates.size()) {
+                    candidates = fieldsWithValue;
+                }
+            }
+        }
+        if (candidates == null) {
+            return getGraph().getFieldList();
+        }
+        PlayingFieldGraph fieldGraph = getGraph();
+        List<SingleField> sortedCandidates = new ArrayList<>(candidates.size());
+        for (SingleField candidate : candidates) {
+            if (fieldGraph.getIndex(candidate) >= 0) {
+                sortedCandidates.add(candidate);
+            }
+        }
+        sortedCandidates.sort((field1, field2) -> Integer.compare(fieldGraph.getIndex(field1), fieldGraph.getIndex(field2)));
+        return sortedCandidates;
+    }
+
+    /**
+     * @param key   the property key
+     * @param value the property value
+     * @return the fields that have the property value set, may be empty
+     */
+    private Set<SingleField> getIndexedFields(String key, String value) {
+        Map<String, Set<SingleField>> values = propertyIndex.get(key);
+        Set<SingleField> fieldsWithValue = (values == null) ? null : values.get(value);
+        return (fieldsWithValue == null) ? Collections.emptySet() : fieldsWithValue;
+    }
+
+    /**
+     * Adds or removes a field for a property value in the property index.
+     *
+     * @param field the single field
+     * @param key   the property key
+     * @param value the property value, nothing is done if null
+     * @param add   true to add the field, false to remove it
+     */
+    private void updatePropertyIndex(SingleField field, String key, String value, boolean add) {
+        if (value == null) {
+            return;
+        }
+        if (add) {
+            propertyIndex.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(value, v -> new HashSet<>()).add(field);
+        } else {
+            Map<String, Set<SingleField>> values = propertyIndex.get(key);
+            Set<SingleField> fieldsWithValue = (values == null) ? null : values.get(value);
+            if (fieldsWithValue != null && fieldsWithValue.remove(field) && fieldsWithValue.isEmpty()) {
+                values.remove(value);
+                if (values.isEmpty()) {
+                    propertyIndex.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds or removes all properties of a field in the property index.
+     *
+     * @param field the single field
+     * @param add   true to add the field, false to remove it
+     */
+    private void updatePropertyIndex(SingleField field, boolean add) {
+        for (Entry<String, String> property : field.getProperties().entrySet()) {
+            updatePropertyIndex(field, property.getKey(), property.getValue(), add);
+        }
+    }
+
+    /**
+     * Is called by a single field of this playing field after its grid or pixel position has been changed.
+     * The position defines the order of the fields and the field at a position, so both are compiled again.
+     *
+     * @param field the single field
+     */
+    void fieldPositionChanged(SingleField field) {
+        if (fields.get(field.getId()) == field) {
+            resetGraph();
+            resetSpatialIndex();
+        }
+    }
+
+    /**
+     * Is called by a single field of this playing field after a property has been changed.
+     *
+     * @param field    the single field
+     * @param key      the property key
+     * @param oldValue the old value or null if the property was not set
+     * @param newValue the new value or null if the property was removed
+     */
+    void fieldPropertyChanged(SingleField field, String key, String oldValue, String newValue) {
+        if (fields.get(field.getId()) == field) {
+            updatePropertyIndex(field, key, oldValue, false);
+            updatePropertyIndex(field, key, newValue, true);
+        }
+    }
+
     /**
      * Checks the field for the given properties and returns true if all properties of the field have the given values.
      *
@@ -416,7 +636,15 @@ public class PlayingField {
      * @param field the new field to add
      */
     public void addField(SingleField field) {
-        fields.put(field.getId(), field);
+        SingleField oldField = fields.put(field.getId(), field);
+        if (oldField != null && oldField != field) {
+            updatePropertyIndex(oldField, false);
+            oldField.removePlayingField(this);
+        }
+        updatePropertyIndex(field, true);
+        field.addPlayingField(this);
+        resetGraph();
+        resetSpatialIndex();
     }
 
     /**
@@ -425,11 +653,16 @@ public class PlayingField {
      * @param field the single field to remove from the playing field
      */
     public void removeField(SingleField field) {
-        if (fields.remove(field.getId()) != null) {
+        SingleField removedField = fields.remove(field.getId());
+        if (removedField != null) {
+            updatePropertyIndex(removedField, false);
+            removedField.removePlayingField(this);
             connections.remove(field);
             for (Map<SingleField, Integer> connection : connections.values()) {
                 connection.remove(field);
             }
+            resetGraph();
+            resetSpatialIndex();
         }
     }
 
@@ -448,6 +681,7 @@ public class PlayingField {
         }
         Map<SingleField, Integer> targets = HGBaseTools.getOrCreateValue(connections, start, new HashMap<>());
         targets.put(target, weight);
+        resetGraph();
     }
 
     /**
@@ -458,8 +692,8 @@ public class PlayingField {
      */
     public void removeConnection(SingleField start, SingleField target) {
         Map<SingleField, Integer> targets = this.connections.get(start);
-        if (targets != null) {
-            targets.remove(target);
+        if (targets != null && targets.remove(target) != null) {
+            resetGraph();
         }
     }
 
@@ -596,7 +830,7 @@ public class PlayingField {
      * @return an unmodifiable collection with neighbors, can be empty
      */
     public Collection<SingleField> getNeighbours(SingleField field) {
-        return getNeighbours(field, (origin, target) -> true);
+        return getNeighbours(field, ALL_CONNECTIONS);
     }
 
     /**
@@ -607,11 +841,19 @@ public class PlayingField {
      * @return A collection with all direct neighbors of the given field where the connection is tested as valid.
      */
     public Collection<SingleField> getNeighbours(SingleField field, BiPredicate<SingleField, SingleField> condition) {
-        Map<SingleField, Integer> neighbours = connections.get(field);
-        if (neighbours == null || neighbours.isEmpty()) {
+        PlayingFieldGraph fieldGraph = getGraph();
+        int index = fieldGraph.getIndex(field);
+        if (index < 0 || fieldGraph.getFirstConnection(index) == fieldGraph.getFirstConnection(index + 1)) {
             return Collections.emptySet();
         }
-        return Collections.unmodifiableSet(neighbours.keySet().stream().filter(target -> condition.test(field, target)).collect(Collectors.toSet()));
+        List<SingleField> neighbours = new ArrayList<>(fieldGraph.getFirstConnection(index + 1) - fieldGraph.getFirstConnection(index));
+        for (int c = fieldGraph.getFirstConnection(index); c < fieldGraph.getFirstConnection(index + 1); c++) {
+            SingleField target = fieldGraph.getField(fieldGraph.getTarget(c));
+            if (condition.test(field, target)) {
+                neighbours.add(target);
+            }
+        }
+        return Collections.unmodifiableList(neighbours);
     }
 
     /**
@@ -634,7 +876,7 @@ public class PlayingField {
      * @return the shortest path object, will be null if there is no path available
      */
     public ShortestPath<SingleField> getShortestPath(SingleField start, SingleField target, int maxDepth) {
-        return getShortestPath(start, target, maxDepth, (connectionOrigin, connectionTarget) -> true);
+        return getShortestPath(start, target, maxDepth, ALL_CONNECTIONS);
     }
 
     /**
@@ -647,7 +889,97 @@ public class PlayingField {
      * @return the shortest path object, will be null if there is no path available
      */
     public ShortestPath<SingleField> getShortestPath(SingleField start, SingleField target, int maxDepth, BiPredicate<SingleField, SingleField> condition) {
-        return ShortestPathFinder.find(new PlayingFieldShortestPathMethods(this, start, target, maxDepth, condition));
+        return getShortestPath(start, target, maxDepth, condition, null);
+    }
+
+    /**
+     * Returns the shortest path from the start field to the target field with a maximum search depth.
+     * The fields nearer to the target are searched first by the given estimation (A* algorithm).
+     *
+     * @param start     the start field
+     * @param target    the target field
+     * @param maxDepth  the maximum search depth, 0 for infinite depth
+     * @param condition The condition a connection to a target field must met. The parameters for the {@link BiPredicate} are the origin and the target fields.
+     * @param heuristic The estimation of the weight between a field and the target field, must never be higher than the real weight;
+     *                  null to search without estimation. See {@link PlayingFieldShortestPathMethods#createGridHeuristic(int)}.
+     * @return the shortest path object, will be null if there is no path available
+     */
+    public ShortestPath<SingleField> getShortestPath(SingleField start, SingleField target, int maxDepth, BiPredicate<SingleField, SingleField> condition,
+                                                     ToIntBiFunction<SingleField, SingleField> heuristic) {
+        PlayingFieldDistances fieldDistances = (condition == ALL_CONNECTIONS) ? getDistances() : null;
+        if (fieldDistances != null) {
+            int from = fieldDistances.getGraph().getIndex(start);
+            int to = fieldDistances.getGraph().getIndex(target);
+            if (from < 0 || to < 0 || (maxDepth > 0 && fieldDistances.getDistance(from, to) > maxDepth)) {
+                return null;
+            }
+            return fieldDistances.getShortestPath(from, to);
+        }
+        return ShortestPathFinder.find(new PlayingFieldShortestPathMethods(this, start, target, maxDepth, condition, heuristic));
+    }
+
+    /**
+     * Returns the shortest paths from the start field to several target fields, all paths are taken from one search.
+     *
+     * @param start   the start field
+     * @param targets the target fields
+     * @return an unmodifiable map with the shortest paths in the order of the targets, targets without a path are missing
+     */
+    public Map<SingleField, ShortestPath<SingleField>> getShortestPaths(SingleField start, Collection<SingleField> targets) {
+        Map<SingleField, ShortestPath<SingleField>> paths = new LinkedHashMap<>();
+        PlayingFieldDistances fieldDistances = getDistances();
+        if (fieldDistances != null) {
+            int from = fieldDistances.getGraph().getIndex(start);
+            for (SingleField target : targets) {
+                int to = fieldDistances.getGraph().getIndex(target);
+                ShortestPath<SingleField> path = (from < 0 || to < 0) ? null : fieldDistances.getShortestPath(from, to);
+                if (path != null) {
+                    paths.put(target, path);
+                }
+            }
+        } else {
+            ShortestPathSearch<SingleField> search = createShortestPathSearch(0, ALL_CONNECTIONS);
+            search.searchAll(start);
+            for (SingleField target : targets) {
+                ShortestPath<SingleField> path = search.getPath(target);
+                if (path != null) {
+                    paths.put(target, path);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(paths);
+    }
+
+    /**
+     * Creates a reusable search for many shortest paths on this playing field, e.g. the distances from a field to all fields
+     * or the nearest of several start fields for every field. The search must be created again after a field or connection
+     * has been changed.
+     *
+     * @param maxDepth  the maximum search depth, 0 for infinite depth
+     * @param condition The condition a connection to a target field must met. The parameters for the {@link BiPredicate} are the origin and the target fields.
+     * @return a new search that can be used for several queries by one thread
+     */
+    public ShortestPathSearch<SingleField> createShortestPathSearch(int maxDepth, BiPredicate<SingleField, SingleField> condition) {
+        return new ShortestPathSearch<>(new PlayingFieldShortestPathMethods(this, null, null, maxDepth, condition));
+    }
+
+    /**
+     * Returns the weight of the shortest path from the start field to the target field.
+     * Is answered without searching if the distance cache is enabled, see {@link PlayingFieldManager#setDistanceCacheEnabled(boolean)}.
+     *
+     * @param start  the start field
+     * @param target the target field
+     * @return the weight of the shortest path or -1 if there is no path available
+     */
+    public int getDistance(SingleField start, SingleField target) {
+        PlayingFieldDistances fieldDistances = getDistances();
+        if (fieldDistances != null) {
+            int from = fieldDistances.getGraph().getIndex(start);
+            int to = fieldDistances.getGraph().getIndex(target);
+            return (from < 0 || to < 0) ? -1 : fieldDistances.getDistance(from, to);
+        }
+        ShortestPath<SingleField> path = getShortestPath(start, target);
+        return (path == null) ? -1 : path.getPathWeight();
     }
 
     /**
@@ -659,7 +991,7 @@ public class PlayingField {
      * @return an unmodifiable collection of all possible targets, may be empty
      */
     public Collection<SingleField> getReachableFields(SingleField start, int weight, boolean allowTurnBack) {
-        return getReachableFields(start, weight, allowTurnBack, (origin, target) -> true);
+        return getReachableFields(start, weight, allowTurnBack, ALL_CONNECTIONS);
     }
 
     /**
@@ -672,41 +1004,15 @@ public class PlayingField {
      * @return An unmodifiable collection of all possible targets, may be empty.
      */
     public Collection<SingleField> getReachableFields(SingleField start, int weight, boolean allowTurnBack, BiPredicate<SingleField, SingleField> condition) {
-        Set<SingleField> targets = getReachableFields(start, weight, condition, new HashMap<>());
-        if (!allowTurnBack) {
-            targets.removeIf(target -> getShortestPath(start, target, weight, condition).getPathWeight() < weight);
-        }
-        return (!targets.isEmpty()) ? Collections.unmodifiableCollection(targets) : Collections.emptySet();
-    }
-
-    /**
-     * Internal method to calculate the reachable fields (including turn back).
-     *
-     * @param start          the start field
-     * @param weight         the exact weight to reach possible targets
-     * @param condition      The condition a connection to a target field must met. The parameters for the {@link BiPredicate} are the origin and the target fields.
-     * @param neighbourCache Cache of already determined neighbors.
-     * @return an modifiable collection of all possible targets, may be empty
-     */
-    private Set<SingleField> getReachableFields(SingleField start, int weight, BiPredicate<SingleField, SingleField> condition,
-                                                Map<Pair<SingleField, Integer>, Set<SingleField>> neighbourCache) {
-        Pair<SingleField, Integer> key = new Pair<>(start, weight);
-        if (neighbourCache.containsKey(key)) {
-            return neighbourCache.get(key);
-        }
-
-        Set<SingleField> targets = new HashSet<>();
-        for (SingleField neighbour : getNeighbours(start, condition)) {
-            int w = getWeight(start, neighbour);
-            int remaining = weight - w;
-            if (remaining == 0) {
-                targets.add(neighbour);
-            } else if (remaining > 0) {
-                targets.addAll(getReachableFields(neighbour, remaining, condition, neighbourCache));
-            }
+        PlayingFieldDistances fieldDistances = (!allowTurnBack && condition == ALL_CONNECTIONS) ? getDistances() : null;
+        if (fieldDistances != null) {
+            // without turning back, exactly the fields whose shortest path has the given weight are reachable
+            int from = fieldDistances.getGraph().getIndex(start);
+            return (from < 0 || weight <= 0) ? Collections.emptySet() : fieldDistances.getFieldsWithDistance(from, weight);
         }
-        neighbourCache.put(key, targets);
-        return targets;
+        PlayingFieldGraph fieldGraph = getGraph();
+        return PlayingFieldReachability.toFields(fieldGraph,
+                PlayingFieldReachability.findReachableFields(fieldGraph, fieldGraph.getIndex(start), weight, allowTurnBack, condition));
     }
 
     /**
@@ -720,38 +1026,30 @@ public class PlayingField {
      * @return true if the target field is reachable, otherwise false
      */
     public boolean isFieldReachable(SingleField start, SingleField target, int weight, boolean allowTurnBack) {
-        return getReachableFields(start, weight, allowTurnBack).contains(target);
+        PlayingFieldGraph fieldGraph = getGraph();
+        return PlayingFieldReachability.contains(PlayingFieldReachability.findReachableFields(fieldGraph, fieldGraph.getIndex(start), weight,
+                allowTurnBack, ALL_CONNECTIONS), fieldGraph.getIndex(target));
     }
 
     /**
      * Returns a sorted set with all available property keys of the single fields.<p>
-     * This call is an expensive call as all fields are searched every time the method is called.
+     * The keys are taken from the property index, so the fields are not searched.
      *
      * @return an unmodifiable set with all available property keys, may be empty
      */
     public Set<String> getFieldPropertyKeys() {
-        Set<String> keys = new TreeSet<>();
-        for (SingleField field : fields.values()) {
-            keys.addAll(field.getPropertyKeys());
-        }
-        return Collections.unmodifiableSet(keys);
+        return Collections.unmodifiableSet(new TreeSet<>(propertyIndex.keySet()));
     }
 
     /**
      * Returns a sorted set with all available property values for a given key of the single fields.<p>
-     * This call is an expensive call as all fields are searched every time the method is called.
+     * The values are taken from the property index, so the fields are not searched.
      *
      * @return an unmodifiable set with all available property values for the given key, may be empty
      */
     public Set<String> getFieldPropertyValues(String key) {
-        Set<String> values = new TreeSet<>();
-        for (SingleField field : fields.values()) {
-            String value = field.getProperty(key);
-            if (HGBaseTools.hasContent(value)) {
-                values.add(value);
-            }
-        }
-        return Collections.unmodifiableSet(values);
+        Map<String, Set<SingleField>> values = propertyIndex.get(key);
+        return (values == null) ? Collections.emptySet() : Collections.unmodifiableSet(new TreeSet<>(values.keySet()));
     }
 
     /**
@@ -0,0 +1,480 @@
+package com.tjger.game.completed.playingfield;
+
+import android.graphics.Point;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import at.hagru.hgbase.android.awt.Dimension;
+import at.hagru.hgbase.lib.HGBaseLog;
+
+/**
+ * Reads and writes playing fields in a compact binary format, which can be generated once from the XML file
+ * and is read much faster, as no text has to be parsed.<p>
+ * The format starts with a magic number, a version and the checksum of the XML file it was generated from,
+ * followed by the size and grid of the playing field,
+ * a table with all strings (ids, shapes, property keys and values) that are referenced by their index,
+ * the single fields with their positions and properties and the connections, which reference the fields by index.
+ * Files are mapped into memory and read directly from the mapped buffer.
+ *
+ * @see PlayingFieldFileOperator
+ * @author Joe
+ */
+public final class PlayingFieldBinaryOperator {
+
+    /**
+     * The file extension of binary playing field files, that is appended to the name of the XML file.
+     */
+    public static final String BINARY_EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x544A5046; // "TJPF"
+    private static final short VERSION = 2;
+    private static final int HEADER_SIZE = 14;
+    private static final long NO_CHECKSUM = -1;
+    private static final int MIN_STRING_SIZE = 4;
+    private static final int MIN_FIELD_SIZE = 16;
+    private static final int MIN_CONNECTION_SIZE = 16;
+    private static final int POINT_SIZE = 8;
+    private static final int PROPERTY_SIZE = 8;
+
+    /**
+     * Prevent instantiation of class that is accessed by static methods only.
+     */
+    private PlayingFieldBinaryOperator() {
+        super();
+    }
+
+    /**
+     * @param xmlFile the XML file of a playing field
+     * @return the binary file for the XML file, may not exist
+     */
+    public static File getBinaryFile(File xmlFile) {
+        return new File(xmlFile.getPath() + BINARY_EXTENSION);
+    }
+
+    /**
+     * @param header the first bytes of a file
+     * @return true if the bytes start with the magic number of the binary format
+     */
+    static boolean isBinary(byte[] header) {
+        return header.length >= 4 && ByteBuffer.wrap(header).getInt() == MAGIC;
+    }
+
+    /**
+     * Reads the XML file of a playing field and writes it as binary file next to it.
+     *
+     * @param xmlFile the XML file of the playing field
+     * @return true if the binary file was written, otherwise false
+     */
+    public static boolean convertXmlFile(File xmlFile) {
+        PlayingField field = PlayingFieldFileOperator.fromXmlFile(xmlFile);
+        if (field == null) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(xmlFile)) {
+            return toFile(getBinaryFile(xmlFile), field, getChecksum(in));
+        } catch (IOException e) {
+            HGBaseLog.logError("Could not read playing field '" + xmlFile + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a binary playing field was generated from the given XML file. This is used for files
+     * without modification time, e.g. in the assets, where a binary file that was not generated again after
+     * the XML file was changed must not be used.
+     *
+     * @param binary the stream of the binary file, only the header is read and the stream is not closed
+     * @param xml    the stream of the XML file, it is read till the end but not closed
+     * @return true if the binary file has the supported version and was generated from the XML file
+     * @throws IOException if reading one of the streams failed
+     */
+    public static boolean isGeneratedFrom(InputStream binary, InputStream xml) throws IOException {
+        DataInputStream in = new DataInputStream(binary);
+        try {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                return false;
+            }
+            long checksum = in.readLong();
+            return checksum != NO_CHECKSUM && checksum == getChecksum(xml);
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param stream the stream to read, it is read till the end but not closed
+     * @return the checksum of the content of the stream
+     * @throws IOException if reading the stream failed
+     */
+    private static long getChecksum(InputStream stream) throws IOException {
+        CRC32 checksum = new CRC32();
+        byte[] buffer = new byte[8192];
+        for (int count = stream.read(buffer); count >= 0; count = stream.read(buffer)) {
+            checksum.update(buffer, 0, count);
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Reads a playing field from a binary file, which is mapped into memory.
+     *
+     * @param file the file to read the field from, must not be null
+     * @return the playing field or null if an error occurred
+     */
+    public static PlayingField fromFile(File file) {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            return fromBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            HGBaseLog.logError("Could not read binary playing field '" + file + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a playing field from a binary stream, e.g. from the assets that cannot be mapped.
+     *
+     * @param stream the stream to read the field from, must not be null
+     * @return the playing field or null if an error occurred
+     */
+    public static PlayingField fromStream(InputStream stream) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int count = stream.read(buffer); count >= 0; count = stream.read(buffer)) {
+                bytes.write(buffer, 0, count);
+            }
+            return fromBuffer(ByteBuffer.wrap(bytes.toByteArray()));
+        } catch (IOException e) {
+            HGBaseLog.logError("Could not read binary playing field: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a playing field from a buffer with the binary format.
+     *
+     * @param buffer the buffer to read from, its position is moved to the end of the playing field
+     * @return the playing field or null if the buffer does not contain a valid playing field of the supported version
+     */
+    public static PlayingField fromBuffer(ByteBuffer buffer) {
+        try {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+                HGBaseLog.logWarn("The binary playing field has an invalid format!");
+                return null;
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                HGBaseLog.logWarn("The binary playing field has the unsupported version " + version + "!");
+                return null;
+            }
+            buffer.getLong(); // the checksum of the XML file
+            return readPlayingField(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            HGBaseLog.logWarn("The binary playing field is corrupt!");
+            return null;
+        }
+    }
+
+    /**
+     * Reads the playing field after the header.
+     *
+     * @param buffer the buffer to read from
+     * @return the playing field or null if it has no valid size or grid
+     */
+    private static PlayingField readPlayingField(ByteBuffer buffer) {
+        Dimension size = readDimension(buffer);
+        Dimension grid = readDimension(buffer);
+        Dimension gridSize = readDimension(buffer);
+        Dimension gridSpan = readDimension(buffer);
+        PlayingField playingField = PlayingFieldFileOperator.createPlayingField(size, grid, gridSize, gridSpan);
+        if (playingField == null) {
+            return null;
+        }
+        String[] strings = readStrings(buffer);
+        SingleField[] fields = new SingleField[readCount(buffer, MIN_FIELD_SIZE)];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = readSingleField(buffer, strings);
+            playingField.addField(fields[i]);
+        }
+        int countConnections = readCount(buffer, MIN_CONNECTION_SIZE);
+        for (int i = 0; i < countConnections; i++) {
+            SingleField from = fields[buffer.getInt()];
+            SingleField to = fields[buffer.getInt()];
+            playingField.addConnection(from, to, buffer.getInt());
+            Map<String, String> properties = readProperties(buffer, strings);
+            if (!properties.isEmpty()) {
+                playingField.setConnectionProperties(from, to, properties);
+            }
+        }
+        return playingField;
+    }
+
+    /**
+     * Reads the number of records that follow and checks it against the remaining bytes, so that a corrupt or
+     * truncated file cannot lead to huge allocations.
+     *
+     * @param buffer        the buffer to read from
+     * @param minRecordSize the minimum number of bytes of one record
+     * @return the number of records
+     * @throws IllegalArgumentException if the number is negative or the remaining bytes cannot hold so many records
+     */
+    private static int readCount(ByteBuffer buffer, int minRecordSize) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / minRecordSize) {
+            throw new IllegalArgumentException("Invalid count " + count + " with " + buffer.remaining() + " remaining bytes!");
+        }
+        return count;
+    }
+
+    /**
+     * @param buffer the buffer to read from
+     * @return the dimension or null if it was not set
+     */
+    private static Dimension readDimension(ByteBuffer buffer) {
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        return (width < 0) ? null : new Dimension(width, height);
+    }
+
+    /**
+     * @param buffer the buffer to read from
+     * @return all strings of the string table
+     */
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] strings = new String[readCount(buffer, MIN_STRING_SIZE)];
+        byte[] bytes = new byte[0];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readCount(buffer, 1);
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            buffer.get(bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    /**
+     * @param buffer  the buffer to read from
+     * @param strings the string table
+     * @return the single field with its properties
+     */
+    private static SingleField readSingleField(ByteBuffer buffer, String[] strings) {
+        String id = strings[buffer.getInt()];
+        ShapeType shape = ShapeType.valueOf(strings[buffer.getInt()]);
+        int countPoints = buffer.getInt();
+        SingleField field;
+        if (countPoints < 0) {
+            // a field on the grid
+            field = new SingleField(id, shape, new Point(buffer.getInt(), buffer.getInt()));
+        } else {
+            if (countPoints > buffer.remaining() / POINT_SIZE) {
+                throw new IllegalArgumentException("Invalid number of points " + countPoints + "!");
+            }
+            Point[] points = new Point[countPoints];
+            for (int i = 0; i < countPoints; i++) {
+                points[i] = new Point(buffer.getInt(), buffer.getInt());
+            }
+            field = new SingleField(id, shape, points);
+        }
+        for (Entry<String, String> property : readProperties(buffer, strings).entrySet()) {
+            field.setProperty(property.getKey(), property.getValue());
+        }
+        return field;
+    }
+
+    /**
+     * @param buffer  the buffer to read from
+     * @param strings the string table
+     * @return the properties, may be empty
+     */
+    private static Map<String, String> readProperties(ByteBuffer buffer, String[] strings) {
+        int count = readCount(buffer, PROPERTY_SIZE);
+        Map<String, String> properties = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            properties.put(strings[buffer.getInt()], strings[buffer.getInt()]);
+        }
+        return properties;
+    }
+
+    /**
+     * Writes a playing field to a binary file. The file has no checksum of an XML file, so it is not used
+     * instead of an XML file in the assets, see {@link #convertXmlFile(File)}.
+     *
+     * @param file  the file to write the field into, must no be null
+     * @param field the playing field to write
+     * @return true if writing was successful, otherwise false
+     */
+    public static boolean toFile(File file, PlayingField field) {
+        return toFile(file, field, NO_CHECKSUM);
+    }
+
+    /**
+     * @param file     the file to write the field into, must no be null
+     * @param field    the playing field to write
+     * @param checksum the checksum of the XML file the field was read from or {@link #NO_CHECKSUM}
+     * @return true if writing was successful, otherwise false
+     */
+    private static boolean toFile(File file, PlayingField field, long checksum) {
+        try (OutputStream out = new FileOutputStream(file)) {
+            toStream(out, field, checksum);
+            return true;
+        } catch (IOException e) {
+            HGBaseLog.logError("Could not write binary playing field '" + file + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes a playing field in the binary format to a stream.
+     *
+     * @param stream the stream to write the field into, is not closed
+     * @param field  the playing field to write
+     * @throws IOException if writing to the stream failed
+     */
+    public static void toStream(OutputStream stream, PlayingField field) throws IOException {
+        toStream(stream, field, NO_CHECKSUM);
+    }
+
+    /**
+     * @param stream   the stream to write the field into, is not closed
+     * @param field    the playing field to write
+     * @param checksum the checksum of the XML file the field was read from or {@link #NO_CHECKSUM}
+     * @throws IOException if writing to the stream failed
+     */
+    private static void toStream(OutputStream stream, PlayingField field, long checksum) throws IOException {
+        PlayingFieldGraph graph = field.getGraph();
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        // the fields and connections are written first to collect the strings
+        out.writeInt(graph.getFieldCount());
+        for (SingleField sf : graph.getFieldArray()) {
+            out.writeInt(strings.getIndex(sf.getId()));
+            out.writeInt(strings.getIndex(sf.getShape().name()));
+            Point gridPosition = sf.getGridPosition();
+            if (gridPosition != null) {
+                out.writeInt(-1);
+                writePoint(out, gridPosition);
+            } else {
+                Point[] points = sf.getPixelPositions();
+                out.writeInt(points.length);
+                for (Point p : points) {
+                    writePoint(out, p);
+                }
+            }
+            writeProperties(out, sf.getProperties(), strings);
+        }
+        out.writeInt(graph.getTargets().length);
+        for (int i = 0; i < graph.getFieldCount(); i++) {
+            for (int c = graph.getFirstConnection(i); c < graph.getFirstConnection(i + 1); c++) {
+                out.writeInt(i);
+                out.writeInt(graph.getTarget(c));
+                out.writeInt(graph.getWeight(c));
+                writeProperties(out, field.getConnectionProperties(graph.getField(i), graph.getField(graph.getTarget(c))), strings);
+            }
+        }
+        out.flush();
+        DataOutputStream header = new DataOutputStream(stream);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeLong(checksum);
+        writeDimension(header, (field.getGridType().isYes()) ? null : field.getSize());
+        writeDimension(header, field.getGrid());
+        writeDimension(header, field.getGridSize());
+        writeDimension(header, field.getGridSpan());
+        strings.write(header);
+        body.writeTo(header);
+        header.flush();
+    }
+
+    /**
+     * @param out the stream to write into
+     * @param dim the dimension, may be null
+     * @throws IOException if writing failed
+     */
+    private static void writeDimension(DataOutputStream out, Dimension dim) throws IOException {
+        out.writeInt((dim == null) ? -1 : dim.width);
+        out.writeInt((dim == null) ? -1 : dim.height);
+    }
+
+    /**
+     * @param out the stream to write into
+     * @param p   the point
+     * @throws IOException if writing failed
+     */
+    private static void writePoint(DataOutputStream out, Point p) throws IOException {
+        out.writeInt(p.x);
+        out.writeInt(p.y);
+    }
+
+    /**
+     * @param out        the stream to write into
+     * @param properties the properties
+     * @param strings    the string table to add the keys and values
+     * @throws IOException if writing failed
+     */
+    private static void writeProperties(DataOutputStream out, Map<String, String> properties, StringTable strings) throws IOException {
+        out.writeInt(properties.size());
+        for (Entry<String, String> property : properties.entrySet()) {
+            out.writeInt(strings.getIndex(property.getKey()));
+            out.writeInt(strings.getIndex(property.getValue()));
+        }
+    }
+
+    /**
+     * The strings of a playing field, every string is stored once and referenced by its index.
+     */
+    private static final class StringTable {
+
+        final private List<String> strings = new ArrayList<>();
+        final private Map<String, Integer> indexes = new HashMap<>();
+
+        /**
+         * @param text a string, null is stored as empty string
+         * @return the index of the string, it is added if it is new
+         */
+        int getIndex(String text) {
+            String key = (text == null) ? "" : text;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = strings.size();
+                strings.add(key);
+                indexes.put(key, index);
+            }
+            return index;
+        }
+
+        /**
+         * @param out the stream to write the table into
+         * @throws IOException if writing failed
+         */
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(strings.size());
+            for (String text : strings) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tjger.game.completed.playingfield;
+
+import com.tjger.lib.ShortestPath;
+import com.tjger.lib.ShortestPathSearch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The weights of the shortest paths between all fields of a compiled {@link PlayingFieldGraph}, for playing fields that do not change
+ * during a game. The weights are calculated by a shortest path search from every field and stored in a matrix with two bytes per entry,
+ * or four bytes if a weight is too high. Only connections without a condition are taken into account.
+ *
+ * @see PlayingFieldManager#setDistanceCacheEnabled(boolean)
+ * @author Joe
+ */
+final class PlayingFieldDistances {
+
+    private static final char NO_DISTANCE = Character.MAX_VALUE;
+
+    final private PlayingFieldGraph graph;
+    final private int fieldCount;
+    final private char[] smallDistances;
+    final private int[] distances;
+
+    /**
+     * Calculates the distances between all fields of the playing field.
+     *
+     * @param field the playing field
+     * @param graph the compiled view of the playing field to calculate the distances for
+     */
+    PlayingFieldDistances(PlayingField field, PlayingFieldGraph graph) {
+        this.graph = graph;
+        this.fieldCount = graph.getFieldCount();
+        char[] small = new char[fieldCount * fieldCount];
+        int[] large = null;
+        ShortestPathSearch<SingleField> search = new ShortestPathSearch<>(new PlayingFieldShortestPathMethods(field, null, null, 0));
+        for (int i = 0; i < fieldCount; i++) {
+            search.searchAll(graph.getField(i));
+            for (int j = 0; j < fieldCount; j++) {
+                int pos = i * fieldCount + j;
+                int weight = search.getWeightOfIndex(j);
+                if (large == null && weight >= NO_DISTANCE) {
+                    // a weight does not fit into two bytes, use four bytes for all weights
+                    large = new int[small.length];
+                    for (int k = 0; k < pos; k++) {
+                        large[k] = (small[k] == NO_DISTANCE) ? -1 : small[k];
+                    }
+                    small = null;
+                }
+                if (large != null) {
+                    large[pos] = weight;
+                } else {
+                    small[pos] = (weight < 0) ? NO_DISTANCE : (char) weight;
+                }
+            }
+        }
+        this.smallDistances = small;
+        this.distances = large;
+    }
+
+    /**
+     * @return the compiled view of the playing field the distances were calculated for
+     */
+    PlayingFieldGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param from the index of the start field
+     * @param to   the index of the target field
+     * @return the weight of the shortest path or -1 if there is no path
+     */
+    int getDistance(int from, int to) {
+        int pos = from * fieldCount + to;
+        if (smallDistances != null) {
+            return (smallDistances[pos] == NO_DISTANCE) ? -1 : smallDistances[pos];
+        }
+        return distances[pos];
+    }
+
+    /**
+     * Returns the fields whose shortest path from the start field has exactly the given weight.
+     *
+     * @param from   the index of the start field
+     * @param weight the weight of the shortest paths
+     * @return an unmodifiable collection of fields, may be empty
+     */
+    Collection<SingleField> getFieldsWithDistance(int from, int weight) {
+        List<SingleField> targets = new ArrayList<>();
+        for (int to = 0; to < fieldCount; to++) {
+            if (getDistance(from, to) == weight) {
+                targets.add(graph.getField(to));
+            }
+        }
+        return (targets.isEmpty()) ? Collections.emptySet() : Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * Creates a shortest path by following the connections whose weight and remaining distance add up to the distance to the target.
+     *
+     * @param from the index of the start field
+     * @param to   the index of the target field
+     * @return the shortest path or null if there is no path
+     */
+    ShortestPath<SingleField> getShortestPath(int from, int to) {
+        int distance = getDistance(from, to);
+        if (distance < 0) {
+            return null;
+        }
+        List<SingleField> path = new ArrayList<>();
+        path.add(graph.getField(from));
+        int node = from;
+        while (node != to) {
+            int remaining = getDistance(node, to);
+            for (int c = graph.getFirstConnection(node); c < graph.getFirstConnection(node + 1); c++) {
+                int next = graph.getTarget(c);
+                int nextDistance = getDistance(next, to);
+                if (nextDistance >= 0 && graph.getWeight(c) + nextDistance == remaining) {
+                    node = next;
+                    break;
+                }
+            }
+            path.add(graph.getField(node));
+        }
+        return new ShortestPath<>(path, distance);
+    }
+}
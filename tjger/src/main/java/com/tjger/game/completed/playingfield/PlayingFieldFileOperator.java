@@ -8,17 +8,33 @@ import com.tjger.lib.XmlUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 
 import at.hagru.hgbase.android.awt.Dimension;
+import at.hagru.hgbase.lib.HGBaseFileTools;
 import at.hagru.hgbase.lib.HGBaseLog;
 import at.hagru.hgbase.lib.HGBaseTools;
 import at.hagru.hgbase.lib.xml.ChildNodeIterator;
@@ -58,13 +74,14 @@ public final class PlayingFieldFileOperator {
     private static final String FROM_ATTRIBUTE = "from";
     private static final String TO_ATTRIBUTE = "to";
     private static final String WEIGHT_ATTRIBUTE = "weight";
+    private static final String WEIGHT_ATTRIBUTE_OLD = "weigt";
     private static final String SINGLE_FIELD_ID_ATTRIBUTE = "singlefieldid";
+    private static final String PROPERTY_KEY_ATTRIBUTE = "key";
+    private static final String PROPERTY_VALUE_ATTRIBUTE = "value";
 
     private static final String DIMENSION_SEPARATOR = "x";
     private static final String POINT_SEPARATOR = "/";
 
-    private static PlayingField fieldToLoad; // helper variable when reading a file
-
     /**
      * Prevent instantiation of class that is accessed by static methods only.
      */
@@ -73,29 +90,146 @@ public final class PlayingFieldFileOperator {
     }
 
     /**
-     * Reads a playing field from a file.
+     * Reads a playing field from a file. If there is a binary file of the playing field that is not older
+     * than the file, the binary file is read instead, see {@link PlayingFieldBinaryOperator}.
      *
      * @param file the file to read the field from, must not be null
      * @return the playing field or null if an error occurred
      */
     public static PlayingField fromFile(File file) {
+        File binaryFile = PlayingFieldBinaryOperator.getBinaryFile(file);
+        if (binaryFile.isFile() && binaryFile.lastModified() >= file.lastModified()) {
+            PlayingField field = PlayingFieldBinaryOperator.fromFile(binaryFile);
+            if (field != null) {
+                return field;
+            }
+        }
+        return fromXmlFile(file);
+    }
+
+    /**
+     * Reads a playing field from an XML file.
+     *
+     * @param file the file to read the field from, must not be null
+     * @return the playing field or null if an error occurred
+     */
+    static PlayingField fromXmlFile(File file) {
+        InputStream in;
         try {
-            return fromStream(new FileInputStream(file));
+            in = new FileInputStream(file);
         } catch (FileNotFoundException e) {
             HGBaseLog.logError("File '" + file + "' for reading playing field not found!");
             return null;
         }
+        try {
+            return fromXmlStream(in);
+        } finally {
+            HGBaseFileTools.closeStream(in);
+        }
     }
 
     /**
-     * Reads a playing field from an input stream.
+     * Reads a playing field from an input stream, which can contain the XML or the binary format.
      *
      * @param stream the stream to read the field from, must not be null
      * @return the playing field or null if an error occurred
      */
     public static PlayingField fromStream(InputStream stream) {
-        Element root = HGBaseXMLTools.readXML(stream);
-        return fromXml(root);
+        InputStream in = (stream.markSupported()) ? stream : new BufferedInputStream(stream);
+        byte[] header = new byte[4];
+        try {
+            in.mark(header.length);
+            int count = in.read(header);
+            in.reset();
+            if (count == header.length && PlayingFieldBinaryOperator.isBinary(header)) {
+                return PlayingFieldBinaryOperator.fromStream(in);
+            }
+        } catch (IOException e) {
+            HGBaseLog.logError("Could not read playing field: " + e.getMessage());
+            return null;
+        }
+        return fromXmlStream(in);
+    }
+
+    /**
+     * Reads a playing field from an XML stream. The playing field is created while the stream is parsed,
+     * without building a document tree first, so several playing fields can be read in parallel.
+     *
+     * @param stream the stream to read the field from, must not be null
+     * @return the playing field or null if an error occurred
+     */
+    private static PlayingField fromXmlStream(InputStream stream) {
+        PlayingFieldHandler handler = new PlayingFieldHandler();
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(stream), handler);
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            HGBaseLog.logError("Could not read playing field: " + e.getMessage());
+            return null;
+        }
+        return handler.getPlayingField();
+    }
+
+    /**
+     * Reads several playing fields in parallel, every stream is opened and closed by the thread that reads it.
+     *
+     * @param streams the suppliers that open the streams to read the fields from
+     * @return a list with the playing fields in the order of the streams, an entry is null if an error occurred
+     */
+    public static List<PlayingField> fromStreams(List<Supplier<InputStream>> streams) {
+        int threads = Math.min(streams.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            List<PlayingField> fields = new ArrayList<>(streams.size());
+            for (Supplier<InputStream> stream : streams) {
+                fields.add(fromSupplier(stream));
+            }
+            return fields;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<PlayingField>> results = new ArrayList<>(streams.size());
+            for (Supplier<InputStream> stream : streams) {
+                results.add(pool.submit(() -> fromSupplier(stream)));
+            }
+            List<PlayingField> fields = new ArrayList<>(streams.size());
+            for (Future<PlayingField> result : results) {
+                fields.add(getResult(result));
+            }
+            return fields;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param stream the supplier that opens the stream to read the field from
+     * @return the playing field or null if an error occurred
+     */
+    private static PlayingField fromSupplier(Supplier<InputStream> stream) {
+        InputStream in = stream.get();
+        if (in == null) {
+            return null;
+        }
+        try {
+            return fromStream(in);
+        } finally {
+            HGBaseFileTools.closeStream(in);
+        }
+    }
+
+    /**
+     * @param result the result of reading a playing field in parallel
+     * @return the playing field or null if an error occurred
+     */
+    private static PlayingField getResult(Future<PlayingField> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            HGBaseLog.logError("Could not read playing field: " + e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
     }
 
     /**
@@ -105,93 +239,116 @@ public final class PlayingFieldFileOperator {
      * @return the playing field or null if an error occurred
      */
     public static PlayingField fromXml(Node root) {
-        fieldToLoad = null;
-        if (root != null && PLAYING_FIELD_NODE.equals(root.getNodeName())) {
-            readPlayingFieldData(root);
-            ChildNodeIterator.run(new ChildNodeIterator(root, PLAYING_FIELD_NODE, null) {
-
-                @Override
-                public void performNode(Node node, int index, Object obj) {
-                    if (fieldToLoad != null) {
-                        ChildNodeIterator.run(new ChildNodeIterator(node, SINGLE_FIELDS_NODE, null) {
+        if (root == null || !PLAYING_FIELD_NODE.equals(root.getNodeName())) {
+            return null;
+        }
+        final PlayingField fieldToLoad = readPlayingFieldData(root);
+        if (fieldToLoad == null) {
+            HGBaseLog.logWarn("Could not load specified playing field!");
+            return null;
+        }
+        ChildNodeIterator.run(new ChildNodeIterator(root, PLAYING_FIELD_NODE, null) {
 
-                            @Override
-                            public void performNode(Node node, int index, Object obj) {
-                                readSingleFields(node);
-                            }
-                        });
-                        ChildNodeIterator.run(new ChildNodeIterator(node, CONNECTIONS_NODE, null) {
+            @Override
+            public void performNode(Node node, int index, Object obj) {
+                ChildNodeIterator.run(new ChildNodeIterator(node, SINGLE_FIELDS_NODE, null) {
 
-                            @Override
-                            public void performNode(Node node, int index, Object obj) {
-                                readConnections(node);
-                            }
-                        });
+                    @Override
+                    public void performNode(Node node, int index, Object obj) {
+                        readSingleFields(node, fieldToLoad);
                     }
+                });
+                ChildNodeIterator.run(new ChildNodeIterator(node, CONNECTIONS_NODE, null) {
 
-                }
-            });
-            if (fieldToLoad == null) {
-                HGBaseLog.logWarn("Could not load specified playing field!");
+                    @Override
+                    public void performNode(Node node, int index, Object obj) {
+                        readConnections(node, fieldToLoad);
+                    }
+                });
             }
-        }
+        });
         return fieldToLoad;
     }
 
     /**
      * Reads the basic data for a playing field and creates a new object.
-     * This object is stored in {@code fieldToLoad}.
      *
      * @param node the node to read the data from
+     * @return the new playing field or null if the data is invalid
      */
-    private static void readPlayingFieldData(Node node) {
-        Dimension size = readDimensionAttribute(node, SIZE_ATTRIBUTE);
+    private static PlayingField readPlayingFieldData(Node node) {
+        return createPlayingField(readDimensionAttribute(node, SIZE_ATTRIBUTE), readDimensionAttribute(node, GRID_ATTRIBUTE),
+                readDimensionAttribute(node, GRID_SIZE_ATTRIBUTE), readDimensionAttribute(node, GRID_SPAN_ATTRIBUTE));
+    }
+
+    /**
+     * Creates a new playing field with a size, a grid or both (mixed mode).
+     *
+     * @param size     the size, may be null
+     * @param grid     the grid, may be null
+     * @param gridSize the grid size, may be null
+     * @param gridSpan the grid span, may be null
+     * @return the new playing field or null if neither the size nor the grid is complete
+     */
+    static PlayingField createPlayingField(Dimension size, Dimension grid, Dimension gridSize, Dimension gridSpan) {
+        PlayingField playingField = null;
         if (size != null) {
-            fieldToLoad = new PlayingField(size.width, size.height);
+            playingField = new PlayingField(size.width, size.height);
         }
-        Dimension grid = readDimensionAttribute(node, GRID_ATTRIBUTE);
-        Dimension gridSize = readDimensionAttribute(node, GRID_SIZE_ATTRIBUTE);
-        Dimension gridSpan = readDimensionAttribute(node, GRID_SPAN_ATTRIBUTE);
         if (grid != null && gridSize != null && gridSpan != null) {
-            if (fieldToLoad == null) {
-                fieldToLoad = new PlayingField(grid, gridSize, gridSpan);
+            if (playingField == null) {
+                playingField = new PlayingField(grid, gridSize, gridSpan);
             } else {
                 // will set grid to mixed mode
-                fieldToLoad.setGridSize(gridSize);
-                fieldToLoad.setGridSpan(gridSpan);
-                fieldToLoad.setGrid(grid);
+                playingField.setGridSize(gridSize);
+                playingField.setGridSpan(gridSpan);
+                playingField.setGrid(grid);
             }
         }
+        return playingField;
     }
 
     /**
      * Reads all single field information from the single fields node.
      *
-     * @param node the node containing all single field nodes
+     * @param node         the node containing all single field nodes
+     * @param playingField the playing field to add the single fields
      */
-    private static void readSingleFields(Node node) {
+    private static void readSingleFields(Node node, PlayingField playingField) {
         if (SINGLE_FIELD_NODE.equals(node.getNodeName())) {
             String id = HGBaseXMLTools.getAttributeValue(node, ID_ATTRIBUTE);
             if (HGBaseTools.hasContent(id)) {
-                SingleField field = null;
                 ShapeType shape = ShapeType.valueOf(HGBaseXMLTools.getAttributeValue(node, SHAPE_ATTRIBUTE));
                 Point gridPosition = readPointAttribute(node, GRID_POSITION_ATTRIBUTE);
-                if (gridPosition != null) {
-                    field = new SingleField(id, shape, gridPosition);
-                } else {
-                    List<Point> pointList = readSingleFieldPixelPositions(node);
-                    if (pointList.size() >= 2) {
-                        field = new SingleField(id, shape, pointList.toArray(new Point[0]));
-                    }
-                }
+                SingleField field = createSingleField(id, shape, gridPosition,
+                        (gridPosition == null) ? readSingleFieldPixelPositions(node) : null);
                 if (field != null) {
                     readSingleFieldProperties(node, field);
-                    fieldToLoad.addField(field);
+                    playingField.addField(field);
                 }
             }
         }
     }
 
+    /**
+     * Creates a single field with a grid position or at least two pixel positions.
+     *
+     * @param id           the id of the field
+     * @param shape        the shape of the field
+     * @param gridPosition the grid position, may be null
+     * @param pointList    the pixel positions, only used without grid position
+     * @return the new single field or null if the positions are invalid
+     */
+    private static SingleField createSingleField(String id, ShapeType shape, Point gridPosition, List<Point> pointList) {
+        if (gridPosition != null) {
+            return new SingleField(id, shape, gridPosition);
+        }
+        if (pointList.size() >= 2) {
+            return new SingleField(id, shape, pointList.toArray(new Point[0]));
+        }
+        return null;
+    }
+
     /**
      * Reads the pixel positions of a single field.
      *
@@ -246,18 +403,19 @@ public final class PlayingFieldFileOperator {
     /**
      * Reads all connection information from the connections node.
      *
-     * @param node the node containing all connection nodes
+     * @param node         the node containing all connection nodes
+     * @param playingField the playing field to add the connections
      */
-    private static void readConnections(Node node) {
+    private static void readConnections(Node node, PlayingField playingField) {
         if (CONNECTION_NODE.equals(node.getNodeName())) {
             String fromId = HGBaseXMLTools.getAttributeValue(node, FROM_ATTRIBUTE);
             String toId = HGBaseXMLTools.getAttributeValue(node, TO_ATTRIBUTE);
-            int weight = HGBaseXMLTools.getAttributeIntValue(node, WEIGHT_ATTRIBUTE, HGBaseXMLTools.getAttributeIntValue(node, "weigt"));
-            SingleField from = fieldToLoad.getField(fromId);
-            SingleField to = fieldToLoad.getField(toId);
+            int weight = HGBaseXMLTools.getAttributeIntValue(node, WEIGHT_ATTRIBUTE, HGBaseXMLTools.getAttributeIntValue(node, WEIGHT_ATTRIBUTE_OLD));
+            SingleField from = playingField.getField(fromId);
+            SingleField to = playingField.getField(toId);
             if (from != null && to != null && weight != HGBaseTools.INVALID_INT) {
-                fieldToLoad.addConnection(from, to, weight);
-                readConnectionProperties(node, from, to);
+                playingField.addConnection(from, to, weight);
+                readConnectionProperties(node, playingField, from, to);
             }
         }
     }
@@ -265,16 +423,17 @@ public final class PlayingFieldFileOperator {
     /**
      * Reads all properties for the specified connection.
      *
-     * @param node The node containing the connection.
-     * @param from The destination of the connection.
-     * @param to   The target of the connection.
+     * @param node         The node containing the connection.
+     * @param playingField The playing field of the connection.
+     * @param from         The destination of the connection.
+     * @param to           The target of the connection.
      */
-    private static void readConnectionProperties(Node node, SingleField from, SingleField to) {
+    private static void readConnectionProperties(Node node, PlayingField playingField, SingleField from, SingleField to) {
         ChildNodeIterator.run(new ChildNodeIterator(node, CONNECTION_NODE, null) {
             @Override
             public void performNode(Node node, int index, Object obj) {
                 if (PROPERTIES_NODE.equals(node.getNodeName())) {
-                    fieldToLoad.setConnectionProperties(from, to,
+                    playingField.setConnectionProperties(from, to,
                             XmlUtil.loadMap(node, PROPERTY_NODE, new XmlMapStringConverter()));
                 }
             }
@@ -424,7 +583,14 @@ public final class PlayingFieldFileOperator {
      * @return the dimension object or null if it invalid
      */
     private static Dimension readDimensionAttribute(Node node, String attribute) {
-        String value = HGBaseXMLTools.getAttributeValue(node, attribute);
+        return toDimension(HGBaseXMLTools.getAttributeValue(node, attribute));
+    }
+
+    /**
+     * @param value the attribute value of a dimension
+     * @return the dimension object or null if it invalid
+     */
+    private static Dimension toDimension(String value) {
         int[] intValues = getSeparatedIntegers(value, DIMENSION_SEPARATOR, 2);
         return (intValues == null) ? null : new Dimension(intValues[0], intValues[1]);
     }
@@ -451,7 +617,14 @@ public final class PlayingFieldFileOperator {
      * @return the point object or null if it invalid
      */
     private static Point readPointAttribute(Node node, String attribute) {
-        String value = HGBaseXMLTools.getAttributeValue(node, attribute);
+        return toPoint(HGBaseXMLTools.getAttributeValue(node, attribute));
+    }
+
+    /**
+     * @param value the attribute value of a point
+     * @return the point object or null if it invalid
+     */
+    private static Point toPoint(String value) {
         int[] intValues = getSeparatedIntegers(value, POINT_SEPARATOR, 2);
         return (intValues == null) ? null : new Point(intValues[0], intValues[1]);
     }
@@ -557,4 +730,164 @@ public final class PlayingFieldFileOperator {
         }
     }
 
+    /**
+     * Creates a playing field while the XML document is parsed. The same rules as for reading the document tree apply:
+     * a single field needs an id and a grid position or at least two pixel positions, a connection needs two existing
+     * fields and a valid weight. A new handler has to be used for every document.
+     */
+    private static final class PlayingFieldHandler extends DefaultHandler {
+
+        private static final int MAX_DEPTH = 5;
+
+        final private String[] path = new String[MAX_DEPTH];
+        private int depth;
+        private PlayingField playingField;
+        private boolean rootFound;
+        // the single field that is read
+        private String fieldId;
+        private String fieldShape;
+        private Point gridPosition;
+        final private List<Point> pointList = new ArrayList<>();
+        private Map<String, String> properties;
+        // the connection that is read
+        private SingleField from;
+        private SingleField to;
+
+        /**
+         * @return the playing field or null if the document did not contain a valid playing field
+         */
+        PlayingField getPlayingField() {
+            if (rootFound && playingField == null) {
+                HGBaseLog.logWarn("Could not load specified playing field!");
+            }
+            return playingField;
+        }
+
+        /**
+         * @param names the names of the elements from the root element to the current element
+         * @return true if the current element has exactly the given path
+         */
+        private boolean isPath(String... names) {
+            if (depth != names.length) {
+                return false;
+            }
+            for (int i = 0; i < names.length; i++) {
+                if (!names[i].equals(path[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param attributes the attributes of an element
+         * @param name       the name of an attribute
+         * @return the value of the attribute or an empty string if it does not exist, like {@link HGBaseXMLTools#getAttributeValue(Node, String)}
+         */
+        private static String getValue(Attributes attributes, String name) {
+            String value = attributes.getValue(name);
+            return (value == null) ? "" : value;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (depth < MAX_DEPTH) {
+                path[depth] = qName;
+            }
+            depth++;
+            if (depth == 1) {
+                rootFound = PLAYING_FIELD_NODE.equals(qName);
+                if (rootFound) {
+                    playingField = createPlayingField(toDimension(getValue(attributes, SIZE_ATTRIBUTE)),
+                            toDimension(getValue(attributes, GRID_ATTRIBUTE)), toDimension(getValue(attributes, GRID_SIZE_ATTRIBUTE)),
+                            toDimension(getValue(attributes, GRID_SPAN_ATTRIBUTE)));
+                }
+            } else if (playingField == null) {
+                return;
+            } else if (isPath(PLAYING_FIELD_NODE, SINGLE_FIELDS_NODE, SINGLE_FIELD_NODE)) {
+                startSingleField(attributes);
+            } else if (isPath(PLAYING_FIELD_NODE, SINGLE_FIELDS_NODE, SINGLE_FIELD_NODE, POINTS_NODE, POINT_NODE)) {
+                Point p = toPoint(getValue(attributes, POINT_POSITION_ATTRIBUTE));
+                if (p != null) {
+                    pointList.add(p);
+                }
+            } else if (isPath(PLAYING_FIELD_NODE, CONNECTIONS_NODE, CONNECTION_NODE)) {
+                startConnection(attributes);
+            } else if (isPath(PLAYING_FIELD_NODE, SINGLE_FIELDS_NODE, SINGLE_FIELD_NODE, PROPERTIES_NODE)
+                    || isPath(PLAYING_FIELD_NODE, CONNECTIONS_NODE, CONNECTION_NODE, PROPERTIES_NODE)) {
+                if (properties == null) {
+                    properties = new HashMap<>();
+                }
+            } else if (properties != null && depth == MAX_DEPTH && PROPERTY_NODE.equals(qName)
+                    && PROPERTIES_NODE.equals(path[MAX_DEPTH - 2])) {
+                properties.put(getValue(attributes, PROPERTY_KEY_ATTRIBUTE), getValue(attributes, PROPERTY_VALUE_ATTRIBUTE));
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (playingField != null) {
+                if (isPath(PLAYING_FIELD_NODE, SINGLE_FIELDS_NODE, SINGLE_FIELD_NODE)) {
+                    endSingleField();
+                } else if (isPath(PLAYING_FIELD_NODE, CONNECTIONS_NODE, CONNECTION_NODE, PROPERTIES_NODE)) {
+                    if (from != null) {
+                        playingField.setConnectionProperties(from, to, properties);
+                    }
+                    properties = null;
+                }
+            }
+            depth--;
+        }
+
+        /**
+         * Remembers the attributes of a single field, the field is created at the end of its element.
+         *
+         * @param attributes the attributes of the single field element
+         */
+        private void startSingleField(Attributes attributes) {
+            fieldId = getValue(attributes, ID_ATTRIBUTE);
+            fieldShape = getValue(attributes, SHAPE_ATTRIBUTE);
+            gridPosition = toPoint(getValue(attributes, GRID_POSITION_ATTRIBUTE));
+            pointList.clear();
+            properties = null;
+        }
+
+        /**
+         * Creates the single field that was read and adds it to the playing field.
+         */
+        private void endSingleField() {
+            if (HGBaseTools.hasContent(fieldId)) {
+                SingleField field = createSingleField(fieldId, ShapeType.valueOf(fieldShape), gridPosition, pointList);
+                if (field != null) {
+                    if (properties != null) {
+                        for (Entry<String, String> property : properties.entrySet()) {
+                            field.setProperty(property.getKey(), property.getValue());
+                        }
+                    }
+                    playingField.addField(field);
+                }
+            }
+            properties = null;
+        }
+
+        /**
+         * Adds a connection to the playing field, its properties follow as child elements.
+         *
+         * @param attributes the attributes of the connection element
+         */
+        private void startConnection(Attributes attributes) {
+            int weight = HGBaseTools.toInt(getValue(attributes, WEIGHT_ATTRIBUTE));
+            if (weight == HGBaseTools.INVALID_INT) {
+                weight = HGBaseTools.toInt(getValue(attributes, WEIGHT_ATTRIBUTE_OLD));
+            }
+            from = playingField.getField(getValue(attributes, FROM_ATTRIBUTE));
+            to = playingField.getField(getValue(attributes, TO_ATTRIBUTE));
+            if (from != null && to != null && weight != HGBaseTools.INVALID_INT) {
+                playingField.addConnection(from, to, weight);
+            } else {
+                from = null;
+                to = null;
+            }
+        }
+    }
 }
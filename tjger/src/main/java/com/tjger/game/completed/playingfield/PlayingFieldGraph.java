@@ -0,0 +1,236 @@
+package com.tjger.game.completed.playingfield;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+
+/**
+ * A compiled, read-only view of the single fields and connections of a {@link PlayingField}.<p>
+ * The fields are numbered in their default order and the connections are stored in compressed arrays: the connections
+ * of the field with index {@code i} are at the positions {@code getFirstConnection(i)} to {@code getFirstConnection(i + 1) - 1}
+ * of the target and weight arrays, sorted by the index of the target field. The view is created by the playing field
+ * and replaced after a field or connection has been changed.
+ *
+ * @author Joe
+ */
+final class PlayingFieldGraph {
+
+    final private SingleField[] fields;
+    final private List<SingleField> fieldList;
+    final private Map<SingleField, Integer> indexes;
+    final private int[] offsets;
+    final private int[] targets;
+    final private int[] weights;
+    private volatile int[] incomingOffsets; // created on demand, written after the sources and weights
+    private int[] incomingSources;
+    private int[] incomingWeights;
+
+    /**
+     * Compiles the fields and connections.
+     *
+     * @param allFields   all single fields of the playing field
+     * @param connections the connections of the playing field with their weights
+     */
+    PlayingFieldGraph(Collection<SingleField> allFields, Map<SingleField, Map<SingleField, Integer>> connections) {
+        this.fields = new TreeSet<>(allFields).toArray(new SingleField[0]);
+        this.fieldList = Collections.unmodifiableList(Arrays.asList(fields));
+        this.indexes = new HashMap<>(fields.length * 2);
+        for (int i = 0; i < fields.length; i++) {
+            indexes.put(fields[i], i);
+        }
+        this.offsets = new int[fields.length + 1];
+        int countConnections = 0;
+        for (Map<SingleField, Integer> fieldConnections : connections.values()) {
+            countConnections += fieldConnections.size();
+        }
+        int[] allTargets = new int[countConnections];
+        int[] allWeights = new int[countConnections];
+        int pos = 0;
+        for (int i = 0; i < fields.length; i++) {
+            offsets[i] = pos;
+            Map<SingleField, Integer> fieldConnections = connections.get(fields[i]);
+            if (fieldConnections != null) {
+                int first = pos;
+                for (Entry<SingleField, Integer> connection : fieldConnections.entrySet()) {
+                    Integer target = indexes.get(connection.getKey());
+                    if (target != null) {
+                        allTargets[pos] = target;
+                        allWeights[pos] = connection.getValue();
+                        pos++;
+                    }
+                }
+                sortConnections(allTargets, allWeights, first, pos);
+            }
+        }
+        offsets[fields.length] = pos;
+        this.targets = Arrays.copyOf(allTargets, pos);
+        this.weights = Arrays.copyOf(allWeights, pos);
+    }
+
+    /**
+     * Sorts the connections of a field by the index of the target field (insertion sort, as a field has only a few connections).
+     *
+     * @param allTargets the indexes of the target fields
+     * @param allWeights the weights of the connections
+     * @param from       the first position of the connections of the field
+     * @param to         the position after the last connection of the field
+     */
+    private static void sortConnections(int[] allTargets, int[] allWeights, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            int target = allTargets[i];
+            int weight = allWeights[i];
+            int j = i - 1;
+            while (j >= from && allTargets[j] > target) {
+                allTargets[j + 1] = allTargets[j];
+                allWeights[j + 1] = allWeights[j];
+                j--;
+            }
+            allTargets[j + 1] = target;
+            allWeights[j + 1] = weight;
+        }
+    }
+
+    /**
+     * @return the number of fields
+     */
+    int getFieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * @return the internal array with all fields in their default order, must not be changed
+     */
+    SingleField[] getFieldArray() {
+        return fields;
+    }
+
+    /**
+     * @return an unmodifiable list with all fields in their default order
+     */
+    List<SingleField> getFieldList() {
+        return fieldList;
+    }
+
+    /**
+     * @param index the index of a field
+     * @return the field with the given index
+     */
+    SingleField getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * @param field a single field
+     * @return the index of the field or -1 if the field is not part of the view
+     */
+    int getIndex(SingleField field) {
+        Integer index = indexes.get(field);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * @param index the index of a field
+     * @return the position of the first connection of the field, the connections of the field end before the first connection of the next field
+     */
+    int getFirstConnection(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @param connection the position of a connection
+     * @return the index of the target field of the connection
+     */
+    int getTarget(int connection) {
+        return targets[connection];
+    }
+
+    /**
+     * @param connection the position of a connection
+     * @return the weight of the connection
+     */
+    int getWeight(int connection) {
+        return weights[connection];
+    }
+
+    /**
+     * @return the internal array with the positions of the first connections of the fields (one more entry than fields), must not be changed
+     */
+    int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return the internal array with the indexes of the target fields of the connections, must not be changed
+     */
+    int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * @return the internal array with the weights of the connections, must not be changed
+     */
+    int[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Creates the incoming connections of all fields in the same compressed form as the outgoing connections.
+     */
+    private synchronized void createIncomingConnections() {
+        if (incomingOffsets != null) {
+            return;
+        }
+        int[] offsetsIn = new int[fields.length + 1];
+        for (int target : targets) {
+            offsetsIn[target + 1]++;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            offsetsIn[i + 1] += offsetsIn[i];
+        }
+        int[] sources = new int[targets.length];
+        int[] sourceWeights = new int[targets.length];
+        int[] fillPositions = Arrays.copyOf(offsetsIn, fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            for (int c = offsets[i]; c < offsets[i + 1]; c++) {
+                int pos = fillPositions[targets[c]]++;
+                sources[pos] = i;
+                sourceWeights[pos] = weights[c];
+            }
+        }
+        this.incomingSources = sources;
+        this.incomingWeights = sourceWeights;
+        this.incomingOffsets = offsetsIn;
+    }
+
+    /**
+     * @return the internal array with the positions of the first incoming connections of the fields (one more entry than fields),
+     *         the incoming connections of a field are sorted by the index of the origin field; must not be changed
+     */
+    int[] getIncomingOffsets() {
+        if (incomingOffsets == null) {
+            createIncomingConnections();
+        }
+        return incomingOffsets;
+    }
+
+    /**
+     * @return the internal array with the indexes of the origin fields of the incoming connections, must not be changed
+     */
+    int[] getIncomingSources() {
+        getIncomingOffsets();
+        return incomingSources;
+    }
+
+    /**
+     * @return the internal array with the weights of the incoming connections, must not be changed
+     */
+    int[] getIncomingWeights() {
+        getIncomingOffsets();
+        return incomingWeights;
+    }
+}
@@ -12,8 +12,15 @@ import java.util.Map.Entry;
 public final class PlayingFieldManager {
 
     private static final PlayingFieldManager INSTANCE = new PlayingFieldManager();
+
+    /**
+     * The default maximum number of fields of a playing field to keep the distances between all fields (8 MB).
+     */
+    public static final int DEFAULT_MAX_FIELDS_FOR_DISTANCE_CACHE = 2048;
     
     private final Map<String,PlayingField> fields = new HashMap<>();
+    private boolean distanceCacheEnabled;
+    private int maxFieldsForDistanceCache = DEFAULT_MAX_FIELDS_FOR_DISTANCE_CACHE;
 
     /**
      * Prevent instantiation of the singleton.
@@ -39,6 +46,64 @@ public final class PlayingFieldManager {
      */
     public void addField(String name, PlayingField field) {
         fields.put(name, field);
+        field.setDistanceCacheLimit(getDistanceCacheLimit());
+    }
+
+    /**
+     * Enables or disables the distance cache for all playing fields of the manager.<p>
+     * If enabled, the weights of the shortest paths between all fields of a playing field are calculated once by the first query
+     * and used by {@link PlayingField#getShortestPath(SingleField, SingleField)}, {@link PlayingField#getDistance(SingleField, SingleField)}
+     * and {@link PlayingField#getReachableFields(SingleField, int, boolean)} without turning back. Connections with a condition are
+     * still searched. The cache is calculated again after a field or connection of the playing field has been changed, so it should
+     * only be used for playing fields that do not change during a game. Playing fields with more fields than
+     * {@link #getMaxFieldsForDistanceCache()} are always searched.
+     *
+     * @param enabled true to enable the distance cache, false to disable it (default)
+     */
+    public void setDistanceCacheEnabled(boolean enabled) {
+        this.distanceCacheEnabled = enabled;
+        updateDistanceCacheLimit();
+    }
+
+    /**
+     * @return true if the distance cache is enabled
+     */
+    public boolean isDistanceCacheEnabled() {
+        return distanceCacheEnabled;
+    }
+
+    /**
+     * Sets the maximum number of fields of a playing field to use the distance cache.
+     * The cache needs two bytes (four bytes for very high weights) for every pair of fields.
+     *
+     * @param maxFields the maximum number of fields
+     */
+    public void setMaxFieldsForDistanceCache(int maxFields) {
+        this.maxFieldsForDistanceCache = maxFields;
+        updateDistanceCacheLimit();
+    }
+
+    /**
+     * @return the maximum number of fields of a playing field to use the distance cache
+     */
+    public int getMaxFieldsForDistanceCache() {
+        return maxFieldsForDistanceCache;
+    }
+
+    /**
+     * @return the maximum number of fields to use the distance cache or 0 if it is disabled
+     */
+    private int getDistanceCacheLimit() {
+        return (distanceCacheEnabled) ? Math.max(maxFieldsForDistanceCache, 0) : 0;
+    }
+
+    /**
+     * Passes the settings of the distance cache to all playing fields.
+     */
+    private void updateDistanceCacheLimit() {
+        for (PlayingField field : fields.values()) {
+            field.setDistanceCacheLimit(getDistanceCacheLimit());
+        }
     }
     
     /**
@@ -0,0 +1,141 @@
+package com.tjger.game.completed.playingfield;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * Calculates the fields that are reachable from a start field with an exact weight on a compiled {@link PlayingFieldGraph}.<p>
+ * The reachable fields are kept as bit sets indexed by the fields, one bit set for every weight from 0 to the wanted weight.
+ * The bit set of a weight is spread layer by layer over the connections to the bit sets of the higher weights. A field can be
+ * reached without turning back if its shortest path has the wanted weight, i.e. if it is not reachable with a lower weight.
+ *
+ * @author Joe
+ */
+final class PlayingFieldReachability {
+
+    private static final byte CONDITION_UNKNOWN = 0;
+    private static final byte CONDITION_VALID = 1;
+    private static final byte CONDITION_INVALID = 2;
+
+    /**
+     * Prevent instantiation of the utility class.
+     */
+    private PlayingFieldReachability() {
+        super();
+    }
+
+    /**
+     * Calculates the fields that are reachable from the start field with the given weight.
+     *
+     * @param graph         the compiled view of the playing field
+     * @param start         the index of the start field
+     * @param weight        the exact weight to reach possible targets
+     * @param allowTurnBack true if it is allowed to turn back during the way, i.e. the same field between start and target can be used multiple times
+     * @param condition     The condition a connection to a target field must met. The parameters for the {@link BiPredicate} are the origin and the target fields.
+     * @return a bit set with the indexes of all reachable fields
+     */
+    static long[] findReachableFields(PlayingFieldGraph graph, int start, int weight, boolean allowTurnBack,
+                                      BiPredicate<SingleField, SingleField> condition) {
+        int words = (graph.getFieldCount() + Long.SIZE - 1) / Long.SIZE;
+        if (weight <= 0 || start < 0) {
+            return new long[words];
+        }
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] weights = graph.getWeights();
+        byte[] conditionCache = new byte[targets.length];
+        long[][] layers = new long[weight + 1][];
+        layers[0] = new long[words];
+        layers[0][start / Long.SIZE] |= 1L << start;
+        for (int w = 0; w < weight; w++) {
+            long[] layer = layers[w];
+            if (layer == null) {
+                continue;
+            }
+            for (int word = 0; word < words; word++) {
+                long bits = layer[word];
+                while (bits != 0) {
+                    int node = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    for (int c = offsets[node]; c < offsets[node + 1]; c++) {
+                        int next = w + weights[c];
+                        if (next <= weight && isValidConnection(graph, node, c, condition, conditionCache)) {
+                            if (layers[next] == null) {
+                                layers[next] = new long[words];
+                            }
+                            layers[next][targets[c] / Long.SIZE] |= 1L << targets[c];
+                        }
+                    }
+                }
+            }
+        }
+        long[] result = (layers[weight] == null) ? new long[words] : layers[weight];
+        if (!allowTurnBack) {
+            for (int w = 0; w < weight; w++) {
+                if (layers[w] != null) {
+                    for (int word = 0; word < words; word++) {
+                        result[word] &= ~layers[w][word];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests the condition of a connection, the result is remembered for the current calculation.
+     *
+     * @param graph          the compiled view of the playing field
+     * @param node           the index of the origin field
+     * @param connection     the position of the connection
+     * @param condition      the condition a connection to a target field must met
+     * @param conditionCache the results of the already tested connections
+     * @return true if the connection may be used
+     */
+    private static boolean isValidConnection(PlayingFieldGraph graph, int node, int connection, BiPredicate<SingleField, SingleField> condition,
+                                             byte[] conditionCache) {
+        if (conditionCache[connection] == CONDITION_UNKNOWN) {
+            boolean valid = condition.test(graph.getField(node), graph.getField(graph.getTarget(connection)));
+            conditionCache[connection] = (valid) ? CONDITION_VALID : CONDITION_INVALID;
+        }
+        return conditionCache[connection] == CONDITION_VALID;
+    }
+
+    /**
+     * @param bits  a bit set with field indexes
+     * @param index the index of a field
+     * @return true if the bit of the field is set
+     */
+    static boolean contains(long[] bits, int index) {
+        return index >= 0 && (bits[index / Long.SIZE] & (1L << index)) != 0;
+    }
+
+    /**
+     * Creates the collection of the fields of a bit set.
+     *
+     * @param graph the compiled view of the playing field
+     * @param bits  a bit set with field indexes
+     * @return an unmodifiable collection of the fields in their default order, may be empty
+     */
+    static Collection<SingleField> toFields(PlayingFieldGraph graph, long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        if (count == 0) {
+            return Collections.emptySet();
+        }
+        List<SingleField> fields = new ArrayList<>(count);
+        for (int word = 0; word < bits.length; word++) {
+            long wordBits = bits[word];
+            while (wordBits != 0) {
+                fields.add(graph.getField(word * Long.SIZE + Long.numberOfTrailingZeros(wordBits)));
+                wordBits &= wordBits - 1;
+            }
+        }
+        return Collections.unmodifiableList(fields);
+    }
+}
@@ -1,24 +1,30 @@
 package com.tjger.game.completed.playingfield;
 
+import android.graphics.Point;
+
 import com.tjger.lib.AbstractShortestPathMethods;
+import com.tjger.lib.IndexedShortestPathMethods;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.BiPredicate;
+import java.util.function.ToIntBiFunction;
 
 /**
  * Shortest path calculation for a playing field.
  *
  * @author hagru
  */
-public class PlayingFieldShortestPathMethods extends AbstractShortestPathMethods<SingleField> {
+public class PlayingFieldShortestPathMethods extends AbstractShortestPathMethods<SingleField> implements IndexedShortestPathMethods<SingleField> {
 
     private final PlayingField playingField;
-    private final List<SingleField> fieldList;
+    private final PlayingFieldGraph graph;
     /**
      * The condition a connection to a target field must met. The parameters for the {@link BiPredicate} are the origin and the target fields.
      */
     private BiPredicate<SingleField, SingleField> condition;
+    /**
+     * The estimation of the weight between two fields, may be null. The parameters are the field and the target field.
+     */
+    private ToIntBiFunction<SingleField, SingleField> heuristic;
 
     /**
      * Constructs a new instance.
@@ -33,20 +39,58 @@ public class PlayingFieldShortestPathMethods extends AbstractShortestPathMethods
     }
 
     public PlayingFieldShortestPathMethods(PlayingField field, SingleField start, SingleField target, int maxDepth, BiPredicate<SingleField, SingleField> condition) {
+        this(field, start, target, maxDepth, condition, null);
+    }
+
+    /**
+     * Constructs a new instance that searches the fields nearer to the target first.
+     *
+     * @param field     The playing field.
+     * @param start     The start field of the path.
+     * @param target    The target field of the path.
+     * @param maxDepth  The maximum number of steps in the path.
+     * @param condition The condition a connection to a target field must met. The parameters for the {@link BiPredicate} are the origin and the target fields.
+     * @param heuristic The estimation of the weight between a field and the target field, must never be higher than the real weight;
+     *                  null to search without estimation. See {@link #createGridHeuristic(int)}.
+     */
+    public PlayingFieldShortestPathMethods(PlayingField field, SingleField start, SingleField target, int maxDepth,
+                                           BiPredicate<SingleField, SingleField> condition, ToIntBiFunction<SingleField, SingleField> heuristic) {
         super(start, target, maxDepth);
         this.playingField = field;
-        this.fieldList = new ArrayList<>(playingField.getFields());
+        this.graph = playingField.getGraph();
         this.condition = condition;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Creates an estimation of the weight between two fields by their grid positions. The estimation is the number of
+     * grid steps (horizontal, vertical or diagonal) between the fields multiplied with the given weight.<p>
+     * The estimation is only correct if the playing field uses a grid ({@link GridType#YES}), every connection leads to a field
+     * that is at most one grid step away and the weight of every connection is at least the given weight.
+     * Otherwise the found path may not be the shortest one.
+     *
+     * @param weightPerStep The minimum weight of a connection, usually 1.
+     * @return The estimation to use for {@link PlayingField#getShortestPath(SingleField, SingleField, int, BiPredicate, ToIntBiFunction)}.
+     */
+    public static ToIntBiFunction<SingleField, SingleField> createGridHeuristic(int weightPerStep) {
+        return (field, target) -> {
+            Point fieldPosition = field.getGridPosition();
+            Point targetPosition = target.getGridPosition();
+            if (fieldPosition == null || targetPosition == null) {
+                return 0;
+            }
+            return Math.max(Math.abs(fieldPosition.x - targetPosition.x), Math.abs(fieldPosition.y - targetPosition.y)) * weightPerStep;
+        };
     }
 
     @Override
     public SingleField[] getAllFields() {
-        return fieldList.toArray(new SingleField[0]);
+        return graph.getFieldArray().clone();
     }
 
     @Override
     public int getIndexOfField(SingleField field) {
-        return fieldList.indexOf(field);
+        return graph.getIndex(field);
     }
 
     @Override
@@ -58,4 +102,29 @@ public class PlayingFieldShortestPathMethods extends AbstractShortestPathMethods
     public int getWeight(SingleField from, SingleField to) {
         return playingField.getConnectionWeight(from, to);
     }
+
+    @Override
+    public int getHeuristicWeight(SingleField field) {
+        return (heuristic == null) ? 0 : heuristic.applyAsInt(field, getTargetField());
+    }
+
+    @Override
+    public int getFirstConnection(int index) {
+        return graph.getFirstConnection(index);
+    }
+
+    @Override
+    public int getConnectionTarget(int connection) {
+        return graph.getTarget(connection);
+    }
+
+    @Override
+    public int getConnectionWeight(int connection) {
+        return graph.getWeight(connection);
+    }
+
+    @Override
+    public boolean isValidConnection(int index, int connection) {
+        return condition.test(graph.getField(index), graph.getField(graph.getTarget(connection)));
+    }
 }
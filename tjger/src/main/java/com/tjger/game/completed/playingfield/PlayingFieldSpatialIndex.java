@@ -0,0 +1,159 @@
+package com.tjger.game.completed.playingfield;
+
+import android.graphics.Point;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * An index to find the single fields of a {@link PlayingField} at a pixel or grid position without testing all fields.<p>
+ * The bounding box of all fields is divided into uniform cells, every cell knows the fields whose bounding rectangle overlaps the cell.
+ * The fields of a cell are stored in inverse default order, so an overlapping field is tested before the field below.
+ * The index is created by the playing field and replaced after a field or the grid has been changed.
+ *
+ * @author Joe
+ */
+final class PlayingFieldSpatialIndex {
+
+    final private PlayingField playingField;
+    final private SingleField[] fields;
+    final private Map<Point, SingleField> gridFields = new HashMap<>();
+    final private int left;
+    final private int top;
+    final private int cellWidth;
+    final private int cellHeight;
+    final private int columns;
+    final private int rows;
+    final private int[] cellOffsets;
+    final private int[] cellFields;
+
+    /**
+     * Creates the index for the fields of the playing field.
+     *
+     * @param playingField the playing field
+     * @param fieldList    all single fields in their default order
+     */
+    PlayingFieldSpatialIndex(PlayingField playingField, List<SingleField> fieldList) {
+        this.playingField = playingField;
+        this.fields = fieldList.toArray(new SingleField[0]);
+        int[][] bounds = new int[fields.length][];
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < fields.length; i++) {
+            Point gridPosition = fields[i].getGridPosition();
+            if (gridPosition != null && !gridFields.containsKey(gridPosition)) {
+                gridFields.put(new Point(gridPosition.x, gridPosition.y), fields[i]);
+            }
+            bounds[i] = getBounds(playingField.getPixelPositions(fields[i]));
+            if (bounds[i] != null) {
+                minX = Math.min(minX, bounds[i][0]);
+                minY = Math.min(minY, bounds[i][1]);
+                maxX = Math.max(maxX, bounds[i][2]);
+                maxY = Math.max(maxY, bounds[i][3]);
+            }
+        }
+        if (minX > maxX) {
+            // no field has a position
+            minX = minY = maxX = maxY = 0;
+        }
+        int cellsPerAxis = Math.max(1, (int) Math.ceil(Math.sqrt(fields.length)));
+        this.left = minX;
+        this.top = minY;
+        this.cellWidth = Math.max(1, (maxX - minX + cellsPerAxis) / cellsPerAxis);
+        this.cellHeight = Math.max(1, (maxY - minY + cellsPerAxis) / cellsPerAxis);
+        this.columns = (maxX - minX) / cellWidth + 1;
+        this.rows = (maxY - minY) / cellHeight + 1;
+        // count the fields of the cells first, then fill the cells with the fields in inverse order
+        this.cellOffsets = new int[columns * rows + 1];
+        for (int[] bound : bounds) {
+            if (bound != null) {
+                forEachCell(bound, cell -> cellOffsets[cell + 1]++);
+            }
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellOffsets[cell + 1] += cellOffsets[cell];
+        }
+        this.cellFields = new int[cellOffsets[columns * rows]];
+        int[] fillPositions = cellOffsets.clone();
+        for (int i = fields.length - 1; i >= 0; i--) {
+            if (bounds[i] != null) {
+                int fieldIndex = i;
+                forEachCell(bounds[i], cell -> cellFields[fillPositions[cell]++] = fieldIndex);
+            }
+        }
+    }
+
+    /**
+     * @param positions the pixel positions of a field, may be null
+     * @return the left, top, right and bottom pixel of the positions or null if there are no positions
+     */
+    private static int[] getBounds(Point[] positions) {
+        if (positions == null || positions.length == 0) {
+            return null;
+        }
+        int[] bounds = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+        for (Point p : positions) {
+            bounds[0] = Math.min(bounds[0], p.x);
+            bounds[1] = Math.min(bounds[1], p.y);
+            bounds[2] = Math.max(bounds[2], p.x);
+            bounds[3] = Math.max(bounds[3], p.y);
+        }
+        return bounds;
+    }
+
+    /**
+     * Performs an action for all cells that are overlapped by the given bounds.
+     *
+     * @param bounds the left, top, right and bottom pixel
+     * @param action the action to perform with the number of the cell
+     */
+    private void forEachCell(int[] bounds, IntConsumer action) {
+        int firstColumn = (bounds[0] - left) / cellWidth;
+        int lastColumn = (bounds[2] - left) / cellWidth;
+        int firstRow = (bounds[1] - top) / cellHeight;
+        int lastRow = (bounds[3] - top) / cellHeight;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                action.accept(row * columns + column);
+            }
+        }
+    }
+
+    /**
+     * Returns the topmost field at the given pixel position, i.e. the last field in default order.
+     *
+     * @param x the x coordinate in pixels
+     * @param y the y coordinate in pixels
+     * @return the field at this position or null if there is no such field
+     */
+    SingleField getFieldAtPosition(int x, int y) {
+        if (x < left || y < top) {
+            return null;
+        }
+        int column = (x - left) / cellWidth;
+        int row = (y - top) / cellHeight;
+        if (column >= columns || row >= rows) {
+            return null;
+        }
+        int cell = row * columns + column;
+        for (int i = cellOffsets[cell]; i < cellOffsets[cell + 1]; i++) {
+            SingleField field = fields[cellFields[i]];
+            if (playingField.isPositionInField(field, x, y)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param gridPosition the grid position
+     * @return the field at the given grid position or null
+     */
+    SingleField getFieldAtGridPosition(Point gridPosition) {
+        return gridFields.get(gridPosition);
+    }
+}
@@ -1,6 +1,8 @@
 package com.tjger.game.completed.playingfield;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -21,6 +23,10 @@ public class SingleField extends SimpleHGBaseItem implements Comparable<SingleFi
     private Point gridPosition;
     private Point[] pixelPositions;
     private Object data;
+    /**
+     * The playing fields the field was added to, they are informed about changed properties.
+     */
+    private final List<PlayingField> playingFields = new ArrayList<>(1);
 
     /**
      * Create a game field by setting all final fields.
@@ -121,10 +127,15 @@ public class SingleField extends SimpleHGBaseItem implements Comparable<SingleFi
      */
     public void setProperty(String key, String value) {
         if (HGBaseTools.hasContent(key)) {
+            String oldValue;
             if (HGBaseTools.hasContent(value)) {
-                this.properties.put(key, value);
+                oldValue = this.properties.put(key, value);
             } else {
-                this.properties.remove(key);
+                oldValue = this.properties.remove(key);
+                value = null;
+            }
+            if (!HGBaseTools.equalObject(oldValue, value)) {
+                firePropertyChanged(key, oldValue, value);
             }
         }
     }
@@ -133,7 +144,53 @@ public class SingleField extends SimpleHGBaseItem implements Comparable<SingleFi
      * Clears all properties of the this field.
      */
     public void clearProperties() {
+        Map<String, String> oldProperties = new TreeMap<>(this.properties);
         this.properties.clear();
+        for (Map.Entry<String, String> property : oldProperties.entrySet()) {
+            firePropertyChanged(property.getKey(), property.getValue(), null);
+        }
+    }
+
+    /**
+     * Informs the playing fields about a changed property.
+     *
+     * @param key the property key
+     * @param oldValue the old value or null if the property was not set
+     * @param newValue the new value or null if the property was removed
+     */
+    private void firePropertyChanged(String key, String oldValue, String newValue) {
+        for (PlayingField playingField : playingFields) {
+            playingField.fieldPropertyChanged(this, key, oldValue, newValue);
+        }
+    }
+
+    /**
+     * Informs the playing fields about a changed grid or pixel position.
+     */
+    private void firePositionChanged() {
+        for (PlayingField playingField : playingFields) {
+            playingField.fieldPositionChanged(this);
+        }
+    }
+
+    /**
+     * Remembers a playing field the field was added to.
+     *
+     * @param playingField the playing field
+     */
+    void addPlayingField(PlayingField playingField) {
+        if (!playingFields.contains(playingField)) {
+            playingFields.add(playingField);
+        }
+    }
+
+    /**
+     * Forgets a playing field the field was removed from.
+     *
+     * @param playingField the playing field
+     */
+    void removePlayingField(PlayingField playingField) {
+        playingFields.remove(playingField);
     }
 
     /**
@@ -178,6 +235,7 @@ public class SingleField extends SimpleHGBaseItem implements Comparable<SingleFi
      */
     public void setGridPosition(Point gridPosition) {
         this.gridPosition = HGBaseTools.requireNonNull(gridPosition, "The grid position must not be null!");
+        firePositionChanged();
     }
 
     /**
@@ -200,6 +258,7 @@ public class SingleField extends SimpleHGBaseItem implements Comparable<SingleFi
         checkValidPixelPositionsForShape(this.shape, pixelPositions);
         this.pixelPositions = HGBaseTools.clone(pixelPositions);
         this.gridPosition = null;
+        firePositionChanged();
     }
 
     /**
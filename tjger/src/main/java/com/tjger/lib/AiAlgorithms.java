@@ -2,21 +2,29 @@ package com.tjger.lib;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
 import com.tjger.game.GamePlayer;
-import com.tjger.game.GameRules;
 import com.tjger.game.GameState;
+import com.tjger.game.HashableGameState;
 import com.tjger.game.MoveInformation;
-import com.tjger.game.completed.GameEngine;
-import com.tjger.game.completed.GameManager;
 
 import at.hagru.hgbase.lib.HGBaseTools;
 
 /**
- * Provides some algorithms that are used to implement artificial intelligence.
+ * Provides some algorithms that are used to implement artificial intelligence.<p>
+ * The state of a search is held by a search context, so the getters for the current depth, step and number
+ * of evaluations return the values of the search that is running in the calling thread or - if no search is
+ * running in the calling thread - of the last finished search.
  * 
  * @see AiMoveEvaluator
  * @see AiMoveInformation
@@ -24,26 +32,49 @@ import at.hagru.hgbase.lib.HGBaseTools;
  */
 public final class AiAlgorithms {
 
-    // as game rules and game engine exist already when methods are called
-    final private static GameRules rules = GameManager.getInstance().getGameRules();
-    final private static GameEngine engine = GameManager.getInstance().getGameEngine();
+    /**
+     * Returned by a maximum step if no move is above the lower pruning bound.
+     */
+    private static final AiMoveInformation NO_MOVE_ABOVE_ALPHA = new StartingAlphaMove();
+    /**
+     * Returned by a minimum step if no move is below the upper pruning bound.
+     */
+    private static final AiMoveInformation NO_MOVE_BELOW_BETA = new StartingBetaMove();
+
+    private static final ThreadLocal<AiSearchContext> runningContext = new ThreadLocal<>();
+    private static volatile AiSearchContext lastContext = null;
+    private static ForkJoinPool searchPool = null;
 
-    private static int currentDepth = 0;
-    private static int currentStep = 0;
-    private static int countEvaluations = 0;
+    /**
+     * @return The context of the search running in the calling thread or of the last finished search.
+     */
+    private static AiSearchContext getContext() {
+        AiSearchContext context = runningContext.get();
+        return (context == null) ? lastContext : context;
+    }
 
     /**
      * @return The current depth of the algorithm (for generate moves).
      */
     public static int getCurrentDepth() {
-        return AiAlgorithms.currentDepth;
+        AiSearchContext context = getContext();
+        return (context == null) ? 0 : context.currentDepth;
     }
 
     /**
      * @return The current step of the algorithm (for generate moves).
      */
     public static int getCurrentStep() {
-        return AiAlgorithms.currentStep;
+        AiSearchContext context = getContext();
+        return (context == null) ? 0 : context.currentStep;
+    }
+
+    /**
+     * @return The search depth of the last completed iteration of the iterative deepening search.
+     */
+    public static int getCompletedDepth() {
+        AiSearchContext context = getContext();
+        return (context == null) ? 0 : context.completedDepth;
     }
 
     /**
@@ -52,21 +83,67 @@ public final class AiAlgorithms {
      * @return The number of evaluated moves.
      */
     public static int getCountEvaluations() {
-        return AiAlgorithms.countEvaluations;
+        AiSearchContext context = getContext();
+        return (context == null) ? 0 : context.countEvaluations;
+    }
+
+    /**
+     * Creates the context for a new search and registers it for the calling thread.
+     * 
+     * @param evaluator The class for evaluating the moves.
+     * @param analyzer The class to analyze the algorithm, can be {@code null}.
+     * @return The context of the search.
+     */
+    private static AiSearchContext startSearch(AiMoveEvaluator evaluator, AiAnalyzer analyzer) {
+        AiSearchContext context = new AiSearchContext(evaluator, analyzer);
+        runningContext.set(context);
+        return context;
+    }
+
+    /**
+     * Creates the context for a new search of the given player and registers it for the calling thread.
+     * 
+     * @param evaluator The class for evaluating the moves.
+     * @param rootPlayer The player the search is done for.
+     * @return The context of the search.
+     */
+    private static AiSearchContext startSearchForPlayer(AiMoveEvaluator evaluator, GamePlayer rootPlayer) {
+        AiSearchContext context = new AiSearchContext(evaluator, null, rootPlayer);
+        runningContext.set(context);
+        return context;
+    }
+
+    /**
+     * Finishes the search of the given context.
+     * 
+     * @param context The context of the search.
+     */
+    private static void finishSearch(AiSearchContext context) {
+        context.transpositionTable = null;
+        context.moveOrdering = null;
+        context.principalVariation = null;
+        context.principalVariationLength = null;
+        context.previousPrincipalVariation = null;
+        if (context.simulation != null) {
+            context.simulation.addCountNodes(context.countEvaluations);
+        }
+        lastContext = context;
+        runningContext.remove();
     }
 
     /**
      * Returns the next player defined by the game rules depending by the current player, the last move and 
      * the current game state.
      * 
+     * @param context the context of the search
      * @param player the current player in the AI game tree
      * @param move the last move performed in the AI game tree
      * @param state the current game state in the AI game tree
      * @return the next player
      */
-    private static GamePlayer getNextPlayer(GamePlayer player, MoveInformation move, GameState state) {
+    private static GamePlayer getNextPlayer(AiSearchContext context, GamePlayer player, MoveInformation move, GameState state) {
         if (MoveUtil.isMoveComplete(move)) {
-            return rules.getNextPlayer(player, state);
+            return context.rules.getNextPlayer(player, state);
         } else {
             return player;
         }
@@ -84,6 +161,34 @@ public final class AiAlgorithms {
         return getMiniMaxMove(depth, evaluator, true);
     }
 
+    /**
+     * Gets the best move with the Minimax algorithm using a transposition table.
+     * 
+     * @param depth The search depth.
+     * @param evaluator The class for evaluating the moves.
+     * @param table The transposition table. Is only used if the game state implements {@link HashableGameState}.
+     * @return The best move.
+     * @see #getMiniMaxMove(int, AiMoveEvaluator, boolean, AiAnalyzer, AiTranspositionTable)
+     */
+    public static AiMoveInformation getMiniMaxMove(int depth, AiMoveEvaluator evaluator, AiTranspositionTable table) {
+        return getMiniMaxMove(depth, evaluator, true, null, table);
+    }
+
+    /**
+     * Gets the best move with the Minimax algorithm using a transposition table and the move ordering.
+     * 
+     * @param depth The search depth.
+     * @param evaluator The class for evaluating the moves.
+     * @param table The transposition table. Is only used if the game state implements {@link HashableGameState}.
+     * @param ordering The move ordering, if {@code null} the moves are searched in the generated order.
+     * @return The best move.
+     * @see #getMiniMaxMove(int, AiMoveEvaluator, boolean, AiAnalyzer, AiTranspositionTable, AiMoveOrdering)
+     */
+    public static AiMoveInformation getMiniMaxMove(int depth, AiMoveEvaluator evaluator, AiTranspositionTable table,
+                                                   AiMoveOrdering ordering) {
+        return getMiniMaxMove(depth, evaluator, true, null, table, ordering);
+    }
+
     /**
      * Gets the best move with the Minimax algorithm.
      * 
@@ -97,6 +202,21 @@ public final class AiAlgorithms {
         return getMiniMaxMove(depth, evaluator, usePruning, null);
     }
 
+    /**
+     * Gets the best move with the Minimax algorithm.
+     * 
+     * @param depth The search depth.
+     * @param evaluator The class for evaluating the moves.
+     * @param usePruning Should always be {@code true} because the algorithm is much faster with pruning.
+     * @param analyzer The class to analyze the algorithm. If {@code null} no analysis information will be
+     *            generated.<b>Only needed for testing reasons!</b>
+     * @return The best move.
+     * @see #getMiniMaxMove(int, AiMoveEvaluator, boolean, AiAnalyzer, AiTranspositionTable)
+     */
+    public static AiMoveInformation getMiniMaxMove(int depth, AiMoveEvaluator evaluator, boolean usePruning, AiAnalyzer analyzer) {
+        return getMiniMaxMove(depth, evaluator, usePruning, analyzer, null);
+    }
+
     /**
      * Gets the best move with the Minimax algorithm (see <a
      * href="https://en.wikipedia.org/wiki/Minimax">Wikipedia</a>).
@@ -110,14 +230,44 @@ public final class AiAlgorithms {
      *            be used for testing reasons!</b>
      * @param analyzer The class to analyze the algorithm. If {@code null} no analysis information will be
      *            generated.<b>Only needed for testing reasons!</b>
+     * @param table The transposition table to reuse the results of already searched positions. Is only used
+     *            if pruning is used and the game state implements {@link HashableGameState}. If {@code null}
+     *            no transposition table is used.
      * @return The best move.
+     * @see #getMiniMaxMove(int, AiMoveEvaluator, boolean, AiAnalyzer, AiTranspositionTable, AiMoveOrdering)
      */
-    public static AiMoveInformation getMiniMaxMove(int depth, AiMoveEvaluator evaluator, boolean usePruning, AiAnalyzer analyzer) {
-        currentDepth = depth;
-        currentStep = 0;
-        countEvaluations = 0;
-        GameState state = (GameState) engine.getGameState().clone();
-        GamePlayer player = engine.getCurrentPlayer();
+    public static AiMoveInformation getMiniMaxMove(int depth, AiMoveEvaluator evaluator, boolean usePruning, AiAnalyzer analyzer,
+                                                   AiTranspositionTable table) {
+        return getMiniMaxMove(depth, evaluator, usePruning, analyzer, table, null);
+    }
+
+    /**
+     * Gets the best move with the Minimax algorithm (see <a
+     * href="https://en.wikipedia.org/wiki/Minimax">Wikipedia</a>).
+     * 
+     * @param depth The search depth.
+     * @param evaluator The class for evaluating the moves.
+     * @param usePruning Should always be {@code true} because the algorithm is much faster with pruning.
+     * @param analyzer The class to analyze the algorithm. If {@code null} no analysis information will be
+     *            generated.<b>Only needed for testing reasons!</b>
+     * @param table The transposition table to reuse the results of already searched positions. Is only used
+     *            if pruning is used and the game state implements {@link HashableGameState}. If {@code null}
+     *            no transposition table is used.
+     * @param ordering The move ordering to search the moves that probably cause a cutoff first. Is only used
+     *            if pruning is used. If {@code null} the moves are searched in the generated order.
+     * @return The best move.
+     */
+    public static AiMoveInformation getMiniMaxMove(int depth, AiMoveEvaluator evaluator, boolean usePruning, AiAnalyzer analyzer,
+                                                   AiTranspositionTable table, AiMoveOrdering ordering) {
+        AiSearchContext context = startSearch(evaluator, analyzer);
+        context.currentDepth = depth;
+        context.currentStep = 0;
+        GameState state = context.cloneGameState();
+        if (usePruning) {
+            context.setTranspositionTable(state, table);
+            context.setMoveOrdering(ordering);
+        }
+        GamePlayer player = context.rootPlayer;
         Element analysisRoot = createAnalysisRoot(analyzer, player);
         Date startTimestamp = null;
         Date stopTimestamp = null;
@@ -130,8 +280,8 @@ public final class AiAlgorithms {
 	            startTimestamp = new Date();
 	            HGBaseTools.testPerformance();
             }
-            bestMove = getMiniMaxMoveAlphaBetaPruning(depth, currentStep, null, alpha, beta, player, null,
-                                                      state, evaluator, true, analyzer, analysisRoot);
+            bestMove = getMiniMaxMoveAlphaBetaPruning(context, depth, context.currentStep, null, alpha, beta, player, null,
+                                                      state, true, analysisRoot);
             if (analyzer != null) {
 	            duration = HGBaseTools.testPerformance();
 	            stopTimestamp = new Date();
@@ -144,79 +294,692 @@ public final class AiAlgorithms {
 	            startTimestamp = new Date();
 	            HGBaseTools.testPerformance();
         	}
-            bestMove = getMiniMaxMove(depth, currentStep, null, player, state, evaluator, true, analyzer, analysisRoot);
+            bestMove = getMiniMaxMove(context, depth, context.currentStep, null, player, state, true, analysisRoot);
             if (analyzer != null) {
 	            duration = HGBaseTools.testPerformance();
 	            stopTimestamp = new Date();
             }
         }
-        setAnalysisSummary(analyzer, analysisRoot, getCountEvaluations(), duration, startTimestamp, stopTimestamp, bestMove);
+        bestMove = context.keepMove(bestMove);
+        setAnalysisSummary(analyzer, analysisRoot, context.countEvaluations, duration, startTimestamp, stopTimestamp, bestMove);
+        setAnalysisTranspositionSummary(analyzer, analysisRoot, context.transpositionTable);
+        finishSearch(context);
+        return bestMove;
+    }
+
+    /**
+     * Gets the best move with an iterative deepening search (see <a
+     * href="https://en.wikipedia.org/wiki/Iterative_deepening_depth-first_search">Wikipedia</a>).<br>
+     * The Minimax algorithm with Alpha-Beta-Pruning is done with the search depth 1, 2, ... up to the
+     * maximum depth. The principal variation of an iteration is searched first in the next iteration.
+     * If the time budget is over, the search is stopped and the best move of the last completed iteration
+     * is returned. The first iteration that returns a move is always completed.
+     * 
+     * @param maxDepth The maximum search depth.
+     * @param timeBudget The time in milliseconds the search may last.
+     * @param evaluator The class for evaluating the moves.
+     * @param table The transposition table to reuse the results of already searched positions. Is only used
+     *            if the game state implements {@link HashableGameState}. If {@code null} no transposition
+     *            table is used.
+     * @return The best move.
+     * @see #getCompletedDepth()
+     */
+    public static AiMoveInformation getIterativeDeepeningMove(int maxDepth, long timeBudget, AiMoveEvaluator evaluator,
+                                                              AiTranspositionTable table) {
+        return getIterativeDeepeningMove(maxDepth, timeBudget, evaluator, table, null);
+    }
+
+    /**
+     * Gets the best move with an iterative deepening search using the move ordering. The killer moves and
+     * history values of an iteration are used to order the moves of the next iteration.
+     * 
+     * @param maxDepth The maximum search depth.
+     * @param timeBudget The time in milliseconds the search may last.
+     * @param evaluator The class for evaluating the moves.
+     * @param table The transposition table, can be {@code null}.
+     * @param ordering The move ordering, if {@code null} the moves are searched in the generated order.
+     * @return The best move.
+     * @see #getIterativeDeepeningMove(int, long, AiMoveEvaluator, AiTranspositionTable)
+     */
+    public static AiMoveInformation getIterativeDeepeningMove(int maxDepth, long timeBudget, AiMoveEvaluator evaluator,
+                                                              AiTranspositionTable table, AiMoveOrdering ordering) {
+        long startTime = System.currentTimeMillis();
+        long stopTime = startTime + Math.max(timeBudget, 0);
+        AiSearchContext context = startSearch(evaluator, null);
+        GameState state = context.cloneGameState();
+        return getIterativeDeepeningMove(context, maxDepth, stopTime, state, table, ordering);
+    }
+
+    /**
+     * Gets the best move of the given player for the given game state with an iterative deepening search
+     * without time limit. Is used to search in the background, e.g. while the opponent is thinking (pondering):
+     * the search is done till the maximum depth is reached or the {@link AiCancellationToken} of the calling
+     * action is cancelled. Then the best move of the last completed iteration is returned.
+     * 
+     * @param maxDepth The maximum search depth.
+     * @param evaluator The class for evaluating the moves.
+     * @param player The player the search is done for.
+     * @param state The game state to search, is changed during the search.
+     * @param table The transposition table, can be {@code null}.
+     * @param ordering The move ordering, can be {@code null}.
+     * @return The best move or {@code null} if no iteration was completed.
+     * @see AiPonderSearch
+     */
+    public static AiMoveInformation getBackgroundMove(int maxDepth, AiMoveEvaluator evaluator, GamePlayer player, GameState state,
+                                                      AiTranspositionTable table, AiMoveOrdering ordering) {
+        AiSearchContext context = startSearchForPlayer(evaluator, player);
+        return getIterativeDeepeningMove(context, maxDepth, AiSearchContext.NO_DEADLINE, state, table, ordering);
+    }
+
+    /**
+     * Gets the best move with an iterative deepening search and finishes the search.
+     * 
+     * @param context The context of the search.
+     * @param maxDepth The maximum search depth.
+     * @param stopTime The time in milliseconds when the search shall be stopped or {@link AiSearchContext#NO_DEADLINE}.
+     * @param state The game state to search.
+     * @param table The transposition table, can be {@code null}.
+     * @param ordering The move ordering, can be {@code null}.
+     * @return The best move.
+     */
+    private static AiMoveInformation getIterativeDeepeningMove(AiSearchContext context, int maxDepth, long stopTime, GameState state,
+                                                               AiTranspositionTable table, AiMoveOrdering ordering) {
+        context.setTranspositionTable(state, table);
+        context.setMoveOrdering(ordering);
+        GamePlayer player = context.rootPlayer;
+        AiMoveInformation bestMove = null;
+        long lastDuration = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long iterationStart = System.currentTimeMillis();
+            if (bestMove != null && stopTime - iterationStart < lastDuration) {
+                // the next iteration takes at least as long as the last one, so it would not complete anyway
+                break;
+            }
+            context.setDeadline((bestMove == null) ? AiSearchContext.NO_DEADLINE : stopTime);
+            context.startPrincipalVariation(depth);
+            context.currentDepth = depth;
+            context.currentStep = 0;
+            AiMoveInformation move = getMiniMaxMoveAlphaBetaPruning(context, depth, context.currentStep, null,
+                                                                    new StartingAlphaMove(), new StartingBetaMove(),
+                                                                    player, null, state, true, null);
+            if (context.isCancelled()) {
+                break;
+            }
+            if (move != null && !(move instanceof StartingAlphaMove) && !(move instanceof StartingBetaMove)) {
+                bestMove = context.keepMove(move);
+                context.completedDepth = depth;
+                context.keepPrincipalVariation();
+            }
+            lastDuration = System.currentTimeMillis() - iterationStart;
+        }
+        finishSearch(context);
         return bestMove;
     }
 
+    /**
+     * Gets the best move with the Minimax algorithm with Alpha-Beta-Pruning using several threads.<br>
+     * The moves of the current player are split up between the threads (root splitting): the first move is
+     * searched alone to get a lower pruning bound, then the other moves are searched in parallel. Every move
+     * is searched on an own clone of the game state, the best value found so far is shared as lower pruning
+     * bound with the other searches, which read it again before each answer to their move.<p>
+     * <b>The evaluator and the game rules are called by several threads at the same time, so they must be
+     * thread safe!</b> Because the analysis is not thread safe, the parallel search does not support an analyzer.
+     * 
+     * @param depth The search depth.
+     * @param evaluator The class for evaluating the moves, has to be thread safe.
+     * @param parallelism The number of threads, if lower than 2 the search is done in the calling thread.
+     * @param table The transposition table that is shared by the threads. Is only used if the game state
+     *            implements {@link HashableGameState}. If {@code null} no transposition table is used.
+     * @return The best move.
+     */
+    public static AiMoveInformation getParallelMiniMaxMove(int depth, AiMoveEvaluator evaluator, int parallelism, AiTranspositionTable table) {
+        if (parallelism < 2 || depth < 2) {
+            return getMiniMaxMove(depth, evaluator, true, null, table);
+        }
+        AiSearchContext context = startSearch(evaluator, null);
+        context.currentDepth = depth;
+        context.currentStep = 1;
+        GameState state = context.cloneGameState();
+        context.setTranspositionTable(state, table);
+        GamePlayer player = context.rootPlayer;
+        List<AiMoveInformation> validMoves = new ArrayList<>();
+        for (AiMoveInformation move : evaluator.generateMoves(player, state, context.rules)) {
+            if (context.rules.isValidMove(move, state)) {
+                validMoves.add(move);
+            }
+        }
+        AiMoveInformation bestMove = null;
+        if (!validMoves.isEmpty()) {
+            // search the first move alone to get a pruning bound for the other moves
+            AiMoveInformation firstMove = validMoves.get(0);
+            AtomicLong sharedAlpha = new AtomicLong(Long.MIN_VALUE);
+            boolean[] evaluated = new boolean[validMoves.size()];
+            evaluated[0] = searchRootMove(context, depth, firstMove, player, state, sharedAlpha);
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (int i = 1; i < validMoves.size(); i++) {
+                AiMoveInformation move = validMoves.get(i);
+                AiSearchContext worker = context.createWorkerContext();
+                tasks.add(() -> {
+                    runningContext.set(worker);
+                    if (worker.simulation != null) {
+                        // the rules look up the players of a simulation by the calling thread
+                        worker.simulation.bind();
+                    }
+                    try {
+                        return searchRootMove(worker, depth, move, player, (GameState) state.clone(), sharedAlpha);
+                    } finally {
+                        runningContext.remove();
+                        if (worker.simulation != null) {
+                            worker.simulation.unbind();
+                        }
+                        synchronized (context) {
+                            context.countEvaluations += worker.countEvaluations;
+                        }
+                    }
+                });
+            }
+            try {
+                List<Future<Boolean>> results = getSearchPool(parallelism).invokeAll(tasks);
+                for (int i = 0; i < results.size(); i++) {
+                    evaluated[i + 1] = results.get(i).get();
+                }
+            } catch (InterruptedException e) {
+                context.stop();
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                context.stop();
+                throw new IllegalStateException("Parallel search failed!", e.getCause());
+            }
+            if (!context.isCancelled()) {
+                bestMove = chooseBestMove(validMoves, evaluated);
+            }
+        }
+        finishSearch(context);
+        return bestMove;
+    }
+
+    /**
+     * Searches a move of the current player for the parallel search.
+     * 
+     * @param context The context of the search.
+     * @param depth The search depth.
+     * @param move The move to search.
+     * @param player The current player.
+     * @param state The game state, is changed by the search but restored afterwards.
+     * @param sharedAlpha The lower pruning bound shared between the searches, is raised by the move's value.
+     * @return {@code true} if the move got an evaluation value.
+     */
+    private static boolean searchRootMove(AiSearchContext context, int depth, AiMoveInformation move, GamePlayer player,
+                                          GameState state, AtomicLong sharedAlpha) {
+        if (context.isCancelled()) {
+            return false;
+        }
+        AiMoveInformation alpha = new StartingAlphaMove();
+        alpha.setEvaluationValue(sharedAlpha.get());
+        state.changeState(player, move, context.engine);
+        GamePlayer nextPlayer = getNextPlayer(context, player, move, state);
+        GamePlayer currentPlayer = player;
+        boolean helpIsMax = (nextPlayer == null) || nextPlayer.equals(context.rootPlayer);
+        if (nextPlayer == null) {
+            // the round is finished, so the position is evaluated for the root player who did the move
+            nextPlayer = player;
+            currentPlayer = null;
+        }
+        context.sharedAlpha = sharedAlpha;
+        AiMoveInformation result = getMiniMaxMoveAlphaBetaPruning(context, depth - 1, 1, move, alpha, new StartingBetaMove(),
+                                                                  nextPlayer, currentPlayer, state, helpIsMax, null);
+        context.sharedAlpha = null;
+        state.undoMove(player, move);
+        if (result == null || context.isCancelled()) {
+            return false;
+        }
+        long value = result.getEvaluationValue();
+        move.setEvaluationValue(value);
+        sharedAlpha.accumulateAndGet(value, Math::max);
+        return true;
+    }
+
+    /**
+     * Chooses the best of the searched moves, if several moves have the same value one of them is chosen randomly.
+     * 
+     * @param moves The searched moves.
+     * @param evaluated The flags which moves got an evaluation value.
+     * @return The best move or {@code null} if no move was evaluated.
+     */
+    private static AiMoveInformation chooseBestMove(List<AiMoveInformation> moves, boolean[] evaluated) {
+        ArrayList<AiMoveInformation> bestMoves = new ArrayList<>();
+        long bestValue = Long.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            if (evaluated[i]) {
+                long value = moves.get(i).getEvaluationValue();
+                if (bestMoves.isEmpty() || value > bestValue) {
+                    bestValue = value;
+                    bestMoves.clear();
+                    bestMoves.add(moves.get(i));
+                } else if (value == bestValue) {
+                    bestMoves.add(moves.get(i));
+                }
+            }
+        }
+        return (bestMoves.isEmpty()) ? null : bestMoves.get(DiceUtil.throwDice(0, bestMoves.size() - 1));
+    }
+
+    /**
+     * Returns the thread pool for the parallel search, its threads are daemons and end when they are idle.
+     * 
+     * @param parallelism The number of threads.
+     * @return The thread pool.
+     */
+    private static synchronized ForkJoinPool getSearchPool(int parallelism) {
+        if (searchPool == null || searchPool.getParallelism() != parallelism) {
+            if (searchPool != null) {
+                searchPool.shutdown();
+            }
+            searchPool = new ForkJoinPool(parallelism, AiAlgorithms::createSearchThread, null, false);
+        }
+        return searchPool;
+    }
+
+    /**
+     * Creates a daemon thread for the parallel search, so the pool never keeps the application alive.
+     * 
+     * @param pool The thread pool of the parallel search.
+     * @return The new thread.
+     */
+    private static ForkJoinWorkerThread createSearchThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("tjger-search-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Gets the best move with the expectiminimax algorithm with Star1 and Star2 pruning.
+     * 
+     * @param depth The search depth.
+     * @param evaluator The class for evaluating the moves and declaring the chance steps.
+     * @return The best move.
+     * @see #getExpectiMiniMaxMove(int, AiChanceEvaluator, boolean)
+     */
+    public static AiMoveInformation getExpectiMiniMaxMove(int depth, AiChanceEvaluator evaluator) {
+        return getExpectiMiniMaxMove(depth, evaluator, true);
+    }
+
+    /**
+     * Gets the best move with the expectiminimax algorithm (see <a
+     * href="https://en.wikipedia.org/wiki/Expectiminimax">Wikipedia</a>).<br>
+     * Works like the Minimax algorithm, but the value of a chance step declared by the evaluator is the
+     * weighted average of the values of its outcomes. The outcomes are done by the player who is in turn
+     * and do not count for the search depth. The step of the current player is never a chance step.<p>
+     * With pruning the player steps use the Alpha-Beta-Pruning and the chance steps the Star1 and Star2
+     * pruning of Ballard: the bounds of the evaluation values are used to stop a chance step as soon as its
+     * average cannot be inside the pruning bounds any more, and before the outcomes are searched, each outcome
+     * is probed with the first move only to get a bound for its value. An analyzer and a transposition table
+     * are not supported.
+     * 
+     * @param depth The search depth.
+     * @param evaluator The class for evaluating the moves and declaring the chance steps.
+     * @param usePruning {@code true} to use the Alpha-Beta-Pruning and the Star1/Star2 pruning.
+     * @return The best move.
+     */
+    public static AiMoveInformation getExpectiMiniMaxMove(int depth, AiChanceEvaluator evaluator, boolean usePruning) {
+        AiSearchContext context = startSearch(evaluator, null);
+        context.currentDepth = depth;
+        context.currentStep = 0;
+        GameState state = context.cloneGameState();
+        GamePlayer player = context.rootPlayer;
+        ArrayList<AiMoveInformation> bestMoves = new ArrayList<>();
+        long bestValue = Long.MIN_VALUE;
+        for (AiMoveInformation move : evaluator.generateMoves(player, state, context.rules)) {
+            if (context.rules.isValidMove(move, state)) {
+                long alpha = (usePruning) ? bestValue : Long.MIN_VALUE;
+                long value = getExpectiMiniMaxChildValue(context, evaluator, depth - 1, 0, move, move, player, state,
+                                                         alpha, Long.MAX_VALUE, usePruning, false);
+                if (context.isCancelled()) {
+                    break;
+                }
+                move.setEvaluationValue(value);
+                if (value > bestValue || bestMoves.isEmpty()) {
+                    bestValue = value;
+                    bestMoves.clear();
+                    bestMoves.add(move);
+                } else if (value == bestValue) {
+                    bestMoves.add(move);
+                }
+            }
+        }
+        AiMoveInformation bestMove = (bestMoves.isEmpty()) ? null : bestMoves.get(DiceUtil.throwDice(0, bestMoves.size() - 1));
+        finishSearch(context);
+        return bestMove;
+    }
+
+    /**
+     * Does the given move, returns the value of the reached state and undoes the move.
+     * 
+     * @param context The context of the search.
+     * @param evaluator The evaluator.
+     * @param depth The search depth of the reached state.
+     * @param step The current step.
+     * @param move The move to do, either a player's move or the move of a chance outcome.
+     * @param evaluateMove The last move of a player, is passed to the evaluation.
+     * @param player The player who does the move.
+     * @param state The current game state.
+     * @param alpha The lower pruning bound.
+     * @param beta The upper pruning bound.
+     * @param usePruning Flag if pruning is used.
+     * @param probe Flag if only the first move of the reached state shall be searched.
+     * @return The value of the reached state.
+     */
+    private static long getExpectiMiniMaxChildValue(AiSearchContext context, AiChanceEvaluator evaluator, int depth, int step,
+                                                    MoveInformation move, AiMoveInformation evaluateMove, GamePlayer player,
+                                                    GameState state, long alpha, long beta, boolean usePruning, boolean probe) {
+        state.changeState(player, move, context.engine);
+        GamePlayer nextPlayer = getNextPlayer(context, player, move, state);
+        long value = getExpectiMiniMaxValue(context, evaluator, depth, step + 1, evaluateMove, nextPlayer, state,
+                                            alpha, beta, usePruning, probe);
+        state.undoMove(player, move);
+        return value;
+    }
+
+    /**
+     * Returns the value of a state with the expectiminimax algorithm. The values are always seen from the
+     * view of the player the search is done for. With pruning a value below alpha is only an upper bound
+     * and a value above beta only a lower bound of the real value.
+     * 
+     * @param context The context of the search.
+     * @param evaluator The evaluator.
+     * @param depth The search depth.
+     * @param step The current step.
+     * @param evaluateMove The last move of a player, is passed to the evaluation.
+     * @param player The player who is in turn, can be {@code null} if there is no next player.
+     * @param state The current game state.
+     * @param alpha The lower pruning bound.
+     * @param beta The upper pruning bound.
+     * @param usePruning Flag if pruning is used.
+     * @param probe Flag if only the first move of a player's step shall be searched (for Star2). Then the value
+     *            of a maximum step is a lower bound and the value of a minimum step an upper bound.
+     * @return The value of the state.
+     */
+    private static long getExpectiMiniMaxValue(AiSearchContext context, AiChanceEvaluator evaluator, int depth, int step,
+                                               AiMoveInformation evaluateMove, GamePlayer player, GameState state,
+                                               long alpha, long beta, boolean usePruning, boolean probe) {
+        if (context.isCancelled()) {
+            return 0;
+        }
+        if (depth <= 0 || player == null || context.rules.isGameFinished(state)) {
+            return evaluateExpectiMiniMaxState(context, evaluator, step, evaluateMove, state);
+        }
+        context.currentDepth = depth;
+        context.currentStep = step;
+        boolean isMax = player.equals(context.rootPlayer);
+        if (evaluator.isChanceStep(player, state, context.rules)) {
+            if (probe) {
+                // a chance step is not probed, take the bound of the evaluation values
+                return (isMax) ? evaluator.getMinEvaluationValue() : evaluator.getMaxEvaluationValue();
+            }
+            return getExpectiMiniMaxChanceValue(context, evaluator, depth, step, evaluateMove, player, state,
+                                                alpha, beta, usePruning);
+        }
+        int numPossible = 0;
+        long bestValue = (isMax) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        AiMoveBuffer possibleMoves = context.generateMoves(player, state, step);
+        for (int i = 0; i < possibleMoves.size(); i++) {
+            AiMoveInformation nextMove = possibleMoves.get(i);
+            if (context.rules.isValidMove(nextMove, state)) {
+                numPossible++;
+                long value = getExpectiMiniMaxChildValue(context, evaluator, depth - 1, step, nextMove, nextMove, player,
+                                                         state, alpha, beta, usePruning, false);
+                if (context.isCancelled()) {
+                    return 0;
+                }
+                if (isMax) {
+                    bestValue = Math.max(bestValue, value);
+                    if (usePruning) {
+                        if (bestValue > beta) {
+                            return bestValue;
+                        }
+                        alpha = Math.max(alpha, bestValue);
+                    }
+                } else {
+                    bestValue = Math.min(bestValue, value);
+                    if (usePruning) {
+                        if (bestValue < alpha) {
+                            return bestValue;
+                        }
+                        beta = Math.min(beta, bestValue);
+                    }
+                }
+                if (probe) {
+                    break;
+                }
+            }
+        }
+        if (numPossible == 0) {
+            return evaluateExpectiMiniMaxState(context, evaluator, step, evaluateMove, state);
+        }
+        return bestValue;
+    }
+
+    /**
+     * Returns the value of a chance step, which is the weighted average of the values of its outcomes.
+     * With pruning the Star2 probing is done first and then the outcomes are searched with the Star1 bounds.
+     * 
+     * @param context The context of the search.
+     * @param evaluator The evaluator.
+     * @param depth The search depth.
+     * @param step The current step.
+     * @param evaluateMove The last move of a player, is passed to the evaluation.
+     * @param player The player who is in turn.
+     * @param state The current game state.
+     * @param alpha The lower pruning bound.
+     * @param beta The upper pruning bound.
+     * @param usePruning Flag if pruning is used.
+     * @return The value of the chance step.
+     */
+    private static long getExpectiMiniMaxChanceValue(AiSearchContext context, AiChanceEvaluator evaluator, int depth, int step,
+                                                     AiMoveInformation evaluateMove, GamePlayer player, GameState state,
+                                                     long alpha, long beta, boolean usePruning) {
+        AiChanceOutcome[] outcomes = evaluator.generateOutcomes(player, state, context.rules);
+        if (outcomes == null || outcomes.length == 0) {
+            return evaluateExpectiMiniMaxState(context, evaluator, step, evaluateMove, state);
+        }
+        double totalWeight = 0;
+        for (AiChanceOutcome outcome : outcomes) {
+            totalWeight += outcome.getWeight();
+        }
+        if (!usePruning) {
+            double sum = 0;
+            for (AiChanceOutcome outcome : outcomes) {
+                long value = getExpectiMiniMaxChildValue(context, evaluator, depth, step, outcome.getMove(), evaluateMove,
+                                                         player, state, Long.MIN_VALUE, Long.MAX_VALUE, false, false);
+                if (context.isCancelled()) {
+                    return 0;
+                }
+                sum += outcome.getWeight() * (double) value;
+            }
+            return Math.round(sum / totalWeight);
+        }
+        long minValue = evaluator.getMinEvaluationValue();
+        long maxValue = evaluator.getMaxEvaluationValue();
+        double weightedAlpha = alpha * totalWeight;
+        double weightedBeta = beta * totalWeight;
+        // the bounds of the outcomes' values, the weighted sums do not contain the current outcome
+        int numOutcomes = outcomes.length;
+        double[] lowerBounds = new double[numOutcomes];
+        double[] upperBounds = new double[numOutcomes];
+        double sumLower = 0;
+        double sumUpper = 0;
+        for (int i = 0; i < numOutcomes; i++) {
+            lowerBounds[i] = minValue;
+            upperBounds[i] = maxValue;
+            sumLower += outcomes[i].getWeight() * (double) minValue;
+            sumUpper += outcomes[i].getWeight() * (double) maxValue;
+        }
+        // Star2: probe each outcome with the first move to get a bound of its value
+        for (int i = 0; i < numOutcomes; i++) {
+            double weight = outcomes[i].getWeight();
+            sumLower -= weight * lowerBounds[i];
+            sumUpper -= weight * upperBounds[i];
+            long childAlpha = getStarLowerBound(weightedAlpha, sumUpper, weight, minValue);
+            long childBeta = getStarUpperBound(weightedBeta, sumLower, weight, maxValue);
+            state.changeState(player, outcomes[i].getMove(), context.engine);
+            GamePlayer nextPlayer = getNextPlayer(context, player, outcomes[i].getMove(), state);
+            boolean nextIsMax = (nextPlayer != null && nextPlayer.equals(context.rootPlayer));
+            long value = getExpectiMiniMaxValue(context, evaluator, depth, step + 1, evaluateMove, nextPlayer, state,
+                                                childAlpha, childBeta, true, true);
+            state.undoMove(player, outcomes[i].getMove());
+            if (context.isCancelled()) {
+                return 0;
+            }
+            if (nextIsMax && value >= childAlpha) {
+                lowerBounds[i] = Math.max(lowerBounds[i], value);
+            } else if (!nextIsMax && value <= childBeta) {
+                upperBounds[i] = Math.min(upperBounds[i], value);
+            }
+            sumLower += weight * lowerBounds[i];
+            sumUpper += weight * upperBounds[i];
+            if (sumLower > weightedBeta) {
+                return (long) Math.ceil(sumLower / totalWeight);
+            }
+            if (sumUpper < weightedAlpha) {
+                return (long) Math.floor(sumUpper / totalWeight);
+            }
+        }
+        // Star1: search the outcomes with the bounds that can still change the result
+        double sum = 0;
+        for (int i = 0; i < numOutcomes; i++) {
+            double weight = outcomes[i].getWeight();
+            sumLower -= weight * lowerBounds[i];
+            sumUpper -= weight * upperBounds[i];
+            double childAlphaValue = (weightedAlpha - sum - sumUpper) / weight;
+            double childBetaValue = (weightedBeta - sum - sumLower) / weight;
+            long childAlpha = getStarLowerBound(weightedAlpha, sum + sumUpper, weight, minValue);
+            long childBeta = getStarUpperBound(weightedBeta, sum + sumLower, weight, maxValue);
+            long value = getExpectiMiniMaxChildValue(context, evaluator, depth, step, outcomes[i].getMove(), evaluateMove,
+                                                     player, state, childAlpha, childBeta, true, false);
+            if (context.isCancelled()) {
+                return 0;
+            }
+            if (value < childAlphaValue) {
+                return (long) Math.floor((sum + weight * value + sumUpper) / totalWeight);
+            }
+            if (value > childBetaValue) {
+                return (long) Math.ceil((sum + weight * value + sumLower) / totalWeight);
+            }
+            sum += weight * value;
+        }
+        return Math.round(sum / totalWeight);
+    }
+
+    /**
+     * Returns the lower pruning bound for an outcome of a chance step. Below this bound the average of the
+     * chance step is below alpha, even if all other outcomes reach their upper bound.
+     * 
+     * @param weightedAlpha The lower pruning bound of the chance step multiplied by the sum of the weights.
+     * @param otherSum The weighted sum of the values or upper bounds of the other outcomes.
+     * @param weight The weight of the outcome.
+     * @param minValue The lowest evaluation value.
+     * @return The lower pruning bound for the outcome.
+     */
+    private static long getStarLowerBound(double weightedAlpha, double otherSum, double weight, long minValue) {
+        double bound = Math.ceil((weightedAlpha - otherSum) / weight);
+        return (bound <= minValue) ? minValue : (long) bound;
+    }
+
+    /**
+     * Returns the upper pruning bound for an outcome of a chance step. Above this bound the average of the
+     * chance step is above beta, even if all other outcomes reach their lower bound.
+     * 
+     * @param weightedBeta The upper pruning bound of the chance step multiplied by the sum of the weights.
+     * @param otherSum The weighted sum of the values or lower bounds of the other outcomes.
+     * @param weight The weight of the outcome.
+     * @param maxValue The highest evaluation value.
+     * @return The upper pruning bound for the outcome.
+     */
+    private static long getStarUpperBound(double weightedBeta, double otherSum, double weight, long maxValue) {
+        double bound = Math.floor((weightedBeta - otherSum) / weight);
+        return (bound >= maxValue) ? maxValue : (long) bound;
+    }
+
+    /**
+     * Evaluates a state for the expectiminimax algorithm. The value is limited to the bounds of the evaluator.
+     * 
+     * @param context The context of the search.
+     * @param evaluator The evaluator.
+     * @param step The current step.
+     * @param evaluateMove The last move of a player.
+     * @param state The current game state.
+     * @return The evaluation value for the player the search is done for.
+     */
+    private static long evaluateExpectiMiniMaxState(AiSearchContext context, AiChanceEvaluator evaluator, int step,
+                                                    AiMoveInformation evaluateMove, GameState state) {
+        context.countEvaluations++;
+        long value = evaluator.evaluateState(step, context.rootPlayer, evaluateMove, state, context.rules);
+        return Math.max(evaluator.getMinEvaluationValue(), Math.min(evaluator.getMaxEvaluationValue(), value));
+    }
+
     /**
      * Gets the best move with the Minimax algorithm.
      * 
+     * @param context The context of the search.
      * @param depth The search depth.
      * @param step The current step.
      * @param evaluateMove The move to evaluate.
      * @param player The player who is in turn.
      * @param state The current game state.
-     * @param evaluator The class for evaluating the moves.
      * @param isMax {@code true} if the move with the highest value or {@code false} if the move with the
      *            lowest value should be returned.
-     * @param analyzer The class to analyze the algorithm. If {@code null} no analysis information will be
-     *            generated.
      * @param analysisParentNode The parent node for the analysis.
      * @return The best move.
      */
-    private static AiMoveInformation getMiniMaxMove(int depth, int step, AiMoveInformation evaluateMove,
-                                                    GamePlayer player, GameState state, AiMoveEvaluator evaluator,
-                                                    boolean isMax, AiAnalyzer analyzer, Element analysisParentNode) {
-        if (!engine.isActiveGame() || !engine.isActiveRound()) {
+    private static AiMoveInformation getMiniMaxMove(AiSearchContext context, int depth, int step, AiMoveInformation evaluateMove,
+                                                    GamePlayer player, GameState state,
+                                                    boolean isMax, Element analysisParentNode) {
+        if (context.isCancelled()) {
             return null;
         }
-        boolean gameFinished = rules.isGameFinished(state);
+        boolean gameFinished = context.rules.isGameFinished(state);
         if (depth == 0 || gameFinished) {
             if (evaluateMove == null) {
                 return null;
             } else {
-                long value = evaluator.evaluateState(step, player, evaluateMove, state, rules);
-                if (!player.equals(engine.getCurrentPlayer())) {
+                long value = context.evaluator.evaluateState(step, player, evaluateMove, state, context.rules);
+                if (!player.equals(context.rootPlayer)) {
                     value = value * -1;
                 }                
                 evaluateMove.setEvaluationValue(value);
-                countEvaluations++;
-                appendEvaluationAnalysis(analyzer, analysisParentNode, step, player, evaluateMove, state, value);
+                context.countEvaluations++;
+                appendEvaluationAnalysis(context.analyzer, analysisParentNode, step, player, evaluateMove, state, value);
                 return evaluateMove;
             }
         } else {
-            currentDepth = depth;
-            currentStep = step + 1;
-            Element stepNode = appendStepAnalysis(analyzer, analysisParentNode, currentDepth, currentStep, isMax, player, state, null, null);
+            context.currentDepth = depth;
+            context.currentStep = step + 1;
+            Element stepNode = appendStepAnalysis(context.analyzer, analysisParentNode, context.currentDepth, context.currentStep, isMax, player, state, null, null);
             int numPossible = 0;
             ArrayList<AiMoveInformation> bestMoves = new ArrayList<>();
             AiMoveInformation bestValue = null;
-            AiMoveInformation[] possibleMoves = evaluator.generateMoves(player, state, rules);
-            for (AiMoveInformation nextMove : possibleMoves) {
-                if (rules.isValidMove(nextMove, state)) {
-                    Element moveNode = appendValidMoveAnalysis(analyzer, stepNode, nextMove, player, state);
+            AiMoveBuffer possibleMoves = context.generateMoves(player, state, step);
+            for (int i = 0; i < possibleMoves.size(); i++) {
+                AiMoveInformation nextMove = possibleMoves.get(i);
+                if (context.rules.isValidMove(nextMove, state)) {
+                    Element moveNode = appendValidMoveAnalysis(context.analyzer, stepNode, nextMove, player, state);
                     numPossible++;
-                    state.changeState(player, nextMove, engine);
-                    setMoveAnalysisChangedState(analyzer, moveNode, state);
-                    GamePlayer nextPlayer = getNextPlayer(player, nextMove, state);
-                    //FIXME boolean helpIsMax = (nextPlayer == null) ? !isMax : nextPlayer.equals(engine.getCurrentPlayer());
-                    boolean helpIsMax = (nextPlayer == null || depth == 1) ? isMax : nextPlayer.equals(engine.getCurrentPlayer());
+                    state.changeState(player, nextMove, context.engine);
+                    setMoveAnalysisChangedState(context.analyzer, moveNode, state);
+                    GamePlayer nextPlayer = getNextPlayer(context, player, nextMove, state);
+                    //FIXME boolean helpIsMax = (nextPlayer == null) ? !isMax : nextPlayer.equals(context.rootPlayer);
+                    boolean helpIsMax = (nextPlayer == null || depth == 1) ? isMax : nextPlayer.equals(context.rootPlayer);
                     if (nextPlayer == null || depth == 1) {
                     	// if the evaluation is done, do not take the next player FIXME
                     	nextPlayer = player;
                     }
-                    AiMoveInformation move = getMiniMaxMove(depth - 1, step + 1, nextMove, nextPlayer, state, evaluator, helpIsMax, analyzer, moveNode);
+                    AiMoveInformation move = getMiniMaxMove(context, depth - 1, step + 1, nextMove, nextPlayer, state, helpIsMax, moveNode);
                     state.undoMove(player, nextMove);
                     if (move != null) {
                         long evaluationValue = move.getEvaluationValue();
                         nextMove.setEvaluationValue(evaluationValue);
-                        setMoveAnalysisEvaluationValue(analyzer, moveNode, evaluationValue);
+                        setMoveAnalysisEvaluationValue(context.analyzer, moveNode, evaluationValue);
                         long bestEvaluationValue = getEvaluationValue(bestValue);
                         if (bestValue == null) {
                             bestValue = nextMove;
@@ -234,16 +997,16 @@ public final class AiAlgorithms {
                         }
                     }
                 } else {
-                    appendInvalidMoveAnalysis(analyzer, stepNode, nextMove);
+                    appendInvalidMoveAnalysis(context.analyzer, stepNode, nextMove);
                 }
             }
             if (numPossible == 0) {
                 // ignore isMax if depth = 0
-                return getMiniMaxMove(0, step, evaluateMove, player, state, evaluator, false, analyzer, stepNode);
+                return getMiniMaxMove(context, 0, step, evaluateMove, player, state, false, stepNode);
             }
-            setStepAnalysisEvaluationValue(analyzer, stepNode, getEvaluationValue(bestValue));
+            setStepAnalysisEvaluationValue(context.analyzer, stepNode, getEvaluationValue(bestValue));
             AiMoveInformation bestMove = (bestMoves.isEmpty()) ? null : bestMoves.get(DiceUtil.throwDice(0, bestMoves.size() - 1));
-            markStepAnalysisBestMoves(analyzer, stepNode, bestMoves, bestMove);
+            markStepAnalysisBestMoves(context.analyzer, stepNode, bestMoves, bestMove);
             return bestMove;
         }
     }
@@ -251,6 +1014,7 @@ public final class AiAlgorithms {
     /**
      * Gets the best move with the Minimax algorithm optimized with the Alpha-Beta-Pruning method.
      * 
+     * @param context The context of the search.
      * @param depth The search depth.
      * @param step The current step.
      * @param evaluateMove The move to evaluate.
@@ -259,105 +1023,171 @@ public final class AiAlgorithms {
      * @param player The who is in turn.
      * @param prevPlayer the previous player who did the move to evaluate
      * @param state The current game state.
-     * @param evaluator The class for evaluating the moves.
      * @param isMax {@code true} if the move with the highest value or {@code false} if the move with the
      *            lowest value should be returned.
-     * @param analyzer The class to analyze the algorithm. If {@code null} no analysis information will be
-     *            generated.
      * @param analysisParentNode The parent node for the analysis.
      * @return The best move.
      */
-    private static AiMoveInformation getMiniMaxMoveAlphaBetaPruning(int depth, int step, AiMoveInformation evaluateMove, AiMoveInformation alpha, AiMoveInformation beta,
-                                                                    GamePlayer player, GamePlayer prevPlayer, GameState state, AiMoveEvaluator evaluator,
-                                                                    boolean isMax, AiAnalyzer analyzer, Element analysisParentNode) {
-        if (!engine.isActiveGame() || !engine.isActiveRound()) {
+    private static AiMoveInformation getMiniMaxMoveAlphaBetaPruning(AiSearchContext context, int depth, int step, AiMoveInformation evaluateMove,
+                                                                    AiMoveInformation alpha, AiMoveInformation beta,
+                                                                    GamePlayer player, GamePlayer prevPlayer, GameState state,
+                                                                    boolean isMax, Element analysisParentNode) {
+        if (context.isCancelled()) {
             return null;
         }
-        if (depth == 0 || rules.isGameFinished(state)) {
+        if (depth == 0 || context.rules.isGameFinished(state)) {
             if (evaluateMove == null || prevPlayer == null) {
                 return null;
             } else {
-                long value = evaluator.evaluateState(step, player, evaluateMove, state, rules);
-                if (!player.equals(engine.getCurrentPlayer())) {
+                long value = context.evaluator.evaluateState(step, player, evaluateMove, state, context.rules);
+                if (!player.equals(context.rootPlayer)) {
                     value = value * -1;
                 }                
                 evaluateMove.setEvaluationValue(value);
-                countEvaluations++;
-                appendEvaluationAnalysis(analyzer, analysisParentNode, step, player, evaluateMove, state, value);
+                context.countEvaluations++;
+                appendEvaluationAnalysis(context.analyzer, analysisParentNode, step, player, evaluateMove, state, value);
                 return evaluateMove;
             }
         } else {
-            currentDepth = depth;
-            currentStep = step + 1;
-            Element stepNode = appendStepAnalysis(analyzer, analysisParentNode, currentDepth, currentStep,
-                                                  isMax, player, state, alpha.getEvaluationValue(), beta.getEvaluationValue());
+            context.currentDepth = depth;
+            context.currentStep = step + 1;
+            long transpositionKey = 0;
+            AiMoveInformation transpositionMove = null;
+            if (context.transpositionTable != null) {
+                AiTranspositionTable table = context.transpositionTable;
+                transpositionKey = getTranspositionKey(state, context.getPlayerHash(player), context.getPlayerHash(context.rootPlayer), isMax);
+                synchronized (table) {
+                    int entry = table.probe(transpositionKey);
+                    if (entry >= 0) {
+                        if (evaluateMove != null && table.getDepth(entry) >= depth
+                                && isTranspositionCutoff(table, entry, alpha.getEvaluationValue(), beta.getEvaluationValue())) {
+                            evaluateMove.setEvaluationValue(table.getValue(entry));
+                            return evaluateMove;
+                        }
+                        transpositionMove = table.getBestMove(entry);
+                    }
+                }
+            }
+            // only create the analysis node if needed, to avoid boxing the pruning bounds
+            Element stepNode = (context.analyzer == null) ? null
+                    : appendStepAnalysis(context.analyzer, analysisParentNode, context.currentDepth, context.currentStep,
+                                         isMax, player, state, alpha.getEvaluationValue(), beta.getEvaluationValue());
             int numPossible = 0;
-            ArrayList<AiMoveInformation> bestMoves = new ArrayList<>();
+            int numEvaluated = 0;
+            // the list of the best moves is only needed for the analysis, otherwise the best moves are just counted
+            ArrayList<AiMoveInformation> bestMoves = (context.analyzer == null) ? null : new ArrayList<>();
+            int numBestMoves = 0;
+            AiMoveInformation bestMove = null;
             AiMoveInformation bestValue = null;
             if (isMax) {
                 bestValue = alpha;
             } else {
                 bestValue = beta;
             }
-            AiMoveInformation[] possibleMoves = evaluator.generateMoves(player, state, rules);
-            for (AiMoveInformation nextMove : possibleMoves) {
-                if (rules.isValidMove(nextMove, state)) {
-                    Element moveNode = appendValidMoveAnalysis(analyzer, stepNode, nextMove, player, state);
+            AiMoveBuffer possibleMoves = context.generateMoves(player, state, step);
+            context.orderMoves(possibleMoves, step, isMax, player, state);
+            if (transpositionMove != null) {
+                possibleMoves.moveToFront(context.evaluator, transpositionMove);
+            }
+            AiMoveInformation principalMove = context.getPrincipalVariationMove(step);
+            if (principalMove != null) {
+                possibleMoves.moveToFront(context.evaluator, principalMove);
+            }
+            for (int i = 0; i < possibleMoves.size(); i++) {
+                AiMoveInformation nextMove = possibleMoves.get(i);
+                if (context.rules.isValidMove(nextMove, state)) {
+                    Element moveNode = appendValidMoveAnalysis(context.analyzer, stepNode, nextMove, player, state);
                     numPossible++;
-                    state.changeState(player, nextMove, engine);
-                    setMoveAnalysisChangedState(analyzer, moveNode, state);
+                    state.changeState(player, nextMove, context.engine);
+                    setMoveAnalysisChangedState(context.analyzer, moveNode, state);
+                    context.followPrincipalVariation = (principalMove != null && context.evaluator.isSameMove(principalMove, nextMove));
+                    context.clearPrincipalVariation(step + 1);
+                    if (step == 1 && context.sharedAlpha != null) {
+                        // the searches of the other root moves may have raised the lower bound in the meantime
+                        long sharedValue = context.sharedAlpha.get();
+                        if (sharedValue > alpha.getEvaluationValue()) {
+                            alpha = new StartingAlphaMove();
+                            alpha.setEvaluationValue(sharedValue);
+                            if (isMax && getEvaluationValue(bestValue) < sharedValue) {
+                                bestValue = alpha;
+                            }
+                        }
+                    }
                     AiMoveInformation helpAlpha = (isMax) ? bestValue : alpha;
                     AiMoveInformation helpBeta = (isMax) ? beta : bestValue;
-                    GamePlayer nextPlayer = getNextPlayer(player, nextMove, state);
+                    GamePlayer nextPlayer = getNextPlayer(context, player, nextMove, state);
                     GamePlayer currentPlayer = player;
-                    //FIXME boolean helpIsMax = (nextPlayer == null) ? !isMax : nextPlayer.equals(engine.getCurrentPlayer());
-                    boolean helpIsMax = (nextPlayer == null || depth == 1) ? isMax : nextPlayer.equals(engine.getCurrentPlayer());
+                    //FIXME boolean helpIsMax = (nextPlayer == null) ? !isMax : nextPlayer.equals(context.rootPlayer);
+                    boolean helpIsMax = (nextPlayer == null || depth == 1) ? isMax : nextPlayer.equals(context.rootPlayer);
                     if (nextPlayer == null || depth == 1) {
                     	// if the evaluation is done, do not take the next player FIXME
                     	nextPlayer = player;
                     	currentPlayer = prevPlayer;
                     }                    
-                    AiMoveInformation move = getMiniMaxMoveAlphaBetaPruning(depth - 1, step + 1, nextMove,
+                    AiMoveInformation move = getMiniMaxMoveAlphaBetaPruning(context, depth - 1, step + 1, nextMove,
                                                                             helpAlpha, helpBeta, nextPlayer, currentPlayer,
-                                                                            state, evaluator, helpIsMax, analyzer, moveNode);
+                                                                            state, helpIsMax, moveNode);
                     state.undoMove(player, nextMove);
                     if (move != null) {
+                        numEvaluated++;
                         long evaluationValue = move.getEvaluationValue();
                         nextMove.setEvaluationValue(evaluationValue);
-                        setMoveAnalysisEvaluationValue(analyzer, moveNode, evaluationValue);
+                        setMoveAnalysisEvaluationValue(context.analyzer, moveNode, evaluationValue);
                         long bestEvaluationValue = getEvaluationValue(bestValue);
+                        boolean newBestMove = false;
                         if (isMax) {
                             if (evaluationValue > bestEvaluationValue) {
                                 if (evaluationValue > beta.getEvaluationValue()) {
-                                    setStepAnalysisEvaluationValue(analyzer, stepNode, evaluationValue);
-                                    setMoveAnalysisPruningInformation(analyzer, moveNode, null, beta.getEvaluationValue());
+                                    setStepAnalysisEvaluationValue(context.analyzer, stepNode, evaluationValue);
+                                    setMoveAnalysisPruningInformation(context.analyzer, moveNode, null, beta.getEvaluationValue());
+                                    context.storeTransposition(transpositionKey, depth, AiTranspositionTable.FLAG_LOWER_BOUND, evaluationValue, nextMove);
+                                    context.storeCutoff(step, depth, isMax, nextMove);
                                     return nextMove;
                                 } else {
                                     bestValue = nextMove;
-                                    bestMoves.clear();
-                                    bestMoves.add(nextMove);
+                                    newBestMove = true;
                                 }
-                            } else if (evaluationValue == bestEvaluationValue) {
-                                bestMoves.add(nextMove);
                             }
                         } else {
                             if (evaluationValue < bestEvaluationValue) {
                                 if (evaluationValue < alpha.getEvaluationValue()) {
-                                    setStepAnalysisEvaluationValue(analyzer, stepNode, evaluationValue);
-                                    setMoveAnalysisPruningInformation(analyzer, moveNode, alpha.getEvaluationValue(), null);
+                                    setStepAnalysisEvaluationValue(context.analyzer, stepNode, evaluationValue);
+                                    setMoveAnalysisPruningInformation(context.analyzer, moveNode, alpha.getEvaluationValue(), null);
+                                    context.storeTransposition(transpositionKey, depth, AiTranspositionTable.FLAG_UPPER_BOUND, evaluationValue, nextMove);
+                                    context.storeCutoff(step, depth, isMax, nextMove);
                                     return nextMove;
                                 } else {
                                     bestValue = nextMove;
-                                    bestMoves.clear();
-                                    bestMoves.add(nextMove);
+                                    newBestMove = true;
                                 }
-                            } else if (evaluationValue == bestEvaluationValue) {
+                            }
+                        }
+                        if (newBestMove) {
+                            numBestMoves = 1;
+                            bestMove = nextMove;
+                            if (bestMoves != null) {
+                                bestMoves.clear();
+                                bestMoves.add(nextMove);
+                            }
+                            context.updatePrincipalVariation(step, nextMove);
+                        } else if (evaluationValue == bestEvaluationValue) {
+                            // choose one of the equal moves randomly, each with the same probability
+                            numBestMoves++;
+                            if (numBestMoves == 1) {
+                                bestMove = nextMove;
+                                context.updatePrincipalVariation(step, nextMove);
+                            } else if (DiceUtil.throwDice(1, numBestMoves) == 1) {
+                                bestMove = nextMove;
+                            }
+                            if (bestMoves != null) {
                                 bestMoves.add(nextMove);
                             }
                         }
+                    } else if (context.isCancelled()) {
+                        break;
                     }
                 } else {
-                    appendInvalidMoveAnalysis(analyzer, stepNode, nextMove);
+                    appendInvalidMoveAnalysis(context.analyzer, stepNode, nextMove);
                 }
             }
             if (numPossible == 0) {
@@ -367,18 +1197,113 @@ public final class AiAlgorithms {
                 return getMiniMaxMoveAlphaBetaPruning(0, step, evaluateMove, alpha, beta, null, player,
                                                       state, evaluator, false, analyzer, stepNode);
                                                       */
-                return getMiniMaxMoveAlphaBetaPruning(0, step, evaluateMove, alpha, beta, player, prevPlayer,
-                        							  state, evaluator, false, analyzer, stepNode);
-            }
-            AiMoveInformation bestMove = (bestMoves.isEmpty()) ? ((isMax)
-                                                               ? new StartingAlphaMove() : new StartingBetaMove())
-                                                               : bestMoves.get(DiceUtil.throwDice(0, bestMoves.size() - 1));
-            setStepAnalysisEvaluationValue(analyzer, stepNode, getEvaluationValue(bestMove));
-            markStepAnalysisBestMoves(analyzer, stepNode, bestMoves, bestMove);
+                return getMiniMaxMoveAlphaBetaPruning(context, 0, step, evaluateMove, alpha, beta, player, prevPlayer,
+                        							  state, false, stepNode);
+            }
+            if (numEvaluated == numPossible) {
+                storeTransposition(context, transpositionKey, depth, isMax, bestMove,
+                                   alpha.getEvaluationValue(), beta.getEvaluationValue());
+            }
+            if (bestMove == null) {
+                bestMove = (isMax) ? NO_MOVE_ABOVE_ALPHA : NO_MOVE_BELOW_BETA;
+            }
+            setStepAnalysisEvaluationValue(context.analyzer, stepNode, getEvaluationValue(bestMove));
+            markStepAnalysisBestMoves(context.analyzer, stepNode, bestMoves, bestMove);
             return bestMove;
         }
     }
 
+    /**
+     * Returns the key of the given state for the transposition table.
+     * The key considers the hash value of the state, the player in turn, the player the search is done for and the kind
+     * of the step. The values are stored from the view of the player the search is done for, so with more than two players
+     * the searches of different players, e.g. the search of the opponent while pondering, must not share their keys.
+     * 
+     * @param state The current game state, has to be a {@link HashableGameState}.
+     * @param playerHash The hash code of the player who is in turn, see {@link AiSearchContext#getPlayerHash(GamePlayer)}.
+     * @param rootPlayerHash The hash code of the player the search is done for.
+     * @param isMax Flag if the step is a maximum step or not.
+     * @return The key for the transposition table.
+     */
+    private static long getTranspositionKey(GameState state, int playerHash, int rootPlayerHash, boolean isMax) {
+        long key = ((HashableGameState) state).getStateHash() ^ (playerHash * 0x9E3779B97F4A7C15L) ^ (rootPlayerHash * 0xC2B2AE3D27D4EB4FL);
+        return (isMax) ? ~key : key;
+    }
+
+    /**
+     * Returns the best move that is stored in the transposition table for the given position.
+     * 
+     * @param table The transposition table.
+     * @param state The game state, has to be a {@link HashableGameState}.
+     * @param rootPlayer The player the search that stored the position was done for.
+     * @param player The player who is in turn.
+     * @param isMax Flag if the step of the position was a maximum step or not.
+     * @return The stored best move or {@code null} if the position is not stored or has no best move.
+     */
+    static AiMoveInformation getTranspositionMove(AiTranspositionTable table, GameState state, GamePlayer rootPlayer, GamePlayer player,
+                                                  boolean isMax) {
+        long key = getTranspositionKey(state, player.hashCode(), rootPlayer.hashCode(), isMax);
+        // a parallel search may replace the entry between the probe and the getter
+        synchronized (table) {
+            int entry = table.probe(key);
+            return (entry < 0) ? null : table.getBestMove(entry);
+        }
+    }
+
+    /**
+     * Checks if the stored value of the transposition table entry can be taken instead of searching the position.
+     * 
+     * @param table The transposition table.
+     * @param entry The index of the transposition table entry.
+     * @param alphaValue The lower pruning bound.
+     * @param betaValue The upper pruning bound.
+     * @return {@code true} if the stored value can be taken.
+     */
+    private static boolean isTranspositionCutoff(AiTranspositionTable table, int entry, long alphaValue, long betaValue) {
+        long value = table.getValue(entry);
+        switch (table.getFlag(entry)) {
+            case AiTranspositionTable.FLAG_EXACT:
+                return true;
+            case AiTranspositionTable.FLAG_LOWER_BOUND:
+                return value > betaValue;
+            case AiTranspositionTable.FLAG_UPPER_BOUND:
+                return value < alphaValue;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Stores the result of a completely searched step in the transposition table.
+     * 
+     * @param context The context of the search.
+     * @param key The key of the position.
+     * @param depth The search depth of the step.
+     * @param isMax Flag if the step is a maximum step or not.
+     * @param bestMove The best move of the step or {@code null} if no move reached the pruning bounds.
+     * @param alphaValue The lower pruning bound of the step.
+     * @param betaValue The upper pruning bound of the step.
+     */
+    private static void storeTransposition(AiSearchContext context, long key, int depth, boolean isMax, AiMoveInformation bestMove,
+                                           long alphaValue, long betaValue) {
+        if (bestMove == null) {
+            if (isMax) {
+                context.storeTransposition(key, depth, AiTranspositionTable.FLAG_UPPER_BOUND, alphaValue, null);
+            } else {
+                context.storeTransposition(key, depth, AiTranspositionTable.FLAG_LOWER_BOUND, betaValue, null);
+            }
+        } else {
+            long value = bestMove.getEvaluationValue();
+            if (value <= alphaValue) {
+                context.storeTransposition(key, depth, AiTranspositionTable.FLAG_UPPER_BOUND, value, null);
+            } else if (value >= betaValue) {
+                context.storeTransposition(key, depth, AiTranspositionTable.FLAG_LOWER_BOUND, value, bestMove);
+            } else {
+                context.storeTransposition(key, depth, AiTranspositionTable.FLAG_EXACT, value, bestMove);
+            }
+        }
+    }
+
     /**
      * Returns the evaluation value of the specified move.<br>
      * If the specified move is {@code null}, {@code Long.MIN_VALUE} will be returned.
@@ -562,6 +1487,19 @@ public final class AiAlgorithms {
         }
     }
 
+    /**
+     * Sets the summary values of the transposition table.
+     * 
+     * @param analyzer The analyzer.
+     * @param rootNode The root node where to set the values.
+     * @param table The used transposition table, can be {@code null}.
+     */
+    private static void setAnalysisTranspositionSummary(AiAnalyzer analyzer, Element rootNode, AiTranspositionTable table) {
+        if (analyzer != null && table != null) {
+            analyzer.setAnalysisTranspositionAttributes(rootNode, table.getCountHits(), table.getCountMisses(), table.getCountStores());
+        }
+    }
+
     /**
      * Class to initialize the alpha move.
      * 
@@ -220,6 +220,33 @@ public class AiAnalyzer {
     return "bestMove";
   }
 
+  /**
+   * Returns the name for the transposition table hits attribute.
+   * 
+   * @return The name for the transposition table hits attribute.
+   */
+  protected String getTranspositionHitsAttributeName() {
+    return "transpositionHits";
+  }
+
+  /**
+   * Returns the name for the transposition table misses attribute.
+   * 
+   * @return The name for the transposition table misses attribute.
+   */
+  protected String getTranspositionMissesAttributeName() {
+    return "transpositionMisses";
+  }
+
+  /**
+   * Returns the name for the transposition table stores attribute.
+   * 
+   * @return The name for the transposition table stores attribute.
+   */
+  protected String getTranspositionStoresAttributeName() {
+    return "transpositionStores";
+  }
+
   /**
    * Returns the name for the move short information attribute.
    * 
@@ -822,4 +849,24 @@ protected String formatTimestamp(Date timestamp) {
     rootNode.setAttribute(getMoveShortInfoAttributeName(), getMoveShortInformation(bestMove));
     rootNode.setAttribute(getMoveIdAttributeName(), getMoveIdInformation(bestMove));
   }
+
+  /**
+   * Sets the attributes of the transposition table summary to the given root node.<br>
+   * The name for the attributes are retrieved by the following methods:
+   * <ul>
+   * <li>{@code countHits}: {@link AiAnalyzer#getTranspositionHitsAttributeName()}</li>
+   * <li>{@code countMisses}: {@link AiAnalyzer#getTranspositionMissesAttributeName()}</li>
+   * <li>{@code countStores}: {@link AiAnalyzer#getTranspositionStoresAttributeName()}</li>
+   * </ul>
+   * 
+   * @param rootNode The root node of the analysis.
+   * @param countHits The number of positions found in the transposition table.
+   * @param countMisses The number of positions not found in the transposition table.
+   * @param countStores The number of positions stored in the transposition table.
+   */
+  public void setAnalysisTranspositionAttributes(Element rootNode, long countHits, long countMisses, long countStores) {
+    rootNode.setAttribute(getTranspositionHitsAttributeName(), String.valueOf(countHits));
+    rootNode.setAttribute(getTranspositionMissesAttributeName(), String.valueOf(countMisses));
+    rootNode.setAttribute(getTranspositionStoresAttributeName(), String.valueOf(countStores));
+  }
 }
@@ -0,0 +1,41 @@
+package com.tjger.lib;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+
+/**
+ * Interface for evaluating moves that generates the moves into a buffer supplied by the algorithm instead of
+ * returning a new array for every position. Together with {@link AiMoveBuffer#getReusable()} the move objects
+ * can be reused, so the search does not create garbage for every position.<p>
+ * Because a reused move object is changed later, the algorithms copy the moves they keep with
+ * {@link AiMoveInformation#cloneMove()}, so the clone method has to copy the whole move.
+ *
+ * @see AiAlgorithms
+ * @see AiMoveBuffer
+ * @author Joe
+ */
+public interface AiBufferedMoveEvaluator extends AiMoveEvaluator {
+
+    /**
+     * Generates the moves that can be done depending on the given game information into the given buffer.
+     *
+     * @param player The player that shall do the moves.
+     * @param state A clone of the game state.
+     * @param rules The game rules.
+     * @param buffer The empty buffer to add the moves to.
+     */
+    public void generateMoves(GamePlayer player, GameState state, GameRules rules, AiMoveBuffer buffer);
+
+    /**
+     * Generates the moves into a new buffer and returns them as array. Is used by the algorithms that keep
+     * the generated moves, e.g. the Monte Carlo tree search.
+     */
+    @Override
+    public default AiMoveInformation[] generateMoves(GamePlayer player, GameState state, GameRules rules) {
+        AiMoveBuffer buffer = new AiMoveBuffer();
+        generateMoves(player, state, rules, buffer);
+        return buffer.toArray();
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.tjger.lib;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A token to cancel the searches of the artificial intelligence algorithms.<p>
+ * While an action is executed with {@link #execute(Callable)}, every search started by this action checks the
+ * token and stops as soon as possible after the token was cancelled. So a search can be cancelled by another
+ * thread without waiting for it. A {@link TimeAction} executes its action with its own token, which is
+ * cancelled if the game engine stops the game.
+ *
+ * @see AiSearchTask
+ * @author Joe
+ */
+public final class AiCancellationToken {
+
+    private static final ThreadLocal<AiCancellationToken> currentToken = new ThreadLocal<>();
+
+    final private AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * Constructs a new token that is not cancelled.
+     */
+    public AiCancellationToken() {
+        super();
+    }
+
+    /**
+     * @return The token of the action that is executed by the calling thread or {@code null} if there is none.
+     */
+    public static AiCancellationToken current() {
+        return currentToken.get();
+    }
+
+    /**
+     * Cancels the token and so all searches that use it.
+     */
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * @return {@code true} if the token was cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Executes the given action in the calling thread, the searches of the action use this token.
+     *
+     * @param action The action to execute.
+     * @return The result of the action.
+     * @throws Exception if the action throws an exception.
+     */
+    public <V> V execute(Callable<V> action) throws Exception {
+        AiCancellationToken previousToken = currentToken.get();
+        currentToken.set(this);
+        try {
+            return action.call();
+        } finally {
+            if (previousToken == null) {
+                currentToken.remove();
+            } else {
+                currentToken.set(previousToken);
+            }
+        }
+    }
+
+    /**
+     * Executes the given action in the calling thread, the searches of the action use this token.
+     *
+     * @param action The action to execute.
+     */
+    public void execute(Runnable action) {
+        AiCancellationToken previousToken = currentToken.get();
+        currentToken.set(this);
+        try {
+            action.run();
+        } finally {
+            if (previousToken == null) {
+                currentToken.remove();
+            } else {
+                currentToken.set(previousToken);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.tjger.lib;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+
+/**
+ * Interface for evaluating moves of games with chance, e.g. dice games. Besides the moves of the players
+ * the evaluator declares the steps where chance decides (e.g. a dice throw) together with the weighted
+ * outcomes of this step.<p>
+ * The expectiminimax algorithm takes the weighted average of the outcomes as value of such a step. To prune
+ * steps the algorithm needs to know the lowest and highest evaluation value that {@link #evaluateState} can return.
+ *
+ * @see AiAlgorithms#getExpectiMiniMaxMove(int, AiChanceEvaluator, boolean)
+ * @see AiChanceOutcome
+ * @author Joe
+ */
+public interface AiChanceEvaluator extends AiMoveEvaluator {
+
+    /**
+     * Checks if chance decides the next step of the given player, e.g. if the player has to throw the dice.
+     *
+     * @param player The player who is in turn.
+     * @param state A clone of the game state.
+     * @param rules The game rules.
+     * @return {@code true} if the step is a chance step.
+     */
+    public boolean isChanceStep(GamePlayer player, GameState state, GameRules rules);
+
+    /**
+     * Generates the possible outcomes of a chance step. The move of an outcome is done by the given player.
+     *
+     * @param player The player who is in turn.
+     * @param state A clone of the game state.
+     * @param rules The game rules.
+     * @return An array with the weighted outcomes.
+     * @see AiChanceOutcome#createOutcomes(com.tjger.game.MoveInformation[], int[])
+     */
+    public AiChanceOutcome[] generateOutcomes(GamePlayer player, GameState state, GameRules rules);
+
+    /**
+     * @return The lowest value {@link #evaluateState} can return.
+     */
+    public long getMinEvaluationValue();
+
+    /**
+     * @return The highest value {@link #evaluateState} can return.
+     */
+    public long getMaxEvaluationValue();
+
+}
@@ -0,0 +1,96 @@
+package com.tjger.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tjger.game.MoveInformation;
+
+/**
+ * An outcome of a chance step, e.g. the value of a dice throw, together with its weight. The probability
+ * of the outcome is its weight divided by the sum of the weights of all outcomes of the step.
+ *
+ * @see AiChanceEvaluator
+ * @author Joe
+ */
+public final class AiChanceOutcome {
+
+    final private MoveInformation move;
+    final private int weight;
+
+    /**
+     * Constructs a new outcome.
+     *
+     * @param move The move that is done for this outcome, e.g. a {@link DiceMove}.
+     * @param weight The weight of this outcome.
+     * @throws IllegalArgumentException if the weight is lower than 1.
+     */
+    public AiChanceOutcome(MoveInformation move, int weight) throws IllegalArgumentException {
+        super();
+        if (weight < 1) {
+            throw new IllegalArgumentException("The weight of an outcome must be at least 1!");
+        }
+        this.move = move;
+        this.weight = weight;
+    }
+
+    /**
+     * @return The move that is done for this outcome.
+     */
+    public MoveInformation getMove() {
+        return move;
+    }
+
+    /**
+     * @return The weight of this outcome.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Creates the outcomes for the given moves and weights. Moves with a weight of 0 are skipped, so the
+     * result of {@link DiceUtil#countValues(int, int, int[])} can be used as weights.
+     *
+     * @param moves The moves of the outcomes.
+     * @param weights The weights of the moves, must have the same length as the moves.
+     * @return An array with the outcomes.
+     * @throws IllegalArgumentException if the arrays have different lengths or a weight is below 0.
+     */
+    public static AiChanceOutcome[] createOutcomes(MoveInformation[] moves, int[] weights) throws IllegalArgumentException {
+        if (moves.length != weights.length) {
+            throw new IllegalArgumentException("The number of moves and weights must be equal!");
+        }
+        List<AiChanceOutcome> outcomes = new ArrayList<>();
+        for (int i = 0; i < moves.length; i++) {
+            if (weights[i] != 0) {
+                outcomes.add(new AiChanceOutcome(moves[i], weights[i]));
+            }
+        }
+        return outcomes.toArray(new AiChanceOutcome[0]);
+    }
+
+    /**
+     * Creates the outcomes for a throw of a dice with the given value range, each value has the same weight.
+     *
+     * @param min The minimum value.
+     * @param max The maximum value.
+     * @return An array with a {@link DiceMove} outcome for each value.
+     */
+    public static AiChanceOutcome[] createDiceOutcomes(int min, int max) {
+        if (min > max) {
+            int h = min;
+            min = max;
+            max = h;
+        }
+        AiChanceOutcome[] outcomes = new AiChanceOutcome[max - min + 1];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new AiChanceOutcome(new DiceMove(min + i), 1);
+        }
+        return outcomes;
+    }
+
+    @Override
+    public String toString() {
+        return move + " (" + weight + ")";
+    }
+}
@@ -0,0 +1,607 @@
+package com.tjger.lib;
+
+import java.util.Random;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameState;
+import com.tjger.game.HashableGameState;
+import com.tjger.game.MoveInformation;
+
+/**
+ * Monte Carlo tree search with the UCT selection (see <a
+ * href="https://en.wikipedia.org/wiki/Monte_Carlo_tree_search">Wikipedia</a>).<p>
+ * Every iteration selects a node of the search tree with the UCT formula, expands it by one not yet tried
+ * move, plays the game till the end or the maximum number of playout steps with the {@link AiPlayoutPolicy}
+ * and updates the statistics of the visited nodes with the result. The moves are generated by the
+ * {@link AiMoveEvaluator}, checked by the game rules and done and undone on a clone of the game state, so
+ * the same methods as for the Minimax algorithm are needed.<p>
+ * The search tree is kept between the searches. If the game state implements {@link HashableGameState}
+ * the node of the current position is searched below the last root, otherwise the moves of the other players
+ * done since the last search have to be passed to {@link #advanceTree(MoveInformation)}; without these calls
+ * the position cannot be checked and the tree is not reused. If the position is not found a new tree is built.<p>
+ * An instance must not be used by several threads at the same time.
+ *
+ * @see AiAlgorithms
+ * @author Joe
+ */
+public class AiMonteCarloTreeSearch {
+
+    /**
+     * The default number of iterations if neither the number of iterations nor a time budget is set.
+     */
+    final public static int DEFAULT_ITERATIONS = 10000;
+    /**
+     * The default exploration constant of the UCT formula.
+     */
+    final public static double DEFAULT_EXPLORATION = Math.sqrt(2.0);
+    /**
+     * The default maximum number of moves of a playout.
+     */
+    final public static int DEFAULT_MAX_PLAYOUT_STEPS = 200;
+    /**
+     * The default number of moves that are searched below the last root to reuse the tree.
+     */
+    final public static int DEFAULT_MAX_REUSE_STEPS = 4;
+
+    final private AiMoveEvaluator evaluator;
+    final private AiPlayoutPolicy policy;
+    final private Random random;
+    private double exploration = DEFAULT_EXPLORATION;
+    private int maxPlayoutSteps = DEFAULT_MAX_PLAYOUT_STEPS;
+    private int maxReuseSteps = DEFAULT_MAX_REUSE_STEPS;
+    private boolean reuseTree = true;
+
+    private Node root;
+    private boolean rootAdvanced; // true if the root was reached by advanceTree since the last search
+    private int countIterations;
+    private long countPlayoutSteps;
+    private boolean reusedTree;
+    private GamePlayer[] undoPlayers = new GamePlayer[64];
+    private AiMoveInformation[] undoMoves = new AiMoveInformation[64];
+    private int undoSize;
+    private AiMoveInformation[] playoutMoves = new AiMoveInformation[AiMoveBuffer.DEFAULT_CAPACITY];
+
+    /**
+     * Constructs a new instance with random playouts.
+     *
+     * @param evaluator The class for generating the moves and evaluating the final states.
+     */
+    public AiMonteCarloTreeSearch(AiMoveEvaluator evaluator) {
+        this(evaluator, null);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param evaluator The class for generating the moves.
+     * @param policy The policy of the playouts, if {@code null} random playouts are done.
+     */
+    public AiMonteCarloTreeSearch(AiMoveEvaluator evaluator, AiPlayoutPolicy policy) {
+        super();
+        this.evaluator = evaluator;
+        this.policy = (policy == null) ? new AiRandomPlayoutPolicy(evaluator) : policy;
+        this.random = new Random();
+    }
+
+    /**
+     * @return The exploration constant of the UCT formula.
+     */
+    public double getExploration() {
+        return exploration;
+    }
+
+    /**
+     * Sets the exploration constant of the UCT formula. Higher values try more moves, lower values
+     * concentrate on the best moves found so far.
+     *
+     * @param exploration The exploration constant.
+     */
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    }
+
+    /**
+     * @return The maximum number of moves of a playout.
+     */
+    public int getMaxPlayoutSteps() {
+        return maxPlayoutSteps;
+    }
+
+    /**
+     * Sets the maximum number of moves of a playout. If a playout does not reach the end of the game
+     * the reached state is rated.
+     *
+     * @param maxPlayoutSteps The maximum number of moves.
+     */
+    public void setMaxPlayoutSteps(int maxPlayoutSteps) {
+        this.maxPlayoutSteps = maxPlayoutSteps;
+    }
+
+    /**
+     * Sets the number of moves that are searched below the last root to find the current position.
+     * Is only used if the game state implements {@link HashableGameState}.
+     *
+     * @param maxReuseSteps The number of moves.
+     */
+    public void setMaxReuseSteps(int maxReuseSteps) {
+        this.maxReuseSteps = maxReuseSteps;
+    }
+
+    /**
+     * @return {@code true} if the search tree is kept between the searches.
+     */
+    public boolean isReuseTree() {
+        return reuseTree;
+    }
+
+    /**
+     * Sets if the search tree is kept between the searches.
+     *
+     * @param reuseTree {@code true} to keep the search tree.
+     */
+    public void setReuseTree(boolean reuseTree) {
+        this.reuseTree = reuseTree;
+        if (!reuseTree) {
+            root = null;
+        }
+    }
+
+    /**
+     * @return The number of iterations of the last search.
+     */
+    public int getCountIterations() {
+        return countIterations;
+    }
+
+    /**
+     * @return The number of moves done in the playouts of the last search.
+     */
+    public long getCountPlayoutSteps() {
+        return countPlayoutSteps;
+    }
+
+    /**
+     * @return {@code true} if the last search continued with the tree of a former search.
+     */
+    public boolean isReusedTree() {
+        return reusedTree;
+    }
+
+    /**
+     * @return The number of visits of the root node, including the visits of former searches if the tree was reused.
+     */
+    public int getCountRootVisits() {
+        return (root == null) ? 0 : root.visits;
+    }
+
+    /**
+     * Removes the search tree.
+     */
+    public void clearTree() {
+        root = null;
+        rootAdvanced = false;
+    }
+
+    /**
+     * Moves the root of the search tree to the node that is reached with the given move. Has to be called
+     * for each move of the other players that is done since the last search if the tree shall be reused but the
+     * game state does not implement {@link HashableGameState}; the move returned by the last search is already
+     * done in the tree. If the move is not part of the tree the tree is removed.
+     *
+     * @param move The move that was done.
+     */
+    public void advanceTree(MoveInformation move) {
+        if (root == null) {
+            return;
+        }
+        Node child = root.getChild(evaluator, move);
+        if (child != null) {
+            child.parent = null;
+        }
+        root = child;
+        rootAdvanced = (child != null);
+    }
+
+    /**
+     * Searches the best move for the current player of the game engine.
+     *
+     * @param maxIterations The maximum number of iterations, 0 for no limit.
+     * @param timeBudget The time in milliseconds the search may use, 0 for no limit. If both limits are 0,
+     *            {@link #DEFAULT_ITERATIONS} iterations are done.
+     * @return The move with the most visits or {@code null} if there is no valid move.
+     */
+    public AiMoveInformation search(int maxIterations, long timeBudget) {
+        AiSearchContext context = new AiSearchContext(evaluator, null);
+        if (maxIterations <= 0 && timeBudget <= 0) {
+            maxIterations = DEFAULT_ITERATIONS;
+        }
+        if (timeBudget > 0) {
+            context.setDeadline(System.currentTimeMillis() + timeBudget);
+        }
+        GameState state = context.cloneGameState();
+        long stateHash = (state instanceof HashableGameState) ? ((HashableGameState) state).getStateHash() : 0;
+        prepareRoot(context.rootPlayer, state, stateHash);
+        countIterations = 0;
+        countPlayoutSteps = 0;
+        while ((maxIterations <= 0 || countIterations < maxIterations) && !context.isCancelled()) {
+            doIteration(context, state);
+            countIterations++;
+            if (root.terminal) {
+                break;
+            }
+        }
+        if (context.simulation != null) {
+            context.simulation.addCountNodes(countIterations);
+        }
+        Node best = root.getMostVisitedChild();
+        if (best == null) {
+            root = null;
+            return null;
+        }
+        if (reuseTree) {
+            best.parent = null;
+            root = best;
+        } else {
+            root = null;
+        }
+        return best.move;
+    }
+
+    /**
+     * Sets the root of the search tree for the current position. Reuses a node of the former tree if possible.
+     *
+     * @param player The player who is in turn.
+     * @param state The current game state.
+     * @param stateHash The hash of the current game state or 0 if the state is not hashable.
+     */
+    private void prepareRoot(GamePlayer player, GameState state, long stateHash) {
+        Node node = null;
+        if (reuseTree && root != null) {
+            if (state instanceof HashableGameState) {
+                node = findNode(root, player, stateHash, maxReuseSteps);
+            } else if (rootAdvanced && player.equals(root.playerToMove)) {
+                // the position is only known if the moves since the last search were passed to advanceTree
+                node = root;
+            }
+        }
+        rootAdvanced = false;
+        reusedTree = (node != null);
+        if (node == null) {
+            node = new Node(null, null, null, player, stateHash);
+        }
+        node.parent = null;
+        root = node;
+    }
+
+    /**
+     * Searches the node of the given position in the tree.
+     *
+     * @param node The node to start with.
+     * @param player The player who is in turn.
+     * @param stateHash The hash of the game state.
+     * @param maxSteps The number of moves to search below the node.
+     * @return The found node or {@code null}.
+     */
+    private Node findNode(Node node, GamePlayer player, long stateHash, int maxSteps) {
+        if (node.stateHash == stateHash && player.equals(node.playerToMove)) {
+            return node;
+        }
+        if (maxSteps > 0) {
+            for (int i = 0; i < node.numChildren; i++) {
+                Node found = findNode(node.children[i], player, stateHash, maxSteps - 1);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Does one iteration of the search: selection, expansion, playout and backpropagation. All moves are undone
+     * at the end, so the state is the same as before.
+     *
+     * @param context The context of the search.
+     * @param state The game state of the root.
+     */
+    private void doIteration(AiSearchContext context, GameState state) {
+        undoSize = 0;
+        Node node = root;
+        // selection
+        while (!node.terminal && node.isExpanded() && node.numChildren > 0) {
+            node = node.selectChild(exploration);
+            doMove(context, node.player, node.move, state);
+        }
+        // expansion
+        if (!node.terminal) {
+            if (node.untriedMoves == null) {
+                node.initUntriedMoves(context, state);
+            }
+            if (node.numUntried > 0) {
+                node = expand(context, node, state);
+            }
+        }
+        // playout
+        AiMoveInformation lastMove = node.move;
+        if (!node.terminal) {
+            lastMove = doPlayout(context, node.playerToMove, lastMove, state);
+        }
+        double result = policy.getResult(context.rootPlayer, lastMove, undoSize, state, context.rules);
+        // undo all moves
+        for (int i = undoSize - 1; i >= 0; i--) {
+            state.undoMove(undoPlayers[i], undoMoves[i]);
+            undoPlayers[i] = null;
+            undoMoves[i] = null;
+        }
+        undoSize = 0;
+        // backpropagation
+        while (node != null) {
+            node.visits++;
+            if (node.player != null) {
+                node.wins += node.player.equals(context.rootPlayer) ? result : 1.0 - result;
+            }
+            node = node.parent;
+        }
+    }
+
+    /**
+     * Expands the given node by a random not yet tried move.
+     *
+     * @param context The context of the search.
+     * @param node The node to expand.
+     * @param state The game state of the node, the move of the new node is done.
+     * @return The new node.
+     */
+    private Node expand(AiSearchContext context, Node node, GameState state) {
+        int index = random.nextInt(node.numUntried);
+        AiMoveInformation move = node.untriedMoves[index];
+        node.numUntried--;
+        node.untriedMoves[index] = node.untriedMoves[node.numUntried];
+        node.untriedMoves[node.numUntried] = null;
+        GamePlayer player = node.playerToMove;
+        doMove(context, player, move, state);
+        GamePlayer nextPlayer = getNextPlayer(context, player, move, state);
+        long stateHash = (state instanceof HashableGameState) ? ((HashableGameState) state).getStateHash() : 0;
+        Node child = new Node(node, move, player, nextPlayer, stateHash);
+        child.terminal = (nextPlayer == null || context.rules.isGameFinished(state));
+        node.addChild(child);
+        return child;
+    }
+
+    /**
+     * Plays the game from the given state with the moves of the playout policy. The moves are generated into
+     * the move buffers of the context, one per step, so no new array is needed for every step.
+     *
+     * @param context The context of the search.
+     * @param player The player who is in turn.
+     * @param lastMove The last move done before the playout.
+     * @param state The game state to start the playout with.
+     * @return The last move of the playout.
+     */
+    private AiMoveInformation doPlayout(AiSearchContext context, GamePlayer player, AiMoveInformation lastMove, GameState state) {
+        for (int step = 0; step < maxPlayoutSteps && player != null && !context.rules.isGameFinished(state); step++) {
+            int numMoves = copyValidMoves(context, context.generateMoves(player, state, step), state);
+            if (numMoves == 0) {
+                break;
+            }
+            AiMoveInformation move = policy.chooseMove(player, playoutMoves, numMoves, state, context.rules, random);
+            doMove(context, player, move, state);
+            countPlayoutSteps++;
+            lastMove = move;
+            player = getNextPlayer(context, player, move, state);
+        }
+        return lastMove;
+    }
+
+    /**
+     * Does a move and remembers it to undo it at the end of the iteration.
+     *
+     * @param context The context of the search.
+     * @param player The player who does the move.
+     * @param move The move.
+     * @param state The game state.
+     */
+    private void doMove(AiSearchContext context, GamePlayer player, AiMoveInformation move, GameState state) {
+        state.changeState(player, move, context.engine);
+        if (undoSize == undoMoves.length) {
+            GamePlayer[] newPlayers = new GamePlayer[undoSize * 2];
+            AiMoveInformation[] newMoves = new AiMoveInformation[undoSize * 2];
+            System.arraycopy(undoPlayers, 0, newPlayers, 0, undoSize);
+            System.arraycopy(undoMoves, 0, newMoves, 0, undoSize);
+            undoPlayers = newPlayers;
+            undoMoves = newMoves;
+        }
+        undoPlayers[undoSize] = player;
+        undoMoves[undoSize] = move;
+        undoSize++;
+    }
+
+    /**
+     * Copies the valid moves of the given buffer to the beginning of the playout moves, which are reused for every step.
+     *
+     * @param context The context of the search.
+     * @param moves The generated moves.
+     * @param state The game state.
+     * @return The number of valid moves.
+     */
+    private int copyValidMoves(AiSearchContext context, AiMoveBuffer moves, GameState state) {
+        if (playoutMoves.length < moves.size()) {
+            playoutMoves = new AiMoveInformation[Math.max(moves.size(), playoutMoves.length * 2)];
+        }
+        int numValid = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            AiMoveInformation move = moves.get(i);
+            if (move != null && context.rules.isValidMove(move, state)) {
+                playoutMoves[numValid++] = move;
+            }
+        }
+        return numValid;
+    }
+
+    /**
+     * Moves the valid moves to the beginning of the given array.
+     *
+     * @param context The context of the search.
+     * @param moves The generated moves.
+     * @param state The game state.
+     * @return The number of valid moves.
+     */
+    private static int filterValidMoves(AiSearchContext context, AiMoveInformation[] moves, GameState state) {
+        int numValid = 0;
+        for (int i = 0; i < moves.length; i++) {
+            if (moves[i] != null && context.rules.isValidMove(moves[i], state)) {
+                moves[numValid++] = moves[i];
+            }
+        }
+        return numValid;
+    }
+
+    /**
+     * Returns the next player defined by the game rules, or the same player if the move is not complete.
+     *
+     * @param context The context of the search.
+     * @param player The current player.
+     * @param move The last move.
+     * @param state The current game state.
+     * @return The next player.
+     */
+    private static GamePlayer getNextPlayer(AiSearchContext context, GamePlayer player, MoveInformation move, GameState state) {
+        if (MoveUtil.isMoveComplete(move)) {
+            return context.rules.getNextPlayer(player, state);
+        } else {
+            return player;
+        }
+    }
+
+    /**
+     * A node of the search tree.
+     */
+    private static final class Node {
+
+        final private static AiMoveInformation[] EMPTY_MOVES = new AiMoveInformation[0];
+
+        Node parent;
+        final AiMoveInformation move;
+        final GamePlayer player;
+        final GamePlayer playerToMove;
+        final long stateHash;
+        boolean terminal;
+        Node[] children;
+        int numChildren;
+        AiMoveInformation[] untriedMoves;
+        int numUntried;
+        int visits;
+        double wins;
+
+        /**
+         * Constructs a new node.
+         *
+         * @param parent The parent node, {@code null} for the root.
+         * @param move The move that leads to this node, {@code null} for the root.
+         * @param player The player who did the move, {@code null} for the root.
+         * @param playerToMove The player who is in turn in this node.
+         * @param stateHash The hash of the game state or 0 if the state is not hashable.
+         */
+        Node(Node parent, AiMoveInformation move, GamePlayer player, GamePlayer playerToMove, long stateHash) {
+            super();
+            this.parent = parent;
+            this.move = move;
+            this.player = player;
+            this.playerToMove = playerToMove;
+            this.stateHash = stateHash;
+        }
+
+        /**
+         * @return {@code true} if all moves of this node were tried.
+         */
+        boolean isExpanded() {
+            return untriedMoves != null && numUntried == 0;
+        }
+
+        /**
+         * Generates the valid moves of this node.
+         *
+         * @param context The context of the search.
+         * @param state The game state of this node.
+         */
+        void initUntriedMoves(AiSearchContext context, GameState state) {
+            AiMoveInformation[] moves = context.evaluator.generateMoves(playerToMove, state, context.rules);
+            if (moves == null) {
+                moves = new AiMoveInformation[0];
+            }
+            untriedMoves = moves;
+            numUntried = filterValidMoves(context, moves, state);
+            for (int i = numUntried; i < moves.length; i++) {
+                moves[i] = null;
+            }
+            children = new Node[numUntried];
+            if (numUntried == 0) {
+                terminal = true;
+            }
+        }
+
+        /**
+         * Adds a child node.
+         *
+         * @param child The new child.
+         */
+        void addChild(Node child) {
+            children[numChildren++] = child;
+            if (numUntried == 0) {
+                untriedMoves = EMPTY_MOVES;
+            }
+        }
+
+        /**
+         * Returns the child for the given move.
+         *
+         * @param evaluator The evaluator that compares the moves.
+         * @param move The move.
+         * @return The child or {@code null} if the move was not tried yet.
+         */
+        Node getChild(AiMoveEvaluator evaluator, MoveInformation move) {
+            for (int i = 0; i < numChildren; i++) {
+                if ((move instanceof AiMoveInformation) ? evaluator.isSameMove(children[i].move, (AiMoveInformation) move)
+                                                         : children[i].move.equals(move)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Selects the child with the highest UCT value.
+         *
+         * @param exploration The exploration constant.
+         * @return The selected child.
+         */
+        Node selectChild(double exploration) {
+            double logVisits = Math.log(visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < numChildren; i++) {
+                Node child = children[i];
+                double value = (child.visits == 0) ? Double.POSITIVE_INFINITY
+                        : child.wins / child.visits + exploration * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @return The child with the most visits or {@code null} if there is no child.
+         */
+        Node getMostVisitedChild() {
+            Node best = null;
+            for (int i = 0; i < numChildren; i++) {
+                if (best == null || children[i].visits > best.visits) {
+                    best = children[i];
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.tjger.lib;
+
+/**
+ * A reusable list of moves for one step of a search. The artificial intelligence algorithms keep one buffer
+ * per step and thread and clear it before the moves of the next position are generated, so no new array
+ * is needed for every position.<p>
+ * A {@link AiBufferedMoveEvaluator} can also reuse the move objects of the former positions: {@link #getReusable()}
+ * returns the move that was stored at the next position of the buffer before it was cleared. The search
+ * copies the moves it keeps beyond the current position (e.g. the best move), so the evaluator may change
+ * such a move and add it again.
+ *
+ * @see AiBufferedMoveEvaluator
+ * @author Joe
+ */
+public final class AiMoveBuffer {
+
+    /**
+     * The default capacity of a new buffer.
+     */
+    final public static int DEFAULT_CAPACITY = 32;
+
+    private AiMoveInformation[] moves;
+    private long[] scores;
+    private int size;
+
+    /**
+     * Constructs a new buffer with the default capacity.
+     */
+    public AiMoveBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new buffer.
+     *
+     * @param capacity The initial capacity, the buffer grows if more moves are added.
+     */
+    public AiMoveBuffer(int capacity) {
+        super();
+        this.moves = new AiMoveInformation[Math.max(capacity, 1)];
+        this.scores = new long[moves.length];
+    }
+
+    /**
+     * Removes all moves from the buffer. The move objects are kept for {@link #getReusable()}.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return The number of moves in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the buffer contains no moves.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index The index of the move.
+     * @return The move with the given index.
+     * @throws IndexOutOfBoundsException if the index is not lower than the size.
+     */
+    public AiMoveInformation get(int index) throws IndexOutOfBoundsException {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " is not lower than the size " + size + "!");
+        }
+        return moves[index];
+    }
+
+    /**
+     * Returns the move object that was stored at the position of the next move before the buffer was cleared.
+     * The move can be changed and added again with {@link #add(AiMoveInformation)}.
+     *
+     * @return The move object to reuse or {@code null} if there is no such move.
+     */
+    public AiMoveInformation getReusable() {
+        return (size < moves.length) ? moves[size] : null;
+    }
+
+    /**
+     * Adds a move at the end of the buffer.
+     *
+     * @param move The move to add.
+     */
+    public void add(AiMoveInformation move) {
+        if (size == moves.length) {
+            AiMoveInformation[] newMoves = new AiMoveInformation[size * 2];
+            System.arraycopy(moves, 0, newMoves, 0, size);
+            moves = newMoves;
+            scores = new long[newMoves.length];
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Adds all moves of the given array at the end of the buffer.
+     *
+     * @param newMoves The moves to add, can be {@code null}.
+     */
+    public void addAll(AiMoveInformation[] newMoves) {
+        if (newMoves != null) {
+            for (AiMoveInformation move : newMoves) {
+                add(move);
+            }
+        }
+    }
+
+    /**
+     * Moves the given move to the front of the buffer, if the buffer contains the same move.
+     * The order of the other moves is kept.
+     *
+     * @param evaluator The evaluator that compares the moves.
+     * @param firstMove The move that shall be the first one.
+     * @see AiMoveEvaluator#isSameMove(AiMoveInformation, AiMoveInformation)
+     */
+    public void moveToFront(AiMoveEvaluator evaluator, AiMoveInformation firstMove) {
+        for (int i = 1; i < size; i++) {
+            if (evaluator.isSameMove(firstMove, moves[i])) {
+                AiMoveInformation move = moves[i];
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the score of a move for {@link #sortByScore()}.
+     *
+     * @param index The index of the move.
+     * @param score The score.
+     */
+    public void setScore(int index, long score) {
+        scores[index] = score;
+    }
+
+    /**
+     * Sorts the moves by the scores set with {@link #setScore(int, long)}, the move with the highest score is
+     * the first one. Moves with the same score keep their order.
+     */
+    public void sortByScore() {
+        for (int i = 1; i < size; i++) {
+            AiMoveInformation move = moves[i];
+            long score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                moves[j + 1] = moves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * @return A new array with the moves of the buffer.
+     */
+    public AiMoveInformation[] toArray() {
+        AiMoveInformation[] array = new AiMoveInformation[size];
+        System.arraycopy(moves, 0, array, 0, size);
+        return array;
+    }
+}
@@ -34,4 +34,49 @@ public interface AiMoveEvaluator {
      */
     public long evaluateState(int step, GamePlayer player, AiMoveInformation move, GameState state, GameRules rules);
 
+    /**
+     * Returns a cheap estimation how good a move is, used to search the better moves first if the move
+     * ordering is used. The move is not done for this estimation, e.g. a capture can get a higher score
+     * than a normal move. Killer moves are searched before moves with a score below 2^58.
+     * 
+     * @param step The number of step the move is calculated in the future (start with 0).
+     * @param player The player who does the move.
+     * @param move The move to score.
+     * @param state A clone of the game state.
+     * @param rules The game rules.
+     * @return The score, moves with a higher score are searched first. The default is 0 for all moves.
+     * @see AiMoveOrdering
+     */
+    public default long scoreMoveForOrdering(int step, GamePlayer player, AiMoveInformation move, GameState state, GameRules rules) {
+        return 0;
+    }
+
+    /**
+     * Returns the key of a move for the history heuristic of the move ordering. Moves that are equal for the
+     * heuristic, e.g. moves from the same field to the same field, have to return the same key.
+     * 
+     * @param move The move.
+     * @return The key between 0 and the number of keys passed to {@link AiMoveOrdering#AiMoveOrdering(int)} - 1,
+     *            the default is {@link AiMoveOrdering#NO_MOVE_KEY} for no history heuristic.
+     */
+    public default int getMoveKey(AiMoveInformation move) {
+        return AiMoveOrdering.NO_MOVE_KEY;
+    }
+
+    /**
+     * Returns whether two moves describe the same move, independent of their evaluation value. The algorithms use it
+     * to find moves again that were generated by another step or search, e.g. the killer moves, the moves of the
+     * transposition table and the principal variation or the moves of the Monte Carlo tree. As the moves are
+     * generated again for every position, the killer moves, the moves of the transposition table and the reuse of
+     * the Monte Carlo tree only work if this method or {@link AiMoveInformation#equals(Object)} is overridden.
+     * 
+     * @param move1 The first move, can be {@code null}.
+     * @param move2 The second move, can be {@code null}.
+     * @return True if both moves describe the same move. The default compares the moves with
+     *            {@link AiMoveInformation#equals(Object)}, which is the identity if the moves do not override it.
+     */
+    public default boolean isSameMove(AiMoveInformation move1, AiMoveInformation move2) {
+        return (move1 == move2) || (move1 != null && move1.equals(move2));
+    }
+
 }
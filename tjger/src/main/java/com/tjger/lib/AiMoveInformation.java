@@ -5,7 +5,11 @@ import com.tjger.game.MoveInformation;
 /**
  * This move information should be used by games that shall get a computer opponent 
  * that artificial intelligence methods. It extends the normal MoveInformation by a method that 
- * holds an evaluation value.
+ * holds an evaluation value.<p>
+ * The algorithms find moves again that were generated by another step or search, e.g. the killer moves,
+ * the moves of the transposition table and the principal variation or the moves of the Monte Carlo tree.
+ * They are compared by {@link AiMoveEvaluator#isSameMove(AiMoveInformation, AiMoveInformation)}, which uses
+ * {@link #equals(Object)} by default.
  * 
  * @see AiAlgorithms
  * @author hagru
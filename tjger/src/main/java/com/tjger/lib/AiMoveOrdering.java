@@ -0,0 +1,174 @@
+package com.tjger.lib;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+
+/**
+ * Orders the moves of the Alpha-Beta-Pruning, so the moves that probably cause a cutoff are searched first.
+ * The moves are sorted by
+ * <ul>
+ * <li>the killer moves of the step: the last two moves that caused a cutoff in the same step of the search,</li>
+ * <li>the history heuristic: how often and how deep a move caused a cutoff, needs the move keys of
+ * {@link AiMoveEvaluator#getMoveKey(AiMoveInformation)},</li>
+ * <li>the score of {@link AiMoveEvaluator#scoreMoveForOrdering}.</li>
+ * </ul>
+ * The move of the principal variation and of the transposition table are searched before these moves.<p>
+ * The ordering is kept between the searches: the killer moves are removed at the start of a search, the
+ * history values are halved. An instance must not be used by several searches at the same time.
+ *
+ * @see AiAlgorithms#getMiniMaxMove(int, AiMoveEvaluator, AiTranspositionTable, AiMoveOrdering)
+ * @author Joe
+ */
+public class AiMoveOrdering {
+
+    /**
+     * The key of a move that is not considered by the history heuristic.
+     */
+    final public static int NO_MOVE_KEY = -1;
+
+    final private static int NUM_KILLER_MOVES = 2;
+    final private static long KILLER_SCORE = 1L << 60;
+    final private static long MAX_HISTORY_SCORE = 1L << 40;
+
+    final private int numMoveKeys;
+    final private long[][] history;
+    private AiMoveInformation[][] killerMoves = new AiMoveInformation[16][NUM_KILLER_MOVES];
+
+    /**
+     * Constructs a new instance without history heuristic.
+     */
+    public AiMoveOrdering() {
+        this(0);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param numMoveKeys The number of keys returned by {@link AiMoveEvaluator#getMoveKey(AiMoveInformation)},
+     *            the keys have to be between 0 and this number - 1. If 0 the history heuristic is not used.
+     */
+    public AiMoveOrdering(int numMoveKeys) {
+        super();
+        this.numMoveKeys = Math.max(numMoveKeys, 0);
+        this.history = new long[2][this.numMoveKeys];
+    }
+
+    /**
+     * Removes the killer moves and the history values.
+     */
+    public void clear() {
+        for (AiMoveInformation[] killers : killerMoves) {
+            for (int i = 0; i < NUM_KILLER_MOVES; i++) {
+                killers[i] = null;
+            }
+        }
+        for (long[] sideHistory : history) {
+            for (int i = 0; i < sideHistory.length; i++) {
+                sideHistory[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Starts a new search. The killer moves of the former search are removed and the history values halved,
+     * so the values of the current search count more.
+     */
+    void startSearch() {
+        for (AiMoveInformation[] killers : killerMoves) {
+            for (int i = 0; i < NUM_KILLER_MOVES; i++) {
+                killers[i] = null;
+            }
+        }
+        for (long[] sideHistory : history) {
+            for (int i = 0; i < sideHistory.length; i++) {
+                sideHistory[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Sorts the moves of a step, the moves with the highest score are first.
+     *
+     * @param evaluator The evaluator.
+     * @param moves The moves of the step.
+     * @param step The current step.
+     * @param isMax Flag if the step is a maximum step or not.
+     * @param player The player who is in turn.
+     * @param state The current game state.
+     * @param rules The game rules.
+     */
+    void orderMoves(AiMoveEvaluator evaluator, AiMoveBuffer moves, int step, boolean isMax, GamePlayer player,
+                    GameState state, GameRules rules) {
+        int size = moves.size();
+        if (size < 2) {
+            return;
+        }
+        AiMoveInformation[] killers = (step < killerMoves.length) ? killerMoves[step] : null;
+        long[] sideHistory = history[(isMax) ? 0 : 1];
+        for (int i = 0; i < size; i++) {
+            AiMoveInformation move = moves.get(i);
+            long score = evaluator.scoreMoveForOrdering(step, player, move, state, rules);
+            if (killers != null) {
+                for (int k = 0; k < NUM_KILLER_MOVES; k++) {
+                    if (killers[k] != null && evaluator.isSameMove(killers[k], move)) {
+                        score += KILLER_SCORE >> k;
+                        break;
+                    }
+                }
+            }
+            int key = getHistoryKey(evaluator, move);
+            if (key != NO_MOVE_KEY) {
+                score += sideHistory[key];
+            }
+            moves.setScore(i, score);
+        }
+        moves.sortByScore();
+    }
+
+    /**
+     * Remembers a move that caused a cutoff as killer move of the step and raises its history value.
+     *
+     * @param evaluator The evaluator.
+     * @param step The current step.
+     * @param depth The remaining search depth of the step.
+     * @param isMax Flag if the step is a maximum step or not.
+     * @param move The move that caused the cutoff.
+     * @param copyMove {@code true} if the move has to be copied to be kept.
+     */
+    void storeCutoff(AiMoveEvaluator evaluator, int step, int depth, boolean isMax, AiMoveInformation move, boolean copyMove) {
+        if (step >= killerMoves.length) {
+            AiMoveInformation[][] newKillers = new AiMoveInformation[Math.max(step + 1, killerMoves.length * 2)][];
+            System.arraycopy(killerMoves, 0, newKillers, 0, killerMoves.length);
+            for (int i = killerMoves.length; i < newKillers.length; i++) {
+                newKillers[i] = new AiMoveInformation[NUM_KILLER_MOVES];
+            }
+            killerMoves = newKillers;
+        }
+        AiMoveInformation[] killers = killerMoves[step];
+        if (!evaluator.isSameMove(move, killers[0])) {
+            System.arraycopy(killers, 0, killers, 1, NUM_KILLER_MOVES - 1);
+            killers[0] = (copyMove) ? move.cloneMove() : move;
+        }
+        int key = getHistoryKey(evaluator, move);
+        if (key != NO_MOVE_KEY) {
+            long[] sideHistory = history[(isMax) ? 0 : 1];
+            sideHistory[key] = Math.min(sideHistory[key] + (long) depth * depth, MAX_HISTORY_SCORE);
+        }
+    }
+
+    /**
+     * Returns the key of the move for the history heuristic.
+     *
+     * @param evaluator The evaluator.
+     * @param move The move.
+     * @return The key or {@link #NO_MOVE_KEY} if the move is not considered.
+     */
+    private int getHistoryKey(AiMoveEvaluator evaluator, AiMoveInformation move) {
+        if (numMoveKeys == 0) {
+            return NO_MOVE_KEY;
+        }
+        int key = evaluator.getMoveKey(move);
+        return (key >= 0 && key < numMoveKeys) ? key : NO_MOVE_KEY;
+    }
+}
@@ -0,0 +1,44 @@
+package com.tjger.lib;
+
+import java.util.Random;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+
+/**
+ * Interface for the playouts of the Monte Carlo tree search. Decides which moves are done during
+ * a playout and how the final state of a playout is rated.
+ *
+ * @see AiMonteCarloTreeSearch
+ * @see AiRandomPlayoutPolicy
+ * @author Joe
+ */
+public interface AiPlayoutPolicy {
+
+    /**
+     * Chooses the next move of a playout.
+     *
+     * @param player The player who is in turn.
+     * @param moves The valid moves, only the first {@code numMoves} entries are set. The array is reused, so do not keep it.
+     * @param numMoves The number of valid moves, at least 1.
+     * @param state The current game state.
+     * @param rules The game rules.
+     * @param random The random generator of the search.
+     * @return The chosen move, has to be one of the given moves.
+     */
+    AiMoveInformation chooseMove(GamePlayer player, AiMoveInformation[] moves, int numMoves, GameState state, GameRules rules, Random random);
+
+    /**
+     * Rates the final state of a playout for the given player.
+     *
+     * @param player The player the search is done for.
+     * @param lastMove The last move of the playout, can be {@code null} if no move was done.
+     * @param steps The number of moves done from the root of the search till the final state.
+     * @param state The final game state of the playout.
+     * @param rules The game rules.
+     * @return The result between 0 (lost) and 1 (won), 0.5 is a draw.
+     */
+    double getResult(GamePlayer player, AiMoveInformation lastMove, int steps, GameState state, GameRules rules);
+
+}
@@ -0,0 +1,202 @@
+package com.tjger.lib;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+import com.tjger.game.HashableGameState;
+import com.tjger.game.completed.GameEngine;
+import com.tjger.game.completed.GameManager;
+
+import at.hagru.hgbase.lib.HGBaseLog;
+
+/**
+ * Searches in the background while the opponent is thinking (pondering).<p>
+ * When the opponent starts the move, {@link #start} predicts the move of the opponent and searches
+ * the answer to the predicted move in the background with the transposition table and the move ordering of
+ * the player. The predicted move is the best move of the opponent that is stored in the transposition table
+ * by the last search, if there is none it is searched first. When it is the player's turn again,
+ * {@link #finish(long)} checks if the opponent did the predicted move: then the result of the background search
+ * is taken, otherwise the search is cancelled and its result is discarded. In both cases the transposition
+ * table keeps the results of the background search for the next search.<p>
+ * Pondering needs a game state that implements {@link HashableGameState} to recognize the predicted position.
+ * The transposition table and the move ordering must not be used by another search till {@link #finish(long)}
+ * or {@link #stop()} is called.
+ *
+ * @see AiAlgorithms#getBackgroundMove
+ * @author Joe
+ */
+public class AiPonderSearch {
+
+    final private AiMoveEvaluator evaluator;
+    private AiSearchTask task;
+    private volatile boolean ponderStateKnown;
+    private volatile long ponderStateHash;
+    private GamePlayer ponderPlayer;
+    private int countHits;
+    private int countMisses;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param evaluator The class for evaluating the moves.
+     */
+    public AiPonderSearch(AiMoveEvaluator evaluator) {
+        super();
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Starts the background search for the given player with the current game state. Nothing is done if the
+     * game state does not implement {@link HashableGameState}, the game or round is not active any more or the
+     * given player is in turn. A running background search is stopped before.
+     *
+     * @param player The player the search is done for.
+     * @param maxDepth The maximum search depth.
+     * @param table The transposition table of the player, can be {@code null}.
+     * @param ordering The move ordering of the player, can be {@code null}.
+     */
+    public synchronized void start(GamePlayer player, int maxDepth, AiTranspositionTable table, AiMoveOrdering ordering) {
+        stop();
+        GameEngine engine = GameManager.getInstance().getGameEngine();
+        GameState state = engine.getGameState();
+        GamePlayer opponent = engine.getCurrentPlayer();
+        if (!(state instanceof HashableGameState) || !engine.isActiveGame() || !engine.isActiveRound()
+            || opponent == null || opponent.equals(player)) {
+            return;
+        }
+        GameState ponderState = (GameState) state.clone();
+        GameRules rules = GameManager.getInstance().getGameRules();
+        ponderPlayer = player;
+        ponderStateKnown = false;
+        task = AiSearchTask.submit(() -> ponder(player, opponent, maxDepth, ponderState, rules, engine, table, ordering));
+    }
+
+    /**
+     * Predicts the move of the opponent and searches the answer to it. Is called by the background thread.
+     *
+     * @param player The player the search is done for.
+     * @param opponent The opponent who is in turn.
+     * @param maxDepth The maximum search depth.
+     * @param state A clone of the game state.
+     * @param rules The game rules.
+     * @param engine The game engine.
+     * @param table The transposition table, can be {@code null}.
+     * @param ordering The move ordering, can be {@code null}.
+     * @return The best answer to the predicted move or {@code null}.
+     */
+    private AiMoveInformation ponder(GamePlayer player, GamePlayer opponent, int maxDepth, GameState state, GameRules rules,
+                                     GameEngine engine, AiTranspositionTable table, AiMoveOrdering ordering) {
+        AiMoveInformation predictedMove = (table == null) ? null
+                : AiAlgorithms.getTranspositionMove(table, state, player, opponent, false);
+        if (predictedMove == null) {
+            predictedMove = AiAlgorithms.getBackgroundMove(Math.max(maxDepth - 1, 1), evaluator, opponent,
+                                                           (GameState) state.clone(), table, null);
+        }
+        AiCancellationToken token = AiCancellationToken.current();
+        if (predictedMove == null || token.isCancelled() || !rules.isValidMove(predictedMove, state)) {
+            return null;
+        }
+        state.changeState(opponent, predictedMove, engine);
+        GamePlayer nextPlayer = (MoveUtil.isMoveComplete(predictedMove)) ? rules.getNextPlayer(opponent, state) : opponent;
+        if (!player.equals(nextPlayer) || rules.isRoundFinished(state)) {
+            return null;
+        }
+        ponderStateHash = ((HashableGameState) state).getStateHash();
+        ponderStateKnown = true;
+        return AiAlgorithms.getBackgroundMove(maxDepth, evaluator, player, state, table, ordering);
+    }
+
+    /**
+     * Finishes the background search. If the current position is the predicted one, the result of the
+     * background search is returned. If the search is still running it may last till the time budget is over,
+     * then it is stopped and the best move of the last completed iteration is returned. If the opponent did
+     * another move, the search is cancelled and {@code null} is returned.
+     *
+     * @param timeBudget The time in milliseconds the background search may still last.
+     * @return The best move of the background search or {@code null} if there is none for the current position.
+     */
+    public synchronized AiMoveInformation finish(long timeBudget) {
+        if (task == null) {
+            return null;
+        }
+        AiSearchTask finishedTask = task;
+        task = null;
+        GameEngine engine = GameManager.getInstance().getGameEngine();
+        GameState state = engine.getGameState();
+        boolean hit = ponderStateKnown && state instanceof HashableGameState
+                      && ((HashableGameState) state).getStateHash() == ponderStateHash
+                      && ponderPlayer.equals(engine.getCurrentPlayer());
+        if (hit) {
+            countHits++;
+        } else {
+            countMisses++;
+            finishedTask.getToken().cancel();
+        }
+        AiMoveInformation move = waitForResult(finishedTask, Math.max(timeBudget, 0));
+        return (hit) ? move : null;
+    }
+
+    /**
+     * Stops the background search and discards its result.
+     */
+    public synchronized void stop() {
+        if (task != null) {
+            task.getToken().cancel();
+            waitForResult(task, 0);
+            task = null;
+        }
+    }
+
+    /**
+     * Waits till the given task is finished. If it lasts longer than the timeout, its token is cancelled,
+     * so the search returns its best move so far.
+     *
+     * @param finishedTask The task to wait for.
+     * @param timeout The time in milliseconds to wait before the task is stopped.
+     * @return The result of the task or {@code null} if there is none.
+     */
+    private AiMoveInformation waitForResult(AiSearchTask finishedTask, long timeout) {
+        try {
+            try {
+                return finishedTask.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                finishedTask.getToken().cancel();
+                return finishedTask.get();
+            }
+        } catch (InterruptedException e) {
+            finishedTask.cancel(false);
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            // the task was cancelled before it was started
+        } catch (ExecutionException e) {
+            HGBaseLog.logWarn("Pondering failed: " + e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * @return True if a background search was started and not finished yet.
+     */
+    public synchronized boolean isPondering() {
+        return task != null;
+    }
+
+    /**
+     * @return The number of finished background searches whose position was reached.
+     */
+    public int getCountHits() {
+        return countHits;
+    }
+
+    /**
+     * @return The number of finished background searches whose position was not reached.
+     */
+    public int getCountMisses() {
+        return countMisses;
+    }
+}
@@ -0,0 +1,59 @@
+package com.tjger.lib;
+
+import java.util.Random;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+
+/**
+ * The default playout policy of the Monte Carlo tree search. The moves are chosen randomly,
+ * the final state is rated by the sign of the evaluation value of the {@link AiMoveEvaluator}.
+ *
+ * @see AiMonteCarloTreeSearch
+ * @author Joe
+ */
+public class AiRandomPlayoutPolicy implements AiPlayoutPolicy {
+
+    final private AiMoveEvaluator evaluator;
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param evaluator The class for evaluating the final states.
+     */
+    public AiRandomPlayoutPolicy(AiMoveEvaluator evaluator) {
+        super();
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * @return The class for evaluating the final states.
+     */
+    protected AiMoveEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    @Override
+    public AiMoveInformation chooseMove(GamePlayer player, AiMoveInformation[] moves, int numMoves, GameState state, GameRules rules, Random random) {
+        return moves[random.nextInt(numMoves)];
+    }
+
+    /**
+     * Rates the final state with the evaluator: a positive value is a win, a negative value
+     * a loss and 0 is a draw.
+     */
+    @Override
+    public double getResult(GamePlayer player, AiMoveInformation lastMove, int steps, GameState state, GameRules rules) {
+        if (lastMove == null) {
+            return 0.5;
+        }
+        long value = evaluator.evaluateState(steps, player, lastMove, state, rules);
+        if (value > 0) {
+            return 1.0;
+        } else if (value < 0) {
+            return 0.0;
+        }
+        return 0.5;
+    }
+}
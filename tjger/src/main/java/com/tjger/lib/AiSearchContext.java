@@ -0,0 +1,387 @@
+package com.tjger.lib;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+import com.tjger.game.HashableGameState;
+import com.tjger.game.completed.GameEngine;
+import com.tjger.game.completed.GameManager;
+
+/**
+ * Holds the state of a single search of the artificial intelligence algorithms.<p>
+ * Every search gets its own context, so several searches can run at the same time, e.g. the workers of
+ * the parallel search. The workers share the stop flag, the deadline and the transposition table of the
+ * search they belong to.<p>
+ * A search started by an action that is executed with an {@link AiCancellationToken} is stopped as soon as
+ * the token is cancelled. A search started by a thread that plays an {@link AiSimulation} uses the rules, the
+ * game state and the current player of the simulation instead of the game engine.
+ *
+ * @see AiAlgorithms
+ * @author Joe
+ */
+final class AiSearchContext {
+
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final ThreadLocal<AiMoveBuffer[]> threadMoveBuffers = new ThreadLocal<>();
+
+    final GameRules rules;
+    final GameEngine engine;
+    final AiSimulation simulation;
+    final AiMoveEvaluator evaluator;
+    final AiAnalyzer analyzer;
+    final GamePlayer rootPlayer;
+    final boolean reuseMoves;
+    final private AtomicBoolean stopped;
+    final private AiCancellationToken token;
+    private AiMoveBuffer[] moveBuffers = null;
+    private GamePlayer[] hashedPlayers = new GamePlayer[4];
+    private int[] playerHashes = new int[4];
+    private int numHashedPlayers = 0;
+
+    AiTranspositionTable transpositionTable = null;
+    AiMoveOrdering moveOrdering = null;
+    int currentDepth = 0;
+    int currentStep = 0;
+    int countEvaluations = 0;
+    int completedDepth = 0;
+    long deadline = NO_DEADLINE;
+    private boolean deadlineReached = false;
+    AtomicLong sharedAlpha = null; // the lower bound of the root moves of a parallel search
+
+    AiMoveInformation[][] principalVariation = null;
+    int[] principalVariationLength = null;
+    AiMoveInformation[] previousPrincipalVariation = null;
+    boolean followPrincipalVariation = false;
+
+    /**
+     * Constructs a new context for a search of the current player of the game engine or simulation.
+     *
+     * @param evaluator The class for evaluating the moves.
+     * @param analyzer The class to analyze the algorithm, can be {@code null}.
+     */
+    AiSearchContext(AiMoveEvaluator evaluator, AiAnalyzer analyzer) {
+        this(evaluator, analyzer, null);
+    }
+
+    /**
+     * Constructs a new context for a search of the given player.
+     *
+     * @param evaluator The class for evaluating the moves.
+     * @param analyzer The class to analyze the algorithm, can be {@code null}.
+     * @param rootPlayer The player the search is done for, if {@code null} the current player.
+     */
+    AiSearchContext(AiMoveEvaluator evaluator, AiAnalyzer analyzer, GamePlayer rootPlayer) {
+        this(AiSimulation.current(), evaluator, analyzer, rootPlayer);
+    }
+
+    /**
+     * Constructs a new context for a search of the game engine or the given simulation.
+     *
+     * @param simulation The simulation played by the calling thread or {@code null} to use the game engine.
+     * @param evaluator The class for evaluating the moves.
+     * @param analyzer The class to analyze the algorithm, can be {@code null}.
+     * @param rootPlayer The player the search is done for, if {@code null} the current player.
+     */
+    private AiSearchContext(AiSimulation simulation, AiMoveEvaluator evaluator, AiAnalyzer analyzer, GamePlayer rootPlayer) {
+        this((simulation == null) ? GameManager.getInstance().getGameRules() : simulation.getGameRules(),
+             (simulation == null) ? GameManager.getInstance().getGameEngine() : null, simulation, evaluator, analyzer,
+             (rootPlayer == null) ? getCurrentPlayer(simulation) : rootPlayer, new AtomicBoolean(), AiCancellationToken.current());
+    }
+
+    /**
+     * Constructs a new context.
+     *
+     * @param rules The game rules.
+     * @param engine The game engine, {@code null} for a simulation.
+     * @param simulation The simulation or {@code null} for the game engine.
+     * @param evaluator The class for evaluating the moves.
+     * @param analyzer The class to analyze the algorithm, can be {@code null}.
+     * @param rootPlayer The player the search is done for.
+     * @param stopped The flag to stop the search.
+     * @param token The token to cancel the search, can be {@code null}.
+     */
+    private AiSearchContext(GameRules rules, GameEngine engine, AiSimulation simulation, AiMoveEvaluator evaluator,
+                            AiAnalyzer analyzer, GamePlayer rootPlayer, AtomicBoolean stopped, AiCancellationToken token) {
+        super();
+        this.rules = rules;
+        this.engine = engine;
+        this.simulation = simulation;
+        this.evaluator = evaluator;
+        this.analyzer = analyzer;
+        this.rootPlayer = rootPlayer;
+        this.reuseMoves = (evaluator instanceof AiBufferedMoveEvaluator);
+        this.stopped = stopped;
+        this.token = token;
+    }
+
+    /**
+     * Returns the current player of the game engine or the simulation.
+     *
+     * @param simulation The simulation or {@code null} for the game engine.
+     * @return The current player.
+     */
+    private static GamePlayer getCurrentPlayer(AiSimulation simulation) {
+        return (simulation == null) ? GameManager.getInstance().getGameEngine().getCurrentPlayer() : simulation.getCurrentPlayer();
+    }
+
+    /**
+     * Returns the hash code of a player for the keys of the transposition table. The hash code of a player is
+     * created from its name and type with every call, so it is only taken once per player and search.
+     *
+     * @param player The player.
+     * @return The hash code of the player.
+     */
+    int getPlayerHash(GamePlayer player) {
+        for (int i = 0; i < numHashedPlayers; i++) {
+            if (hashedPlayers[i] == player) {
+                return playerHashes[i];
+            }
+        }
+        if (numHashedPlayers == hashedPlayers.length) {
+            hashedPlayers = Arrays.copyOf(hashedPlayers, numHashedPlayers * 2);
+            playerHashes = Arrays.copyOf(playerHashes, numHashedPlayers * 2);
+        }
+        int hash = player.hashCode();
+        hashedPlayers[numHashedPlayers] = player;
+        playerHashes[numHashedPlayers] = hash;
+        numHashedPlayers++;
+        return hash;
+    }
+
+    /**
+     * @return A clone of the current game state of the game engine or the simulation.
+     */
+    GameState cloneGameState() {
+        GameState state = (simulation == null) ? engine.getGameState() : simulation.getGameState();
+        return (GameState) state.clone();
+    }
+
+    /**
+     * Creates the context for a worker of a parallel search. The worker shares the stop flag, the token, the
+     * deadline and the transposition table with this context, but has its own counters. Analysis and move ordering
+     * are not supported by workers.
+     *
+     * @return The context for the worker.
+     */
+    AiSearchContext createWorkerContext() {
+        AiSearchContext worker = new AiSearchContext(rules, engine, simulation, evaluator, null, rootPlayer, stopped, token);
+        worker.transpositionTable = transpositionTable;
+        worker.deadline = deadline;
+        worker.currentDepth = currentDepth;
+        return worker;
+    }
+
+    /**
+     * Sets the transposition table, if the given state supports it.
+     *
+     * @param state The game state of the search.
+     * @param table The transposition table, can be {@code null}.
+     */
+    void setTranspositionTable(GameState state, AiTranspositionTable table) {
+        transpositionTable = (state instanceof HashableGameState) ? table : null;
+        if (transpositionTable != null) {
+            transpositionTable.startSearch();
+        }
+    }
+
+    /**
+     * Sets the move ordering of the search.
+     *
+     * @param ordering The move ordering, can be {@code null}.
+     */
+    void setMoveOrdering(AiMoveOrdering ordering) {
+        moveOrdering = ordering;
+        if (moveOrdering != null) {
+            moveOrdering.startSearch();
+        }
+    }
+
+    /**
+     * Sorts the moves of a step if a move ordering is used.
+     *
+     * @param moves The moves of the step.
+     * @param step The current step.
+     * @param isMax Flag if the step is a maximum step or not.
+     * @param player The player who is in turn.
+     * @param state The current game state.
+     */
+    void orderMoves(AiMoveBuffer moves, int step, boolean isMax, GamePlayer player, GameState state) {
+        if (moveOrdering != null) {
+            moveOrdering.orderMoves(evaluator, moves, step, isMax, player, state, rules);
+        }
+    }
+
+    /**
+     * Tells the move ordering that a move caused a cutoff.
+     *
+     * @param step The current step.
+     * @param depth The remaining search depth of the step.
+     * @param isMax Flag if the step is a maximum step or not.
+     * @param move The move that caused the cutoff.
+     */
+    void storeCutoff(int step, int depth, boolean isMax, AiMoveInformation move) {
+        if (moveOrdering != null && !isCancelled()) {
+            moveOrdering.storeCutoff(evaluator, step, depth, isMax, move, reuseMoves);
+        }
+    }
+
+    /**
+     * Stops the search and all workers that share this context's stop flag.
+     */
+    void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Checks if the search shall be stopped, because the search was stopped, its token was cancelled, the game
+     * or round of the game engine is not active any more or the deadline is reached.
+     *
+     * @return {@code true} if the search shall be stopped.
+     */
+    boolean isCancelled() {
+        if (stopped.get() || (token != null && token.isCancelled())
+            || (engine != null && (!engine.isActiveGame() || !engine.isActiveRound()))) {
+            return true;
+        }
+        if (!deadlineReached && deadline != NO_DEADLINE && System.currentTimeMillis() >= deadline) {
+            deadlineReached = true;
+        }
+        return deadlineReached;
+    }
+
+    /**
+     * Sets a new deadline for the search.
+     *
+     * @param deadline The time in milliseconds when the search shall be stopped or {@link #NO_DEADLINE}.
+     */
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+        this.deadlineReached = false;
+    }
+
+    /**
+     * Prepares the principal variation for a search with the given depth.
+     *
+     * @param depth The search depth.
+     */
+    void startPrincipalVariation(int depth) {
+        principalVariation = new AiMoveInformation[depth + 1][depth + 1];
+        principalVariationLength = new int[depth + 1];
+        followPrincipalVariation = true;
+    }
+
+    /**
+     * Keeps the principal variation of the completed search for the next search.
+     */
+    void keepPrincipalVariation() {
+        previousPrincipalVariation = new AiMoveInformation[principalVariationLength[0]];
+        System.arraycopy(principalVariation[0], 0, previousPrincipalVariation, 0, previousPrincipalVariation.length);
+    }
+
+    /**
+     * Returns the move of the previous principal variation for the given step, if the current search
+     * still follows the principal variation.
+     *
+     * @param step The current step.
+     * @return The move of the principal variation or {@code null}.
+     */
+    AiMoveInformation getPrincipalVariationMove(int step) {
+        if (followPrincipalVariation && previousPrincipalVariation != null && step < previousPrincipalVariation.length) {
+            return previousPrincipalVariation[step];
+        }
+        return null;
+    }
+
+    /**
+     * Clears the principal variation that starts at the given step.
+     *
+     * @param step The step.
+     */
+    void clearPrincipalVariation(int step) {
+        if (principalVariationLength != null && step < principalVariationLength.length) {
+            principalVariationLength[step] = 0;
+        }
+    }
+
+    /**
+     * Sets the given move as best move of the step and appends the principal variation of the next step.
+     *
+     * @param step The step.
+     * @param move The best move of the step.
+     */
+    void updatePrincipalVariation(int step, AiMoveInformation move) {
+        if (principalVariation != null && step + 1 < principalVariation.length) {
+            AiMoveInformation[] line = principalVariation[step];
+            line[step] = keepMove(move);
+            int nextLength = principalVariationLength[step + 1];
+            System.arraycopy(principalVariation[step + 1], step + 1, line, step + 1, nextLength);
+            principalVariationLength[step] = nextLength + 1;
+        }
+    }
+
+    /**
+     * Generates the moves of the given player into the move buffer of the step. The buffers belong to the
+     * thread that runs the search and are reused by the following searches of this thread.
+     *
+     * @param player The player who is in turn.
+     * @param state The current game state.
+     * @param step The current step.
+     * @return The buffer with the generated moves, is valid till the moves of the next position of the same step are generated.
+     */
+    AiMoveBuffer generateMoves(GamePlayer player, GameState state, int step) {
+        if (moveBuffers == null) {
+            moveBuffers = threadMoveBuffers.get();
+        }
+        if (moveBuffers == null || step >= moveBuffers.length) {
+            AiMoveBuffer[] newBuffers = new AiMoveBuffer[Math.max(step + 1, 16)];
+            if (moveBuffers != null) {
+                System.arraycopy(moveBuffers, 0, newBuffers, 0, moveBuffers.length);
+            }
+            moveBuffers = newBuffers;
+            threadMoveBuffers.set(moveBuffers);
+        }
+        AiMoveBuffer buffer = moveBuffers[step];
+        if (buffer == null) {
+            buffer = new AiMoveBuffer();
+            moveBuffers[step] = buffer;
+        }
+        buffer.clear();
+        if (reuseMoves) {
+            ((AiBufferedMoveEvaluator) evaluator).generateMoves(player, state, rules, buffer);
+        } else {
+            buffer.addAll(evaluator.generateMoves(player, state, rules));
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a move that can be kept beyond the current position. If the evaluator reuses its move objects
+     * a copy of the move is returned.
+     *
+     * @param move The move, can be {@code null}.
+     * @return The move to keep.
+     */
+    AiMoveInformation keepMove(AiMoveInformation move) {
+        return (reuseMoves && move != null) ? move.cloneMove() : move;
+    }
+
+    /**
+     * Stores a result in the transposition table if a table is used and the search was not cancelled.
+     *
+     * @param key The key of the position.
+     * @param depth The search depth of the step.
+     * @param flag The flag of the evaluation value.
+     * @param value The evaluation value.
+     * @param bestMove The best move, can be {@code null}.
+     */
+    void storeTransposition(long key, int depth, byte flag, long value, AiMoveInformation bestMove) {
+        if (transpositionTable != null && !isCancelled()) {
+            transpositionTable.store(key, depth, flag, value, keepMove(bestMove));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.tjger.lib;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A search of the artificial intelligence algorithms that runs in the background and can be cancelled.<p>
+ * The search is executed with an own {@link AiCancellationToken}, so {@link #cancel(boolean)} stops the
+ * search at the next step instead of waiting till it is finished, e.g. if the game is stopped or the
+ * position the search was started for has changed. The result is available with the methods of
+ * {@link java.util.concurrent.Future}.
+ *
+ * <pre>
+ * AiSearchTask task = AiSearchTask.submit(() -&gt; AiAlgorithms.getMiniMaxMove(depth, evaluator));
+ * ...
+ * task.cancel(false);
+ * </pre>
+ *
+ * @author Joe
+ */
+public class AiSearchTask extends FutureTask<AiMoveInformation> {
+
+    private static ExecutorService executor = null;
+
+    final private AiCancellationToken token;
+
+    /**
+     * Constructs a new task. The task has to be run, e.g. by an executor.
+     *
+     * @param search The search, e.g. a call of {@link AiAlgorithms#getMiniMaxMove(int, AiMoveEvaluator)}.
+     */
+    public AiSearchTask(Callable<AiMoveInformation> search) {
+        this(search, new AiCancellationToken());
+    }
+
+    /**
+     * Constructs a new task with the given token.
+     *
+     * @param search The search.
+     * @param token The token of the search.
+     */
+    private AiSearchTask(Callable<AiMoveInformation> search, AiCancellationToken token) {
+        super(() -> token.execute(search));
+        this.token = token;
+    }
+
+    /**
+     * Creates a new task and runs it in a background thread.
+     *
+     * @param search The search, e.g. a call of {@link AiAlgorithms#getMiniMaxMove(int, AiMoveEvaluator)}.
+     * @return The started task.
+     */
+    public static AiSearchTask submit(Callable<AiMoveInformation> search) {
+        AiSearchTask task = new AiSearchTask(search);
+        getExecutor().execute(task);
+        return task;
+    }
+
+    /**
+     * @return The executor for the background searches.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "AiSearchTask");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            };
+            executor = Executors.newCachedThreadPool(factory);
+        }
+        return executor;
+    }
+
+    /**
+     * @return The token of the search.
+     */
+    public AiCancellationToken getToken() {
+        return token;
+    }
+
+    /**
+     * Cancels the search. The search is stopped at its next step, even if it has already started.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        token.cancel();
+        return super.cancel(mayInterruptIfRunning);
+    }
+}
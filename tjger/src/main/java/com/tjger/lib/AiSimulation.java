@@ -0,0 +1,293 @@
+package com.tjger.lib;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+
+/**
+ * A game that is played without the game engine and the user interface, e.g. by an {@link AiTournament}.<p>
+ * While a thread plays a simulation, the artificial intelligence algorithms and the computer players take the
+ * rules, the game state and the current player from the simulation instead of the game engine, so several
+ * simulations can be played by different threads at the same time. The scores of the players, the start player
+ * of the round and the current move within a turn are kept by the simulation, too, so the player lookups of the
+ * {@link GameRules} and the {@link GamePlayer} work without the engine. The game state is changed with a {@code null} game engine, so the game state must not
+ * depend on the engine while a simulation is played.
+ *
+ * @see AiSimulationPlayer
+ * @author Joe
+ */
+public final class AiSimulation {
+
+    private static final ThreadLocal<AiSimulation> currentSimulation = new ThreadLocal<>();
+    private static final int[] SCORE_TYPES = { GamePlayer.SCORE_TURN, GamePlayer.SCORE_ROUND, GamePlayer.SCORE_GAME };
+
+    final private GameRules rules;
+    final private GameState state;
+    final private GamePlayer[] players;
+    final private long thinkingTime;
+    final private int[][] scores;
+    private GamePlayer currentPlayer;
+    private int startPlayerIndex = -1;
+    private int currentMove;
+    private long countNodes;
+
+    /**
+     * Constructs a new simulation.
+     *
+     * @param rules The game rules.
+     * @param state The game state, ready for the first move.
+     * @param players The players of the game.
+     * @param thinkingTime The time in milliseconds the computer players may use for a move.
+     */
+    AiSimulation(GameRules rules, GameState state, GamePlayer[] players, long thinkingTime) {
+        super();
+        this.rules = rules;
+        this.state = state;
+        this.players = players;
+        this.thinkingTime = thinkingTime;
+        this.scores = new int[SCORE_TYPES.length][players.length];
+    }
+
+    /**
+     * @return The simulation played by the calling thread or {@code null} if the thread plays no simulation.
+     */
+    public static AiSimulation current() {
+        return currentSimulation.get();
+    }
+
+    /**
+     * Sets this simulation as the one played by the calling thread.
+     */
+    void bind() {
+        currentSimulation.set(this);
+    }
+
+    /**
+     * Removes the simulation played by the calling thread.
+     */
+    void unbind() {
+        currentSimulation.remove();
+    }
+
+    /**
+     * @return The game rules.
+     */
+    public GameRules getGameRules() {
+        return rules;
+    }
+
+    /**
+     * @return The game state.
+     */
+    public GameState getGameState() {
+        return state;
+    }
+
+    /**
+     * @return The players of the game.
+     */
+    public GamePlayer[] getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return The player who is in turn.
+     */
+    public GamePlayer getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    /**
+     * @param currentPlayer The player who is in turn.
+     */
+    void setCurrentPlayer(GamePlayer currentPlayer) {
+        this.currentPlayer = currentPlayer;
+    }
+
+    /**
+     * Starts a new round, the first move of the round's first turn is played by the given player.
+     *
+     * @param startPlayer The player who starts the round.
+     */
+    void startRound(GamePlayer startPlayer) {
+        startPlayerIndex = getPlayerIndex(startPlayer);
+        currentMove = 1;
+    }
+
+    /**
+     * Counts a complete move, like the game engine does.
+     *
+     * @param turnFinished {@code true} if the move finished the turn, so the next move starts a new turn.
+     */
+    void finishMove(boolean turnFinished) {
+        currentMove = (turnFinished) ? 1 : currentMove + 1;
+    }
+
+    /**
+     * @return The player who started the current round or {@code null} if no round was started yet.
+     */
+    public GamePlayer getFirstPlayer() {
+        return (startPlayerIndex < 0) ? null : players[startPlayerIndex];
+    }
+
+    /**
+     * @return The player who starts the game, the first player that is not drop out.
+     */
+    public GamePlayer getCyclingFirstGamePlayer() {
+        for (GamePlayer player : players) {
+            if (!player.isDropOut()) {
+                return player;
+            }
+        }
+        return players[0];
+    }
+
+    /**
+     * @return The current move within a turn, starting with 1.
+     */
+    public int getCurrentMove() {
+        return currentMove;
+    }
+
+    /**
+     * @param withoutDropOut True if players that are drop out shall not be counted.
+     * @return The number of players.
+     * @see ConstantValue#INCLUDE_DROPOUT
+     * @see ConstantValue#EXCLUDE_DROPOUT
+     */
+    public int getNumberPlayers(boolean withoutDropOut) {
+        int count = 0;
+        for (GamePlayer player : players) {
+            if (!withoutDropOut || !player.isDropOut()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param player A player of the simulation.
+     * @param withoutDropOut True if players that are drop out shall be skipped.
+     * @return The next player or {@code null} if the player does not play the simulation.
+     */
+    public GamePlayer getNextPlayer(GamePlayer player, boolean withoutDropOut) {
+        return getNeighbourPlayer(player, 1, withoutDropOut);
+    }
+
+    /**
+     * @param player A player of the simulation.
+     * @param withoutDropOut True if players that are drop out shall be skipped.
+     * @return The previous player or {@code null} if the player does not play the simulation.
+     */
+    public GamePlayer getPrevPlayer(GamePlayer player, boolean withoutDropOut) {
+        return getNeighbourPlayer(player, players.length - 1, withoutDropOut);
+    }
+
+    /**
+     * @param player A player of the simulation.
+     * @param step 1 for the next player, the number of players minus 1 for the previous player.
+     * @param withoutDropOut True if players that are drop out shall be skipped.
+     * @return The neighbour player or {@code null} if the player does not play the simulation.
+     */
+    private GamePlayer getNeighbourPlayer(GamePlayer player, int step, boolean withoutDropOut) {
+        int index = getPlayerIndex(player);
+        if (index < 0) {
+            return null;
+        }
+        for (int i = 1; i <= players.length; i++) {
+            GamePlayer neighbour = players[(index + i * step) % players.length];
+            if (!withoutDropOut || !neighbour.isDropOut()) {
+                return neighbour;
+            }
+        }
+        return players[(index + step) % players.length];
+    }
+
+    /**
+     * @return The time in milliseconds the computer players may use for a move.
+     */
+    public long getThinkingTime() {
+        return thinkingTime;
+    }
+
+    /**
+     * @param player The player.
+     * @param scoreType The type of the score (SCORE_TURN, SCORE_ROUND, SCORE_GAME).
+     * @return The score of the player or 0 if the player does not play the simulation.
+     */
+    public int getScore(GamePlayer player, int scoreType) {
+        int index = getPlayerIndex(player);
+        for (int i = 0; i < SCORE_TYPES.length; i++) {
+            if (SCORE_TYPES[i] == scoreType && index >= 0) {
+                return scores[i][index];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param player The player.
+     * @param score The score to add.
+     * @param scoreTypes The score types joined with the | operator (SCORE_TURN, SCORE_ROUND, SCORE_GAME).
+     */
+    public void addScore(GamePlayer player, int score, int scoreTypes) {
+        changeScore(player, score, scoreTypes, true);
+    }
+
+    /**
+     * @param player The player.
+     * @param score The score to set.
+     * @param scoreTypes The score types joined with the | operator (SCORE_TURN, SCORE_ROUND, SCORE_GAME).
+     */
+    public void setScore(GamePlayer player, int score, int scoreTypes) {
+        changeScore(player, score, scoreTypes, false);
+    }
+
+    /**
+     * Adds or sets the score of a player.
+     *
+     * @param player The player.
+     * @param score The score.
+     * @param scoreTypes The score types joined with the | operator.
+     * @param add {@code true} to add the score, {@code false} to set it.
+     */
+    private void changeScore(GamePlayer player, int score, int scoreTypes, boolean add) {
+        int index = getPlayerIndex(player);
+        if (index >= 0) {
+            for (int i = 0; i < SCORE_TYPES.length; i++) {
+                if ((scoreTypes & SCORE_TYPES[i]) == SCORE_TYPES[i]) {
+                    scores[i][index] = (add) ? scores[i][index] + score : score;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param player The player.
+     * @return The index of the player or -1 if the player does not play the simulation.
+     */
+    int getPlayerIndex(GamePlayer player) {
+        for (int i = 0; i < players.length; i++) {
+            if (players[i].equals(player)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the number of searched nodes of a finished search.
+     *
+     * @param count The number of evaluated positions or Monte Carlo iterations.
+     */
+    void addCountNodes(long count) {
+        countNodes += count;
+    }
+
+    /**
+     * @return The number of nodes searched since the start of the simulation.
+     */
+    public long getCountNodes() {
+        return countNodes;
+    }
+}
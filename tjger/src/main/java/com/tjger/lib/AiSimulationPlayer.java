@@ -0,0 +1,22 @@
+package com.tjger.lib;
+
+import com.tjger.game.MoveInformation;
+
+/**
+ * Interface for a player that can play an {@link AiSimulation}. The player returns its move directly,
+ * without thinking time and without the game engine.
+ *
+ * @see AiTournament
+ * @author Joe
+ */
+public interface AiSimulationPlayer {
+
+    /**
+     * Returns the move of the player for the current game state of the simulation that is played by the
+     * calling thread, see {@link AiSimulation#current()}.
+     *
+     * @return The move or {@code null} if the player cannot move.
+     */
+    public MoveInformation getSimulationMove();
+
+}
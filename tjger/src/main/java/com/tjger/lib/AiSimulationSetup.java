@@ -0,0 +1,40 @@
+package com.tjger.lib;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+
+/**
+ * Interface to create the games of an {@link AiTournament}. Every game gets new rules and a new game state,
+ * because the games are played by several threads at the same time.
+ *
+ * @see AiTournament
+ * @author Joe
+ */
+public interface AiSimulationSetup {
+
+    /**
+     * @return New game rules.
+     */
+    public GameRules createGameRules();
+
+    /**
+     * Creates the game state for a new game.
+     *
+     * @param players The players of the game.
+     * @return A new game state that is ready for the first move.
+     */
+    public GameState createGameState(GamePlayer[] players);
+
+    /**
+     * Prepares the game state for the next round, if the round is finished but the game is not.
+     *
+     * @param state The game state.
+     * @param players The players of the game.
+     * @return {@code true} if the next round can be played, {@code false} to stop the game; the default is {@code false}.
+     */
+    public default boolean startNewRound(GameState state, GamePlayer[] players) {
+        return false;
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.tjger.lib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+import com.tjger.game.MoveInformation;
+
+import at.hagru.hgbase.lib.HGBaseLog;
+
+/**
+ * Plays games between computer player types without the game engine and the user interface, to measure the
+ * strength and the speed of the artificial intelligence, e.g. to choose the search depth for a device.<p>
+ * Every game is an {@link AiSimulation} with new rules, a new game state and new players, created by the
+ * {@link AiSimulationSetup} and the factories of the player types. The games are played at full speed - without
+ * delays, dialogs and the game engine - by several threads at the same time. The player types take turns at the
+ * seats: in game {@code g} the seat {@code s} is taken by the player type {@code (g + s) % number of types}.
+ * The first player of every round is taken from {@link GameRules#getStartPlayer(GameState)} and the next player
+ * from {@link GameRules#getNextPlayer(GamePlayer, GameState)}. The rules must look up the players with the methods
+ * of {@link GameRules}, like the {@link com.tjger.game.SimpleGameRules} do, and not ask the game engine directly.
+ *
+ * <pre>
+ * AiTournament tournament = new AiTournament(setup);
+ * tournament.addPlayerType("depth 3", seat -&gt; new MyComputerPlayer("Player " + seat, 3));
+ * tournament.addPlayerType("depth 5", seat -&gt; new MyComputerPlayer("Player " + seat, 5));
+ * tournament.setNumGames(200);
+ * System.out.println(tournament.play());
+ * </pre>
+ *
+ * @see AiTournamentResult
+ * @author Joe
+ */
+public class AiTournament {
+
+    /**
+     * The default number of games.
+     */
+    final public static int DEFAULT_NUM_GAMES = 100;
+    /**
+     * The default time in milliseconds the players may use for a move.
+     */
+    final public static long DEFAULT_THINKING_TIME = 1000;
+    /**
+     * The default maximum number of moves of a game, then the game is aborted.
+     */
+    final public static int DEFAULT_MAX_MOVES = 1000;
+
+    final private AiSimulationSetup setup;
+    final private List<String> typeNames = new ArrayList<>();
+    final private List<IntFunction<? extends GamePlayer>> typeFactories = new ArrayList<>();
+    private int numPlayers = 2;
+    private int numGames = DEFAULT_NUM_GAMES;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long thinkingTime = DEFAULT_THINKING_TIME;
+    private int maxMoves = DEFAULT_MAX_MOVES;
+
+    /**
+     * Constructs a new tournament.
+     *
+     * @param setup The class to create the rules and game states of the games.
+     */
+    public AiTournament(AiSimulationSetup setup) {
+        super();
+        this.setup = setup;
+    }
+
+    /**
+     * Adds a player type. The factory creates a new player for a seat of a game, the player has to implement
+     * {@link AiSimulationPlayer} and must not be equal to the players of the other seats.
+     *
+     * @param name The name of the player type.
+     * @param factory The factory that creates a player for the given seat.
+     */
+    public void addPlayerType(String name, IntFunction<? extends GamePlayer> factory) {
+        typeNames.add(name);
+        typeFactories.add(factory);
+    }
+
+    /**
+     * @param numPlayers The number of players of a game, the default is 2.
+     */
+    public void setNumPlayers(int numPlayers) {
+        this.numPlayers = numPlayers;
+    }
+
+    /**
+     * @param numGames The number of games to play.
+     */
+    public void setNumGames(int numGames) {
+        this.numGames = numGames;
+    }
+
+    /**
+     * @param parallelism The number of threads that play the games, the default is the number of processors.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param thinkingTime The time in milliseconds the players may use for a move, see {@link AiSimulation#getThinkingTime()}.
+     */
+    public void setThinkingTime(long thinkingTime) {
+        this.thinkingTime = thinkingTime;
+    }
+
+    /**
+     * @param maxMoves The maximum number of moves of a game, then the game is aborted.
+     */
+    public void setMaxMoves(int maxMoves) {
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * Plays all games of the tournament and waits till they are finished.
+     *
+     * @return The result of the tournament.
+     * @throws IllegalStateException if no player type was added.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public AiTournamentResult play() throws IllegalStateException, InterruptedException {
+        if (typeNames.isEmpty()) {
+            throw new IllegalStateException("No player type was added to the tournament!");
+        }
+        AiTournamentResult result = new AiTournamentResult(typeNames);
+        long startTime = System.currentTimeMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(parallelism, 1));
+        try {
+            for (int game = 0; game < numGames; game++) {
+                int gameIndex = game;
+                pool.execute(() -> playGame(gameIndex, result));
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                // wait till all games are finished
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        result.setDuration(System.currentTimeMillis() - startTime);
+        return result;
+    }
+
+    /**
+     * Plays a game and adds it to the result. Is called by the threads of the tournament.
+     *
+     * @param gameIndex The index of the game.
+     * @param result The result of the tournament.
+     */
+    private void playGame(int gameIndex, AiTournamentResult result) {
+        int[] types = new int[numPlayers];
+        GamePlayer[] players = new GamePlayer[numPlayers];
+        for (int seat = 0; seat < numPlayers; seat++) {
+            types[seat] = (gameIndex + seat) % typeNames.size();
+            players[seat] = typeFactories.get(types[seat]).apply(seat);
+        }
+        GameRules rules = setup.createGameRules();
+        GameState state = setup.createGameState(players);
+        AiSimulation simulation = new AiSimulation(rules, state, players, thinkingTime);
+        simulation.bind();
+        try {
+            if (playMoves(simulation, types, result)) {
+                result.addGame(types, rules.getGameRanking(players));
+            } else {
+                result.addAbortedGame();
+            }
+        } catch (RuntimeException e) {
+            HGBaseLog.logWarn("Game " + gameIndex + " of the tournament failed: " + e);
+            result.addAbortedGame();
+        } finally {
+            simulation.unbind();
+        }
+    }
+
+    /**
+     * Plays the moves of a game till it is finished.
+     *
+     * @param simulation The simulation of the game.
+     * @param types The indexes of the player types of the seats.
+     * @param result The result of the tournament.
+     * @return {@code true} if the game is finished, {@code false} if it was aborted.
+     */
+    private boolean playMoves(AiSimulation simulation, int[] types, AiTournamentResult result) {
+        GameRules rules = simulation.getGameRules();
+        GameState state = simulation.getGameState();
+        GamePlayer[] players = simulation.getPlayers();
+        GamePlayer player = rules.getStartPlayer(state);
+        simulation.startRound(player);
+        for (int countMoves = 0; !rules.isGameFinished(state); countMoves++) {
+            if (rules.isRoundFinished(state)) {
+                if (!setup.startNewRound(state, players)) {
+                    return true;
+                }
+                player = rules.getStartPlayer(state);
+                simulation.startRound(player);
+            }
+            int seat = simulation.getPlayerIndex(player);
+            if (countMoves >= maxMoves || seat < 0) {
+                return false;
+            }
+            simulation.setCurrentPlayer(player);
+            long countNodes = simulation.getCountNodes();
+            long startTime = System.nanoTime();
+            MoveInformation move = ((AiSimulationPlayer) player).getSimulationMove();
+            result.addMove(types[seat], System.nanoTime() - startTime, simulation.getCountNodes() - countNodes);
+            if (move == null || !rules.isValidMove(move, state)) {
+                HGBaseLog.logWarn("Player " + player + " did no valid move, the game is aborted!");
+                return false;
+            }
+            state.changeState(player, move, null);
+            if (MoveUtil.isMoveComplete(move)) {
+                rules.doScoring(players, state);
+                boolean turnFinished = rules.isTurnFinished(state);
+                player = rules.getNextPlayer(player, state);
+                simulation.finishMove(turnFinished);
+            }
+        }
+        return true;
+    }
+}
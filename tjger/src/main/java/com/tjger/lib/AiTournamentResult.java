@@ -0,0 +1,219 @@
+package com.tjger.lib;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The result of an {@link AiTournament}: the win rates of the player types, the number of moves and nodes
+ * per second and the percentiles of the time the players needed for a move. The nodes are the positions
+ * evaluated by the Minimax algorithms and the iterations of the Monte Carlo tree search.
+ *
+ * @see AiTournament
+ * @author Joe
+ */
+public class AiTournamentResult {
+
+    final private String[] typeNames;
+    final private int[] countGames;
+    final private int[] countWins;
+    final private int[] countDraws;
+    final private long[] countMoves;
+    final private long[] countNodes;
+    final private long[] thinkingNanos;
+    final private long[][] latencies;
+    private int countAborted;
+    private long duration;
+
+    /**
+     * Constructs a new result.
+     *
+     * @param typeNames The names of the player types.
+     */
+    AiTournamentResult(List<String> typeNames) {
+        super();
+        this.typeNames = typeNames.toArray(new String[0]);
+        int numTypes = this.typeNames.length;
+        this.countGames = new int[numTypes];
+        this.countWins = new int[numTypes];
+        this.countDraws = new int[numTypes];
+        this.countMoves = new long[numTypes];
+        this.countNodes = new long[numTypes];
+        this.thinkingNanos = new long[numTypes];
+        this.latencies = new long[numTypes][64];
+    }
+
+    /**
+     * Adds a move of a player.
+     *
+     * @param type The index of the player type.
+     * @param nanos The time the player needed for the move in nanoseconds.
+     * @param nodes The number of nodes the player searched for the move.
+     */
+    synchronized void addMove(int type, long nanos, long nodes) {
+        int index = (int) countMoves[type];
+        if (index == latencies[type].length) {
+            latencies[type] = Arrays.copyOf(latencies[type], index * 2);
+        }
+        latencies[type][index] = nanos;
+        countMoves[type]++;
+        countNodes[type] += nodes;
+        thinkingNanos[type] += nanos;
+    }
+
+    /**
+     * Adds the ranking of a finished game.
+     *
+     * @param types The indexes of the player types of the seats.
+     * @param ranks The ranks of the seats, the best rank is 1.
+     */
+    synchronized void addGame(int[] types, int[] ranks) {
+        int countFirst = 0;
+        for (int rank : ranks) {
+            if (rank == 1) {
+                countFirst++;
+            }
+        }
+        for (int seat = 0; seat < types.length; seat++) {
+            countGames[types[seat]]++;
+            if (ranks[seat] == 1) {
+                if (countFirst == 1) {
+                    countWins[types[seat]]++;
+                } else {
+                    countDraws[types[seat]]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a game that was aborted, because it lasted too long or a player did no valid move.
+     */
+    synchronized void addAbortedGame() {
+        countAborted++;
+    }
+
+    /**
+     * @param duration The duration of the tournament in milliseconds.
+     */
+    synchronized void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * @return The names of the player types.
+     */
+    public String[] getTypeNames() {
+        return typeNames.clone();
+    }
+
+    /**
+     * @param type The index of the player type.
+     * @return The number of finished games of the player type, a game counts once for every seat of the type.
+     */
+    public synchronized int getCountGames(int type) {
+        return countGames[type];
+    }
+
+    /**
+     * @param type The index of the player type.
+     * @return The number of games the player type won alone.
+     */
+    public synchronized int getCountWins(int type) {
+        return countWins[type];
+    }
+
+    /**
+     * @param type The index of the player type.
+     * @return The number of games the player type shared the first rank with other players.
+     */
+    public synchronized int getCountDraws(int type) {
+        return countDraws[type];
+    }
+
+    /**
+     * @param type The index of the player type.
+     * @return The rate of won games (draws count half) between 0 and 1.
+     */
+    public synchronized double getWinRate(int type) {
+        return (countGames[type] == 0) ? 0 : (countWins[type] + countDraws[type] * 0.5) / countGames[type];
+    }
+
+    /**
+     * @return The number of aborted games.
+     */
+    public synchronized int getCountAborted() {
+        return countAborted;
+    }
+
+    /**
+     * @return The duration of the tournament in milliseconds.
+     */
+    public synchronized long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @param type The index of the player type.
+     * @return The number of moves of the player type.
+     */
+    public synchronized long getCountMoves(int type) {
+        return countMoves[type];
+    }
+
+    /**
+     * @return The number of moves of all players per second of the tournament.
+     */
+    public synchronized double getMovesPerSecond() {
+        long moves = 0;
+        for (long count : countMoves) {
+            moves += count;
+        }
+        return (duration == 0) ? 0 : moves * 1000.0 / duration;
+    }
+
+    /**
+     * @param type The index of the player type.
+     * @return The number of nodes the player type searched per second of thinking time.
+     */
+    public synchronized double getNodesPerSecond(int type) {
+        return (thinkingNanos[type] == 0) ? 0 : countNodes[type] * 1e9 / thinkingNanos[type];
+    }
+
+    /**
+     * Returns the time the player type needed for a move that is not exceeded by the given percentage of moves.
+     *
+     * @param type The index of the player type.
+     * @param percentile The percentile between 0 and 100, e.g. 50 for the median.
+     * @return The time in milliseconds.
+     */
+    public synchronized double getLatencyPercentile(int type, double percentile) {
+        int size = (int) countMoves[type];
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies[type], size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * size) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * @return A table with the results of the player types.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH, "%-20s %6s %6s %6s %8s %10s %12s %9s %9s %9s %9s%n", "type", "games", "wins",
+                                "draws", "win rate", "moves", "nodes/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (int type = 0; type < typeNames.length; type++) {
+            sb.append(String.format(Locale.ENGLISH, "%-20s %6d %6d %6d %7.1f%% %10d %12.0f %9.1f %9.1f %9.1f %9.1f%n", typeNames[type],
+                                    countGames[type], countWins[type], countDraws[type], getWinRate(type) * 100, countMoves[type],
+                                    getNodesPerSecond(type), getLatencyPercentile(type, 50), getLatencyPercentile(type, 90),
+                                    getLatencyPercentile(type, 99), getLatencyPercentile(type, 100)));
+        }
+        sb.append(String.format(Locale.ENGLISH, "aborted games: %d, duration: %d ms, moves/s: %.1f%n", countAborted, duration,
+                                getMovesPerSecond()));
+        return sb.toString();
+    }
+}
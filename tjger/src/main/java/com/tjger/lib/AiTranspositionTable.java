@@ -0,0 +1,220 @@
+package com.tjger.lib;
+
+/**
+ * A bounded transposition table for the artificial intelligence algorithms (see <a
+ * href="https://en.wikipedia.org/wiki/Transposition_table">Wikipedia</a>).<p>
+ * Stores the search results of positions, so the search can reuse them if the same position is reached
+ * by a different order of moves. Each entry holds the evaluation value together with the information if
+ * the value is exact or only a lower or upper bound, the remaining search depth and the best move.<p>
+ * The table has a fixed number of entries. If two positions use the same entry, the result of the
+ * current search replaces the result of a former search, otherwise the result with the higher search
+ * depth is kept.<p>
+ * The table is only used if the game state implements {@link com.tjger.game.HashableGameState}.
+ * It can be shared by several threads, but to read an entry consistently the calls of {@link #probe(long)}
+ * and the getters of the entry have to be synchronized on the table.
+ *
+ * @see AiAlgorithms
+ * @author Joe
+ */
+public class AiTranspositionTable {
+
+    /**
+     * The default size of the table as power of two (2^16 entries).
+     */
+    final public static int DEFAULT_SIZE_BITS = 16;
+    /**
+     * The maximum size of the table as power of two.
+     */
+    final public static int MAX_SIZE_BITS = 24;
+
+    /**
+     * Flag of an empty entry.
+     */
+    final public static byte FLAG_EMPTY = 0;
+    /**
+     * Flag of an entry with an exact evaluation value.
+     */
+    final public static byte FLAG_EXACT = 1;
+    /**
+     * Flag of an entry where the evaluation value is a lower bound (the real value is at least this value).
+     */
+    final public static byte FLAG_LOWER_BOUND = 2;
+    /**
+     * Flag of an entry where the evaluation value is an upper bound (the real value is at most this value).
+     */
+    final public static byte FLAG_UPPER_BOUND = 3;
+
+    final private int mask;
+    final private long[] keys;
+    final private long[] values;
+    final private int[] depths;
+    final private int[] ages;
+    final private byte[] flags;
+    final private AiMoveInformation[] bestMoves;
+    private int currentAge;
+    private long countHits;
+    private long countMisses;
+    private long countStores;
+
+    /**
+     * Constructs a new instance with the default size.
+     */
+    public AiTranspositionTable() {
+        this(DEFAULT_SIZE_BITS);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param sizeBits The size of the table as power of two, e.g. 16 for 65536 entries.
+     * @throws IllegalArgumentException if the size is not between 1 and {@link #MAX_SIZE_BITS}.
+     */
+    public AiTranspositionTable(int sizeBits) throws IllegalArgumentException {
+        super();
+        if (sizeBits < 1 || sizeBits > MAX_SIZE_BITS) {
+            throw new IllegalArgumentException("The size of the transposition table must be between 1 and " + MAX_SIZE_BITS + " bits!");
+        }
+        int size = 1 << sizeBits;
+        this.mask = size - 1;
+        this.keys = new long[size];
+        this.values = new long[size];
+        this.depths = new int[size];
+        this.ages = new int[size];
+        this.flags = new byte[size];
+        this.bestMoves = new AiMoveInformation[size];
+    }
+
+    /**
+     * @return The number of entries of the table.
+     */
+    public int getSize() {
+        return keys.length;
+    }
+
+    /**
+     * Starts a new search. Entries of former searches are kept but can be replaced by new entries,
+     * the counters for hits and misses are reset.
+     */
+    public synchronized void startSearch() {
+        currentAge++;
+        countHits = 0;
+        countMisses = 0;
+        countStores = 0;
+    }
+
+    /**
+     * Removes all entries from the table.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 0;
+            flags[i] = FLAG_EMPTY;
+            bestMoves[i] = null;
+        }
+    }
+
+    /**
+     * Returns the index of the entry for the given key.
+     *
+     * @param key The hash key of the position.
+     * @return The index of the entry or -1 if the position is not stored.
+     */
+    public synchronized int probe(long key) {
+        int index = getIndex(key);
+        if (flags[index] != FLAG_EMPTY && keys[index] == key) {
+            countHits++;
+            return index;
+        }
+        countMisses++;
+        return -1;
+    }
+
+    /**
+     * Stores the search result of a position.
+     *
+     * @param key The hash key of the position.
+     * @param depth The remaining search depth of the result.
+     * @param flag The flag of the evaluation value ({@link #FLAG_EXACT}, {@link #FLAG_LOWER_BOUND} or {@link #FLAG_UPPER_BOUND}).
+     * @param value The evaluation value.
+     * @param bestMove The best move of the position, can be {@code null}.
+     */
+    public synchronized void store(long key, int depth, byte flag, long value, AiMoveInformation bestMove) {
+        int index = getIndex(key);
+        if (flags[index] == FLAG_EMPTY || keys[index] == key || ages[index] != currentAge || depth >= depths[index]) {
+            if (bestMove == null && keys[index] == key && flags[index] != FLAG_EMPTY) {
+                // keep the best move of an older result of the same position
+                bestMove = bestMoves[index];
+            }
+            keys[index] = key;
+            depths[index] = depth;
+            ages[index] = currentAge;
+            flags[index] = flag;
+            values[index] = value;
+            bestMoves[index] = bestMove;
+            countStores++;
+        }
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The remaining search depth of the entry.
+     */
+    public int getDepth(int index) {
+        return depths[index];
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The flag of the entry's evaluation value.
+     */
+    public byte getFlag(int index) {
+        return flags[index];
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The evaluation value of the entry.
+     */
+    public long getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The best move of the entry, can be {@code null}.
+     */
+    public AiMoveInformation getBestMove(int index) {
+        return bestMoves[index];
+    }
+
+    /**
+     * @return The number of found positions since the start of the current search.
+     */
+    public long getCountHits() {
+        return countHits;
+    }
+
+    /**
+     * @return The number of not found positions since the start of the current search.
+     */
+    public long getCountMisses() {
+        return countMisses;
+    }
+
+    /**
+     * @return The number of stored positions since the start of the current search.
+     */
+    public long getCountStores() {
+        return countStores;
+    }
+
+    /**
+     * Returns the index of the entry for the given key.
+     *
+     * @param key The hash key.
+     * @return The index of the entry.
+     */
+    private int getIndex(long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
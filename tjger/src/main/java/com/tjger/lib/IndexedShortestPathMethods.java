@@ -0,0 +1,45 @@
+package com.tjger.lib;
+
+/**
+ * Optional extension of the shortest path methods that gives access to the connections by the indexes of the fields,
+ * so the neighbours of a field do not have to be created as an array for every visited field.<p>
+ * The connections of the field with index {@code i} are numbered from {@code getFirstConnection(i)} to
+ * {@code getFirstConnection(i + 1) - 1}, so {@code getFirstConnection} must also accept the number of fields as index.
+ * The methods {@link #getNeighbours(Object)} and {@link #getWeight(Object, Object)} are not used by the
+ * {@link ShortestPathFinder} then.
+ *
+ * @param <T> the type of the field objects
+ * @author Joe
+ */
+public interface IndexedShortestPathMethods<T> extends ShortestPathMethods<T> {
+
+    /**
+     * @param index The index of a field or the number of fields.
+     * @return The number of the first connection of the field.
+     */
+    public int getFirstConnection(int index);
+
+    /**
+     * @param connection The number of a connection.
+     * @return The index of the target field of the connection.
+     */
+    public int getConnectionTarget(int connection);
+
+    /**
+     * @param connection The number of a connection.
+     * @return The weight of the connection.
+     */
+    public int getConnectionWeight(int connection);
+
+    /**
+     * Checks whether a connection may be used by the path.
+     *
+     * @param index The index of the field the connection starts.
+     * @param connection The number of the connection.
+     * @return True if the connection may be used (default is true).
+     */
+    public default boolean isValidConnection(int index, int connection) {
+        return true;
+    }
+
+}
@@ -22,6 +22,10 @@ import at.hagru.hgbase.lib.HGBaseTools;
  */
 public class NetworkUtil {
 
+    private static final String DELTA_CHARS = String.join("", ConstantValue.getNetworkSpecialChars());
+    private static final char DELTA_SEPARATOR = ':';
+    private static final int MAX_DELTA_CELLS = 250000; // limit of the table for comparing the changed parts
+
     private NetworkUtil() {
         super();
     }
@@ -288,4 +292,170 @@ public class NetworkUtil {
         });
         return map;
     }
+
+    /**
+     * Creates the changes from an old to a new network string, e.g. of a game state. The strings are compared by their parts
+     * between the network characters, the delta contains the replaced ranges of the old string. If only some parts of the
+     * string have changed, the delta is much shorter than the new string.
+     *
+     * @param oldData The old network string.
+     * @param newData The new network string.
+     * @return The delta for {@link #applyDelta(String, String)}, null if it would not be shorter than the new string.
+     */
+    public static String createDelta(String oldData, String newData) {
+        if (oldData == null || newData == null) {
+            return null;
+        }
+        int[] oldTokens = getTokenStarts(oldData);
+        int[] newTokens = getTokenStarts(newData);
+        int oldEnd = oldTokens.length - 1;
+        int newEnd = newTokens.length - 1;
+        int prefix = 0;
+        while (prefix < oldEnd && prefix < newEnd && isSameToken(oldData, oldTokens, prefix, newData, newTokens, prefix)) {
+            prefix++;
+        }
+        while (oldEnd > prefix && newEnd > prefix && isSameToken(oldData, oldTokens, oldEnd - 1, newData, newTokens, newEnd - 1)) {
+            oldEnd--;
+            newEnd--;
+        }
+        StringBuilder delta = new StringBuilder();
+        int rows = oldEnd - prefix;
+        int cols = newEnd - prefix;
+        if ((long) (rows + 1) * (cols + 1) > MAX_DELTA_CELLS) {
+            // too many changes to compare them, replace the whole range
+            appendDelta(delta, oldData, oldTokens, prefix, oldEnd, newData, newTokens, prefix, newEnd);
+        } else {
+            // the length of the longest common token sequence of the remaining old and new tokens
+            int width = cols + 1;
+            int[] common = new int[(rows + 1) * width];
+            for (int i = rows - 1; i >= 0; i--) {
+                for (int j = cols - 1; j >= 0; j--) {
+                    common[i * width + j] = (isSameToken(oldData, oldTokens, prefix + i, newData, newTokens, prefix + j))
+                            ? common[(i + 1) * width + j + 1] + 1 : Math.max(common[(i + 1) * width + j], common[i * width + j + 1]);
+                }
+            }
+            int i = 0;
+            int j = 0;
+            int changeOld = -1;
+            int changeNew = -1;
+            while (i < rows || j < cols) {
+                if (i < rows && j < cols && isSameToken(oldData, oldTokens, prefix + i, newData, newTokens, prefix + j)) {
+                    if (changeOld >= 0) {
+                        appendDelta(delta, oldData, oldTokens, prefix + changeOld, prefix + i, newData, newTokens, prefix + changeNew, prefix + j);
+                        changeOld = -1;
+                    }
+                    i++;
+                    j++;
+                } else {
+                    if (changeOld < 0) {
+                        changeOld = i;
+                        changeNew = j;
+                    }
+                    if (j < cols && (i >= rows || common[i * width + j + 1] >= common[(i + 1) * width + j])) {
+                        j++;
+                    } else {
+                        i++;
+                    }
+                }
+            }
+            if (changeOld >= 0) {
+                appendDelta(delta, oldData, oldTokens, prefix + changeOld, prefix + rows, newData, newTokens, prefix + changeNew, prefix + cols);
+            }
+        }
+        return (delta.length() < newData.length()) ? delta.toString() : null;
+    }
+
+    /**
+     * Applies the changes created by {@link #createDelta(String, String)}.
+     *
+     * @param oldData The old network string the delta was created for.
+     * @param delta The delta.
+     * @return The new network string or null if the delta does not fit to the old string.
+     */
+    public static String applyDelta(String oldData, String delta) {
+        if (oldData == null || delta == null) {
+            return null;
+        }
+        StringBuilder data = new StringBuilder(oldData.length() + delta.length());
+        int oldPos = 0;
+        int pos = 0;
+        try {
+            while (pos < delta.length()) {
+                int[] values = new int[3];
+                for (int k = 0; k < values.length; k++) {
+                    int end = delta.indexOf(DELTA_SEPARATOR, pos);
+                    values[k] = Integer.parseInt(delta.substring(pos, end));
+                    pos = end + 1;
+                }
+                int start = values[0];
+                int removed = values[1];
+                int inserted = values[2];
+                if (start < oldPos || removed < 0 || start + removed > oldData.length() || inserted < 0 || pos + inserted > delta.length()) {
+                    return null;
+                }
+                data.append(oldData, oldPos, start).append(delta, pos, pos + inserted);
+                oldPos = start + removed;
+                pos += inserted;
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+        return data.append(oldData, oldPos, oldData.length()).toString();
+    }
+
+    /**
+     * Splits a network string into tokens, every network character is one token and every text between them.
+     *
+     * @param data The network string.
+     * @return The start positions of the tokens and the length of the string as last element.
+     */
+    private static int[] getTokenStarts(String data) {
+        int[] starts = new int[data.length() + 1];
+        int count = 0;
+        for (int i = 0; i < data.length(); i++) {
+            if (i == 0 || DELTA_CHARS.indexOf(data.charAt(i)) >= 0 || DELTA_CHARS.indexOf(data.charAt(i - 1)) >= 0) {
+                starts[count++] = i;
+            }
+        }
+        starts[count++] = data.length();
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * @param oldData The old network string.
+     * @param oldTokens The token starts of the old string.
+     * @param oldIndex The index of the old token.
+     * @param newData The new network string.
+     * @param newTokens The token starts of the new string.
+     * @param newIndex The index of the new token.
+     * @return True if the token of the old string equals the token of the new string.
+     */
+    private static boolean isSameToken(String oldData, int[] oldTokens, int oldIndex, String newData, int[] newTokens, int newIndex) {
+        int length = oldTokens[oldIndex + 1] - oldTokens[oldIndex];
+        return length == newTokens[newIndex + 1] - newTokens[newIndex]
+                && oldData.regionMatches(oldTokens[oldIndex], newData, newTokens[newIndex], length);
+    }
+
+    /**
+     * Appends the replacement of a range of old tokens by a range of new tokens: the start and length of the old range,
+     * the length of the new text and the new text.
+     *
+     * @param delta The delta to append the replacement.
+     * @param oldData The old network string.
+     * @param oldTokens The token starts of the old string.
+     * @param oldFrom The index of the first replaced old token.
+     * @param oldTo The index after the last replaced old token.
+     * @param newData The new network string.
+     * @param newTokens The token starts of the new string.
+     * @param newFrom The index of the first new token.
+     * @param newTo The index after the last new token.
+     */
+    private static void appendDelta(StringBuilder delta, String oldData, int[] oldTokens, int oldFrom, int oldTo,
+                                    String newData, int[] newTokens, int newFrom, int newTo) {
+        int start = oldTokens[oldFrom];
+        int insertStart = newTokens[newFrom];
+        int insertEnd = newTokens[newTo];
+        delta.append(start).append(DELTA_SEPARATOR).append(oldTokens[oldTo] - start).append(DELTA_SEPARATOR)
+             .append(insertEnd - insertStart).append(DELTA_SEPARATOR).append(newData, insertStart, insertEnd);
+    }
 }
@@ -1,118 +1,69 @@
 package com.tjger.lib;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * Implements the algorithm for finding a shortest path.
  * Needs an implementation of ShortestPathMethods to handle
- * the specific fields that are used and returns a ShortestPath object.
+ * the specific fields that are used and returns a ShortestPath object.<p>
+ * The fields are visited in the order of a priority queue (Dijkstra algorithm). If the methods return an
+ * estimation for the remaining weight with {@link ShortestPathMethods#getHeuristicWeight(Object)}, the fields
+ * nearer to the target are visited first (A* algorithm). To search many paths use a {@link ShortestPathSearch}.
  *
  * @author hagru
  */
 public class ShortestPathFinder {
 
-    private static final int NOVISIT = 0; // node was visited
-    private static final int VISITED = 1; // node wasn't visited
-
-
     private ShortestPathFinder() {
         super();
     }
 
     /**
-     * Find the shortest path, implements the shortest-path-algorithm.
+     * Find the shortest path, implements the shortest-path-algorithm.<p>
+     * Paths with a higher weight than {@link ShortestPathMethods#getMaxWeightToSearch()} are not searched.
      *
      * @param methods The object that holds the context specific implentations of necessary methods for the shortest path algorithm.
      * @return A shortest path object or null if no path is available.
      */
     public static <T> ShortestPath<T> find(ShortestPathMethods<T> methods) {
         T[] fieldList = methods.getAllFields();
-        int maxNrNodes = fieldList.length;
         int from = methods.getIndexOfField(methods.getStartField());
         int to = methods.getIndexOfField(methods.getTargetField());
         if (from >= 0 && to >= 0) {
             // if "from" and "to" are the same, create a simple shortest path and return it
-            if (from == to){
+            if (from == to) {
                 List<T> path = new ArrayList<>();
                 path.add(methods.getStartField());
                 return new ShortestPath<>(path, 0);
             } else {
-                // declare and init the variables for the algorithm
-                int[] parent = createIntList(maxNrNodes, -1);        // field for finding the parent
-                int[] weight = createIntList(maxNrNodes, 0);         // weight from the origin node
-                int[] allNodes = createIntList(maxNrNodes, NOVISIT); // remembers which nodes are already visited
-                int minW=-1;                    // actually shortest way
-                int nearN=-1;                   // neighbour node with shortest way
-                int fromN=-1;                   // node from where to the shortest way
-                boolean neighbourFound=false;   // was a neighbour found in this turn?
-                int maximumWeight = methods.getMaxWeightToSearch();
-                allNodes[from]=VISITED;
-                do {
-                    neighbourFound=false;
-                    // go through all visited nodes
-                    for (int i=0; i<maxNrNodes; i++) {
-                        if (allNodes[i] == VISITED) {
-                            // search for not visited neighbours
-                            T[] neighbours = methods.getNeighbours(fieldList[i]);
-                            for (int j=0; j<neighbours.length;j++) {
-                                int neighbourIndex = methods.getIndexOfField(neighbours[j]);
-                                if (allNodes[neighbourIndex]==NOVISIT) {
-                                    int newW = methods.getWeight(fieldList[i], fieldList[neighbourIndex]);
-                                    // look if there is the shortest new path
-                                    if (!neighbourFound || (newW + weight[i])<minW) {
-                                        fromN = i;
-                                        nearN = neighbourIndex;
-                                        minW = weight[i] + newW;
-                                        neighbourFound = true;
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    // Remember the new shortest path
-                    if (neighbourFound) {
-                        allNodes[nearN]=VISITED;
-                        weight[nearN] = minW;
-                        parent[nearN]=fromN;
-                        if (maximumWeight>0 && maximumWeight<minW) {
-                            // break searching as maximum to look for weight is reached
-                            break;
-                        }
-                    } else {
-                        // there was no neighbour found in this turn
-                        // node "from" is not reachable from node "to", return null
-                        return null;
-                    }
-                } while (nearN != to);  // end loop when node "to" was found
-                // a path was found, insert the origin node
-                List<T> path = new ArrayList<>();
-                path.add(fieldList[to]);
-                // insert nodes in the correct order
-                int i=to;
-                do {
-                    path.add(fieldList[parent[i]]);
-                    i = parent[i];
-                } while (i!=from);
-                // return the new shortest path, reverse order
-                Collections.reverse(path);
-                return new ShortestPath<>(path, minW);
+                ShortestPathSearch<T> search = new ShortestPathSearch<>(methods, fieldList);
+                if (search.search(from, to, true)) {
+                    return search.getPath(to);
+                }
+                // node "to" is not reachable from node "from" (within the maximum weight)
             }
         }
         return null;
     }
 
     /**
-     * @param fieldLength The length of the list.
-     * @param defaultValue The default value for each entry.
-     * @return The new created list.
+     * Finds the weights of the shortest paths from the start field to all fields, the target field is not used.<p>
+     * Paths with a higher weight than {@link ShortestPathMethods#getMaxWeightToSearch()} are not searched.
+     *
+     * @param methods The object that holds the context specific implentations of necessary methods for the shortest path algorithm.
+     * @return The weights in the order of {@link ShortestPathMethods#getAllFields()}, -1 for fields that are not reachable;
+     *         null if the start field is not available.
      */
-    private static int[] createIntList(int listLength, int defaultValue) {
-        int[] list = new int[listLength];
-        Arrays.fill(list, defaultValue);
-        return list;
+    public static <T> int[] findWeights(ShortestPathMethods<T> methods) {
+        T[] fieldList = methods.getAllFields();
+        int from = methods.getIndexOfField(methods.getStartField());
+        if (from >= 0) {
+            ShortestPathSearch<T> search = new ShortestPathSearch<>(methods, fieldList);
+            search.search(from, -1, false);
+            return search.getWeights();
+        }
+        return null;
     }
 
 }
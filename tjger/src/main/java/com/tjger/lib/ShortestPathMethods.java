@@ -56,4 +56,15 @@ public interface ShortestPathMethods<T> {
      */
     public int getMaxWeightToSearch();
 
+    /**
+     * Estimates the weight from a field to the target field, to search the fields nearer to the target first (A* algorithm).
+     * The estimation must never be higher than the real weight, otherwise the found path is not the shortest one.
+     *
+     * @param field A field.
+     * @return The estimated weight from the field to the target field (default is 0, i.e. no estimation).
+     */
+    public default int getHeuristicWeight(T field) {
+        return 0;
+    }
+
 }
@@ -0,0 +1,370 @@
+package com.tjger.lib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A reusable shortest path search over the fields of a {@link ShortestPathMethods} object, for the queries of the artificial
+ * intelligence that need many paths, e.g. the distances of all own pieces to the goal or the nearest enemy for every field.<p>
+ * One search visits the fields from one or several start fields in the order of a priority queue (Dijkstra algorithm) and
+ * remembers the weight, the parent and the nearest start field of every reached field, so the weights of and paths to all
+ * fields can be taken from the same search. The buffers are created once and reused by the next search, so the object must
+ * not be used by several threads at the same time.<p>
+ * If the methods implement {@link IndexedShortestPathMethods}, the connections are taken by index without creating neighbour arrays.
+ *
+ * <pre>
+ * ShortestPathSearch&lt;SingleField&gt; search = playingField.createShortestPathSearch(0, condition);
+ * search.searchAll(enemyFields);
+ * int distanceToNearestEnemy = search.getWeight(field);
+ * SingleField nearestEnemy = search.getNearestStart(field);
+ * </pre>
+ *
+ * @param <T> the type of the field objects
+ * @see ShortestPathFinder
+ * @author Joe
+ */
+public final class ShortestPathSearch<T> {
+
+    private static final int NO_WEIGHT = -1; // weight of a node that was not reached or not estimated yet
+
+    final private ShortestPathMethods<T> methods;
+    final private IndexedShortestPathMethods<T> indexedMethods;
+    final private T[] fieldList;
+    final private int maximumWeight;
+    final private int[] parent;     // field for finding the parent
+    final private int[] weight;     // weight from the nearest start node
+    final private int[] start;      // the nearest start node
+    final private int[] estimation; // estimated weight to the target node
+    final private NodeQueue queue;
+    private boolean estimate;
+
+    /**
+     * Creates a new search with the buffers for all fields of the methods.
+     * The start and target field of the methods are only used by {@link ShortestPathFinder}.
+     *
+     * @param methods The object that holds the context specific implentations of necessary methods for the shortest path algorithm.
+     *                Paths with a higher weight than {@link ShortestPathMethods#getMaxWeightToSearch()} are not searched.
+     */
+    public ShortestPathSearch(ShortestPathMethods<T> methods) {
+        this(methods, methods.getAllFields());
+    }
+
+    /**
+     * @param methods The shortest path methods.
+     * @param fieldList All fields.
+     */
+    ShortestPathSearch(ShortestPathMethods<T> methods, T[] fieldList) {
+        this.methods = methods;
+        this.indexedMethods = (methods instanceof IndexedShortestPathMethods) ? (IndexedShortestPathMethods<T>) methods : null;
+        this.fieldList = fieldList;
+        this.maximumWeight = methods.getMaxWeightToSearch();
+        this.parent = new int[fieldList.length];
+        this.weight = new int[fieldList.length];
+        this.start = new int[fieldList.length];
+        this.estimation = new int[fieldList.length];
+        this.queue = new NodeQueue(fieldList.length);
+        clear();
+    }
+
+    /**
+     * Resets the buffers for the next search.
+     */
+    private void clear() {
+        Arrays.fill(parent, -1);
+        Arrays.fill(weight, NO_WEIGHT);
+        Arrays.fill(start, -1);
+        Arrays.fill(estimation, NO_WEIGHT);
+        queue.clear();
+    }
+
+    /**
+     * Searches the shortest path from the start field to the target field. If the target field is the target field of the methods,
+     * the fields nearer to the target are visited first by {@link ShortestPathMethods#getHeuristicWeight(Object)} (A* algorithm).
+     * The search stops when the target has been reached, so only the weights of the fields on the path are valid afterwards.
+     *
+     * @param startField The start field.
+     * @param targetField The target field.
+     * @return True if the target field was reached, then the path can be taken with {@link #getPath(Object)}.
+     */
+    public boolean search(T startField, T targetField) {
+        int to = methods.getIndexOfField(targetField);
+        return search(methods.getIndexOfField(startField), to, to >= 0 && targetField.equals(methods.getTargetField()));
+    }
+
+    /**
+     * Searches the shortest paths from the start field to all fields.
+     *
+     * @param startField The start field.
+     */
+    public void searchAll(T startField) {
+        search(methods.getIndexOfField(startField), -1, false);
+    }
+
+    /**
+     * Searches the shortest paths from several start fields to all fields at the same time. Every field is reached from the
+     * nearest start field, see {@link #getNearestStart(Object)}.
+     *
+     * @param startFields The start fields.
+     */
+    public void searchAll(Collection<? extends T> startFields) {
+        clear();
+        this.estimate = false;
+        for (T startField : startFields) {
+            addStart(methods.getIndexOfField(startField));
+        }
+        run(-1);
+    }
+
+    /**
+     * Searches from one start node.
+     *
+     * @param from The index of the start node.
+     * @param to The index of the target node, -1 to search all reachable nodes.
+     * @param useEstimation True to use the estimated weight to the target.
+     * @return True if the target node was reached.
+     */
+    boolean search(int from, int to, boolean useEstimation) {
+        clear();
+        this.estimate = useEstimation;
+        addStart(from);
+        return run(to);
+    }
+
+    /**
+     * @param from The index of a start node, nothing is done if it is negative.
+     */
+    private void addStart(int from) {
+        if (from >= 0 && weight[from] != 0) {
+            weight[from] = 0;
+            start[from] = from;
+            queue.add(getEstimation(from), from);
+        }
+    }
+
+    /**
+     * Visits the nodes till the target node has been reached.
+     *
+     * @param to The index of the target node, -1 to search all reachable nodes.
+     * @return True if the target node was reached.
+     */
+    private boolean run(int to) {
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int node = NodeQueue.getNode(entry);
+            if (NodeQueue.getPriority(entry) != weight[node] + estimation[node]) {
+                // the node was added again with a lower weight, this entry is outdated
+                continue;
+            }
+            if (node == to) {
+                return true;
+            }
+            if (indexedMethods != null) {
+                for (int c = indexedMethods.getFirstConnection(node), end = indexedMethods.getFirstConnection(node + 1); c < end; c++) {
+                    if (indexedMethods.isValidConnection(node, c)) {
+                        visit(node, indexedMethods.getConnectionTarget(c), weight[node] + indexedMethods.getConnectionWeight(c));
+                    }
+                }
+            } else {
+                for (T neighbour : methods.getNeighbours(fieldList[node])) {
+                    visit(node, methods.getIndexOfField(neighbour), weight[node] + methods.getWeight(fieldList[node], neighbour));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remembers the new weight of a neighbour if it is lower than the known one and within the maximum weight.
+     *
+     * @param node The index of the node.
+     * @param neighbour The index of the neighbour.
+     * @param newW The weight of the neighbour when reached from the node.
+     */
+    private void visit(int node, int neighbour, int newW) {
+        if (neighbour >= 0 && (maximumWeight <= 0 || newW <= maximumWeight)
+                && (weight[neighbour] == NO_WEIGHT || newW < weight[neighbour])) {
+            weight[neighbour] = newW;
+            parent[neighbour] = node;
+            start[neighbour] = start[node];
+            queue.add(newW + getEstimation(neighbour), neighbour);
+        }
+    }
+
+    /**
+     * Returns the estimated weight from a node to the target, the estimation is only calculated once for a node.
+     *
+     * @param node The index of the node.
+     * @return The estimated weight from the node to the target.
+     */
+    private int getEstimation(int node) {
+        if (estimation[node] == NO_WEIGHT) {
+            estimation[node] = (estimate) ? Math.max(methods.getHeuristicWeight(fieldList[node]), 0) : 0;
+        }
+        return estimation[node];
+    }
+
+    /**
+     * @param field A field.
+     * @return True if the field was reached by the last search.
+     */
+    public boolean isReached(T field) {
+        return getWeight(field) >= 0;
+    }
+
+    /**
+     * @param field A field.
+     * @return The weight of the shortest path from the nearest start field to the field, -1 if the field was not reached by the last search.
+     */
+    public int getWeight(T field) {
+        int index = methods.getIndexOfField(field);
+        return (index < 0) ? NO_WEIGHT : weight[index];
+    }
+
+    /**
+     * @param field A field.
+     * @return The start field the field was reached from by the last search, null if the field was not reached.
+     */
+    public T getNearestStart(T field) {
+        int index = methods.getIndexOfField(field);
+        return (index < 0 || start[index] < 0) ? null : fieldList[start[index]];
+    }
+
+    /**
+     * @param index The index of a field in the order of {@link ShortestPathMethods#getAllFields()}.
+     * @return The weight of the shortest path from the nearest start field to the field, -1 if the field was not reached by the last search.
+     */
+    public int getWeightOfIndex(int index) {
+        return weight[index];
+    }
+
+    /**
+     * @return The internal array with the weights of the last search in the order of {@link ShortestPathMethods#getAllFields()},
+     *         -1 for fields that were not reached; must not be changed.
+     */
+    int[] getWeights() {
+        return weight;
+    }
+
+    /**
+     * Returns the shortest path from the nearest start field to the target field. Paths to several targets can be taken
+     * from the same search of {@link #searchAll(Object)} or {@link #searchAll(Collection)}.
+     *
+     * @param targetField The target field.
+     * @return A shortest path object or null if the field was not reached by the last search.
+     */
+    public ShortestPath<T> getPath(T targetField) {
+        int to = methods.getIndexOfField(targetField);
+        return (to < 0 || weight[to] == NO_WEIGHT) ? null : getPath(to);
+    }
+
+    /**
+     * Creates the shortest path by following the parents from the target node to the start node.
+     *
+     * @param to The index of the target node, must have been reached.
+     * @return The new shortest path.
+     */
+    ShortestPath<T> getPath(int to) {
+        List<T> path = new ArrayList<>();
+        for (int i = to; i >= 0; i = parent[i]) {
+            path.add(fieldList[i]);
+        }
+        // return the new shortest path, reverse order
+        Collections.reverse(path);
+        return new ShortestPath<>(path, weight[to]);
+    }
+
+    /**
+     * A binary heap of nodes ordered by their priority. Priority and node index are stored together in a long value,
+     * so no objects are created while searching. A node can be added several times, outdated entries have to be
+     * skipped by the caller.
+     */
+    private static final class NodeQueue {
+
+        private long[] heap;
+        private int size;
+
+        /**
+         * @param capacity The initial capacity.
+         */
+        NodeQueue(int capacity) {
+            this.heap = new long[Math.max(capacity, 1)];
+        }
+
+        /**
+         * @param entry An entry of the queue.
+         * @return The index of the node.
+         */
+        static int getNode(long entry) {
+            return (int) entry;
+        }
+
+        /**
+         * @param entry An entry of the queue.
+         * @return The priority of the node.
+         */
+        static int getPriority(long entry) {
+            return (int) (entry >>> 32);
+        }
+
+        /**
+         * @return True if the queue has no entries.
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Removes all entries, the capacity is kept.
+         */
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * @param priority The priority, must not be negative.
+         * @param node The index of the node, must not be negative.
+         */
+        void add(int priority, int node) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            long entry = ((long) priority << 32) | node;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= entry) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = entry;
+        }
+
+        /**
+         * @return The entry with the lowest priority, the queue must not be empty.
+         */
+        long poll() {
+            long first = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return first;
+        }
+    }
+}
@@ -8,14 +8,18 @@ import com.tjger.game.completed.GameManager;
 import at.hagru.hgbase.lib.HGBaseTools;
 
 /**
- * Helps to implement a timed action that should last at least a given time.
+ * Helps to implement a timed action that should last at least a given time.<p>
+ * The action is executed with an own {@link AiCancellationToken}, so a search of the artificial intelligence
+ * algorithms that is started by the action stops as soon as the time action is cancelled.
  * 
  * @author hagru
  */
 public abstract class TimeAction extends Thread {
     
     final private long minimumTime;
-    private boolean cancelAble;
+    final private AiCancellationToken token = new AiCancellationToken();
+    final private Object lock = new Object();
+    private volatile boolean cancelAble;
 
     /**
      * @param minimumTime The minimum time, the action shall last.
@@ -46,24 +50,55 @@ public abstract class TimeAction extends Thread {
         engine.addTimeAction(this);
         cancelAble = true;
         Date timeStart = new Date();
-        this.doAction();
+        token.execute(this::doAction);
         long diff = HGBaseTools.getTimeDifference(timeStart);
         boolean interrupted = false;
-        if (diff>=0 && diff<minimumTime) {
+        if (diff>=0 && diff<minimumTime && !token.isCancelled()) {
             try {
                 Thread.sleep(minimumTime-diff);
             } catch (InterruptedException e) {
                 interrupted = true;
             }
         }
-        if (!interrupted) {
-            cancelAble = false;
-            this.afterAction();
+        boolean doAfterAction;
+        synchronized (lock) {
+            doAfterAction = !interrupted && !token.isCancelled();
+            cancelAble = !doAfterAction;
+        }
+        if (doAfterAction) {
+            try {
+                this.afterAction();
+            } finally {
+                synchronized (lock) {
+                    cancelAble = true;
+                    lock.notifyAll();
+                }
+            }
         }
-        cancelAble = true;
         engine.removeTimeAction(this);
     }
     
+    /**
+     * Cancels the action. A search that is started by <code>doAction</code> is stopped and 
+     * <code>afterAction</code> is not called any more. If <code>afterAction</code> is already
+     * running, it is not interrupted.
+     */
+    public void cancel() {
+        synchronized (lock) {
+            token.cancel();
+            if (cancelAble) {
+                interrupt();
+            }
+        }
+    }
+    
+    /**
+     * @return True if the action was cancelled.
+     */
+    public boolean isCancelled() {
+        return token.isCancelled();
+    }
+    
     /**
      * @return True if an interrupt still makes sense.
      */
@@ -71,6 +106,23 @@ public abstract class TimeAction extends Thread {
         return cancelAble;
     }
     
+    /**
+     * Waits until the action can be cancelled, i.e. <code>afterAction</code> is finished.
+     * 
+     * @param timeout The maximum time to wait in milliseconds.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     */
+    public void waitUntilCancelAble(long timeout) throws InterruptedException {
+        long timeEnd = System.currentTimeMillis() + timeout;
+        synchronized (lock) {
+            long timeLeft = timeout;
+            while (!cancelAble && isAlive() && timeLeft > 0) {
+                lock.wait(timeLeft);
+                timeLeft = timeEnd - System.currentTimeMillis();
+            }
+        }
+    }
+    
     /**
      * Implement the action in this method.
      */
@@ -0,0 +1,135 @@
+package com.tjger.lib;
+
+import java.util.Random;
+
+/**
+ * Helps to calculate hash values of game states by the Zobrist hashing method (see <a
+ * href="https://en.wikipedia.org/wiki/Zobrist_hashing">Wikipedia</a>).<p>
+ * A game state is described by a number of features (e.g. the fields of a board) that can have
+ * one of a number of values (e.g. the piece that is placed on the field). Every combination of feature and
+ * value gets a random key, the hash value of a state is the XOR combination of the keys of all set values.
+ * Because XOR is its own inverse, the hash value can be updated incrementally when the state is changed
+ * or a move is undone.
+ *
+ * @see com.tjger.game.HashableGameState
+ * @author Joe
+ */
+public class ZobristHash {
+
+    /**
+     * The value that stands for a feature without value, it has no key.
+     */
+    final public static int NO_VALUE = -1;
+    /**
+     * The seed that is used if no seed is specified, so the keys are the same at every run.
+     */
+    final public static long DEFAULT_SEED = 0x7467657248617368L;
+
+    final private int numFeatures;
+    final private int numValues;
+    final private long[] keys;
+
+    /**
+     * Constructs a new instance with the default seed.
+     *
+     * @param numFeatures The number of features (e.g. fields of the board).
+     * @param numValues The number of values per feature (e.g. the number of different pieces).
+     */
+    public ZobristHash(int numFeatures, int numValues) {
+        this(numFeatures, numValues, DEFAULT_SEED);
+    }
+
+    /**
+     * Constructs a new instance.
+     *
+     * @param numFeatures The number of features (e.g. fields of the board).
+     * @param numValues The number of values per feature (e.g. the number of different pieces).
+     * @param seed The seed for the random keys.
+     * @throws IllegalArgumentException if the number of features or values is not positive.
+     */
+    public ZobristHash(int numFeatures, int numValues, long seed) throws IllegalArgumentException {
+        super();
+        if (numFeatures <= 0 || numValues <= 0) {
+            throw new IllegalArgumentException("The number of features and values must be positive!");
+        }
+        this.numFeatures = numFeatures;
+        this.numValues = numValues;
+        this.keys = new long[numFeatures * numValues];
+        Random random = new Random(seed);
+        for (int i = 0; i < keys.length; i++) {
+            long key = 0;
+            while (key == 0) {
+                key = random.nextLong();
+            }
+            keys[i] = key;
+        }
+    }
+
+    /**
+     * @return The number of features.
+     */
+    public int getNumFeatures() {
+        return numFeatures;
+    }
+
+    /**
+     * @return The number of values per feature.
+     */
+    public int getNumValues() {
+        return numValues;
+    }
+
+    /**
+     * Returns the random key for the given feature and value.
+     *
+     * @param feature The feature.
+     * @param value The value of the feature.
+     * @return The key or 0 if the value is {@link #NO_VALUE}.
+     */
+    public long getKey(int feature, int value) {
+        if (value == NO_VALUE) {
+            return 0;
+        }
+        return keys[feature * numValues + value];
+    }
+
+    /**
+     * Adds or removes the value of a feature from the hash value.
+     * Calling this method twice with the same parameters returns the original hash value.
+     *
+     * @param hash The current hash value.
+     * @param feature The feature.
+     * @param value The value that is set or removed.
+     * @return The new hash value.
+     */
+    public long toggle(long hash, int feature, int value) {
+        return hash ^ getKey(feature, value);
+    }
+
+    /**
+     * Changes the value of a feature in the hash value.
+     *
+     * @param hash The current hash value.
+     * @param feature The feature.
+     * @param oldValue The old value of the feature or {@link #NO_VALUE}.
+     * @param newValue The new value of the feature or {@link #NO_VALUE}.
+     * @return The new hash value.
+     */
+    public long change(long hash, int feature, int oldValue, int newValue) {
+        return hash ^ getKey(feature, oldValue) ^ getKey(feature, newValue);
+    }
+
+    /**
+     * Calculates the hash value from scratch.
+     *
+     * @param values The value for each feature, {@link #NO_VALUE} if a feature has no value.
+     * @return The hash value.
+     */
+    public long calculateHash(int[] values) {
+        long hash = 0;
+        for (int feature = 0; feature < values.length; feature++) {
+            hash = toggle(hash, feature, values[feature]);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,475 @@
+package com.tjger.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.tjger.lib.ConstantValue;
+
+/**
+ * Converts the network messages into the binary protocol {@link NetworkMessage#PROTOCOL_BINARY} and back.<p>
+ * Every message is sent as a frame with its length as varint in front. The message is split at the network separators
+ * and every part is written as one item: numbers as varints, runs of "0" and "1" as bit sets, cards ("color-sequence[-type]")
+ * as color and sequence, and all other parts as strings. Strings that were already sent are replaced by their index in a
+ * string table, which contains the message types and parameters from the start. The received message is exactly the sent
+ * text, so the messages and the game states need not know the protocol.<p>
+ * The string table belongs to one direction of one connection, so one object must be used to encode and another one to
+ * decode, and the frames must be decoded in the order they were encoded.
+ *
+ * @author hagru
+ */
+final class NetworkBinaryCodec {
+
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final int MAX_TABLE_SIZE = 4096;
+    private static final int MIN_TABLE_LENGTH = 2; // shorter strings are not worth an entry
+    private static final int MIN_BITS = 4;         // shorter runs are written as numbers
+    private static final int MAX_NUMBER_LENGTH = 18;
+    private static final char CARD_SEPARATOR = '-';
+
+    // the kind of an item, the lower bits hold the separator after the item
+    private static final int KIND_STRING = 0;
+    private static final int KIND_NUMBER = 1;
+    private static final int KIND_CARD = 2;
+    private static final int KIND_CARD_TYPE = 3;
+    private static final int KIND_BITS = 4;
+    private static final int SEPARATOR_BITS = 3;
+    private static final int SEPARATOR_MASK = (1 << SEPARATOR_BITS) - 1;
+    private static final int END = 0;
+
+    private static final char[] SEPARATORS = {0, ConstantValue.NETWORK_SEPARATE.charAt(0), ConstantValue.NETWORK_DIVIDEPART.charAt(0),
+                                              ConstantValue.NETWORK_DIVIDEPART2.charAt(0), ConstantValue.NETWORK_DIVIDEPAIR.charAt(0)};
+    private static final int BIT_SEPARATOR = 2; // the separator between the bits of a run
+
+    private static final String[] KEYWORDS = {NetworkMessage.MSG_CTRL, NetworkMessage.MSG_ERROR, NetworkMessage.MSG_ENGINE,
+                                              NetworkMessage.MSG_STATE, NetworkMessage.MSG_MOVE, NetworkMessage.PARAM_CLIENTCONN,
+                                              NetworkMessage.PARAM_SERVERACC, NetworkMessage.PARAM_CLIENTACC, NetworkMessage.PARAM_NEWGAME,
+                                              NetworkMessage.PARAM_NEXTGAME, NetworkMessage.PARAM_GAMEOK, NetworkMessage.PARAM_PLAYERNAME,
+                                              NetworkMessage.PARAM_TEST, NetworkMessage.ERROR_ABORT, NetworkMessage.ERROR_NAME,
+                                              NetworkMessage.ERROR_NEXTGAME, NetworkMessage.ERROR_APPLICATION, ConstantValue.NETWORK_NULL};
+
+    final private List<String> table = new ArrayList<>();
+    final private Map<String, Integer> tableIndex = new HashMap<>();
+
+    /**
+     * Creates a codec for one direction of a connection.
+     */
+    NetworkBinaryCodec() {
+        for (String keyword : KEYWORDS) {
+            addToTable(keyword);
+        }
+    }
+
+    /**
+     * Converts a message into a frame.
+     *
+     * @param message The message text.
+     * @return A buffer with the length of the message and the message, ready to be written.
+     */
+    ByteBuffer encodeFrame(String message) {
+        Output out = new Output();
+        encode(message, out);
+        Output frame = new Output();
+        frame.writeVarLong(out.size());
+        ByteBuffer buffer = ByteBuffer.allocate(frame.size() + out.size());
+        buffer.put(frame.getBuffer(), 0, frame.size()).put(out.getBuffer(), 0, out.size()).flip();
+        return buffer;
+    }
+
+    /**
+     * Converts the content of a frame back into the message.
+     *
+     * @param data The buffer with the content of the frame, without the length.
+     * @param length The length of the content.
+     * @return The message text.
+     * @throws IOException If the data is not a valid frame.
+     */
+    String decode(byte[] data, int length) throws IOException {
+        Input in = new Input(data, length);
+        StringBuilder message = new StringBuilder(length * 2);
+        int separator;
+        do {
+            int header = in.readByte();
+            separator = header & SEPARATOR_MASK;
+            if (separator >= SEPARATORS.length) {
+                throw new IOException("Invalid separator in network frame: " + separator);
+            }
+            switch (header >>> SEPARATOR_BITS) {
+                case KIND_STRING:
+                    message.append(readString(in));
+                    break;
+                case KIND_NUMBER:
+                    message.append(in.readSignedVarLong());
+                    break;
+                case KIND_CARD:
+                case KIND_CARD_TYPE:
+                    message.append(readString(in)).append(CARD_SEPARATOR).append(in.readSignedVarLong());
+                    if ((header >>> SEPARATOR_BITS) == KIND_CARD_TYPE) {
+                        message.append(CARD_SEPARATOR).append(readString(in));
+                    }
+                    break;
+                case KIND_BITS:
+                    readBits(in, message);
+                    break;
+                default:
+                    throw new IOException("Invalid item in network frame: " + header);
+            }
+            if (separator != END) {
+                message.append(SEPARATORS[separator]);
+            }
+        } while (separator != END);
+        if (!in.isEmpty()) {
+            throw new IOException("Network frame has more data than its message");
+        }
+        return message.toString();
+    }
+
+    /**
+     * Splits the message into its parts and writes one item per part.
+     *
+     * @param message The message text.
+     * @param out The output for the items.
+     */
+    private void encode(String message, Output out) {
+        List<String> parts = new ArrayList<>();
+        List<Integer> separators = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < message.length(); i++) {
+            int separator = getSeparator(message.charAt(i));
+            if (separator != END) {
+                parts.add(message.substring(start, i));
+                separators.add(separator);
+                start = i + 1;
+            }
+        }
+        parts.add(message.substring(start));
+        separators.add(END);
+        for (int i = 0; i < parts.size(); ) {
+            int end = getEndOfBits(parts, separators, i);
+            if (end - i >= MIN_BITS) {
+                out.write((KIND_BITS << SEPARATOR_BITS) | separators.get(end - 1));
+                writeBits(parts, i, end, out);
+                i = end;
+            } else {
+                writePart(parts.get(i), separators.get(i), out);
+                i++;
+            }
+        }
+    }
+
+    /**
+     * @param c A character of the message.
+     * @return The code of the separator or {@link #END} if it is no separator.
+     */
+    private static int getSeparator(char c) {
+        for (int i = 1; i < SEPARATORS.length; i++) {
+            if (SEPARATORS[i] == c) {
+                return i;
+            }
+        }
+        return END;
+    }
+
+    /**
+     * Returns the end of a run of "0" and "1" parts that are separated by the bit separator.
+     *
+     * @param parts The parts of the message.
+     * @param separators The separators after the parts.
+     * @param start The index of the first part.
+     * @return The index after the last part of the run, the start index if the first part is no bit.
+     */
+    private static int getEndOfBits(List<String> parts, List<Integer> separators, int start) {
+        int end = start;
+        while (end < parts.size() && isBit(parts.get(end)) && (end == start || separators.get(end - 1) == BIT_SEPARATOR)) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @param part A part of a message.
+     * @return True if the part is "0" or "1".
+     */
+    private static boolean isBit(String part) {
+        return part.length() == 1 && (part.charAt(0) == '0' || part.charAt(0) == '1');
+    }
+
+    /**
+     * Writes a run of bits as its length and a bit set.
+     *
+     * @param parts The parts of the message.
+     * @param start The index of the first bit.
+     * @param end The index after the last bit.
+     * @param out The output.
+     */
+    private static void writeBits(List<String> parts, int start, int end, Output out) {
+        out.writeVarLong(end - start);
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            if (parts.get(i).charAt(0) == '1') {
+                value |= 1 << ((i - start) & 7);
+            }
+            if (((i - start) & 7) == 7 || i == end - 1) {
+                out.write(value);
+                value = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads a run of bits and appends them with the bit separator.
+     *
+     * @param in The input.
+     * @param message The message to append the bits.
+     * @throws IOException If the data is not valid.
+     */
+    private static void readBits(Input in, StringBuilder message) throws IOException {
+        long count = in.readVarLong();
+        if (count > in.remaining() * 8L) {
+            throw new IOException("Invalid number of bits in network frame: " + count);
+        }
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            if ((i & 7) == 0) {
+                value = in.readByte();
+            }
+            if (i > 0) {
+                message.append(SEPARATORS[BIT_SEPARATOR]);
+            }
+            message.append(((value >>> (i & 7)) & 1) == 1 ? '1' : '0');
+        }
+    }
+
+    /**
+     * Writes one part of a message as number, card or string.
+     *
+     * @param part The part.
+     * @param separator The separator after the part.
+     * @param out The output.
+     */
+    private void writePart(String part, int separator, Output out) {
+        Long number = toNumber(part);
+        if (number != null) {
+            out.write((KIND_NUMBER << SEPARATOR_BITS) | separator);
+            out.writeSignedVarLong(number);
+            return;
+        }
+        String[] card = part.split(String.valueOf(CARD_SEPARATOR), -1);
+        Long sequence = (card.length == 2 || card.length == 3) ? toNumber(card[1]) : null;
+        if (sequence != null && !card[0].isEmpty() && (card.length == 2 || !card[2].isEmpty())) {
+            out.write(((card.length == 2 ? KIND_CARD : KIND_CARD_TYPE) << SEPARATOR_BITS) | separator);
+            writeString(card[0], out);
+            out.writeSignedVarLong(sequence);
+            if (card.length == 3) {
+                writeString(card[2], out);
+            }
+            return;
+        }
+        out.write((KIND_STRING << SEPARATOR_BITS) | separator);
+        writeString(part, out);
+    }
+
+    /**
+     * @param part A part of a message.
+     * @return The number if the part is a number that is written the same way by {@link Long#toString(long)}, otherwise null.
+     */
+    private static Long toNumber(String part) {
+        if (part.isEmpty() || part.length() > MAX_NUMBER_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if ((c < '0' || c > '9') && (c != '-' || i > 0)) {
+                return null;
+            }
+        }
+        try {
+            long value = Long.parseLong(part);
+            return (Long.toString(value).equals(part)) ? Long.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a string as index of the string table or as its UTF-8 bytes, the lowest bit tells which one.
+     *
+     * @param value The string.
+     * @param out The output.
+     */
+    private void writeString(String value, Output out) {
+        Integer index = tableIndex.get(value);
+        if (index != null) {
+            out.writeVarLong(((long) index << 1) | 1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong((long) bytes.length << 1);
+            out.write(bytes, 0, bytes.length);
+            addToTable(value);
+        }
+    }
+
+    /**
+     * Reads a string that was written by {@link #writeString(String, Output)}.
+     *
+     * @param in The input.
+     * @return The string.
+     * @throws IOException If the data is not valid.
+     */
+    private String readString(Input in) throws IOException {
+        long value = in.readVarLong();
+        if ((value & 1) == 1) {
+            long index = value >>> 1;
+            if (index >= table.size()) {
+                throw new IOException("Invalid string index in network frame: " + index);
+            }
+            return table.get((int) index);
+        }
+        String text = in.readString(value >>> 1);
+        addToTable(text);
+        return text;
+    }
+
+    /**
+     * Adds a string to the table if it is long enough and the table is not full, both sides decide the same way.
+     *
+     * @param value The string.
+     */
+    private void addToTable(String value) {
+        if (value.length() >= MIN_TABLE_LENGTH && table.size() < MAX_TABLE_SIZE && !tableIndex.containsKey(value)) {
+            tableIndex.put(value, Integer.valueOf(table.size()));
+            table.add(value);
+        }
+    }
+
+    /**
+     * A byte array output with varints.
+     */
+    private static final class Output extends ByteArrayOutputStream {
+
+        /**
+         * Creates an output with a small initial capacity.
+         */
+        Output() {
+            super(64);
+        }
+
+        /**
+         * @return The internal buffer, only the first {@link #size()} bytes are valid.
+         */
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        /**
+         * Writes an unsigned value with seven bits per byte, the highest bit tells if another byte follows.
+         *
+         * @param value The value, must not be negative.
+         */
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        /**
+         * Writes a signed value, small negative values need few bytes too (zig-zag encoding).
+         *
+         * @param value The value.
+         */
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+    }
+
+    /**
+     * Reads the content of one frame.
+     */
+    private static final class Input {
+
+        final private byte[] data;
+        final private int length;
+        private int position;
+
+        /**
+         * @param data The content of the frame.
+         * @param length The length of the content.
+         */
+        Input(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        /**
+         * @return True if all bytes were read.
+         */
+        boolean isEmpty() {
+            return position == length;
+        }
+
+        /**
+         * @return The number of bytes that were not read.
+         */
+        int remaining() {
+            return length - position;
+        }
+
+        /**
+         * @return The next byte as value from 0 to 255.
+         * @throws IOException If the frame has no more bytes.
+         */
+        int readByte() throws IOException {
+            if (position >= length) {
+                throw new IOException("Unexpected end of network frame");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        /**
+         * @return An unsigned value written by {@link Output#writeVarLong(long)}.
+         * @throws IOException If the value is not valid.
+         */
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid varint in network frame");
+        }
+
+        /**
+         * @return A signed value written by {@link Output#writeSignedVarLong(long)}.
+         * @throws IOException If the value is not valid.
+         */
+        long readSignedVarLong() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /**
+         * @param byteCount The number of UTF-8 bytes.
+         * @return The string.
+         * @throws IOException If the frame has not enough bytes.
+         */
+        String readString(long byteCount) throws IOException {
+            if (byteCount > remaining()) {
+                throw new IOException("Unexpected end of network frame");
+            }
+            String value = new String(data, position, (int) byteCount, StandardCharsets.UTF_8);
+            position += (int) byteCount;
+            return value;
+        }
+    }
+}
@@ -22,6 +22,9 @@ public class NetworkClient {
     private Socket socket=null;
     private PrintStream outStream=null;
     private BufferedReader inStream=null;
+    private NetworkTransport.Endpoint endpoint=null;
+    private volatile int stateVersion=-1;
+    private volatile boolean stateVersionSupported=false;
     
     public NetworkClient() {
         super();
@@ -41,6 +44,9 @@ public class NetworkClient {
         setSocket(null);
         setOutStream(null);
         setInStream(null);
+        setEndpoint(null);
+        setStateVersion(-1);
+        setStateVersionSupported(false);
     }
 
     /**
@@ -93,25 +99,33 @@ public class NetworkClient {
     }
     /**
      * @return The input stream.
+     * @deprecated The connections are read by the {@link NetworkTransport}, the stream is not set any more.
      */
+    @Deprecated
     public BufferedReader getInStream() {
         return inStream;
     }
     /**
      * @param inStream The input stream.
+     * @deprecated The connections are read by the {@link NetworkTransport}, the stream is not used any more.
      */
+    @Deprecated
     public void setInStream(BufferedReader inStream) {
         this.inStream = inStream;
     }
     /**
      * @return The output stream.
+     * @deprecated The connections are written by the {@link NetworkTransport}, the stream is not set any more.
      */
+    @Deprecated
     public PrintStream getOutStream() {
         return outStream;
     }
     /**
      * @param outStream The output stream.
+     * @deprecated The connections are written by the {@link NetworkTransport}, the stream is not used any more.
      */
+    @Deprecated
     public void setOutStream(PrintStream outStream) {
         this.outStream = outStream;
     }
@@ -139,6 +153,42 @@ public class NetworkClient {
     public void setSocket(Socket socket) {
         this.socket = socket;
     }
+    /**
+     * @return The channel of the connection or null.
+     */
+    NetworkTransport.Endpoint getEndpoint() {
+        return endpoint;
+    }
+    /**
+     * @param endpoint The channel of the connection.
+     */
+    void setEndpoint(NetworkTransport.Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+    /**
+     * @return The version of the game state the client has, on the server the last version the client acknowledged; -1 if unknown.
+     */
+    int getStateVersion() {
+        return stateVersion;
+    }
+    /**
+     * @param stateVersion The version of the game state the client has.
+     */
+    void setStateVersion(int stateVersion) {
+        this.stateVersion = stateVersion;
+    }
+    /**
+     * @return True if the client acknowledges the versions of the game state, so it can get the changes only.
+     */
+    boolean isStateVersionSupported() {
+        return stateVersionSupported;
+    }
+    /**
+     * @param stateVersionSupported True if the client acknowledges the versions of the game state.
+     */
+    void setStateVersionSupported(boolean stateVersionSupported) {
+        this.stateVersionSupported = stateVersionSupported;
+    }
     /**
      * @return The connection state (see NetworkConnection).
      */
@@ -1,21 +1,18 @@
 package com.tjger.net;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintStream;
-import java.net.Socket;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.tjger.game.GameState;
 import com.tjger.game.NetworkPlayer;
 import com.tjger.game.completed.GameConfig;
+import com.tjger.game.completed.GameManager;
 import com.tjger.lib.ConstantValue;
+import com.tjger.lib.NetworkUtil;
 
-import at.hagru.hgbase.gui.HGBaseDialog;
-import at.hagru.hgbase.lib.HGBaseFileTools;
 import at.hagru.hgbase.lib.HGBaseTools;
 
 /**
@@ -23,13 +20,16 @@ import at.hagru.hgbase.lib.HGBaseTools;
  *
  * @author hagru
  */
-public class NetworkClientConnection extends NetworkConnection {
+public class NetworkClientConnection extends NetworkConnection implements NetworkTransport.Listener {
 
     private static NetworkClientConnection connection = new NetworkClientConnection();
 
     final private NetworkClient client;
+    private NetworkTransport transport;
+    // the last received game states by their version, only used by the network thread
+    final private Map<Integer, String> receivedStates = new LinkedHashMap<>();
 
-    private NetworkClientConnection() {
+    NetworkClientConnection() {
         super();
         client = new NetworkClient();
     }
@@ -48,34 +48,56 @@ public class NetworkClientConnection extends NetworkConnection {
      * @param name The name of this client.
      */
     public void startClient(final String serverIp, final String name) {
+        startClient(serverIp, GameConfig.getInstance().getNetworkPort(), name);
+    }
+
+    /**
+     * Starts a new thread for connecting the client to the server at the given port.
+     *
+     * @param serverIp The server ip to connect to.
+     * @param port The port of the server.
+     * @param name The name of this client.
+     */
+    void startClient(final String serverIp, final int port, final String name) {
         super.start();
+        final NetworkConditions conditions = getConditions();
         client.setServerIP(serverIp);
         client.setClientName(name);
         client.setState(CONNECTING);
+        client.setStateVersion(-1);
+        receivedStates.clear();
         // start a thread to build up a connection
         Thread t=new Thread() {
             @Override
             public void run() {
                 try {
-                    Socket sock = new Socket(serverIp, GameConfig.getInstance().getNetworkPort());
-                    client.setSocket(sock);
-                    client.setOutStream(new PrintStream(sock.getOutputStream(), false, Charset.defaultCharset().displayName()));
-                    client.setInStream(new BufferedReader(new InputStreamReader(sock.getInputStream(),
-                            Charset.defaultCharset())));
+                    NetworkTransport clientTransport = new NetworkTransport(NetworkClientConnection.this, conditions);
+                    transport = clientTransport;
+                    NetworkTransport.Endpoint endpoint = clientTransport.connect(serverIp, port);
+                    client.setSocket(endpoint.getSocket());
+                    client.setEndpoint(endpoint);
+                    endpoint.startReading();
                     // ask the server to connect
-                    client.setClientIP(sock.getLocalAddress().getHostAddress());
+                    client.setClientIP(endpoint.getSocket().getLocalAddress().getHostAddress());
                     // ask the server to connect and wait for the server to
                     List<Integer> alOut = new ArrayList<>();
-                    boolean succ = (putMessage(NetworkMessage.msgShakehandC(client.getClientName(), getIp()))==0);
+                    long received = getNumReceived();
+                    boolean succ = (putMessage(NetworkMessage.msgShakehandC(getAppName(), client.getClientName(), getIp()))==0);
                     while (succ && !messageServerAccepted(alOut)) {
-                        succ = (!messageServerAbort());
-                        netWait();
+                        // stop waiting if the client was closed in the meantime
+                        succ = (!messageServerAbort() && client.getState()==CONNECTING);
+                        received = waitForMessage(received);
                     }
                     if (succ) {
                         if (!alOut.isEmpty()) {
                             client.setClientId(alOut.get(0).intValue());
+                            if (NetworkMessage.PROTOCOL_BINARY.equals(endpoint.getProtocol())) {
+                                // the server accepted the binary protocol, the acknowledge is the last text message
+                                putMessageAndSetBinaryWriting(endpoint, NetworkMessage.msgAcknowledgeC());
+                            } else {
+                                putMessage(NetworkMessage.msgAcknowledgeC());
+                            }
                             client.setState(CONNECTED);
-                            putMessage(NetworkMessage.msgAcknowledgeC());
                         } else {
                             client.setState(DISCONNECTED);
                         }
@@ -86,7 +108,7 @@ public class NetworkClientConnection extends NetworkConnection {
                     int oldState = client.getState();
                     client.setState(DISCONNECTED);
                     if (oldState==CONNECTING) {
-                        HGBaseDialog.printError(-30216, getMainFrame());
+                        printError(-30216);
                     }
                     close();
                 }
@@ -110,12 +132,17 @@ public class NetworkClientConnection extends NetworkConnection {
     }
 
     /**
-     * Closes all sockets and sets them to null
+     * Closes the connection to the server and the transport
      */
     private void closeSockets() {
-        HGBaseFileTools.closeStream(client.getSocket());
-        HGBaseFileTools.closeStream(client.getOutStream());
-        HGBaseFileTools.closeStream(client.getInStream());
+        NetworkTransport.Endpoint endpoint = client.getEndpoint();
+        if (endpoint != null) {
+            endpoint.close();
+        }
+        if (transport != null) {
+            transport.close();
+            transport = null;
+        }
     }
 
     /* (non-Javadoc)
@@ -189,25 +216,91 @@ public class NetworkClientConnection extends NetworkConnection {
      * @return 0 if there was no error, otherwise the error code
      */
     public int putMessage(String msg) {
-        if (client.getOutStream()!=null) {
-            return putMessage(client.getOutStream(),msg);
-        } else {
-            return -30221;
+        return putMessage(client.getEndpoint(), msg);
+    }
+
+    /**
+     * Acknowledges the game state with its version, so the server can send only the changes next time.
+     *
+     * @return 0 if there was no error, otherwise the error code
+     */
+    int putGameStateOk() {
+        return putMessage(NetworkMessage.msgClientGameStateOkC(client.getStateVersion()));
+    }
+
+    /* (non-Javadoc)
+     * @see com.tjger.net.NetworkTransport.Listener#lineReceived(com.tjger.net.NetworkTransport.Endpoint, java.lang.String)
+     */
+    @Override
+    public void lineReceived(NetworkTransport.Endpoint endpoint, String line) {
+        if (endpoint == client.getEndpoint()) {
+            if (!endpoint.isBinaryReading() && isMessageType(line, NetworkMessage.MSG_CTRL, NetworkMessage.PARAM_SERVERACC)
+                    && NetworkMessage.PROTOCOL_BINARY.equals(getMessagePart(3, line))) {
+                // the server sends all following messages as binary frames
+                endpoint.setProtocol(NetworkMessage.PROTOCOL_BINARY);
+                endpoint.setBinaryReading();
+            }
+            if (isMessageType(line, NetworkMessage.MSG_STATEVERSION, null)) {
+                gameStateVersionReceived(line);
+            } else {
+                if (isMessageType(line, NetworkMessage.MSG_STATE, null)) {
+                    // a game state without version, the server sends the whole game state next time
+                    client.setStateVersion(-1);
+                    receivedStates.clear();
+                }
+                messageReceived(line);
+            }
+        }
+    }
+
+    /**
+     * Converts a version of the game state into a game state message. If the server sent only the changes, they are applied
+     * to the version they are based on; if it is not known any more, the whole game state is requested from the server.
+     * The server bases the changes on the last version this client acknowledged, which can be older than the last received
+     * one while an acknowledge is on its way, so the last versions are kept.
+     *
+     * @param msg The message with the version of the game state.
+     */
+    private void gameStateVersionReceived(String msg) {
+        // type, version, base version and the data that can contain separators
+        String[] parts = msg.split(ConstantValue.NETWORK_SEPARATE, 4);
+        if (parts.length < 3) {
+            return;
+        }
+        int version = HGBaseTools.toInt(parts[1]);
+        int baseVersion = HGBaseTools.toInt(parts[2]);
+        String data = (parts.length == 4) ? parts[3] : "";
+        String newData = null;
+        if (baseVersion == -1) {
+            newData = data;
+        } else if (baseVersion >= 0) {
+            String baseData = receivedStates.get(Integer.valueOf(baseVersion));
+            if (baseData != null) {
+                GameState state = GameManager.getInstance().getGameState();
+                newData = (state == null) ? NetworkUtil.applyDelta(baseData, data) : state.fromNetworkStringDelta(baseData, data);
+            }
         }
+        if (newData == null || version == HGBaseTools.INVALID_INT) {
+            putMessage(NetworkMessage.msgGameStateResyncC(client.getStateVersion()));
+            return;
+        }
+        receivedStates.put(Integer.valueOf(version), newData);
+        if (receivedStates.size() > STATE_HISTORY_SIZE) {
+            receivedStates.remove(receivedStates.keySet().iterator().next());
+        }
+        client.setStateVersion(version);
+        messageReceived(NetworkMessage.msgGameStateS(newData));
     }
 
     /* (non-Javadoc)
-     * @see tjger.net.NetworkConnection#getMessage()
+     * @see com.tjger.net.NetworkTransport.Listener#endpointClosed(com.tjger.net.NetworkTransport.Endpoint)
      */
     @Override
-    protected String getMessage() {
-        StringBuffer msg = new StringBuffer("");
-        if (getMessage(client.getInStream(), msg)!=0) {
-            //  if there was an error, close this client
+    public void endpointClosed(NetworkTransport.Endpoint endpoint) {
+        if (endpoint == client.getEndpoint()) {
+            // the connection to the server got lost, close this client
             close();
-            return null;
         }
-        return msg.toString();
     }
 
     /* (non-Javadoc)
@@ -256,7 +349,7 @@ public class NetworkClientConnection extends NetworkConnection {
             if (!err.equals(NetworkMessage.ERROR_ABORT) && !err.equals(NetworkMessage.ERROR_NEXTGAME)) {
                 // display a message only if it's not a simple abort or it's not the next game error
                 String param = getMessagePart(2, msg); // can be null
-                HGBaseDialog.printError(err, new String[] {param}, getMainFrame());
+                printError(err, new String[] {param});
             }
             return true;
         }
@@ -371,13 +464,19 @@ public class NetworkClientConnection extends NetworkConnection {
      */
     public boolean waitForServerGameInformation(String msgType, StringBuffer msgReceived, NetworkPlayer player) {
         String msg = null;
+        long received = getNumReceived();
         // try to get new game information and player names
         while ((player==null || player.isPlaying()) && !messageServerAbort() && msg==null) {
             msg = messageGameInformation(msgType);
-            NetworkConnection.netWait();
+            if (msg==null) {
+                received = waitForMessage(received);
+            }
         }
         if (msg != null) {
             msgReceived.append(msg);
+            if (NetworkMessage.MSG_STATE.equals(msgType)) {
+                return (putGameStateOk() == 0);
+            }
             return (putMessage(NetworkMessage.msgClientGameOkC(msgType)) == 0);
         } else {
             return false;
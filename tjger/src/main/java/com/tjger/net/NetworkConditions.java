@@ -0,0 +1,104 @@
+package com.tjger.net;
+
+import java.util.Random;
+
+/**
+ * Simulated conditions of a network link for the {@link NetworkLoopback}: every message is delayed by the latency
+ * plus a random jitter. A dropped message is sent again after the retransmission delay, like TCP does, so the messages
+ * keep their order and a dropped message also delays the following ones.
+ *
+ * @author hagru
+ */
+public final class NetworkConditions {
+
+    final public static long DEFAULT_RETRANSMIT_DELAY = 200;
+
+    final private long latency;
+    final private long jitter;
+    final private double dropRate;
+    final private long retransmitDelay;
+
+    /**
+     * Creates the conditions with the default retransmission delay.
+     *
+     * @param latency The delay of every message in milliseconds.
+     * @param jitter The maximum random deviation from the latency in milliseconds.
+     * @param dropRate The probability that a message is dropped, from 0 to less than 1.
+     * @throws IllegalArgumentException If a value is out of range.
+     */
+    public NetworkConditions(long latency, long jitter, double dropRate) {
+        this(latency, jitter, dropRate, DEFAULT_RETRANSMIT_DELAY);
+    }
+
+    /**
+     * Creates the conditions.
+     *
+     * @param latency The delay of every message in milliseconds.
+     * @param jitter The maximum random deviation from the latency in milliseconds.
+     * @param dropRate The probability that a message is dropped, from 0 to less than 1.
+     * @param retransmitDelay The additional delay of a dropped message in milliseconds.
+     * @throws IllegalArgumentException If a value is out of range.
+     */
+    public NetworkConditions(long latency, long jitter, double dropRate, long retransmitDelay) {
+        if (latency < 0 || jitter < 0 || retransmitDelay < 0 || dropRate < 0 || dropRate >= 1) {
+            throw new IllegalArgumentException("Invalid network conditions!");
+        }
+        this.latency = latency;
+        this.jitter = jitter;
+        this.dropRate = dropRate;
+        this.retransmitDelay = retransmitDelay;
+    }
+
+    /**
+     * @return The delay of every message in milliseconds.
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return The maximum random deviation from the latency in milliseconds.
+     */
+    public long getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return The probability that a message is dropped.
+     */
+    public double getDropRate() {
+        return dropRate;
+    }
+
+    /**
+     * @return The additional delay of a dropped message in milliseconds.
+     */
+    public long getRetransmitDelay() {
+        return retransmitDelay;
+    }
+
+    /**
+     * Returns the delay of the next message, a message can be dropped several times.
+     *
+     * @param random The random generator.
+     * @return The delay in milliseconds.
+     */
+    long nextDelay(Random random) {
+        long delay = latency;
+        if (jitter > 0) {
+            delay += (long) ((random.nextDouble() * 2 - 1) * jitter);
+        }
+        while (dropRate > 0 && random.nextDouble() < dropRate) {
+            delay += retransmitDelay;
+        }
+        return Math.max(delay, 0);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "latency " + latency + " ms, jitter " + jitter + " ms, drop rate " + dropRate + ", retransmit " + retransmitDelay + " ms";
+    }
+}
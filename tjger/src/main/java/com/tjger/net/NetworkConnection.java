@@ -6,13 +6,19 @@ import java.io.PrintStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import com.tjger.MainFrame;
 import com.tjger.game.completed.GameManager;
 import com.tjger.lib.ConstantValue;
 
+import at.hagru.hgbase.android.HGBaseAppTools;
+import at.hagru.hgbase.gui.HGBaseDialog;
+import at.hagru.hgbase.lib.HGBaseLog;
 import at.hagru.hgbase.lib.HGBaseTools;
 
 /**
@@ -27,8 +33,15 @@ abstract public class NetworkConnection {
     final public static int CONNECTING   = 2;
     final public static int NOTUSED      = 9;
 
-    private boolean wasClosed;
-    private List<String> msgBuffer = new ArrayList<>();
+    static final int STATE_HISTORY_SIZE = 16; // number of game state versions the changes can be created for
+
+    private volatile boolean wasClosed;
+    // the received messages by their type, each list in the order of arrival
+    final private Map<String, List<ReceivedMessage>> msgBuffer = new HashMap<>();
+    private long numReceived; // guarded by msgBuffer
+    private volatile boolean headless;
+    private NetworkConditions conditions;
+    private String appName;
 
     public NetworkConnection() {
         super();
@@ -41,11 +54,74 @@ abstract public class NetworkConnection {
         return GameManager.getInstance().getMainFrame();
     }
 
+    /**
+     * @param headless True if errors shall only be logged instead of being shown, e.g. for the {@link NetworkLoopback}.
+     */
+    void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * @return The simulated conditions of the network or null if the messages are sent at once.
+     */
+    NetworkConditions getConditions() {
+        return conditions;
+    }
+
+    /**
+     * @param conditions The simulated conditions of the network for the next start or null to send the messages at once.
+     */
+    void setConditions(NetworkConditions conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * @return The name of the application the connection is used for, by default the name of the running app.
+     */
+    protected String getAppName() {
+        return (appName == null) ? HGBaseAppTools.getAppName() : appName;
+    }
+
+    /**
+     * @param appName The name of the application, e.g. for the {@link NetworkLoopback} that runs without an app,
+     *                or null for the name of the running app.
+     */
+    void setAppName(String appName) {
+        this.appName = appName;
+    }
+
+    /**
+     * Shows an error or only logs it if the connection is headless.
+     *
+     * @param errorCode The code of the error.
+     */
+    protected void printError(int errorCode) {
+        if (headless) {
+            HGBaseLog.logError("Network error " + errorCode);
+        } else {
+            HGBaseDialog.printError(errorCode, getMainFrame());
+        }
+    }
+
+    /**
+     * Shows an error or only logs it if the connection is headless.
+     *
+     * @param error The key of the error.
+     * @param params The parameters of the error text.
+     */
+    protected void printError(String error, String[] params) {
+        if (headless) {
+            HGBaseLog.logError("Network error " + error);
+        } else {
+            HGBaseDialog.printError(error, params, getMainFrame());
+        }
+    }
+
     /**
      * Resets all values.
      */
     public void reset() {
-        this.msgBuffer.clear();
+        msgBufClear();
         this.wasClosed = false;
     }
 
@@ -57,30 +133,73 @@ abstract public class NetworkConnection {
     }
 
     /**
-     * Starts a connection. A thread is reading until connection is closed.
+     * Returns a counter that is increased with every received message, to be passed to {@link #waitForMessage(long)}.
+     * Take the counter before testing for the messages, so no message gets lost between testing and waiting.
+     *
+     * @return The number of received messages.
+     */
+    protected long getNumReceived() {
+        synchronized (msgBuffer) {
+            return numReceived;
+        }
+    }
+
+    /**
+     * Waits till a new message was received, the connection state changed or the wait interval has passed.
+     * Replaces {@link #netWait()} in loops that wait for messages, so they continue as soon as a message arrives.
+     *
+     * @param lastNumReceived The number of received messages when the caller tested for its messages the last time.
+     * @return The current number of received messages.
+     */
+    protected long waitForMessage(long lastNumReceived) {
+        long timeout = System.currentTimeMillis() + ConstantValue.NETWORK_WAITINTERVAL;
+        synchronized (msgBuffer) {
+            try {
+                long remaining = ConstantValue.NETWORK_WAITINTERVAL;
+                while (numReceived == lastNumReceived && !wasClosed && remaining > 0) {
+                    msgBuffer.wait(remaining);
+                    remaining = timeout - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return numReceived;
+        }
+    }
+
+    /**
+     * Wakes up all threads that wait in {@link #waitForMessage(long)}, e.g. because a client was disconnected.
+     */
+    protected void wakeUpWaiting() {
+        synchronized (msgBuffer) {
+            numReceived++;
+            msgBuffer.notifyAll();
+        }
+    }
+
+    /**
+     * Starts a connection. The messages are passed to {@link #messageReceived(String)} by the {@link NetworkTransport}
+     * as soon as they arrive, until the connection is closed.
      *
      * @return 0 if successful or < 0 if there is an error.
      */
     protected int start() {
         reset();
-        // start a thread that reads from the socket(s)
-        Thread t = new Thread() {
-            @Override
-            public void run() {
-                while (!wasClosed) {
-                    String msg = getMessage();
-                    if (HGBaseTools.hasContent(msg)) {
-                        msgBufInsert(msg);
-                        handleMessage(msg);
-                    }
-                    netWait();
-                }
-            }
-        };
-        t.start();
         return 0;
     }
 
+    /**
+     * Stores a received message in the message buffer and handles it.
+     *
+     * @param msg The received message.
+     */
+    protected void messageReceived(String msg) {
+        if (!wasClosed && HGBaseTools.hasContent(msg)) {
+            msgBufInsert(msg);
+            handleMessage(msg);
+        }
+    }
+
     /**
      * Returns the client id or -1 if it's a server
      *
@@ -103,6 +222,21 @@ abstract public class NetworkConnection {
      */
     public void close() {
         wasClosed = true;
+        wakeUpWaiting();
+    }
+
+    /**
+     * Puts a message to the channel of a connection
+     *
+     * @param endpoint channel of the connection
+     * @param message message text
+     * @return 0 if there was no error, otherwise the error code
+     */
+    int putMessage(NetworkTransport.Endpoint endpoint, String message) {
+        if (endpoint != null) {
+            return (endpoint.send(message)) ? 0 : -30224;
+        }
+        return -30221;
     }
 
     /**
@@ -111,7 +245,10 @@ abstract public class NetworkConnection {
      * @param out output steam
      * @param message message text
      * @return 0 if there was no error, otherwise the error code
+     * @deprecated The connections send their messages by the {@link NetworkTransport}, this method is kept for
+     *             subclasses that still write to their own streams and will be removed with the next release.
      */
+    @Deprecated
     protected int putMessage(PrintStream out, String message) {
         if (out != null) {
             out.println(message);
@@ -121,10 +258,16 @@ abstract public class NetworkConnection {
     }
 
     /**
-     * Gets a message from an input stream, must be overridden
+     * Gets a message from an input stream.
+     *
+     * @return The message or null, this default implementation always returns null.
+     * @deprecated The {@link NetworkTransport} passes the received messages to {@link #messageReceived(String)},
+     *             this method is not called any more and will be removed with the next release.
      */
-    abstract protected String getMessage();
-
+    @Deprecated
+    protected String getMessage() {
+        return null;
+    }
 
     /**
      * Gets a message from the given input stream.
@@ -133,7 +276,10 @@ abstract public class NetworkConnection {
      * @param in Input stream.
      * @param message The buffer to append the message.
      * @return 0 if successful.
+     * @deprecated The {@link NetworkTransport} reads the messages, this method is kept for subclasses that still
+     *             read from their own streams and will be removed with the next release.
      */
+    @Deprecated
     protected int getMessage(BufferedReader in, StringBuffer message) {
         if (in != null) {
             try {
@@ -151,6 +297,20 @@ abstract public class NetworkConnection {
         return 0;
     }
 
+    /**
+     * Puts the last message that is sent as text, all following messages are sent as binary frames.
+     *
+     * @param endpoint The endpoint to send the message to.
+     * @param message The message.
+     * @return 0 if successful, otherwise the error code.
+     */
+    int putMessageAndSetBinaryWriting(NetworkTransport.Endpoint endpoint, String message) {
+        if (endpoint != null) {
+            return (endpoint.sendAndSetBinaryWriting(message)) ? 0 : -30224;
+        }
+        return -30221;
+    }
+
     /**
      * Handles the given message
      *
@@ -163,19 +323,31 @@ abstract public class NetworkConnection {
      *
      */
     protected void msgBufClear() {
-        if (msgBuffer != null) {
+        synchronized (msgBuffer) {
             msgBuffer.clear();
         }
     }
 
     /**
-     * Inserts a new message at the end of the message buffer
+     * Inserts a new message at the end of the message buffer and wakes up the threads that wait for a message.
      *
      * @param msg new message
      */
     protected void msgBufInsert(String msg) {
-        if (msgBuffer != null && msg != null) {
-            msgBuffer.add(msg);
+        if (msg != null) {
+            ReceivedMessage received = new ReceivedMessage(msg);
+            if (received.type != null) {
+                synchronized (msgBuffer) {
+                    List<ReceivedMessage> list = msgBuffer.get(received.type);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        msgBuffer.put(received.type, list);
+                    }
+                    list.add(received);
+                    numReceived++;
+                    msgBuffer.notifyAll();
+                }
+            }
         }
     }
 
@@ -196,13 +368,20 @@ abstract public class NetworkConnection {
      *
      * @param type message type
      * @param param message parameter
-     * @return index of message or -1
+     * @return index of message among the buffered messages of its type or -1
+     * @deprecated The buffer keeps the messages by their type, so the index only tells whether such a message exists.
+     *             Use {@link #getNextMessage(String, String)} instead, this method will be removed with the next release.
      */
+    @Deprecated
     protected int getIndexOfMessage(String type, String param) {
-        for (int i=0; i<msgBuffer.size(); i++) {
-            String msg = msgBuffer.get(i);
-            if (isMessageType(msg, type, param)) {
-                return i;
+        synchronized (msgBuffer) {
+            List<ReceivedMessage> list = msgBuffer.get(type);
+            if (list != null) {
+                for (int i = 0; i < list.size(); i++) {
+                    if (param == null || param.equals(list.get(i).param)) {
+                        return i;
+                    }
+                }
             }
         }
         return -1;
@@ -217,14 +396,7 @@ abstract public class NetworkConnection {
      * @return message or null
      */
     protected String getNextMessage(String type, String param) {
-        String msg=null;
-        synchronized (msgBuffer) {
-            int idx = getIndexOfMessage(type, param);
-            if (idx>=0) {
-                msg = msgBuffer.remove(idx);
-            }
-        }
-        return msg;
+        return getNextMessage(type, param, -1, false);
     }
 
     /**
@@ -237,16 +409,33 @@ abstract public class NetworkConnection {
      * @return message or null
      */
     protected String getNextMessage(String type, String param, int id) {
-        String msg=null;
+        return getNextMessage(type, param, id, true);
+    }
+
+    /**
+     * Returns the next message with the given type and removes it from the buffer.
+     * Only the messages of the given type are tested.
+     *
+     * @param type message type
+     * @param param message parameter or null for any parameter
+     * @param id id of the client
+     * @param testId true if the message must have the given client id
+     * @return message or null
+     */
+    private String getNextMessage(String type, String param, int id, boolean testId) {
         synchronized (msgBuffer) {
-            for (int i=0; i<msgBuffer.size() && msg==null; i++) {
-                String m = msgBuffer.get(i);
-                if (isMessageType(m, type, param) && getClientIdOfMessage(m)==id) {
-                    msg = msgBuffer.remove(i);
+            List<ReceivedMessage> list = msgBuffer.get(type);
+            if (list != null) {
+                for (Iterator<ReceivedMessage> it = list.iterator(); it.hasNext(); ) {
+                    ReceivedMessage m = it.next();
+                    if ((param == null || param.equals(m.param)) && (!testId || m.clientId == id)) {
+                        it.remove();
+                        return m.text;
+                    }
                 }
             }
         }
-        return msg;
+        return null;
     }
 
     /**
@@ -274,11 +463,12 @@ abstract public class NetworkConnection {
     protected int removeMessagesWithClientId(int id) {
         int num=0;
         synchronized (msgBuffer) {
-            for (int i=msgBuffer.size()-1;i>=0;i--) {
-                String m = msgBuffer.get(i);
-                if (getClientIdOfMessage(m)==id) {
-                    msgBuffer.remove(i);
-                    num++;
+            for (List<ReceivedMessage> list : msgBuffer.values()) {
+                for (Iterator<ReceivedMessage> it = list.iterator(); it.hasNext(); ) {
+                    if (it.next().clientId == id) {
+                        it.remove();
+                        num++;
+                    }
                 }
             }
         }
@@ -338,4 +528,38 @@ abstract public class NetworkConnection {
         return (msg==null)? null : msg.replaceFirst(msgType+ConstantValue.NETWORK_SEPARATE, "");
     }
 
+    /**
+     * A received message with its parts that are needed to find it, the message is only split once.
+     */
+    private static final class ReceivedMessage {
+
+        final private String text;
+        final private String type;
+        final private String param;
+        final private int clientId;
+
+        /**
+         * @param text The received message.
+         */
+        ReceivedMessage(String text) {
+            this.text = text;
+            StringTokenizer st = new StringTokenizer(text, ConstantValue.NETWORK_SEPARATE);
+            String first = null;
+            String second = null;
+            String lastPart = "";
+            for (int i = 0; st.hasMoreTokens(); i++) {
+                lastPart = st.nextToken();
+                if (i == 0) {
+                    first = lastPart;
+                } else if (i == 1) {
+                    second = lastPart;
+                }
+            }
+            int id = HGBaseTools.toInt(lastPart);
+            this.type = first;
+            this.param = second;
+            this.clientId = (id == HGBaseTools.INVALID_INT) ? -1 : id;
+        }
+    }
+
 }
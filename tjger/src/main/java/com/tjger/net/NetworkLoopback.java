@@ -0,0 +1,317 @@
+package com.tjger.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.tjger.game.VirtualGameState;
+import com.tjger.lib.ConstantValue;
+
+/**
+ * Runs a server and several clients in this process, connected over the loopback interface, to test the network
+ * transport and to measure it without a game and the user interface.<p>
+ * The server gets its own {@link NetworkServerConnection} and every client its own {@link NetworkClientConnection},
+ * both are headless, so errors are only logged, and use the given application name, so no app is needed. The clients connect one after the other, then the server sends
+ * the given number of game states to all clients with {@link NetworkServerConnection#putGameStateAll(com.tjger.game.GameState)}
+ * and waits for their acknowledges each time. Only one part of the game state changes with every message, so
+ * after the first acknowledge the clients get only the changes, like in a game. The sent messages can be delayed
+ * by {@link NetworkConditions}, e.g. to find handshakes that stall on a slow network.
+ * A handshake or message that is not finished within the timeout counts as stall and ends the run.
+ *
+ * <pre>
+ * NetworkLoopback loopback = new NetworkLoopback("MyGame", 3);
+ * loopback.setConditions(new NetworkConditions(50, 20, 0.01));
+ * loopback.setNumMessages(200);
+ * System.out.println(loopback.run());
+ * </pre>
+ *
+ * @see NetworkLoopbackResult
+ * @author hagru
+ */
+public class NetworkLoopback {
+
+    /**
+     * The default number of messages the server sends to each client.
+     */
+    final public static int DEFAULT_NUM_MESSAGES = 100;
+    /**
+     * The default length of a message's data.
+     */
+    final public static int DEFAULT_MESSAGE_SIZE = 500;
+    /**
+     * The default time in milliseconds after that a handshake or message counts as stall.
+     */
+    final public static long DEFAULT_TIMEOUT = 10000;
+
+    private static final String LOOPBACK_IP = "127.0.0.1";
+    private static final int PART_LENGTH = 10; // the length of the parts of the game state that change one at a time
+
+    final private String appName;
+    final private int numClients;
+    private NetworkConditions conditions;
+    private int numMessages = DEFAULT_NUM_MESSAGES;
+    private int messageSize = DEFAULT_MESSAGE_SIZE;
+    private long timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Constructs a new loopback test.
+     *
+     * @param appName The name of the application the server and the clients do the handshake for.
+     * @param numClients The number of clients that connect to the server.
+     */
+    public NetworkLoopback(String appName, int numClients) {
+        super();
+        this.appName = appName;
+        this.numClients = numClients;
+    }
+
+    /**
+     * @param conditions The simulated conditions of the network or null to send the messages at once, the default.
+     */
+    public void setConditions(NetworkConditions conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * @param numMessages The number of messages the server sends to each client.
+     */
+    public void setNumMessages(int numMessages) {
+        this.numMessages = numMessages;
+    }
+
+    /**
+     * @param messageSize The length of a message's data.
+     */
+    public void setMessageSize(int messageSize) {
+        this.messageSize = messageSize;
+    }
+
+    /**
+     * @param timeout The time in milliseconds after that a handshake or message counts as stall.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Connects the clients, sends the messages and closes all connections.
+     *
+     * @return The result of the test.
+     * @throws IllegalStateException if the server cannot be started.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public NetworkLoopbackResult run() throws IllegalStateException, InterruptedException {
+        NetworkLoopbackResult result = new NetworkLoopbackResult();
+        NetworkServerConnection server = new NetworkServerConnection();
+        server.setHeadless(true);
+        server.setAppName(appName);
+        server.setConditions(conditions);
+        if (server.startServer(0) != 0) {
+            throw new IllegalStateException("The loopback server could not be started!");
+        }
+        server.setNumInitialClients(numClients);
+        List<NetworkClientConnection> clients = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(numClients, 1));
+        try {
+            if (connectClients(server, clients, result)) {
+                sendMessages(server, clients, pool, result);
+            }
+        } finally {
+            for (NetworkClientConnection client : clients) {
+                client.close();
+            }
+            server.close();
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Connects the clients to the server one after the other and measures the handshakes.
+     *
+     * @param server The server.
+     * @param clients The list to add the clients to.
+     * @param result The result of the test.
+     * @return {@code true} if all clients are connected, {@code false} if a handshake stalled.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    private boolean connectClients(NetworkServerConnection server, List<NetworkClientConnection> clients,
+                                   NetworkLoopbackResult result) throws InterruptedException {
+        for (int i = 0; i < numClients; i++) {
+            NetworkClientConnection client = new NetworkClientConnection();
+            client.setHeadless(true);
+            client.setAppName(appName);
+            client.setConditions(conditions);
+            clients.add(client);
+            long startTime = System.nanoTime();
+            server.addClient();
+            client.startClient(LOOPBACK_IP, server.getPort(), "client" + i);
+            long endTime = System.currentTimeMillis() + timeout;
+            while (!client.isConnected() || server.getNumConnected() <= i) {
+                if (System.currentTimeMillis() >= endTime) {
+                    result.addStall();
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            result.addLatency(NetworkLoopbackResult.HANDSHAKE, System.nanoTime() - startTime);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the messages to all clients, each after the clients acknowledged the previous one.
+     *
+     * @param server The server.
+     * @param clients The connected clients.
+     * @param pool The threads that receive the messages of the clients.
+     * @param result The result of the test.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    private void sendMessages(NetworkServerConnection server, List<NetworkClientConnection> clients, ExecutorService pool,
+                              NetworkLoopbackResult result) throws InterruptedException {
+        long[] sendTimes = new long[numMessages];
+        long[][] receiveTimes = new long[clients.size()][numMessages];
+        for (int i = 0; i < clients.size(); i++) {
+            NetworkClientConnection client = clients.get(i);
+            long[] clientTimes = receiveTimes[i];
+            pool.execute(() -> receiveMessages(client, clientTimes));
+        }
+        long startTime = System.currentTimeMillis();
+        LoopbackState state = new LoopbackState();
+        int numSent = 0;
+        while (numSent < numMessages) {
+            state.data = createMessageData(numSent);
+            sendTimes[numSent] = System.nanoTime();
+            numSent++;
+            if (server.putGameStateAll(state) != 0 || !waitForAcknowledges(server)) {
+                result.addStall();
+                break;
+            }
+            result.addLatency(NetworkLoopbackResult.ROUND_TRIP, System.nanoTime() - sendTimes[numSent - 1]);
+        }
+        result.setDuration(System.currentTimeMillis() - startTime);
+        // stop the clients that still wait for a message
+        for (NetworkClientConnection client : clients) {
+            client.close();
+        }
+        pool.shutdown();
+        pool.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        for (long[] clientTimes : receiveTimes) {
+            for (int message = 0; message < numSent; message++) {
+                if (clientTimes[message] != 0) {
+                    result.addLatency(NetworkLoopbackResult.ONE_WAY, clientTimes[message] - sendTimes[message]);
+                    result.addMessage(messageSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Receives the messages of a client and acknowledges them. Is called by the threads of the test.
+     *
+     * @param client The client.
+     * @param receiveTimes The array to store the times the messages were received at.
+     */
+    private void receiveMessages(NetworkClientConnection client, long[] receiveTimes) {
+        for (int message = 0; message < numMessages; message++) {
+            long received = client.getNumReceived();
+            String data = client.messageServerGameState();
+            while (data == null && client.isConnected()) {
+                received = client.waitForMessage(received);
+                data = client.messageServerGameState();
+            }
+            if (data == null) {
+                return;
+            }
+            receiveTimes[message] = System.nanoTime();
+            if (client.putGameStateOk() != 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits till all clients acknowledged the last message.
+     *
+     * @param server The server.
+     * @return {@code true} if all clients acknowledged, {@code false} if a client got lost or the timeout has passed.
+     */
+    private boolean waitForAcknowledges(NetworkServerConnection server) {
+        long endTime = System.currentTimeMillis() + timeout;
+        int numOk = 0;
+        long received = server.getNumReceived();
+        while (numOk < numClients) {
+            while (server.messageClientsGameOk(NetworkMessage.MSG_STATE)) {
+                numOk++;
+            }
+            if (numOk < numClients) {
+                if (server.getNumConnected() < numClients || System.currentTimeMillis() >= endTime) {
+                    return false;
+                }
+                received = server.waitForMessage(received);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the data of a message, parts of letters of which one part changes with every message.
+     *
+     * @param index The index of the message.
+     * @return The data of the message.
+     */
+    private String createMessageData(int index) {
+        int numParts = Math.max((messageSize + 1) / (PART_LENGTH + 1), 1);
+        StringBuilder sb = new StringBuilder(messageSize);
+        for (int i = 0; i < messageSize; i++) {
+            int part = Math.min(i / (PART_LENGTH + 1), numParts - 1);
+            if (i % (PART_LENGTH + 1) == PART_LENGTH && part < numParts - 1) {
+                sb.append(ConstantValue.NETWORK_DIVIDEPART);
+            } else {
+                // the letters of a part depend on the last message that changed it
+                int lastChange = index - Math.floorMod(index - part, numParts);
+                sb.append((char) ('a' + Math.floorMod(lastChange + i, 26)));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The game state the server sends, only its message part is used.
+     */
+    private static final class LoopbackState extends VirtualGameState {
+
+        private String data = "";
+
+        /* (non-Javadoc)
+         * @see com.tjger.game.VirtualGameState#toNetworkString()
+         */
+        @Override
+        public String toNetworkString() {
+            return data;
+        }
+
+        /* (non-Javadoc)
+         * @see com.tjger.game.GameState#save(org.w3c.dom.Document, org.w3c.dom.Element)
+         */
+        @Override
+        public int save(Document doc, Element root) {
+            return 0;
+        }
+
+        /* (non-Javadoc)
+         * @see com.tjger.game.GameState#load(org.w3c.dom.Node)
+         */
+        @Override
+        public int load(Node node) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.tjger.net;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The result of a {@link NetworkLoopback}: the percentiles and histograms of the latencies of the handshakes, the
+ * game state messages and the acknowledges, the throughput and the number of stalls.
+ *
+ * @see NetworkLoopback
+ * @author hagru
+ */
+public class NetworkLoopbackResult {
+
+    /**
+     * The time from adding a client at the server till both sides are connected.
+     */
+    final public static int HANDSHAKE = 0;
+    /**
+     * The time from sending a message at the server till a client received it.
+     */
+    final public static int ONE_WAY = 1;
+    /**
+     * The time from sending a message at the server till all clients acknowledged it.
+     */
+    final public static int ROUND_TRIP = 2;
+
+    private static final String[] KIND_NAMES = {"handshake", "one way", "round trip"};
+
+    final private long[][] latencies = new long[KIND_NAMES.length][64];
+    final private int[] countLatencies = new int[KIND_NAMES.length];
+    private int countMessages;
+    private long countBytes;
+    private int countStalls;
+    private long duration;
+
+    /**
+     * Constructs a new result.
+     */
+    NetworkLoopbackResult() {
+        super();
+    }
+
+    /**
+     * Adds a measured latency.
+     *
+     * @param kind The kind of the latency, e.g. {@link #HANDSHAKE}.
+     * @param nanos The latency in nanoseconds.
+     */
+    synchronized void addLatency(int kind, long nanos) {
+        int index = countLatencies[kind];
+        if (index == latencies[kind].length) {
+            latencies[kind] = Arrays.copyOf(latencies[kind], index * 2);
+        }
+        latencies[kind][index] = nanos;
+        countLatencies[kind]++;
+    }
+
+    /**
+     * Adds a message a client received.
+     *
+     * @param bytes The length of the message's data.
+     */
+    synchronized void addMessage(int bytes) {
+        countMessages++;
+        countBytes += bytes;
+    }
+
+    /**
+     * Counts a handshake or a message that was not finished within the timeout.
+     */
+    synchronized void addStall() {
+        countStalls++;
+    }
+
+    /**
+     * @param duration The duration of sending the messages in milliseconds.
+     */
+    synchronized void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * @param kind The kind of the latency, e.g. {@link #HANDSHAKE}.
+     * @return The number of measured latencies of this kind.
+     */
+    public synchronized int getCountLatencies(int kind) {
+        return countLatencies[kind];
+    }
+
+    /**
+     * @return The number of messages the clients received.
+     */
+    public synchronized int getCountMessages() {
+        return countMessages;
+    }
+
+    /**
+     * @return The number of handshakes and messages that were not finished within the timeout.
+     */
+    public synchronized int getCountStalls() {
+        return countStalls;
+    }
+
+    /**
+     * @return The duration of sending the messages in milliseconds.
+     */
+    public synchronized long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return The number of messages the clients received per second.
+     */
+    public synchronized double getMessagesPerSecond() {
+        return (duration == 0) ? 0 : countMessages * 1000.0 / duration;
+    }
+
+    /**
+     * @return The number of bytes of the messages' data the clients received per second.
+     */
+    public synchronized double getBytesPerSecond() {
+        return (duration == 0) ? 0 : countBytes * 1000.0 / duration;
+    }
+
+    /**
+     * Returns the latency that is not exceeded by the given percentage of the measured latencies.
+     *
+     * @param kind The kind of the latency, e.g. {@link #HANDSHAKE}.
+     * @param percentile The percentile between 0 and 100, e.g. 50 for the median.
+     * @return The time in milliseconds.
+     */
+    public synchronized double getLatencyPercentile(int kind, double percentile) {
+        int size = countLatencies[kind];
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies[kind], size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * size) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Returns a histogram of the latencies with buckets that double their width: the first bucket counts the latencies
+     * below 1 ms, the bucket {@code i} the latencies from 2<sup>i-1</sup> to below 2<sup>i</sup> ms.
+     *
+     * @param kind The kind of the latency, e.g. {@link #HANDSHAKE}.
+     * @return The number of latencies per bucket, the last bucket is the last one that is not empty.
+     */
+    public synchronized int[] getHistogram(int kind) {
+        int[] buckets = new int[64];
+        int numBuckets = 0;
+        for (int i = 0; i < countLatencies[kind]; i++) {
+            long millis = latencies[kind][i] / 1000000;
+            int bucket = 64 - Long.numberOfLeadingZeros(millis);
+            buckets[bucket]++;
+            numBuckets = Math.max(numBuckets, bucket + 1);
+        }
+        return Arrays.copyOf(buckets, numBuckets);
+    }
+
+    /**
+     * @return A table with the latencies, their histograms and the throughput.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH, "%-12s %7s %9s %9s %9s %9s%n", "latency", "count", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+            sb.append(String.format(Locale.ENGLISH, "%-12s %7d %9.1f %9.1f %9.1f %9.1f%n", KIND_NAMES[kind], countLatencies[kind],
+                                    getLatencyPercentile(kind, 50), getLatencyPercentile(kind, 90), getLatencyPercentile(kind, 99),
+                                    getLatencyPercentile(kind, 100)));
+        }
+        for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+            int[] histogram = getHistogram(kind);
+            if (histogram.length > 0) {
+                sb.append(KIND_NAMES[kind]).append(':');
+                for (int bucket = 0; bucket < histogram.length; bucket++) {
+                    String upperBound = (bucket == 0) ? "<1" : ("<" + (1L << bucket));
+                    sb.append(String.format(Locale.ENGLISH, " %s ms: %d", upperBound, histogram[bucket]));
+                }
+                sb.append(String.format("%n"));
+            }
+        }
+        sb.append(String.format(Locale.ENGLISH, "stalls: %d, messages: %d, duration: %d ms, messages/s: %.1f, bytes/s: %.0f%n",
+                                countStalls, countMessages, duration, getMessagesPerSecond(), getBytesPerSecond()));
+        return sb.toString();
+    }
+}
@@ -24,6 +24,7 @@ public class NetworkMessage {
     public static final String MSG_ENGINE = "TJxGE";
     public static final String MSG_STATE  = "TJxGS";
     public static final String MSG_MOVE   = "TJxMI";
+    public static final String MSG_STATEVERSION = "TJxGV";
 
     public static final String PARAM_CLIENTCONN = "CLCON";
     public static final String PARAM_SERVERACC   = "SRACC";
@@ -33,12 +34,15 @@ public class NetworkMessage {
     public static final String PARAM_GAMEOK      = "GMOK";
     public static final String PARAM_PLAYERNAME  = "PLNAM";
     public static final String PARAM_TEST        = "TEST";
+    public static final String PARAM_RESYNC      = "RESYNC";
 
     public static final String ERROR_ABORT  = "err.netabort";
     public static final String ERROR_NAME   = "err.netname";
     public static final String ERROR_NEXTGAME   = "err.nextgame";
     public static final String ERROR_APPLICATION   = "err.application";
 
+    public static final String PROTOCOL_BINARY = "TJB1"; // binary frames, see NetworkBinaryCodec
+
     private NetworkMessage() {
         super();
     }
@@ -100,10 +104,20 @@ public class NetworkMessage {
      * @return Message text.
      */
     public static String msgWrongApplicationS() {
+        return msgWrongApplicationS(HGBaseAppTools.getAppName());
+    }
+
+    /**
+     * Tells the client that there runs another application at the server.
+     *
+     * @param appName The name of the application at the server.
+     * @return Message text.
+     */
+    public static String msgWrongApplicationS(String appName) {
         List<String> al=new ArrayList<>();
         al.add(MSG_ERROR);
         al.add(ERROR_APPLICATION);
-        al.add(HGBaseAppTools.getAppName());
+        al.add(appName);
         return createString(al);
     }
 
@@ -126,27 +140,55 @@ public class NetworkMessage {
      * @return message text
      */
     public static String msgShakehandS(int id) {
+        return msgShakehandS(id, null);
+    }
+
+    /**
+     * Server replies to shake-hands and selects the protocol for the following messages.
+     * All messages after this one are sent with the protocol, all messages of the client after its acknowledge.
+     *
+     * @param id Id of client
+     * @param protocol the protocol offered by the client, e.g. {@link #PROTOCOL_BINARY}, or null for the text protocol
+     * @return message text
+     */
+    public static String msgShakehandS(int id, String protocol) {
         List<String> al=new ArrayList<>();
         al.add(MSG_CTRL);
         al.add(PARAM_SERVERACC);
         al.add(String.valueOf(id));
+        if (protocol!=null) {
+            al.add(protocol);
+        }
         return createString(al);
     }
 
     /**
-     * Client asks for shake-hands
+     * Client asks for shake-hands and offers the binary protocol, older servers ignore the offer.
      *
      * @param name name of client
      * @param ip address of client
      * @return message text
      */
     public static String msgShakehandC(String name,String ip) {
+        return msgShakehandC(HGBaseAppTools.getAppName(), name, ip);
+    }
+
+    /**
+     * Client asks for shake-hands for the given application and offers the binary protocol.
+     *
+     * @param appName name of the application, the server accepts only clients of its own application
+     * @param name name of client
+     * @param ip address of client
+     * @return message text
+     */
+    public static String msgShakehandC(String appName,String name,String ip) {
         List<String> al=new ArrayList<>();
         al.add(MSG_CTRL);
         al.add(PARAM_CLIENTCONN);
-        al.add(HGBaseAppTools.getAppName());
+        al.add(appName);
         al.add(name);
         al.add(ip);
+        al.add(PROTOCOL_BINARY);
         return createString(al);
     }
 
@@ -222,6 +264,35 @@ public class NetworkMessage {
         return createString(al);
     }
 
+    /**
+     * Client acknowledges a game state and tells the server the version of the game state it has.
+     * The server sends the following game states as changes to this version.
+     *
+     * @param version The version of the game state or -1 if the client got a game state without version.
+     * @return The message text.
+     */
+    public static String msgClientGameStateOkC(int version) {
+        List<String> al=new ArrayList<>();
+        al.add(MSG_STATE);
+        al.add(PARAM_GAMEOK);
+        al.add(String.valueOf(version));
+        return createString(al);
+    }
+
+    /**
+     * Client asks for the whole game state, because it could not apply the changes.
+     *
+     * @param version The version of the game state the client has or -1.
+     * @return The message text.
+     */
+    public static String msgGameStateResyncC(int version) {
+        List<String> al=new ArrayList<>();
+        al.add(MSG_STATEVERSION);
+        al.add(PARAM_RESYNC);
+        al.add(String.valueOf(version));
+        return createString(al);
+    }
+
     /**
      * Create the message to transfer the game state.
      *
@@ -229,9 +300,36 @@ public class NetworkMessage {
      * @return The message Text.
      */
     public static String msgGameStateS(GameState state) {
+        return msgGameStateS(state.toNetworkString());
+    }
+
+    /**
+     * Create the message to transfer the game state.
+     *
+     * @param data The message part representing the game state.
+     * @return The message Text.
+     */
+    public static String msgGameStateS(String data) {
         List<String> al=new ArrayList<>();
         al.add(MSG_STATE);
-        al.add(state.toNetworkString());
+        al.add(data);
+        return createString(al);
+    }
+
+    /**
+     * Create the message to transfer a version of the game state, either the whole game state or the changes to an older version.
+     *
+     * @param version The version of the game state.
+     * @param baseVersion The version the changes belong to or -1 if the data is the whole game state.
+     * @param data The message part representing the game state or the changes.
+     * @return The message Text.
+     */
+    public static String msgGameStateVersionS(int version, int baseVersion, String data) {
+        List<String> al=new ArrayList<>();
+        al.add(MSG_STATEVERSION);
+        al.add(String.valueOf(version));
+        al.add(String.valueOf(baseVersion));
+        al.add(data);
         return createString(al);
     }
 
@@ -1,22 +1,17 @@
 package com.tjger.net;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.tjger.game.GameState;
 import com.tjger.game.NetworkPlayer;
 import com.tjger.game.completed.GameConfig;
 import com.tjger.lib.ConstantValue;
 
-import at.hagru.hgbase.android.HGBaseAppTools;
-import at.hagru.hgbase.gui.HGBaseDialog;
-import at.hagru.hgbase.lib.HGBaseFileTools;
 import at.hagru.hgbase.lib.HGBaseTools;
 
 /**
@@ -24,16 +19,17 @@ import at.hagru.hgbase.lib.HGBaseTools;
  *
  * @author hagru
  */
-public class NetworkServerConnection extends NetworkConnection {
+public class NetworkServerConnection extends NetworkConnection implements NetworkTransport.Listener {
 
     private static NetworkServerConnection connection = new NetworkServerConnection();
 
     private List<NetworkClient> listClients; // list with NetworkClients.
-    private ServerSocket servSock;
-    private int lastClient;
+    private NetworkTransport transport;
     private int numInitialClients;
+    final private Map<Integer, String> stateHistory = new LinkedHashMap<>(); // the last sent game states by their version
+    private int stateVersion;
 
-    private NetworkServerConnection() {
+    NetworkServerConnection() {
         super();
     }
 
@@ -50,21 +46,46 @@ public class NetworkServerConnection extends NetworkConnection {
      * @return 0 if it was successful.
      */
     public int startServer() {
+        return startServer(GameConfig.getInstance().getNetworkPort());
+    }
+
+    /**
+     * Starts a server at the given port.
+     *
+     * @param port The port to accept connections at, 0 for any free port.
+     * @return 0 if it was successful.
+     */
+    int startServer(int port) {
         listClients = new ArrayList<>();
-        lastClient = 0;
         numInitialClients = 0;
+        synchronized (stateHistory) {
+            stateHistory.clear();
+            stateVersion = -1;
+        }
+        super.start();
         // try to start the server
         try {
-            servSock = new ServerSocket(GameConfig.getInstance().getNetworkPort());
+            transport = new NetworkTransport(this, getConditions());
+            transport.listen(port);
         } catch (IOException e) {
-            servSock = null;
-            HGBaseDialog.printError(-30218, getMainFrame());
+            if (transport != null) {
+                transport.close();
+            }
+            transport = null;
+            printError(-30218);
             return -30218;
         }
-        super.start();
         return 0;
     }
 
+    /**
+     * @return The port the server accepts connections at or -1 if it is not started.
+     */
+    int getPort() {
+        NetworkTransport currentTransport = transport;
+        return (currentTransport == null) ? -1 : currentTransport.getLocalPort();
+    }
+
     /* (non-Javadoc)
      * @see tjger.net.NetworkConnection#getId()
      */
@@ -77,7 +98,7 @@ public class NetworkServerConnection extends NetworkConnection {
      * @return True if the server is started.
      */
     public boolean isStarted() {
-        return (servSock!=null);
+        return (transport!=null);
     }
 
 
@@ -101,12 +122,12 @@ public class NetworkServerConnection extends NetworkConnection {
     @Override
     public void close() {
         super.close();
-        if (servSock != null) {
+        if (transport != null) {
             for (int i = getNumClients() - 1; i >= 0; i--) {
                 disconnect(i);
             }
-            HGBaseFileTools.closeStream(servSock);
-            servSock = null;
+            transport.close();
+            transport = null;
         }
     }
 
@@ -123,14 +144,15 @@ public class NetworkServerConnection extends NetworkConnection {
             if (id>=0) {
                 removeMessagesWithClientId(id);
             }
-            Socket sock = client.getSocket();
-            PrintStream outStream = client.getOutStream();
-            BufferedReader inStream = client.getInStream();
-            putMessage(outStream, NetworkMessage.msgAbort());
-            HGBaseFileTools.closeStream(sock);
-            HGBaseFileTools.closeStream(outStream);
-            HGBaseFileTools.closeStream(inStream);
-            return removeClient(client);
+            NetworkTransport.Endpoint endpoint = client.getEndpoint();
+            if (endpoint != null) {
+                putMessage(endpoint, NetworkMessage.msgAbort());
+                endpoint.close();
+            }
+            boolean removed = removeClient(client);
+            // the waiting threads have to test the number of connected clients
+            wakeUpWaiting();
+            return removed;
         }
         return false;
     }
@@ -192,6 +214,106 @@ public class NetworkServerConnection extends NetworkConnection {
         }
     }
 
+    /**
+     * Puts the game state to all clients. Clients that acknowledged an older version of the game state only get the changes,
+     * the other clients get the whole game state. For all clients the game state is received with
+     * {@link NetworkClientConnection#messageServerGameState()}.
+     *
+     * @param state The game state.
+     * @return 0 if there was no error, otherwise the error code.
+     */
+    public int putGameStateAll(GameState state) {
+        return putGameStateAll(state, -1);
+    }
+
+    /**
+     * Puts the game state to all clients, see {@link #putGameStateAll(GameState)}.
+     *
+     * @param state The game state.
+     * @param except Index of client that gets no message or -1.
+     * @return 0 if there was no error, otherwise the error code.
+     */
+    public int putGameStateAll(GameState state, int except) {
+        String data = state.toNetworkString();
+        int version;
+        synchronized (stateHistory) {
+            version = ++stateVersion;
+            stateHistory.put(Integer.valueOf(version), data);
+            if (stateHistory.size() > STATE_HISTORY_SIZE) {
+                stateHistory.remove(stateHistory.keySet().iterator().next());
+            }
+        }
+        int succ=0;
+        for (int i=0;i<getNumClients();i++) {
+            if (i!=except) {
+                int res=putGameState(i, state, version, data);
+                if (res!=0) {
+                    succ=res;
+                }
+            }
+        }
+        return succ;
+    }
+
+    /**
+     * Puts the game state to all clients and waits for their ok, sends only the changes like {@link #putGameStateAll(GameState)}.
+     * Replaces {@link #putMessageAllAndWait(String, String)} with {@link NetworkMessage#msgGameStateS(GameState)}.
+     *
+     * @param state The game state.
+     * @return True if everything was ok.
+     */
+    public boolean putGameStateAllAndWait(GameState state) {
+        return putGameStateAllAndWait(state, -1);
+    }
+
+    /**
+     * Puts the game state to all clients except one and waits for their ok, see {@link #putGameStateAllAndWait(GameState)}.
+     *
+     * @param state The game state.
+     * @param except Index of client that gets no message or -1.
+     * @return True if everything was ok.
+     */
+    public boolean putGameStateAllAndWait(GameState state, int except) {
+        if (putGameStateAll(state, except) == 0) {
+            return waitForClientsGameOk(NetworkMessage.MSG_STATE, except);
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Puts a version of the game state to the given client, only the changes if the client has acknowledged an older version.
+     *
+     * @param index index of client
+     * @param state The game state.
+     * @param version The version of the game state.
+     * @param data The message part representing the game state.
+     * @return 0 if there was no error, otherwise the error code
+     */
+    private int putGameState(int index, GameState state, int version, String data) {
+        NetworkClient client = getClient(index);
+        if (client==null || !client.isStateVersionSupported()) {
+            return putMessage(index, NetworkMessage.msgGameStateS(data));
+        }
+        int baseVersion = client.getStateVersion();
+        String baseData = getStateOfVersion(baseVersion);
+        String delta = (baseData==null) ? null : state.toNetworkStringDelta(baseData, data);
+        if (delta==null) {
+            return putMessage(index, NetworkMessage.msgGameStateVersionS(version, -1, data));
+        }
+        return putMessage(index, NetworkMessage.msgGameStateVersionS(version, baseVersion, delta));
+    }
+
+    /**
+     * @param version A version of the game state.
+     * @return The message part representing this version of the game state or null if it is not known any more.
+     */
+    private String getStateOfVersion(int version) {
+        synchronized (stateHistory) {
+            return stateHistory.get(Integer.valueOf(version));
+        }
+    }
+
     /**
      * Puts a message to the given clients
      *
@@ -202,39 +324,50 @@ public class NetworkServerConnection extends NetworkConnection {
     public int putMessage(int index, String msg) {
         int state=getClientState(index);
         if (state==CONNECTED || state==CONNECTING) {
-            PrintStream outStream = getClientOutput(index);
-            if (outStream!=null) {
-                return putMessage(outStream,msg);
+            NetworkClient client = getClient(index);
+            if (client!=null && client.getEndpoint()!=null) {
+                return putMessage(client.getEndpoint(),msg);
             }
         }
         return -30221;
     }
 
     /* (non-Javadoc)
-     * @see tjger.net.NetworkConnection#getMessage()
+     * @see com.tjger.net.NetworkTransport.Listener#lineReceived(com.tjger.net.NetworkTransport.Endpoint, java.lang.String)
      */
     @Override
-    protected String getMessage() {
-        if (getNumClients() > 0) {
-            lastClient = (lastClient + 1) % getNumClients();
-            NetworkClient client = getClient(lastClient);
-            if (client != null && (client.getState() == CONNECTED || client.getState() == CONNECTING)) {
-                int clientId = client.getClientId();
-                BufferedReader inStream = client.getInStream();
-                if (inStream != null) {
-                    StringBuffer msg = new StringBuffer(32);
-                    if (getMessage(inStream, msg) != 0) {
-                        // if there was an error, disconnect this client
-                        disconnect(getIndexOfId(clientId));
-                    } else if (msg.length() > 0) {
-                        // add the clients id
-                        msg = msg.append(ConstantValue.NETWORK_SEPARATE + clientId);
-                        return msg.toString();
-                    }
+    public void lineReceived(NetworkTransport.Endpoint endpoint, String line) {
+        NetworkClient client = (NetworkClient) endpoint.getOwner();
+        if (NetworkMessage.PROTOCOL_BINARY.equals(endpoint.getProtocol()) && !endpoint.isBinaryReading()
+                && isMessageType(line, NetworkMessage.MSG_CTRL, NetworkMessage.PARAM_CLIENTACC)) {
+            // the acknowledge is the last message the client sends as text
+            endpoint.setBinaryReading();
+        }
+        if (client != null && (client.getState() == CONNECTED || client.getState() == CONNECTING)) {
+            int clientId = client.getClientId();
+            if (clientId >= 0 && line.length() > 0) {
+                if (isMessageType(line, NetworkMessage.MSG_STATE, NetworkMessage.PARAM_GAMEOK) && getNumberMessageParts(line) == 3) {
+                    // remember the version before the acknowledge can be taken, so the next game state is based on it
+                    int version = HGBaseTools.toInt(getMessagePart(2, line));
+                    client.setStateVersion((version == HGBaseTools.INVALID_INT) ? -1 : version);
+                    client.setStateVersionSupported(true);
                 }
+                // add the clients id
+                messageReceived(line + ConstantValue.NETWORK_SEPARATE + clientId);
             }
         }
-        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see com.tjger.net.NetworkTransport.Listener#endpointClosed(com.tjger.net.NetworkTransport.Endpoint)
+     */
+    @Override
+    public void endpointClosed(NetworkTransport.Endpoint endpoint) {
+        NetworkClient client = (NetworkClient) endpoint.getOwner();
+        if (client != null) {
+            // the connection to this client got lost
+            disconnect(getIndexOfId(client.getClientId()));
+        }
     }
 
     /* (non-Javadoc)
@@ -253,6 +386,26 @@ public class NetworkServerConnection extends NetworkConnection {
                 }
                 return true;
             }
+        } else if (type != null && type.equals(NetworkMessage.MSG_STATEVERSION) && NetworkMessage.PARAM_RESYNC.equals(param)) {
+            // the client could not apply the changes, send the whole game state
+            int id = getClientIdOfMessage(msg);
+            getNextMessage(NetworkMessage.MSG_STATEVERSION, NetworkMessage.PARAM_RESYNC, id);
+            int index = getIndexOfId(id);
+            NetworkClient client = getClient(index);
+            if (client != null) {
+                client.setStateVersion(-1);
+                client.setStateVersionSupported(true);
+                int version;
+                String data;
+                synchronized (stateHistory) {
+                    version = stateVersion;
+                    data = stateHistory.get(Integer.valueOf(version));
+                }
+                if (data != null) {
+                    putMessage(index, NetworkMessage.msgGameStateVersionS(version, -1, data));
+                }
+            }
+            return true;
         }
         return false;
     }
@@ -299,7 +452,9 @@ public class NetworkServerConnection extends NetworkConnection {
      *
      * @param index index of the client
      * @return output stream of the client
+     * @deprecated The messages are sent by the {@link NetworkTransport}, use {@link #putMessage(int, String)}.
      */
+    @Deprecated
     public PrintStream getClientOutput(int index) {
         NetworkClient client = getClient(index);
         if (client!=null) {
@@ -462,55 +617,77 @@ public class NetworkServerConnection extends NetworkConnection {
         Thread t = new Thread() {
             @Override
             public void run() {
-                Socket sock=null;
                 try {
                     int index = getIndexOfId(clientId);
                     NetworkClient client = getClient(index);
-                    if (client!=null && client.getState()==DISCONNECTED) {
+                    NetworkTransport currentTransport = transport;
+                    if (client!=null && client.getState()==DISCONNECTED && currentTransport!=null) {
                         boolean releaseSocket=false;
                         client.setState(CONNECTING);
-                        sock = servSock.accept();
+                        NetworkTransport.Endpoint endpoint = currentTransport.accept();
                         // test if this client is still connecting
-                        if (sock!=null && client.getState()==CONNECTING && client.getClientId()==clientId) {
-                            PrintStream outStream = new PrintStream(sock.getOutputStream(), false, Charset.defaultCharset().displayName());
-                            BufferedReader inStream = new BufferedReader(new InputStreamReader(sock.getInputStream(),
-                                                                                               Charset.defaultCharset()));
-                            // set the client's datas
-                            client.setSocket(sock);
-                            client.setOutStream(outStream);
-                            client.setInStream(inStream);
+                        if (client.getState()==CONNECTING && client.getClientId()==clientId) {
+                            // set the client's datas and start to read its messages
+                            client.setSocket(endpoint.getSocket());
+                            client.setEndpoint(endpoint);
+                            endpoint.setOwner(client);
+                            endpoint.startReading();
                             // wait for the client
                             List<String> alOut=new ArrayList<>();
                             boolean wasAbort = false;
+                            long received = getNumReceived();
+                            long timeTest = 0;
                             while (!wasAbort && !messageClientData(alOut, clientId)) {
-                                wasAbort = (messageClientAbort(clientId) || client.getClientId()!=clientId || putMessage(outStream, NetworkMessage.msgTestS())!=0);
-                                netWait();
+                                wasAbort = (messageClientAbort(clientId) || client.getClientId()!=clientId);
+                                // test the connection once per wait interval, not with every received message
+                                if (!wasAbort && System.currentTimeMillis()-timeTest>=ConstantValue.NETWORK_WAITINTERVAL) {
+                                    wasAbort = (putMessage(endpoint, NetworkMessage.msgTestS())!=0);
+                                    timeTest = System.currentTimeMillis();
+                                }
+                                received = waitForMessage(received);
                             }
                             // got message of a client
                             if (!wasAbort && !alOut.isEmpty()) {
                                 String name = "";
                                 String ip = "";
+                                String protocol = null;
                                 if (alOut.size()>=1) {
                                     name=alOut.get(0);
                                 }
                                 if (alOut.size()>=2) {
                                     ip=alOut.get(1);
                                 }
+                                if (alOut.size()>=3 && NetworkMessage.PROTOCOL_BINARY.equals(alOut.get(2))) {
+                                    protocol=NetworkMessage.PROTOCOL_BINARY;
+                                }
                                 if (HGBaseTools.hasContent(name)) {
                                     if (nameAlreadyExists(name)) {
-                                        putMessage(outStream, NetworkMessage.msgNameExistsS());
+                                        putMessage(endpoint, NetworkMessage.msgNameExistsS());
                                         releaseSocket=true;
                                     } else {
 	                                    // replies to the client and wait for an ok of the client
-	                                    wasAbort = (putMessage(outStream, NetworkMessage.msgShakehandS(clientId))!=0);
+	                                    received = getNumReceived();
+	                                    String accept = NetworkMessage.msgShakehandS(clientId, protocol);
+	                                    if (protocol!=null) {
+	                                        // the accept is the last text message, the client may answer in binary at once
+	                                        endpoint.setProtocol(protocol);
+	                                        wasAbort = (putMessageAndSetBinaryWriting(endpoint, accept)!=0);
+	                                    } else {
+	                                        wasAbort = (putMessage(endpoint, accept)!=0);
+	                                    }
+	                                    timeTest = System.currentTimeMillis();
 	                                    while (!wasAbort && !messageClientAcknowledge(clientId)) {
-	                                        wasAbort = (messageClientAbort(clientId) || client.getClientId()!=clientId || putMessage(outStream, NetworkMessage.msgTestS())!=0);
-	                                        netWait();
+	                                        wasAbort = (messageClientAbort(clientId) || client.getClientId()!=clientId);
+	                                        if (!wasAbort && System.currentTimeMillis()-timeTest>=ConstantValue.NETWORK_WAITINTERVAL) {
+	                                            wasAbort = (putMessage(endpoint, NetworkMessage.msgTestS())!=0);
+	                                            timeTest = System.currentTimeMillis();
+	                                        }
+	                                        received = waitForMessage(received);
 	                                    }
 	                                    if (!wasAbort) {
 	                                        if (nameAlreadyExists(name)) {
 	                                            // test a second time if name still does not exist
-	                                            putMessage(outStream, NetworkMessage.msgNameExistsS());
+	                                            putMessage(endpoint, NetworkMessage.msgNameExistsS());
 	                                            releaseSocket=true;
 	                                        } else {
 		                                        client.setState(CONNECTED);
@@ -527,6 +704,7 @@ public class NetworkServerConnection extends NetworkConnection {
                                 releaseSocket=true;
                             }
                         } else {
+                            endpoint.close();
                             releaseSocket=true;
                         }
                         if (releaseSocket){
@@ -606,7 +784,7 @@ public class NetworkServerConnection extends NetworkConnection {
     /**
      * Returns true if a message that got client datas was received
      *
-     * @param al array with datas, that shall be filled
+     * @param al array with datas, that shall be filled (name, ip and the offered protocol if there is one)
      * @param clientId id of the client
      * @return true if this message was received, else false
      */
@@ -616,12 +794,16 @@ public class NetworkServerConnection extends NetworkConnection {
         if (msg!=null) {
             // control, if it's the correct application
             String appName = getMessagePart(2,msg);
-            if (appName!=null && appName.equals(HGBaseAppTools.getAppName())) {
+            if (appName!=null && appName.equals(getAppName())) {
 	            al.add(getMessagePart(3,msg));
 	            al.add(getMessagePart(4,msg));
+	            String protocol = getMessagePart(5,msg);
+	            if (protocol!=null) {
+	                al.add(protocol);
+	            }
 	            return true;
             } else {
-                putMessage(getIndexOfId(clientId), NetworkMessage.msgWrongApplicationS());
+                putMessage(getIndexOfId(clientId), NetworkMessage.msgWrongApplicationS(getAppName()));
                 // the server recognizes an error because the list "al" is empty
                 return true;
             }
@@ -675,11 +857,14 @@ public class NetworkServerConnection extends NetworkConnection {
             numClients--;
         }
         int numOk = 0;
+        long received = getNumReceived();
         while (getNumConnected()==getNumInitialClients() && numOk<numClients) {
             while (messageClientsGameOk(msgType)) {
                 numOk++;
             }
-            NetworkConnection.netWait();
+            if (numOk<numClients) {
+                received = waitForMessage(received);
+            }
         }
         return (numOk==numClients);
     }
@@ -694,9 +879,12 @@ public class NetworkServerConnection extends NetworkConnection {
      */
     public boolean waitForClientMoveInformation(StringBuffer msgReceived, NetworkPlayer player) {
         String msg = null;
+        long received = getNumReceived();
         while (player.isPlaying() && getNumConnected() == getNumInitialClients() && msg == null) {
             msg = messageGameInformation(NetworkMessage.MSG_MOVE);
-            NetworkConnection.netWait();
+            if (msg == null) {
+                received = waitForMessage(received);
+            }
         }
         if (msg != null) {
             msgReceived.append(removeClientIdFromMessage(msg));
@@ -0,0 +1,674 @@
+package com.tjger.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.tjger.lib.ConstantValue;
+
+import at.hagru.hgbase.lib.HGBaseFileTools;
+import at.hagru.hgbase.lib.HGBaseLog;
+
+/**
+ * The transport of the network messages over non-blocking socket channels.<p>
+ * One thread waits for all channels of the transport with a selector and passes every line to the listener as soon as it
+ * has been received, so there is no polling and no delay between the clients. Every channel has its own read and write
+ * buffer, messages are sent as lines in the default charset like the former stream based connections.
+ * Messages can be sent from any thread, they are written by the selector thread.<p>
+ * After the handshake each direction of a channel can switch to the frames of the {@link NetworkBinaryCodec}.
+ * For tests the sent messages can be delayed by simulated {@link NetworkConditions}.
+ *
+ * @author hagru
+ */
+final class NetworkTransport {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte LINE_END = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    /**
+     * Receives the lines and the closed channels of a transport, the methods are called by the selector thread.
+     */
+    interface Listener {
+
+        /**
+         * @param endpoint The channel the line was received from.
+         * @param line The received line without line end, or the decoded message of a binary frame.
+         */
+        void lineReceived(Endpoint endpoint, String line);
+
+        /**
+         * Is called if the other side closed the channel or the channel failed, not if it was closed by this side.
+         *
+         * @param endpoint The closed channel.
+         */
+        void endpointClosed(Endpoint endpoint);
+    }
+
+    final private Listener listener;
+    final private Selector selector;
+    final private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    final private BlockingQueue<Endpoint> accepted = new LinkedBlockingQueue<>();
+    final private Charset charset = Charset.defaultCharset();
+    final private NetworkConditions conditions;
+    final private ScheduledExecutorService delayer;
+    final private Random random = new Random();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean open = true;
+
+    /**
+     * Creates a transport and starts its selector thread.
+     *
+     * @param listener The listener for the received lines.
+     * @throws IOException If the selector cannot be opened.
+     */
+    NetworkTransport(Listener listener) throws IOException {
+        this(listener, null);
+    }
+
+    /**
+     * Creates a transport that delays the sent messages and starts its selector thread.
+     *
+     * @param listener The listener for the received lines.
+     * @param conditions The simulated conditions of the network or null to send the messages at once.
+     * @throws IOException If the selector cannot be opened.
+     */
+    NetworkTransport(Listener listener, NetworkConditions conditions) throws IOException {
+        this.listener = listener;
+        this.conditions = conditions;
+        this.delayer = (conditions == null) ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tjger-network-delay");
+            t.setDaemon(true);
+            return t;
+        });
+        this.selector = Selector.open();
+        Thread t = new Thread("tjger-network") {
+            @Override
+            public void run() {
+                runSelector();
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * @return True if the transport has not been closed.
+     */
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * @return The port the transport accepts connections at, e.g. if it was started with port 0; -1 if it does not listen.
+     */
+    int getLocalPort() {
+        ServerSocketChannel channel = serverChannel;
+        return (channel == null) ? -1 : channel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts to accept connections at the given port, see {@link #accept()}.
+     *
+     * @param port The port of the server.
+     * @throws IOException If the port cannot be used.
+     */
+    void listen(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.socket().setReuseAddress(true);
+            channel.socket().bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            HGBaseFileTools.closeStream(channel);
+            throw e;
+        }
+        this.serverChannel = channel;
+        execute(() -> {
+            try {
+                channel.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                // the transport was closed in the meantime
+            }
+        });
+    }
+
+    /**
+     * Waits for the next accepted connection. The channel is not read before {@link Endpoint#startReading()} is called,
+     * so no line gets lost until the connection has been assigned to a client.
+     *
+     * @return The new channel.
+     * @throws IOException If the transport was closed.
+     */
+    Endpoint accept() throws IOException {
+        while (open) {
+            try {
+                Endpoint endpoint = accepted.poll(ConstantValue.NETWORK_WAITINTERVAL, TimeUnit.MILLISECONDS);
+                if (endpoint != null) {
+                    return endpoint;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new ClosedChannelException();
+    }
+
+    /**
+     * Connects to a server, the calling thread waits till the connection has been established.
+     *
+     * @param host The host of the server.
+     * @param port The port of the server.
+     * @return The new channel, it is not read before {@link Endpoint#startReading()} is called.
+     * @throws IOException If the connection failed.
+     */
+    Endpoint connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        try {
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            HGBaseFileTools.closeStream(channel);
+            throw e;
+        }
+        return new Endpoint(channel);
+    }
+
+    /**
+     * Closes the transport with all its channels. The messages that have already been sent are written if possible.
+     * This method does not wait for the selector thread and can be called from the listener.
+     */
+    void close() {
+        if (open) {
+            open = false;
+            if (delayer != null) {
+                delayer.shutdownNow();
+            }
+            execute(this::closeAll);
+        }
+    }
+
+    /**
+     * Runs a task in the selector thread.
+     *
+     * @param task The task to run.
+     */
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * The loop of the selector thread.
+     */
+    private void runSelector() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                    task.run();
+                }
+                if (!selector.isOpen()) {
+                    break;
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        acceptChannel();
+                    } else {
+                        Endpoint endpoint = (Endpoint) key.attachment();
+                        if (key.isReadable()) {
+                            endpoint.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            endpoint.write();
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            closeAfterError();
+        }
+    }
+
+    /**
+     * Closes the transport after the selector failed. All channels are lost, so the listener is told about each of
+     * them like about a channel that was closed by the other side.
+     */
+    private void closeAfterError() {
+        if (selector.isOpen()) {
+            List<Endpoint> endpoints = new ArrayList<>();
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Endpoint) {
+                    endpoints.add((Endpoint) key.attachment());
+                }
+            }
+            for (Endpoint endpoint : endpoints) {
+                endpoint.closeByRemote();
+            }
+        }
+        close();
+        closeAll();
+    }
+
+    /**
+     * Accepts a new connection in the selector thread.
+     */
+    private void acceptChannel() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                accepted.add(new Endpoint(channel));
+            }
+        } catch (IOException e) {
+            // the connection was closed before it could be accepted
+        }
+    }
+
+    /**
+     * Closes all channels and the selector in the selector thread.
+     */
+    private void closeAll() {
+        if (selector.isOpen()) {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Endpoint) {
+                    ((Endpoint) key.attachment()).closeChannel(true);
+                }
+            }
+            for (Endpoint endpoint = accepted.poll(); endpoint != null; endpoint = accepted.poll()) {
+                endpoint.closeChannel(false);
+            }
+            HGBaseFileTools.closeStream(serverChannel);
+            HGBaseFileTools.closeStream(selector);
+        }
+    }
+
+    /**
+     * One connected channel of the transport.
+     */
+    final class Endpoint {
+
+        final private SocketChannel channel;
+        final private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        final private ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        final private Deque<ByteBuffer> writeQueue = new ArrayDeque<>();
+        final private Deque<ByteBuffer> delayedQueue = new ArrayDeque<>(); // guarded by writeQueue
+        final private Deque<Long> delayedTimes = new ArrayDeque<>();       // guarded by writeQueue
+        private long lastDelayedTime;                                     // guarded by writeQueue
+        private SelectionKey key;
+        private volatile boolean closed;
+        private volatile Object owner;
+        private volatile String protocol;             // the protocol negotiated in the handshake or null
+        private NetworkBinaryCodec encoder;           // guarded by writeQueue
+        private volatile NetworkBinaryCodec decoder;  // only changed by the selector thread
+        private int frameLength = -1;                 // length of the current binary frame, -1 while reading the length
+        private long frameLengthValue;                // the bytes of the length that were read so far
+        private int frameLengthShift;
+
+        /**
+         * @param channel The connected channel in non-blocking mode.
+         */
+        private Endpoint(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return The socket of the channel, e.g. to get the addresses.
+         */
+        Socket getSocket() {
+            return channel.socket();
+        }
+
+        /**
+         * @return The object this channel belongs to or null.
+         */
+        Object getOwner() {
+            return owner;
+        }
+
+        /**
+         * @param owner The object this channel belongs to, e.g. the client on the server side.
+         */
+        void setOwner(Object owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * @return True if the channel has been closed.
+         */
+        boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * @return The protocol that was negotiated in the handshake or null if the messages are sent as lines.
+         */
+        String getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * @param protocol The protocol that was negotiated in the handshake, must be set before the other side can
+         *                 send its first message in this protocol.
+         */
+        void setProtocol(String protocol) {
+            this.protocol = protocol;
+        }
+
+        /**
+         * @return True if the messages are sent as binary frames.
+         */
+        boolean isBinaryWriting() {
+            synchronized (writeQueue) {
+                return encoder != null;
+            }
+        }
+
+        /**
+         * Sends a line as the last text message and all following messages as binary frames. No message of another
+         * thread can be sent between the line and the switch.
+         *
+         * @param line The line to send.
+         * @return True if the line was queued, false if the channel is closed.
+         */
+        boolean sendAndSetBinaryWriting(String line) {
+            return send(line, true);
+        }
+
+        /**
+         * @return True if the received data is read as binary frames.
+         */
+        boolean isBinaryReading() {
+            return decoder != null;
+        }
+
+        /**
+         * Reads all data after the current line as binary frames. Must be called by
+         * {@link Listener#lineReceived(Endpoint, String)} with the last line that the other side sent as text.
+         */
+        void setBinaryReading() {
+            if (decoder == null) {
+                decoder = new NetworkBinaryCodec();
+                frameLength = -1;
+                frameLengthValue = 0;
+                frameLengthShift = 0;
+            }
+        }
+
+        /**
+         * Starts to read lines from the channel and to pass them to the listener.
+         */
+        void startReading() {
+            execute(() -> {
+                try {
+                    if (!closed) {
+                        key = channel.register(selector, (writeQueue.isEmpty()) ? SelectionKey.OP_READ
+                                                                             : SelectionKey.OP_READ | SelectionKey.OP_WRITE, this);
+                    }
+                } catch (IOException e) {
+                    closeChannel(false);
+                }
+            });
+        }
+
+        /**
+         * Sends a line, it is written by the selector thread.
+         *
+         * @param line The line to send.
+         * @return True if the line was queued, false if the channel is closed.
+         */
+        boolean send(String line) {
+            return send(line, false);
+        }
+
+        /**
+         * Sends a line, it is written by the selector thread.
+         *
+         * @param line The line to send.
+         * @param binaryAfter True to send all following messages as binary frames.
+         * @return True if the line was queued, false if the channel is closed.
+         */
+        private boolean send(String line, boolean binaryAfter) {
+            if (closed || !open) {
+                return false;
+            }
+            synchronized (writeQueue) {
+                // encode while holding the lock, so the frames are queued in the order of the string table
+                ByteBuffer buffer;
+                if (encoder != null) {
+                    buffer = encoder.encodeFrame(line);
+                } else {
+                    byte[] text = line.getBytes(charset);
+                    buffer = ByteBuffer.allocate(text.length + 1);
+                    buffer.put(text).put(LINE_END).flip();
+                }
+                if (binaryAfter && encoder == null) {
+                    encoder = new NetworkBinaryCodec();
+                }
+                if (delayer != null) {
+                    sendDelayed(buffer);
+                    return true;
+                }
+                writeQueue.add(buffer);
+            }
+            execute(this::write);
+            return true;
+        }
+
+        /**
+         * Queues the bytes of a message after the delay of the simulated network conditions. A message is never
+         * queued before the messages that were sent before.
+         *
+         * @param buffer The bytes of the message, the caller holds the lock of the write queue.
+         */
+        private void sendDelayed(ByteBuffer buffer) {
+            long time = Math.max(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(conditions.nextDelay(random)), lastDelayedTime);
+            lastDelayedTime = time;
+            delayedQueue.add(buffer);
+            delayedTimes.add(Long.valueOf(time));
+            try {
+                delayer.schedule(this::queueDelayed, time - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) {
+                // the transport was closed in the meantime
+            }
+        }
+
+        /**
+         * Moves the delayed messages whose time has come to the write queue.
+         */
+        private void queueDelayed() {
+            boolean queued = false;
+            synchronized (writeQueue) {
+                long now = System.nanoTime();
+                while (!delayedTimes.isEmpty() && delayedTimes.peek().longValue() <= now) {
+                    delayedTimes.poll();
+                    writeQueue.add(delayedQueue.poll());
+                    queued = true;
+                }
+            }
+            if (queued) {
+                execute(this::write);
+            }
+        }
+
+        /**
+         * Closes the channel, the lines that have already been sent are written if possible.
+         */
+        void close() {
+            if (!closed) {
+                closed = true;
+                execute(() -> closeChannel(true));
+            }
+        }
+
+        /**
+         * Reads the available bytes in the selector thread and passes all complete lines or frames to the listener.
+         */
+        private void read() {
+            try {
+                int count = channel.read(readBuffer);
+                if (count < 0) {
+                    closeByRemote();
+                    return;
+                }
+                readBuffer.flip();
+                while (readBuffer.hasRemaining() && !closed) {
+                    if (decoder != null) {
+                        readFrame();
+                    } else {
+                        byte b = readBuffer.get();
+                        if (b == LINE_END) {
+                            byte[] bytes = lineBuffer.toByteArray();
+                            int length = (bytes.length > 0 && bytes[bytes.length - 1] == CARRIAGE_RETURN) ? bytes.length - 1 : bytes.length;
+                            lineBuffer.reset();
+                            passLine(new String(bytes, 0, length, charset));
+                        } else {
+                            lineBuffer.write(b);
+                        }
+                    }
+                }
+                readBuffer.clear();
+            } catch (IOException e) {
+                closeByRemote();
+            }
+        }
+
+        /**
+         * Reads the length of a binary frame or as many bytes of its content as are available, and passes the decoded
+         * message to the listener when the frame is complete.
+         *
+         * @throws IOException If the frame is not valid.
+         */
+        private void readFrame() throws IOException {
+            if (frameLength < 0) {
+                int b = readBuffer.get() & 0xFF;
+                frameLengthValue |= (long) (b & 0x7F) << frameLengthShift;
+                if (frameLengthValue > NetworkBinaryCodec.MAX_FRAME_LENGTH || frameLengthShift > 28) {
+                    throw new IOException("Network frame is too long: " + frameLengthValue);
+                }
+                if ((b & 0x80) != 0) {
+                    frameLengthShift += 7;
+                    return;
+                }
+                frameLength = (int) frameLengthValue;
+                frameLengthValue = 0;
+                frameLengthShift = 0;
+            } else {
+                int count = Math.min(readBuffer.remaining(), frameLength - lineBuffer.size());
+                lineBuffer.write(readBuffer.array(), readBuffer.arrayOffset() + readBuffer.position(), count);
+                readBuffer.position(readBuffer.position() + count);
+            }
+            if (lineBuffer.size() == frameLength) {
+                byte[] bytes = lineBuffer.toByteArray();
+                lineBuffer.reset();
+                frameLength = -1;
+                passLine(decoder.decode(bytes, bytes.length));
+            }
+        }
+
+        /**
+         * Passes a received line to the listener.
+         *
+         * @param line The line.
+         */
+        private void passLine(String line) {
+            try {
+                listener.lineReceived(this, line);
+            } catch (RuntimeException e) {
+                // the selector thread must not end because of an error in the game
+                HGBaseLog.logError("Error when handling network message: " + e);
+            }
+        }
+
+        /**
+         * Writes as many queued bytes as possible in the selector thread, the channel is selected for writing while bytes remain.
+         */
+        private void write() {
+            if (key == null || !key.isValid()) {
+                // not registered yet, the bytes are written after the registration
+                return;
+            }
+            try {
+                synchronized (writeQueue) {
+                    while (!writeQueue.isEmpty()) {
+                        ByteBuffer buffer = writeQueue.peek();
+                        channel.write(buffer);
+                        if (buffer.hasRemaining()) {
+                            break;
+                        }
+                        writeQueue.poll();
+                    }
+                    key.interestOps((writeQueue.isEmpty()) ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                closeByRemote();
+            }
+        }
+
+        /**
+         * Closes the channel after an error or if the other side closed it.
+         */
+        private void closeByRemote() {
+            boolean wasClosed = closed;
+            closeChannel(false);
+            if (!wasClosed && open) {
+                listener.endpointClosed(this);
+            }
+        }
+
+        /**
+         * Closes the channel in the selector thread.
+         *
+         * @param flush True to write the queued bytes before, as far as possible without waiting.
+         */
+        private void closeChannel(boolean flush) {
+            closed = true;
+            if (flush && channel.isOpen()) {
+                try {
+                    synchronized (writeQueue) {
+                        for (ByteBuffer buffer : writeQueue) {
+                            channel.write(buffer);
+                            if (buffer.hasRemaining()) {
+                                break;
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    // the channel is closed anyway
+                }
+            }
+            synchronized (writeQueue) {
+                writeQueue.clear();
+                delayedQueue.clear();
+                delayedTimes.clear();
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            HGBaseFileTools.closeStream(channel);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.tjger.lib;
+
+import java.lang.reflect.Method;
+
+import com.tjger.game.GamePlayer;
+import com.tjger.game.GameRules;
+import com.tjger.game.GameState;
+import com.tjger.game.MoveInformation;
+import com.tjger.game.SimpleGameRules;
+import com.tjger.game.completed.GameEngine;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Measures the memory the Minimax algorithm with Alpha-Beta-Pruning allocates on a synthetic game, once with an
+ * evaluator that returns a new array of new moves for every position ({@link AiMoveEvaluator}) and once with an
+ * evaluator that fills the move buffers of the search and reuses their move objects ({@link AiBufferedMoveEvaluator}).<p>
+ * The synthetic game has the same number of moves in every position and evaluates a position by a hash of the moves
+ * that lead to it, so both evaluators search the same tree and have to find the same moves. The searches are played
+ * as {@link AiSimulation} without the game engine. Every search is done once to warm up before it is measured.
+ * The allocated bytes are taken from the thread management of the Java VM, if it does not support this they are
+ * reported as -1.<p>
+ * The benchmark belongs to the unit test sources, so it runs on the Java VM of the development machine and is not
+ * part of the library.
+ *
+ * <pre>
+ * AiAllocationBenchmark benchmark = new AiAllocationBenchmark();
+ * benchmark.setDepth(6);
+ * System.out.println(benchmark.run());
+ * </pre>
+ *
+ * The benchmark can also be started with {@code java com.tjger.lib.AiAllocationBenchmark [depth [moves [searches]]]}.
+ *
+ * @see AiAllocationBenchmarkResult
+ * @author Joe
+ */
+public class AiAllocationBenchmark {
+
+    /**
+     * The default search depth.
+     */
+    final public static int DEFAULT_DEPTH = 6;
+    /**
+     * The default number of moves in every position.
+     */
+    final public static int DEFAULT_NUM_MOVES = 8;
+    /**
+     * The default number of searches per evaluator.
+     */
+    final public static int DEFAULT_NUM_SEARCHES = 20;
+
+    private int depth = DEFAULT_DEPTH;
+    private int numMoves = DEFAULT_NUM_MOVES;
+    private int numSearches = DEFAULT_NUM_SEARCHES;
+
+    /**
+     * Constructs a new benchmark with the default values.
+     */
+    public AiAllocationBenchmark() {
+        super();
+    }
+
+    /**
+     * Runs the benchmark and prints the result.
+     *
+     * @param args The optional search depth, number of moves and number of searches.
+     */
+    public static void main(String[] args) {
+        AiAllocationBenchmark benchmark = new AiAllocationBenchmark();
+        if (args.length > 0) {
+            benchmark.setDepth(Integer.parseInt(args[0]));
+        }
+        if (args.length > 1) {
+            benchmark.setNumMoves(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            benchmark.setNumSearches(Integer.parseInt(args[2]));
+        }
+        System.out.println(benchmark.run());
+    }
+
+    /**
+     * @param depth The search depth.
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @param numMoves The number of moves in every position.
+     */
+    public void setNumMoves(int numMoves) {
+        this.numMoves = numMoves;
+    }
+
+    /**
+     * @param numSearches The number of searches per evaluator, each from another position.
+     */
+    public void setNumSearches(int numSearches) {
+        this.numSearches = numSearches;
+    }
+
+    /**
+     * Does the searches with both evaluators.
+     *
+     * @return The result of the benchmark.
+     */
+    public AiAllocationBenchmarkResult run() {
+        AiAllocationBenchmarkResult result = new AiAllocationBenchmarkResult(numSearches);
+        AiMoveEvaluator[] evaluators = new AiMoveEvaluator[2];
+        evaluators[AiAllocationBenchmarkResult.ARRAY_EVALUATOR] = new ArrayEvaluator();
+        evaluators[AiAllocationBenchmarkResult.BUFFERED_EVALUATOR] = new BufferedEvaluator();
+        for (int type = 0; type < evaluators.length; type++) {
+            search(evaluators[type], type, false, result);
+            search(evaluators[type], type, true, result);
+        }
+        return result;
+    }
+
+    /**
+     * Does all searches with one evaluator in a simulation of the synthetic game.
+     *
+     * @param evaluator The evaluator.
+     * @param type The type of the evaluator in the result.
+     * @param measure {@code false} to warm up, {@code true} to add the measured values to the result.
+     * @param result The result of the benchmark.
+     */
+    private void search(AiMoveEvaluator evaluator, int type, boolean measure, AiAllocationBenchmarkResult result) {
+        GamePlayer[] players = { new SyntheticPlayer("Player 1"), new SyntheticPlayer("Player 2") };
+        SyntheticState state = new SyntheticState(depth);
+        AiSimulation simulation = new AiSimulation(new SyntheticRules(), state, players, 0);
+        simulation.bind();
+        try {
+            simulation.setCurrentPlayer(players[0]);
+            long countEvaluations = 0;
+            long startBytes = getAllocatedBytes();
+            long startTime = System.nanoTime();
+            for (int i = 0; i < numSearches; i++) {
+                state.setPosition(i);
+                AiMoveInformation move = AiAlgorithms.getMiniMaxMove(depth, evaluator);
+                countEvaluations += AiAlgorithms.getCountEvaluations();
+                if (measure) {
+                    result.setMove(type, i, (move == null) ? -1 : ((SyntheticMove) move).index);
+                }
+            }
+            long duration = System.nanoTime() - startTime;
+            long endBytes = getAllocatedBytes();
+            if (measure) {
+                result.setMeasurement(type, countEvaluations, (startBytes < 0 || endBytes < 0) ? -1 : endBytes - startBytes, duration);
+            }
+        } finally {
+            simulation.unbind();
+        }
+    }
+
+    /**
+     * Returns the bytes the calling thread has allocated so far, read by reflection because the thread management
+     * of the Java VM is not available on Android.
+     *
+     * @return The allocated bytes or -1 if they cannot be read.
+     */
+    private static long getAllocatedBytes() {
+        try {
+            Object threadBean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            Method method = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) method.invoke(threadBean, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A move of the synthetic game, identified by its index in the generated moves.
+     */
+    private static final class SyntheticMove extends AiMoveInformation {
+
+        int index;
+
+        /**
+         * @param index The index of the move.
+         */
+        SyntheticMove(int index) {
+            super();
+            this.index = index;
+        }
+
+        /* (non-Javadoc)
+         * @see com.tjger.lib.AiMoveInformation#clone()
+         */
+        @Override
+        public Object clone() {
+            SyntheticMove move = new SyntheticMove(index);
+            move.setEvaluationValue(getEvaluationValue());
+            return move;
+        }
+
+        /* (non-Javadoc)
+         * @see com.tjger.lib.AiMoveInformation#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof SyntheticMove) && ((SyntheticMove) obj).index == index;
+        }
+
+        /* (non-Javadoc)
+         * @see com.tjger.lib.AiMoveInformation#hashCode()
+         */
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+
+    /**
+     * The state of the synthetic game, a hash of the moves that were done. The former hashes are kept in an array
+     * to undo the moves without allocations.
+     */
+    private static final class SyntheticState implements GameState {
+
+        private long[] hashes;
+        private int size;
+
+        /**
+         * @param depth The search depth, the number of moves that can be undone.
+         */
+        SyntheticState(int depth) {
+            super();
+            this.hashes = new long[depth + 2];
+        }
+
+        /**
+         * @param position The number of the position to start a search from.
+         */
+        void setPosition(int position) {
+            hashes[0] = mix(position + 1);
+            size = 1;
+        }
+
+        /**
+         * @return The hash of the current position.
+         */
+        long getHash() {
+            return hashes[size - 1];
+        }
+
+        /**
+         * @param value A value.
+         * @return The mixed bits of the value.
+         */
+        static long mix(long value) {
+            long z = value * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        @Override
+        public void resetGame(GameEngine engine) {
+            setPosition(0);
+        }
+
+        @Override
+        public void resetRound(GameEngine engine) {
+            // nothing to do
+        }
+
+        @Override
+        public void resetTurn(GameEngine engine) {
+            // nothing to do
+        }
+
+        @Override
+        public void stopGame() {
+            // nothing to do
+        }
+
+        @Override
+        public void changeState(GamePlayer player, MoveInformation move, GameEngine engine) {
+            if (size == hashes.length) {
+                long[] newHashes = new long[size * 2];
+                System.arraycopy(hashes, 0, newHashes, 0, size);
+                hashes = newHashes;
+            }
+            hashes[size] = mix(getHash() + ((SyntheticMove) move).index + 1);
+            size++;
+        }
+
+        @Override
+        public void undoMove(GamePlayer player, MoveInformation move) {
+            size--;
+        }
+
+        @Override
+        public Object clone() {
+            SyntheticState state = new SyntheticState(hashes.length - 2);
+            System.arraycopy(hashes, 0, state.hashes, 0, size);
+            state.size = size;
+            return state;
+        }
+
+        @Override
+        public int save(Document doc, Element root) {
+            return 0;
+        }
+
+        @Override
+        public int load(Node node) {
+            return 0;
+        }
+
+        @Override
+        public String toNetworkString() {
+            return Long.toString(getHash());
+        }
+
+        @Override
+        public boolean fromNetworkString(String data) {
+            return false;
+        }
+
+        @Override
+        public String toNetworkStringMove(MoveInformation move) {
+            return Integer.toString(((SyntheticMove) move).index);
+        }
+
+        @Override
+        public MoveInformation fromNetworkStringMove(String data) {
+            return new SyntheticMove(Integer.parseInt(data));
+        }
+    }
+
+    /**
+     * The rules of the synthetic game, every move is valid and the game never ends.
+     */
+    private static final class SyntheticRules extends SimpleGameRules {
+
+        @Override
+        public boolean isRoundFinished(GameState gameState) {
+            return false;
+        }
+
+        @Override
+        public boolean isGameFinished(GameState gameState) {
+            return false;
+        }
+
+        @Override
+        public void doScoring(GamePlayer[] playerToScore, GameState gameState) {
+            // there are no scores
+        }
+
+        @Override
+        public boolean isValidMove(MoveInformation move, GameState gameState) {
+            return true;
+        }
+    }
+
+    /**
+     * A player of the synthetic game, the moves are only done by the searches.
+     */
+    private static final class SyntheticPlayer extends GamePlayer {
+
+        /**
+         * @param name The name of the player.
+         */
+        SyntheticPlayer(String name) {
+            super(AiAllocationBenchmark.class.getSimpleName(), name, null);
+        }
+
+        @Override
+        public void considerMove() {
+            // the moves are only searched
+        }
+    }
+
+    /**
+     * Evaluates the positions of the synthetic game and returns a new array of new moves for every position.
+     */
+    private class ArrayEvaluator implements AiMoveEvaluator {
+
+        /* (non-Javadoc)
+         * @see com.tjger.lib.AiMoveEvaluator#generateMoves(com.tjger.game.GamePlayer, com.tjger.game.GameState, com.tjger.game.GameRules)
+         */
+        @Override
+        public AiMoveInformation[] generateMoves(GamePlayer player, GameState state, GameRules rules) {
+            AiMoveInformation[] moves = new AiMoveInformation[numMoves];
+            for (int i = 0; i < numMoves; i++) {
+                moves[i] = new SyntheticMove(i);
+            }
+            return moves;
+        }
+
+        /* (non-Javadoc)
+         * @see com.tjger.lib.AiMoveEvaluator#evaluateState(int, com.tjger.game.GamePlayer, com.tjger.lib.AiMoveInformation, com.tjger.game.GameState, com.tjger.game.GameRules)
+         */
+        @Override
+        public long evaluateState(int step, GamePlayer player, AiMoveInformation move, GameState state, GameRules rules) {
+            long value = (((SyntheticState) state).getHash() >>> 1) % 2001 - 1000;
+            return (player.equals(AiSimulation.current().getPlayers()[0])) ? value : -value;
+        }
+    }
+
+    /**
+     * Evaluates the positions of the synthetic game like the {@link ArrayEvaluator}, but generates the moves into
+     * the move buffers of the search and reuses their move objects.
+     */
+    private final class BufferedEvaluator extends ArrayEvaluator implements AiBufferedMoveEvaluator {
+
+        /* (non-Javadoc)
+         * @see com.tjger.lib.AiBufferedMoveEvaluator#generateMoves(com.tjger.game.GamePlayer, com.tjger.game.GameState, com.tjger.game.GameRules, com.tjger.lib.AiMoveBuffer)
+         */
+        @Override
+        public void generateMoves(GamePlayer player, GameState state, GameRules rules, AiMoveBuffer buffer) {
+            for (int i = 0; i < numMoves; i++) {
+                SyntheticMove move = (SyntheticMove) buffer.getReusable();
+                if (move == null) {
+                    move = new SyntheticMove(i);
+                }
+                move.index = i;
+                move.setEvaluationValue(0);
+                buffer.add(move);
+            }
+        }
+    }
+}
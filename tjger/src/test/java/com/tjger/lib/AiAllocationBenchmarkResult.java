@@ -0,0 +1,111 @@
+package com.tjger.lib;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The result of an {@link AiAllocationBenchmark}: the evaluated positions, the allocated bytes and the duration
+ * of the searches per evaluator and whether both evaluators found the same moves.
+ *
+ * @see AiAllocationBenchmark
+ * @author Joe
+ */
+public class AiAllocationBenchmarkResult {
+
+    /**
+     * The evaluator that returns a new array of new moves for every position.
+     */
+    final public static int ARRAY_EVALUATOR = 0;
+    /**
+     * The evaluator that fills the move buffers of the search and reuses their move objects.
+     */
+    final public static int BUFFERED_EVALUATOR = 1;
+
+    private static final String[] TYPE_NAMES = {"array evaluator", "buffered evaluator"};
+
+    final private int[][] moves;
+    final private long[] countEvaluations = new long[TYPE_NAMES.length];
+    final private long[] allocatedBytes = new long[TYPE_NAMES.length];
+    final private long[] durations = new long[TYPE_NAMES.length];
+
+    /**
+     * Constructs a new result.
+     *
+     * @param numSearches The number of searches per evaluator.
+     */
+    AiAllocationBenchmarkResult(int numSearches) {
+        super();
+        this.moves = new int[TYPE_NAMES.length][numSearches];
+    }
+
+    /**
+     * @param type The evaluator, e.g. {@link #ARRAY_EVALUATOR}.
+     * @param search The number of the search.
+     * @param move The index of the found move or -1 if no move was found.
+     */
+    void setMove(int type, int search, int move) {
+        moves[type][search] = move;
+    }
+
+    /**
+     * @param type The evaluator, e.g. {@link #ARRAY_EVALUATOR}.
+     * @param evaluations The number of evaluated positions of all searches.
+     * @param bytes The bytes allocated by all searches or -1 if they could not be measured.
+     * @param nanos The duration of all searches in nanoseconds.
+     */
+    void setMeasurement(int type, long evaluations, long bytes, long nanos) {
+        countEvaluations[type] = evaluations;
+        allocatedBytes[type] = bytes;
+        durations[type] = nanos;
+    }
+
+    /**
+     * @param type The evaluator, e.g. {@link #ARRAY_EVALUATOR}.
+     * @return The number of evaluated positions of all searches.
+     */
+    public long getCountEvaluations(int type) {
+        return countEvaluations[type];
+    }
+
+    /**
+     * @param type The evaluator, e.g. {@link #ARRAY_EVALUATOR}.
+     * @return The bytes allocated by all searches or -1 if they could not be measured.
+     */
+    public long getAllocatedBytes(int type) {
+        return allocatedBytes[type];
+    }
+
+    /**
+     * @param type The evaluator, e.g. {@link #ARRAY_EVALUATOR}.
+     * @return The duration of all searches in milliseconds.
+     */
+    public double getDuration(int type) {
+        return durations[type] / 1e6;
+    }
+
+    /**
+     * @return {@code true} if both evaluators found the same moves and evaluated the same number of positions.
+     */
+    public boolean isSameSearch() {
+        return Arrays.equals(moves[ARRAY_EVALUATOR], moves[BUFFERED_EVALUATOR])
+               && countEvaluations[ARRAY_EVALUATOR] == countEvaluations[BUFFERED_EVALUATOR];
+    }
+
+    /**
+     * @return A table with the measured values per evaluator.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ENGLISH, "%-20s %12s %14s %12s %12s%n", "evaluator", "evaluations", "allocated MB", "bytes/eval",
+                                "duration ms"));
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            long bytes = allocatedBytes[type];
+            double bytesPerEvaluation = (countEvaluations[type] == 0) ? 0 : (double) bytes / countEvaluations[type];
+            sb.append(String.format(Locale.ENGLISH, "%-20s %12d %14.2f %12.1f %12.1f%n", TYPE_NAMES[type], countEvaluations[type],
+                                    (bytes < 0) ? -1.0 : bytes / 1e6, (bytes < 0) ? -1.0 : bytesPerEvaluation, getDuration(type)));
+        }
+        sb.append(String.format(Locale.ENGLISH, "same moves and evaluations: %s%n", isSameSearch()));
+        return sb.toString();
+    }
+}